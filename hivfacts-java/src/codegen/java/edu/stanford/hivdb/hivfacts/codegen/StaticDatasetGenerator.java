@@ -0,0 +1,209 @@
+package edu.stanford.hivdb.hivfacts.codegen;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Build-time tool which compiles small, release-bound JSON datasets into
+ * the Java class edu.stanford.hivdb.hivfacts.GeneratedStaticDatasets.
+ *
+ * Mutation lists are emitted as primitive column arrays; other datasets are
+ * emitted as their minified JSON text. See StaticDatasets in the main
+ * source set for how the constants are used.
+ *
+ * Usage: StaticDatasetGenerator &lt;dataDir&gt; &lt;outputDir&gt;
+ */
+public final class StaticDatasetGenerator {
+
+	private static final String PACKAGE = "edu.stanford.hivdb.hivfacts";
+	private static final String CLASS_NAME = "GeneratedStaticDatasets";
+
+	private static final PathMatcher MUTATION_LISTS = FileSystems.getDefault().getPathMatcher(
+		"glob:{drms_*.json,sdrms_*.json,tsms_*.json,apobecs*/apobecs.json,apobecs*/apobec_drms.json}");
+	private static final PathMatcher JSON_TEXTS = FileSystems.getDefault().getPathMatcher(
+		"glob:{strains_*.json,genes_*.json,drug-classes_*.json,drugs.json," +
+		"mutation-types.json,mutation-type-pairs_*.json}");
+
+	// class file string constants are limited to 65535 bytes of modified UTF-8
+	private static final int TEXT_PART_LENGTH = 8192;
+	private static final int VALUES_PER_LINE = 20;
+
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+	private final StringBuilder methods = new StringBuilder();
+	private final List<String> methodNames = new ArrayList<>();
+
+	private StaticDatasetGenerator() {}
+
+	private static JsonElement parse(Path path) throws IOException {
+		try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return JsonParser.parseReader(reader);
+		}
+	}
+
+	private static String quote(String value) {
+		return GSON.toJson(value);
+	}
+
+	private static int encode(Map<String, Integer> lookup, String value) {
+		return lookup.computeIfAbsent(value, key -> lookup.size());
+	}
+
+	private static String stringArray(Iterable<String> values) {
+		List<String> quoted = new ArrayList<>();
+		for (String value : values) {
+			quoted.add(quote(value));
+		}
+		return "new String[] {" + String.join(", ", quoted) + "}";
+	}
+
+	private static String numberArray(String type, List<Integer> values) {
+		StringBuilder code = new StringBuilder("new " + type + "[] {");
+		for (int idx = 0; idx < values.size(); idx ++) {
+			code.append(idx % VALUES_PER_LINE == 0 ? "\n\t\t\t\t" : " ");
+			code.append(values.get(idx));
+			if (idx + 1 < values.size()) {
+				code.append(",");
+			}
+		}
+		return code.append("\n\t\t\t}").toString();
+	}
+
+	private void addMethod(String body) {
+		String name = "register" + methodNames.size();
+		methodNames.add(name);
+		methods
+			.append("\n\tprivate static void ").append(name).append("() {\n")
+			.append(body)
+			.append("\t}\n");
+	}
+
+	private void addMutationList(String resPath, JsonElement root) {
+		Map<String, JsonArray> groups = new LinkedHashMap<>();
+		if (root.isJsonObject()) {
+			JsonObject object = root.getAsJsonObject();
+			for (String key : object.keySet()) {
+				groups.put(key, object.getAsJsonArray(key));
+			}
+		}
+		else {
+			groups.put(null, root.getAsJsonArray());
+		}
+		Map<String, Integer> geneLookup = new LinkedHashMap<>();
+		Map<String, Integer> aaLookup = new LinkedHashMap<>();
+		List<Integer> genes = new ArrayList<>();
+		List<Integer> positions = new ArrayList<>();
+		List<Integer> aas = new ArrayList<>();
+		List<Integer> groupEnds = new ArrayList<>();
+		for (JsonArray rows : groups.values()) {
+			for (JsonElement row : rows) {
+				JsonObject mut = row.getAsJsonObject();
+				if (mut.size() != 3) {
+					throw new IllegalArgumentException(String.format(
+						"Unexpected mutation in %s: %s", resPath, mut));
+				}
+				genes.add(encode(geneLookup, mut.get("gene").getAsString()));
+				positions.add(mut.get("position").getAsInt());
+				aas.add(encode(aaLookup, mut.get("aa").getAsString()));
+			}
+			groupEnds.add(genes.size());
+		}
+		if (geneLookup.size() > Byte.MAX_VALUE || aaLookup.size() > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many distinct values in " + resPath);
+		}
+		boolean isList = groups.containsKey(null);
+		StringBuilder body = new StringBuilder();
+		body
+			.append("\t\tStaticDatasets.putMutationTable(\n")
+			.append("\t\t\t").append(quote(resPath)).append(",\n")
+			.append("\t\t\t").append(isList ? "null" : stringArray(groups.keySet())).append(",\n")
+			.append("\t\t\t").append(isList ? "null" : numberArray("int", groupEnds)).append(",\n")
+			.append("\t\t\t").append(stringArray(geneLookup.keySet())).append(",\n")
+			.append("\t\t\t").append(numberArray("byte", genes)).append(",\n")
+			.append("\t\t\t").append(numberArray("short", positions)).append(",\n")
+			.append("\t\t\t").append(stringArray(aaLookup.keySet())).append(",\n")
+			.append("\t\t\t").append(numberArray("short", aas)).append(");\n");
+		addMethod(body.toString());
+	}
+
+	private void addJsonText(String resPath, JsonElement root) {
+		String text = GSON.toJson(root);
+		StringBuilder body = new StringBuilder();
+		body.append("\t\tStaticDatasets.putJsonText(\n\t\t\t").append(quote(resPath));
+		for (int start = 0; start < text.length(); start += TEXT_PART_LENGTH) {
+			String part = text.substring(start, Math.min(text.length(), start + TEXT_PART_LENGTH));
+			body.append(",\n\t\t\t").append(quote(part));
+		}
+		body.append(");\n");
+		addMethod(body.toString());
+	}
+
+	private String render() {
+		StringBuilder code = new StringBuilder();
+		code
+			.append("// Generated by ").append(getClass().getName()).append(". Do not edit.\n")
+			.append("package ").append(PACKAGE).append(";\n\n")
+			.append("final class ").append(CLASS_NAME).append(" {\n\n")
+			.append("\tprivate ").append(CLASS_NAME).append("() {}\n\n")
+			.append("\tstatic void register() {\n");
+		for (String name : methodNames) {
+			code.append("\t\t").append(name).append("();\n");
+		}
+		code.append("\t}\n").append(methods).append("\n}\n");
+		return code.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: StaticDatasetGenerator <dataDir> <outputDir>");
+			System.exit(1);
+		}
+		Path dataDir = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		List<Path> relPaths;
+		try (Stream<Path> paths = Files.walk(dataDir, 2)) {
+			relPaths = paths
+				.filter(Files::isRegularFile)
+				.map(dataDir::relativize)
+				.sorted()
+				.collect(Collectors.toList());
+		}
+		StaticDatasetGenerator generator = new StaticDatasetGenerator();
+		for (Path relPath : relPaths) {
+			// resource paths always use "/"
+			String resPath = relPath.toString().replace(relPath.getFileSystem().getSeparator(), "/");
+			if (MUTATION_LISTS.matches(relPath)) {
+				generator.addMutationList(resPath, parse(dataDir.resolve(relPath)));
+			}
+			else if (JSON_TEXTS.matches(relPath)) {
+				generator.addJsonText(resPath, parse(dataDir.resolve(relPath)));
+			}
+		}
+		Path target = outputDir.resolve(PACKAGE.replace('.', '/')).resolve(CLASS_NAME + ".java");
+		Files.createDirectories(target.getParent());
+		try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+			writer.write(generator.render());
+		}
+	}
+
+}
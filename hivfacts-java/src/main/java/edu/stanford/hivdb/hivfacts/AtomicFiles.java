@@ -0,0 +1,55 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Writes files which other threads or processes may be reading: content is
+ * written to a temporary file next to the target, which then replaces the
+ * target atomically.
+ */
+final class AtomicFiles {
+
+	private AtomicFiles() {}
+
+	/**
+	 * Creates the temporary file of a target
+	 *
+	 * The file is readable by everyone who can read the directory, like a
+	 * file created with the usual umask; {@link Files#createTempFile} alone
+	 * would make it readable by its owner only.
+	 *
+	 * @param target
+	 * @return the temporary file, to be passed to {@link #commit}
+	 * @throws IOException
+	 */
+	static Path createTemp(Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		if (Files.getFileAttributeView(tmp, PosixFileAttributeView.class) != null) {
+			Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-r--r--"));
+		}
+		return tmp;
+	}
+
+	/**
+	 * Replaces the target with its temporary file
+	 *
+	 * @param tmp
+	 * @param target
+	 * @throws IOException
+	 */
+	static void commit(Path tmp, Path target) throws IOException {
+		try {
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
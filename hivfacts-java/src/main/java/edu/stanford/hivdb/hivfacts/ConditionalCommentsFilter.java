@@ -0,0 +1,131 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.function.Predicate;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming filter of conditional-comments JSON resources by gene.
+ *
+ * Comments are copied token by token from a {@link JsonReader}; only the
+ * comment being copied is buffered, since its conditionValue.gene may
+ * follow its other fields. No parse tree is built.
+ */
+final class ConditionalCommentsFilter {
+
+	private ConditionalCommentsFilter() {}
+
+	/**
+	 * Returns the JSON array of the comments whose condition has no gene or
+	 * a gene accepted by geneFilter
+	 *
+	 * @param reader reads a JSON array of comments
+	 * @param geneFilter
+	 * @return the filtered JSON text
+	 * @throws IOException if the JSON is malformed
+	 */
+	static String filter(Reader reader, Predicate<String> geneFilter) throws IOException {
+		JsonReader json = new JsonReader(reader);
+		StringBuilder result = new StringBuilder("[");
+		StringWriter comment = new StringWriter();
+		boolean first = true;
+		json.beginArray();
+		while (json.hasNext()) {
+			comment.getBuffer().setLength(0);
+			String gene = copyComment(json, new JsonWriter(comment));
+			if (gene == null || geneFilter.test(gene)) {
+				if (!first) {
+					result.append(',');
+				}
+				result.append(comment.getBuffer());
+				first = false;
+			}
+		}
+		json.endArray();
+		return result.append(']').toString();
+	}
+
+	/**
+	 * Copies one comment object
+	 *
+	 * @return its conditionValue.gene, or null if it has none
+	 */
+	private static String copyComment(JsonReader in, JsonWriter out) throws IOException {
+		String gene = null;
+		in.beginObject();
+		out.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			out.name(name);
+			if (!name.equals("conditionValue") || in.peek() != JsonToken.BEGIN_OBJECT) {
+				copy(in, out);
+				continue;
+			}
+			in.beginObject();
+			out.beginObject();
+			while (in.hasNext()) {
+				String condName = in.nextName();
+				out.name(condName);
+				if (condName.equals("gene") && in.peek() == JsonToken.STRING) {
+					gene = in.nextString();
+					out.value(gene);
+				}
+				else {
+					copy(in, out);
+				}
+			}
+			in.endObject();
+			out.endObject();
+		}
+		in.endObject();
+		out.endObject();
+		out.flush();
+		return gene;
+	}
+
+	private static void copy(JsonReader in, JsonWriter out) throws IOException {
+		switch (in.peek()) {
+			case BEGIN_ARRAY:
+				in.beginArray();
+				out.beginArray();
+				while (in.hasNext()) {
+					copy(in, out);
+				}
+				in.endArray();
+				out.endArray();
+				break;
+			case BEGIN_OBJECT:
+				in.beginObject();
+				out.beginObject();
+				while (in.hasNext()) {
+					out.name(in.nextName());
+					copy(in, out);
+				}
+				in.endObject();
+				out.endObject();
+				break;
+			case STRING:
+				out.value(in.nextString());
+				break;
+			case NUMBER:
+				// keeps the number literal as written
+				out.jsonValue(in.nextString());
+				break;
+			case BOOLEAN:
+				out.value(in.nextBoolean());
+				break;
+			case NULL:
+				in.nextNull();
+				out.nullValue();
+				break;
+			default:
+				throw new IllegalStateException("Unexpected JSON token " + in.peek());
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Process-wide cache of parsed datasets keyed by the hash of their raw
+ * content, used by the loader of a data release (see {@link
+ * DataReleases}) and the loaders it is reloaded into to share datasets
+ * which didn't change between reloads.
+ *
+ * Keys hold everything the parsed value depends on besides the content:
+ * the virus it is bound to, the kind of dataset and, for datasets bound to
+ * other datasets, the objects it is bound to. Values are weakly referenced
+ * and dropped once no loader uses them.
+ */
+final class ContentCache {
+
+	private static final Cache<List<Object>, Object> VALUES = CacheBuilder.newBuilder().weakValues().build();
+
+	private ContentCache() {}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] digest) {
+		StringBuilder hex = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	static String hash(ByteBuffer content) {
+		MessageDigest digest = newDigest();
+		digest.update(content.duplicate());
+		return toHex(digest.digest());
+	}
+
+	static String hash(String content) {
+		return toHex(newDigest().digest(content.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Returns the cached value of key, parsing it first if necessary
+	 *
+	 * Concurrent callers of the same key wait for a single parse.
+	 *
+	 * @param key
+	 * @param parser
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	static <R> R get(List<Object> key, Supplier<R> parser) {
+		try {
+			return (R) VALUES.get(key, parser::get);
+		} catch (ExecutionError e) {
+			throw (Error) e.getCause();
+		} catch (UncheckedExecutionException e) {
+			throw (RuntimeException) e.getCause();
+		} catch (ExecutionException e) {
+			// parsers don't throw checked exceptions
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
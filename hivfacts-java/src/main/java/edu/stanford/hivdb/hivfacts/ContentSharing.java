@@ -0,0 +1,129 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * What a {@link HIVDataLoader} shares with other loaders
+ *
+ * 	- virus-agnostic resources (drugs, mutation types) are read once for
+ * 	  all loaders of a data source, see {@link SharedResources}
+ * 	- with content sharing enabled, i.e. for data releases (see {@link
+ * 	  HIVDataLoader#newRelease}), parsed datasets are shared between
+ * 	  loaders of the same virus instance whose raw content is identical,
+ * 	  see {@link ContentCache}
+ */
+final class ContentSharing {
+
+	private final Object virus;
+	private final Set<String> geneScope;
+	private final boolean enabled;
+	// resource path => key registered with SharedResources
+	private final Map<String, String> resourceKeys = new ConcurrentHashMap<>();
+
+	ContentSharing(Object virus, Set<String> geneScope, boolean enabled) {
+		this.virus = virus;
+		this.geneScope = geneScope;
+		this.enabled = enabled;
+	}
+
+	boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Parses a dataset, sharing the result if content sharing is enabled
+	 *
+	 * @param deps what the parsed value depends on besides its content,
+	 * 	the virus and the gene scope
+	 * @param hasher returns the hash of the raw content
+	 * @param parser
+	 * @return the parsed value
+	 */
+	<R> R load(List<Object> deps, Supplier<String> hasher, Supplier<R> parser) {
+		if (!enabled) {
+			return parser.get();
+		}
+		List<Object> key = new ArrayList<>(deps);
+		key.add(virus);
+		key.add(geneScope);
+		key.add(hasher.get());
+		return ContentCache.get(key, parser);
+	}
+
+	<R> R parse(Class<?> type, String raw, Function<String, R> parser) {
+		return load(Arrays.asList(type), () -> ContentCache.hash(raw), () -> parser.apply(raw));
+	}
+
+	/**
+	 * Registers a virus-agnostic resource of the given data source with
+	 * {@link SharedResources}
+	 */
+	void registerResource(String dataSourceName, String resPath) {
+		resourceKeys.computeIfAbsent(resPath, key -> SharedResources.register(dataSourceName, resPath));
+	}
+
+	/**
+	 * Binds a resource registered with {@link #registerResource}
+	 *
+	 * The resource text is read by whichever loader gets to it first; this
+	 * loader releases its claim on the cached text once bound. Resources
+	 * which aren't registered are read by the given reader.
+	 *
+	 * @param resPath
+	 * @param reader reads the resource text
+	 * @param binder binds the text to the loader's virus
+	 * @return the bound value
+	 */
+	<R> R loadResource(String resPath, Supplier<String> reader, Function<String, R> binder) {
+		String key = resourceKeys.get(resPath);
+		if (key == null) {
+			return binder.apply(reader.get());
+		}
+		String raw = SharedResources.acquire(key, reader);
+		R result = binder.apply(raw);
+		if (resourceKeys.remove(resPath, key)) {
+			SharedResources.release(key);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the task which releases the registered resources not bound
+	 * yet
+	 *
+	 * Runs when a loader is replaced by {@link HIVDataLoader#reload}, or
+	 * else once it is unreachable; the task doesn't refer to the loader or
+	 * its virus.
+	 */
+	Runnable newReleaser() {
+		return new Releaser(resourceKeys);
+	}
+
+	private static final class Releaser implements Runnable {
+
+		private final Map<String, String> keys;
+
+		private Releaser(Map<String, String> keys) {
+			this.keys = keys;
+		}
+
+		@Override
+		public void run() {
+			for (String resPath : keys.keySet()) {
+				String key = keys.remove(resPath);
+				if (key != null) {
+					SharedResources.release(key);
+				}
+			}
+		}
+
+	}
+
+}
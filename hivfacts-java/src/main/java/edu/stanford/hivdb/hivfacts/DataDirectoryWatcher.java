@@ -0,0 +1,146 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches a data directory and reloads a virus when its files change.
+ *
+ * Changes are collected until the directory has been quiet for the quiet
+ * period, so a release copied file by file triggers a single reload. The
+ * reload runs on the watcher's own daemon thread; see {@link
+ * HIV#reload(HIVDataSource)} for how the new data is swapped in.
+ *
+ * A failed reload (e.g. the directory holds an incomplete release) keeps
+ * the current data and is reported by {@link #getLastFailure()}; the next
+ * change triggers another attempt.
+ */
+public final class DataDirectoryWatcher implements Closeable {
+
+	public static final long DEFAULT_QUIET_PERIOD_MILLIS = 2000;
+
+	private final Path dataDir;
+	private final Consumer<HIVDataSource> reloader;
+	private final long quietPeriodMillis;
+	private final WatchService watchService;
+	private final Thread thread;
+	private volatile Throwable lastFailure;
+
+	private DataDirectoryWatcher(
+		Path dataDir, Consumer<HIVDataSource> reloader, long quietPeriodMillis
+	) throws IOException {
+		this.dataDir = dataDir.toAbsolutePath().normalize();
+		this.reloader = reloader;
+		this.quietPeriodMillis = quietPeriodMillis;
+		this.watchService = this.dataDir.getFileSystem().newWatchService();
+		register(this.dataDir);
+		this.thread = new Thread(this::run, "hivfacts-data-watcher");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts watching a data directory
+	 *
+	 * @param dataDir
+	 * @param reloader called with the data source of dataDir after each
+	 * 	change; expected to throw if the data can't be loaded
+	 * @return the watcher, to be closed to stop watching
+	 * @throws IOException if the directory can't be watched
+	 */
+	public static DataDirectoryWatcher start(Path dataDir, Consumer<HIVDataSource> reloader) throws IOException {
+		return start(dataDir, reloader, DEFAULT_QUIET_PERIOD_MILLIS);
+	}
+
+	public static DataDirectoryWatcher start(
+		Path dataDir, Consumer<HIVDataSource> reloader, long quietPeriodMillis
+	) throws IOException {
+		DataDirectoryWatcher watcher = new DataDirectoryWatcher(dataDir, reloader, quietPeriodMillis);
+		watcher.thread.start();
+		return watcher;
+	}
+
+	/**
+	 * Registers dir and its sub-directories; resources are at most one
+	 * level deep (e.g. "aapcnt/", "algorithms/")
+	 */
+	private void register(Path dir) throws IOException {
+		List<Path> dirs;
+		try (Stream<Path> paths = Files.walk(dir, dir.equals(dataDir) ? 1 : 0)) {
+			dirs = paths.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path path : dirs) {
+			path.register(
+				watchService,
+				StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY,
+				StandardWatchEventKinds.ENTRY_DELETE
+			);
+		}
+	}
+
+	private void drain(WatchKey key) {
+		Path dir = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() != StandardWatchEventKinds.ENTRY_CREATE || !dir.equals(dataDir)) {
+				continue;
+			}
+			Path path = dir.resolve((Path) event.context());
+			if (Files.isDirectory(path)) {
+				try {
+					register(path);
+				} catch (IOException e) {
+					// the directory is gone again
+				}
+			}
+		}
+		key.reset();
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				drain(watchService.take());
+				WatchKey key;
+				while ((key = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS)) != null) {
+					drain(key);
+				}
+				try {
+					reloader.accept(HIVDataSource.directory(dataDir));
+					lastFailure = null;
+				} catch (RuntimeException|Error e) {
+					// e.g. ExceptionInInitializerError or OutOfMemoryError from
+					// loading an incomplete release; keeps watching
+					lastFailure = e;
+				}
+			}
+		} catch (InterruptedException|ClosedWatchServiceException e) {
+			// closed
+		}
+	}
+
+	/**
+	 * Returns why the last reload failed, or null if it succeeded
+	 */
+	public Throwable getLastFailure() {
+		return lastFailure;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		thread.interrupt();
+	}
+
+}
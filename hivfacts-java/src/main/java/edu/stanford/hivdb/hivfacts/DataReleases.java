@@ -0,0 +1,84 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import edu.stanford.hivdb.utilities.AssertUtils;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Named data releases of a virus loaded side by side with its current
+ * data, e.g. to serve reports pinned to an older hivfacts release.
+ *
+ * Each release is bound to its own instance of the virus backed by its
+ * own {@link HIVDataLoader}. Datasets parsed by sierra-core resolve
+ * references to other datasets (e.g. the drug class of a drug) through the
+ * virus they are bound to, so the datasets of a release only ever refer to
+ * datasets of the same release. The release instance is not registered
+ * with {@link Virus#getInstance}; reach it through the genes, drugs etc.
+ * of the release loader.
+ *
+ * Parsed datasets are not shared with the current data, since they are
+ * bound to a different virus instance. For the same reason, objects of a
+ * release (strains, genes, drugs, mutations etc.) must never be mixed with
+ * objects of the current data or of another release: e.g. comparing a
+ * gene of a release with the same gene of the current data tells them
+ * apart. Loaders reject strains and genes of another virus instance with
+ * an IllegalArgumentException.
+ *
+ * A reload (see {@link HIVDataLoader#reload}) on the other hand keeps the
+ * virus instance, so objects loaded before and after it can be mixed.
+ */
+public final class DataReleases<T extends Virus<T>> {
+
+	private final Supplier<HIVDataLoader<T>> currentLoader;
+	private final BiFunction<HIVDataLoader<T>, HIVDataSource, HIVDataLoader<T>> releaseLoader;
+	private final Map<String, HIVDataLoader<T>> releases = new ConcurrentHashMap<>();
+
+	/**
+	 * @param currentLoader returns the loader of the current data
+	 * @param releaseLoader creates a new virus instance over the data
+	 * 	source of a release, configured like the given current loader (see
+	 * 	{@link HIVDataLoader#newRelease}), and returns its loader
+	 */
+	public DataReleases(
+		Supplier<HIVDataLoader<T>> currentLoader,
+		BiFunction<HIVDataLoader<T>, HIVDataSource, HIVDataLoader<T>> releaseLoader
+	) {
+		this.currentLoader = currentLoader;
+		this.releaseLoader = releaseLoader;
+	}
+
+	/**
+	 * Registers a release, replacing any release of the same name
+	 *
+	 * @param name e.g. "2022.11"
+	 * @param dataSource data of the release
+	 * @return the loader of the release
+	 */
+	public HIVDataLoader<T> register(String name, HIVDataSource dataSource) {
+		HIVDataLoader<T> release = releaseLoader.apply(currentLoader.get(), dataSource);
+		releases.put(name, release);
+		return release;
+	}
+
+	public void unregister(String name) {
+		releases.remove(name);
+	}
+
+	public HIVDataLoader<T> get(String name) {
+		return AssertUtils.notNull(
+			releases.get(name),
+			"Data release \"%s\" not found", name
+		);
+	}
+
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(releases.keySet());
+	}
+
+}
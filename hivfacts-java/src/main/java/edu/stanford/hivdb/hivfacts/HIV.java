@@ -1,8 +1,13 @@
 package edu.stanford.hivdb.hivfacts;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.google.common.collect.Sets;
 
@@ -62,38 +67,60 @@ public class HIV implements Virus<HIV> {
 		return Virus.getInstance(HIV.class);
 	}
 
-	private final HIVDataLoader<HIV> dl;
+	// swapped as a whole on reload; read once per call
+	private volatile HIVDataLoader<HIV> dl;
+	private final DataReleases<HIV> releases = new DataReleases<>(
+		() -> dl, (current, dataSource) -> new HIV(current, dataSource).dl);
 
 	private HIV() {
 		registerSequenceValidator(new HIVDefaultSequenceValidator());
 		registerMutationsValidator(new HIVDefaultMutationsValidator());
 		registerSequenceReadsValidator(new HIVDefaultSequenceReadsValidator());
-		this.dl = new HIVDataLoader<>(
-			this,
-			VIRUS_NAME,
-			MAIN_STRAIN,
-			STRAINS_RESPATH,
-			GENES_RESPATH,
-			DRUG_CLASSES_RESPATH,
-			DRUGS_RESPATH,
-			DRMS_RESPATH,
-			SDRMS_RESPATH,
-			TSMS_RESPATH,
-			APOBECS_RESPATH,
-			APOBEC_DRMS_RESPATH,
-			AAPCNTS_RESPATH,
-			CODONPCNTS_RESPATH,
-			MUTTYPES_RESPATH,
-			MUTTYPE_PAIRS_RESPATH,
-			MAIN_SUBTYPES_RESPATH,
-			GENOTYPE_REFERENCES_RESPATH,
-			GENOTYPES_RESPATH,
-			ALGORITHMS_INDEXPATH,
-			ALGORITHMS_RESPATH,
-			CONDCOMMENTS_RESPATH,
-			ALIGNCONFIG_RESPATH,
-			ASSEMBLYCONFIG_RESPATH
+		this.dl = (
+			HIVDataLoader.builder(this, VIRUS_NAME, MAIN_STRAIN)
+			.strainsResPath(STRAINS_RESPATH)
+			.genesResPath(GENES_RESPATH)
+			.drugClassesResPath(DRUG_CLASSES_RESPATH)
+			.drugsResPath(DRUGS_RESPATH)
+			.drmsResPath(DRMS_RESPATH)
+			.sdrmsResPath(SDRMS_RESPATH)
+			.tsmsResPath(TSMS_RESPATH)
+			.apobecsResPath(APOBECS_RESPATH)
+			.apobecDrmsResPath(APOBEC_DRMS_RESPATH)
+			.aaPcntsResPath(AAPCNTS_RESPATH)
+			.codonPcntsResPath(CODONPCNTS_RESPATH)
+			.mutTypesResPath(MUTTYPES_RESPATH)
+			.mutTypePairsResPath(MUTTYPE_PAIRS_RESPATH)
+			.mainSubtypesResPath(MAIN_SUBTYPES_RESPATH)
+			.genotypeReferencesResPath(GENOTYPE_REFERENCES_RESPATH)
+			.genotypesResPath(GENOTYPES_RESPATH)
+			.algorithmsIndexPath(ALGORITHMS_INDEXPATH)
+			.algorithmsResPath(ALGORITHMS_RESPATH)
+			.condCommentsResPath(CONDCOMMENTS_RESPATH)
+			.alignConfigResPath(ALIGNCONFIG_RESPATH)
+			.assemblyConfigResPath(ASSEMBLYCONFIG_RESPATH)
+			.build()
 		);
+		HIVDataLoader.recordDefaultProfile(() -> dl);
+	}
+
+	/**
+	 * Creates an instance backed by a data release, see {@link DataReleases}
+	 */
+	private HIV(HIVDataLoader<HIV> current, HIVDataSource dataSource) {
+		registerSequenceValidator(new HIVDefaultSequenceValidator());
+		registerMutationsValidator(new HIVDefaultMutationsValidator());
+		registerSequenceReadsValidator(new HIVDefaultSequenceReadsValidator());
+		this.dl = current.newRelease(this, dataSource);
+	}
+
+	/**
+	 * Returns the loader datasets are read through: the current one, or
+	 * while a reload warms up its replacement on this thread, the
+	 * replacement, so that datasets it parses refer to each other
+	 */
+	private HIVDataLoader<HIV> loader() {
+		return HIVDataLoader.forThread(this, dl);
 	}
 
 	@Override
@@ -101,205 +128,381 @@ public class HIV implements Virus<HIV> {
 		return dl.getName();
 	}
 
+	/**
+	 * Keeps amino acid/codon percent tables of this virus off the Java heap
+	 *
+	 * @see HIVDataLoader#setPercentTableArena
+	 */
+	public synchronized void setPercentTableArena(PercentTableArena arena) {
+		dl.setPercentTableArena(arena);
+	}
+
+	/**
+	 * Shares percent tables of this virus with other processes of the host
+	 *
+	 * @see HIVDataLoader#setSharedCacheDirectory
+	 */
+	public synchronized void setSharedCacheDirectory(Path cacheDir) {
+		dl.setSharedCacheDirectory(cacheDir);
+	}
+
+	/**
+	 * Bounds the estimated heap used by percent tables of this virus
+	 *
+	 * @see HIVDataLoader#setPercentTableCacheLimit
+	 */
+	public synchronized void setPercentTableCacheLimit(
+		long maxBytes, HIVDataLoader.EvictionPolicy policy, boolean softReferences
+	) {
+		dl.setPercentTableCacheLimit(maxBytes, policy, softReferences);
+	}
+
+	/**
+	 * Saves the resources read for this virus so far to a snapshot file
+	 *
+	 * @see HIVDataLoader#saveSnapshot
+	 */
+	public void saveSnapshot(Path file) throws IOException {
+		dl.saveSnapshot(file);
+	}
+
+	/**
+	 * Saves which data of this virus has been accessed so far, to be
+	 * replayed on the next start
+	 *
+	 * @see HIVDataLoader#saveProfile
+	 */
+	public void saveProfile(Path file) throws IOException {
+		dl.saveProfile(file);
+	}
+
+	/**
+	 * Loads the data of this virus listed by a saved profile
+	 *
+	 * @see HIVDataLoader#replayProfile
+	 */
+	public CompletableFuture<Void> replayProfile(Path file, Executor executor) {
+		return dl.replayProfile(file, executor);
+	}
+
+	/**
+	 * Replaces the data of this virus with the data of the given source
+	 *
+	 * The new data is loaded in full on the calling thread before it is
+	 * swapped in atomically. Calls in progress finish with the old data;
+	 * calls made afterwards see the new data. Settings made with the
+	 * setters of this class are carried over to the new data; the setters
+	 * are synchronized with reload, so none is lost to a concurrent reload.
+	 *
+	 * @see HIVDataLoader#reload
+	 */
+	public synchronized void reload(HIVDataSource dataSource) {
+		dl = dl.reload(dataSource);
+	}
+
+	/**
+	 * Reloads this virus whenever the files of the given data directory
+	 * change
+	 *
+	 * @return the watcher, to be closed to stop watching
+	 * @see DataDirectoryWatcher
+	 */
+	public DataDirectoryWatcher watchDataDirectory(Path dataDir) throws IOException {
+		return DataDirectoryWatcher.start(dataDir, this::reload);
+	}
+
+	/**
+	 * Loads a named data release of this virus side by side with the
+	 * current data
+	 *
+	 * The release is bound to another instance of this virus; its objects
+	 * must not be mixed with objects of this instance.
+	 *
+	 * @see DataReleases
+	 */
+	public HIVDataLoader<HIV> registerDataRelease(String name, HIVDataSource dataSource) {
+		return releases.register(name, dataSource);
+	}
+
+	public void unregisterDataRelease(String name) {
+		releases.unregister(name);
+	}
+
+	public HIVDataLoader<HIV> getDataRelease(String name) {
+		return releases.get(name);
+	}
+
+	public Set<String> getDataReleaseNames() {
+		return releases.getNames();
+	}
+
+	/**
+	 * Returns the abstract genes whose data is loaded, as set by system
+	 * property "hivfacts.geneScope", or null if all genes are loaded
+	 *
+	 * @see HIVDataLoader#getGeneScope
+	 */
+	public Set<String> getGeneScope() {
+		return dl.getGeneScope();
+	}
+
+	/**
+	 * Returns the current data as an immutable state, loading every
+	 * dataset first; take it once per request to read the data without
+	 * locks, consistently across a reload
+	 *
+	 * @see HIVDataLoader.State
+	 */
+	public HIVDataLoader.State<HIV> getDataState() {
+		return dl.getCompleteState();
+	}
+
+	/**
+	 * Loads the given datasets of this virus concurrently, e.g. to warm up
+	 * before accepting requests
+	 *
+	 * @see HIVDataLoader#preload
+	 */
+	public CompletableFuture<Void> preload(Executor executor, Set<HIVDataLoader.Dataset> datasets) {
+		return dl.preload(executor, datasets);
+	}
+
+	/**
+	 * Sets the executor which runs the loads of the *Async getters
+	 *
+	 * @see HIVDataLoader#setAsyncExecutor
+	 */
+	public synchronized void setAsyncExecutor(Executor executor) {
+		dl.setAsyncExecutor(executor);
+	}
+
+	public CompletableFuture<AminoAcidPercents<HIV>> getAminoAcidPercentsAsync(
+		Strain<HIV> strain, String treatment, String subtype
+	) {
+		return dl.getAminoAcidPercentsAsync(strain, treatment, subtype);
+	}
+
+	public CompletableFuture<CodonPercents<HIV>> getCodonPercentsAsync(
+		Strain<HIV> strain, String treatment, String subtype
+	) {
+		return dl.getCodonPercentsAsync(strain, treatment, subtype);
+	}
+
+	public CompletableFuture<Collection<DrugResistanceAlgorithm<HIV>>> getDrugResistAlgorithmsAsync() {
+		return dl.getDrugResistAlgorithmsAsync();
+	}
+
+	public CompletableFuture<List<GenotypeReference<HIV>>> getGenotypeReferencesAsync() {
+		return dl.getGenotypeReferencesAsync();
+	}
+
+	public CompletableFuture<Genotyper<HIV>> getGenotyperAsync() {
+		return dl.getGenotyperAsync();
+	}
+
 	@Override
 	public Strain<HIV> getMainStrain() {
-		return dl.getMainStrain();
+		return loader().getMainStrain();
 	}
 
 	@Override
 	public Collection<Strain<HIV>> getStrains() {
-		return dl.getStrains();
+		return loader().getStrains();
 	}
 
 	@Override
 	public Strain<HIV> getStrain(String name) {
-		return dl.getStrain(name);
+		return loader().getStrain(name);
 	}
 
 	@Override
 	public Collection<Gene<HIV>> getGenes(Strain<HIV> strain) {
-		return dl.getGenes(strain);
+		return loader().getGenes(strain);
 	}
 
 	@Override
 	public Gene<HIV> getGene(String name) {
-		return dl.getGene(name);
+		return loader().getGene(name);
 	}
 
 	@Override
 	public Collection<DrugClass<HIV>> getDrugClasses() {
-		return dl.getDrugClasses();
+		return loader().getDrugClasses();
 	}
 
 	@Override
 	public Map<String, DrugClass<HIV>> getDrugClassSynonymMap() {
-		return dl.getDrugClassSynonymMap();
+		return loader().getDrugClassSynonymMap();
 	}
 
 	@Override
 	public DrugClass<HIV> getDrugClass(String name) {
-		return dl.getDrugClass(name);
+		return loader().getDrugClass(name);
 	}
 
 	@Override
 	public Collection<Drug<HIV>> getDrugs() {
-		return dl.getDrugs();
+		return loader().getDrugs();
 	}
 
 	@Override
 	public Map<String, Drug<HIV>> getDrugSynonymMap() {
-		return dl.getDrugSynonymMap();
+		return loader().getDrugSynonymMap();
 	}
 
 	@Override
 	public Collection<DrugResistanceAlgorithm<HIV>> getDrugResistAlgorithms() {
-		return dl.getDrugResistAlgorithms();
+		return loader().getDrugResistAlgorithms();
 	}
 
 	@Override
 	public Collection<DrugResistanceAlgorithm<HIV>> getDrugResistAlgorithms(Collection<String> algorithmNames) {
-		return dl.getDrugResistAlgorithms(algorithmNames);
+		return loader().getDrugResistAlgorithms(algorithmNames);
 	}
 
 
 	@Override
 	public DrugResistanceAlgorithm<HIV> getDrugResistAlgorithm(String name) {
-		return dl.getDrugResistAlgorithm(name);
+		return loader().getDrugResistAlgorithm(name);
 	}
 
 	@Override
 	public DrugResistanceAlgorithm<HIV> getDrugResistAlgorithm(String family, String version) {
-		return dl.getDrugResistAlgorithm(family, version);
+		return loader().getDrugResistAlgorithm(family, version);
 	}
 
 	@Override
 	public Gene<HIV> extractMutationGene(String mutText) {
-		return dl.extractMutationGene(mutText);
+		return loader().extractMutationGene(mutText);
 	}
 
 	@Override
 	public Mutation<HIV> parseMutationString(Gene<HIV> defaultGene, String mutText) {
-		return dl.parseMutationString(defaultGene, mutText);
+		return loader().parseMutationString(defaultGene, mutText);
 	}
 
 	@Override
 	public Mutation<HIV> parseMutationString(String mutText) {
-		return dl.parseMutationString(mutText);
+		return loader().parseMutationString(mutText);
 	}
 
 	@Override
 	public MutationSet<HIV> newMutationSet(String formattedMuts) {
-		return dl.newMutationSet(formattedMuts);
+		return loader().newMutationSet(formattedMuts);
 	}
 
 	@Override
 	public MutationSet<HIV> newMutationSet(Collection<String> formattedMuts) {
-		return dl.newMutationSet(formattedMuts);
+		return loader().newMutationSet(formattedMuts);
 	}
 
 	@Override
 	public MutationSet<HIV> newMutationSet(Gene<HIV> defaultGene, String formattedMuts) {
-		return dl.newMutationSet(defaultGene, formattedMuts);
+		return loader().newMutationSet(defaultGene, formattedMuts);
 	}
 
 	@Override
 	public MutationSet<HIV>	newMutationSet(Gene<HIV> defaultGene, Collection<String> formattedMuts) {
-		return dl.newMutationSet(defaultGene, formattedMuts);
+		return loader().newMutationSet(defaultGene, formattedMuts);
 	}
 
 	@Override
 	public Map<DrugClass<HIV>, MutationSet<HIV>> getDrugResistMutations() {
-		return dl.getDrugResistMutations();
+		return loader().getDrugResistMutations();
 	}
 
 	@Override
 	public Map<DrugClass<HIV>, MutationSet<HIV>> getSurveilDrugResistMutations() {
-		return dl.getSurveilDrugResistMutations();
+		return loader().getSurveilDrugResistMutations();
 	}
 
 	@Override
 	public Map<DrugClass<HIV>, MutationSet<HIV>> getRxSelectedMutations() {
-		return dl.getRxSelectedMutations();
+		return loader().getRxSelectedMutations();
 	}
 
 	@Override
 	public MutationSet<HIV> getApobecMutations() {
-		return dl.getApobecMutations();
+		return loader().getApobecMutations();
 	}
 
 	@Override
 	public MutationSet<HIV> getApobecDRMs() {
-		return dl.getApobecDRMs();
+		return loader().getApobecDRMs();
 	}
 
 	@Override
 	public Collection<MutationType<HIV>> getMutationTypes() {
-		return dl.getMutationTypes();
+		return loader().getMutationTypes();
 	}
 
 	@Override
 	public MutationType<HIV> getMutationType(String mutTypeText) {
-		return dl.getMutationType(mutTypeText);
+		return loader().getMutationType(mutTypeText);
 	}
 
 	@Override
 	public Collection<MutationTypePair<HIV>> getMutationTypePairs() {
-		return dl.getMutationTypePairs();
+		return loader().getMutationTypePairs();
 	}
 
 	@Override
 	public AminoAcidPercents<HIV> getAminoAcidPercents(Strain<HIV> strain, String treatment, String subtype) {
-		return dl.getAminoAcidPercents(strain, treatment, subtype);
+		return loader().getAminoAcidPercents(strain, treatment, subtype);
 	}
 
 	@Override
 	public CodonPercents<HIV> getCodonPercents(Strain<HIV> strain, String treatment, String subtype) {
-		return dl.getCodonPercents(strain, treatment, subtype);
+		return loader().getCodonPercents(strain, treatment, subtype);
 	}
 
 	@Override
 	public List<MutationPrevalence<HIV>> getMutationPrevalence(GenePosition<HIV> genePos) {
-		return dl.getMutationPrevalence(genePos);
+		return loader().getMutationPrevalence(genePos);
 	}
 
 	@Override
 	public ConditionalComments<HIV> getConditionalComments() {
-		return dl.getConditionalComments();
+		return loader().getConditionalComments();
 	}
 
 	@Override
 	public List<String> getMainSubtypes(Strain<HIV> strain) {
-		return dl.getMainSubtypes(strain);
+		return loader().getMainSubtypes(strain);
 	}
 
 	@Override
 	public Map<Gene<HIV>, Map<String, Integer[]>> getNumPatientsForAAPercents(Strain<HIV> strain) {
-		return dl.getNumPatientsForAAPercents(strain);
+		return loader().getNumPatientsForAAPercents(strain);
+	}
+
+	public NumPatientsTable<HIV> getNumPatientsTable(Strain<HIV> strain) {
+		return dl.getNumPatientsTable(strain);
 	}
 
 	@Override
 	public Collection<Genotype<HIV>> getGenotypes() {
-		return dl.getGenotypes();
+		return loader().getGenotypes();
 	}
 
 	@Override
 	public Genotype<HIV> getGenotype(String name) {
-		return dl.getGenotype(name);
+		return loader().getGenotype(name);
 	}
 
 	@Override
 	public Genotype<HIV> getGenotypeUnknown() {
-		return dl.getGenotypeUnknown();
+		return loader().getGenotypeUnknown();
 	}
 
 	@Override
 	public List<GenotypeReference<HIV>> getGenotypeReferences() {
-		return dl.getGenotypeReferences();
+		return loader().getGenotypeReferences();
 	}
 
 	@Override
 	public Genotyper<HIV> getGenotyper() {
-		return dl.getGenotyper();
+		return loader().getGenotyper();
 	}
 
 	@Override
@@ -326,17 +529,17 @@ public class HIV implements Virus<HIV> {
 
 	@Override
 	public AlignmentConfig<HIV> getAlignmentConfig() {
-		return dl.getAlignmentConfig();
+		return loader().getAlignmentConfig();
 	}
 
 	@Override
 	public SequenceReadsAssembler<HIV> getSequenceReadsAssembler(Strain<HIV> strain) {
-		return dl.getSequenceReadsAssemblers().get(strain);
+		return loader().getSequenceReadsAssemblers().get(strain);
 	}
 
 	@Override
 	public SequenceAssembler<HIV> getSequenceAssembler(Strain<HIV> strain) {
-		return dl.getSequenceAssemblers().get(strain);
+		return loader().getSequenceAssemblers().get(strain);
 	}
 
 	@Override
@@ -1,17 +1,32 @@
 package edu.stanford.hivdb.hivfacts;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -43,7 +58,6 @@ import edu.stanford.hivdb.sequences.AlignmentConfig;
 import edu.stanford.hivdb.sequences.SequenceAssembler;
 import edu.stanford.hivdb.utilities.AAUtils;
 import edu.stanford.hivdb.utilities.AssertUtils;
-import edu.stanford.hivdb.utilities.Json;
 import edu.stanford.hivdb.viruses.Gene;
 import edu.stanford.hivdb.viruses.Strain;
 import edu.stanford.hivdb.viruses.Virus;
@@ -63,21 +77,97 @@ public class HIVDataLoader<T extends Virus<T>> {
 		"^([AC-IK-NP-TV-Z.*]+(?:[#_]?[AC-IK-NP-TV-Z.*]+)?|[id_#~-]|[iI]ns(?:ertion)?|[dD]el(?:etion)?)$"
 	);
 
-	protected static String loadResource(String resPath) {
-		try (
-			InputStream stream = HIVDataLoader.class
-				.getClassLoader()
-				.getResourceAsStream(resPath);
-		) {
-			return IOUtils.toString(stream, StandardCharsets.UTF_8);
-		} catch (IOException|NullPointerException e) {
-			throw new ExceptionInInitializerError(
-				String.format("Invalid resource name (%s)", resPath)
-			);
+	private static final Cleaner CLEANER = Cleaner.create();
+	// loader warming up on the current thread to replace the current loader
+	// of its virus, see #forThread
+	private static final ThreadLocal<HIVDataLoader<?>> WARMING_UP = new ThreadLocal<>();
+
+	public static final String GENE_SCOPE_PROPERTY = "hivfacts.geneScope";
+	public static final String PROFILE_DIRECTORY_PROPERTY = "hivfacts.profileDirectory";
+	public static final String PROFILE_RECORDING_PROPERTY = "hivfacts.recordProfile";
+	public static final String PERCENT_TABLE_CACHE_BYTES_PROPERTY = "hivfacts.percentTableCache.maxBytes";
+	public static final String PERCENT_TABLE_CACHE_POLICY_PROPERTY = "hivfacts.percentTableCache.policy";
+	public static final String PERCENT_TABLE_CACHE_SOFT_PROPERTY = "hivfacts.percentTableCache.softReferences";
+
+	/**
+	 * Returns the abstract genes listed (comma-separated) by system property
+	 * "hivfacts.geneScope", or null if the property is not set
+	 */
+	public static Set<String> getDefaultGeneScope() {
+		String genes = System.getProperty(GENE_SCOPE_PROPERTY);
+		if (genes == null || genes.trim().isEmpty()) {
+			return null;
+		}
+		Set<String> geneScope = new LinkedHashSet<>();
+		for (String gene : genes.split(",")) {
+			if (!gene.trim().isEmpty()) {
+				geneScope.add(gene.trim().toUpperCase());
+			}
+		}
+		return geneScope;
+	}
+
+	/**
+	 * Opens a buffered UTF-8 reader of the given resource
+	 *
+	 * The caller is responsible for closing the returned reader.
+	 *
+	 * @param resPath
+	 * @return a Reader object
+	 */
+	protected Reader openResource(String resPath) {
+		return resources.open(resPath);
+	}
+
+	protected boolean hasResource(String resPath) {
+		return resources.exists(resPath);
+	}
+
+	protected String loadResource(String resPath) {
+		return resources.loadText(resPath);
+	}
+
+	/**
+	 * Parses a JSON resource straight from its stream without
+	 * materializing the whole text first
+	 *
+	 * @param resPath
+	 * @param typeToken
+	 * @return the parsed object
+	 */
+	protected <R> R loadJsonResource(String resPath, TypeToken<R> typeToken) {
+		return resources.loadJson(resPath, typeToken);
+	}
+
+	/**
+	 * Parses a resource which is a top-level JSON array of independent
+	 * records, see {@link LoaderResources#loadJsonArray} and {@link
+	 * #setParsePool}
+	 *
+	 * Chunks parsed on the parse pool read datasets through the loader
+	 * warming up on the calling thread, if any.
+	 */
+	private <R> List<R> loadJsonArrayResource(
+		String resPath, boolean alwaysSplit, JsonArrayChunks.ChunkParser<R> parser
+	) {
+		// chunks parsed on the pool resolve references like this thread
+		HIVDataLoader<?> warmingUp = WARMING_UP.get();
+		if (warmingUp != null) {
+			JsonArrayChunks.ChunkParser<R> chunkParser = parser;
+			parser = reader -> {
+				HIVDataLoader<?> outer = enterWarmUp(warmingUp);
+				try {
+					return chunkParser.parse(reader);
+				} finally {
+					exitWarmUp(outer);
+				}
+			};
 		}
+		return resources.loadJsonArray(resPath, alwaysSplit, parser);
 	}
 
 	private final T virus;
+	private final Set<String> geneScope;
 	private final String VIRUS_NAME;
 	private final String MAIN_STRAIN;
 	private final String STRAINS_RESPATH;
@@ -101,33 +191,241 @@ public class HIVDataLoader<T extends Virus<T>> {
 	private final String CONDCOMMENTS_RESPATH;
 	private final String ALIGNCONFIG_RESPATH;
 	private final String ASSEMBLYCONFIG_RESPATH;
+	private final LoaderResources resources;
+	private final ContentSharing sharing;
+	private final PercentTableStore<T> percents;
+	// keys accessed are only recorded for profiles if enabled
+	private final LoaderProfile profile = new LoaderProfile(Boolean.getBoolean(PROFILE_RECORDING_PROPERTY));
+	private final Map<Dataset, Object> initLocks = new EnumMap<>(Dataset.class);
+	private final Object stateLock = new Object();
 
-	private transient Map<String, Strain<T>> strains;
-	private transient Map<String, Gene<T>> genes;
-	private transient Map<String, DrugClass<T>> drugClasses;
-	private transient Map<String, Drug<T>> drugs;
-	private transient Map<DrugClass<T>, MutationSet<T>> drugResistMutations;
-	private transient Map<DrugClass<T>, MutationSet<T>> surveilDrugResistMuts;
-	private transient Map<DrugClass<T>, MutationSet<T>> rxSelectedMutations;
-	private transient MutationSet<T> apobecMutations;
-	private transient MutationSet<T> apobecDRMs;
-	private transient Map<String, AminoAcidPercents<T>> aminoAcidPcnts = new HashMap<>();
-	private transient Map<String, CodonPercents<T>> codonPcnts = new HashMap<>();
-	private transient Map<String, MutationType<T>> mutationTypes;
-	private transient List<MutationTypePair<T>> mutationTypePairs;
-	private transient Map<Strain<T>, List<String>> mainSubtypes;
-	private transient Map<GenePosition<T>, List<MutationPrevalence<T>>> mutPrevalenceMap = new HashMap<>();
-	private transient Map<Strain<T>, Map<Gene<T>, Map<String, Integer[]>>> allAAPcntsNumPatients = new HashMap<>();
-	private transient Map<String, Genotype<T>> allGenotypes;
-	private transient List<GenotypeReference<T>> allGenotypeReferences;
-	private transient Genotyper<T> genotyper;
-	private transient List<DrugResistanceAlgorithm<T>> drugResistAlgs;
-	private transient Map<String, DrugResistanceAlgorithm<T>> drugResistAlgLookup;
-	private transient ConditionalComments<T> condComments;
-	private transient AlignmentConfig<T> alignmentConfig;
-	private transient Map<Strain<T>, SequenceReadsAssembler<T>> sequenceReadsAssemblers;
-	private transient Map<Strain<T>, SequenceAssembler<T>> sequenceAssemblers;
-	
+	private transient volatile State<T> state;
+	private transient volatile Executor asyncExecutor = ForkJoinPool.commonPool();
+	private final Map<String, CompletableFuture<?>> asyncLoads = new ConcurrentHashMap<>();
+	// mutation list resource path => whether grouped by drug class
+	private final Map<String, Boolean> mutationTables = new ConcurrentHashMap<>();
+	private transient volatile boolean mutPrevalenceTableRead = false;
+	private transient volatile MutationPrevalenceTable mutPrevalenceTable;
+	private transient SingleFlightMap<GenePosition<T>, List<MutationPrevalence<T>>> mutPrevalenceMap = new SingleFlightMap<>();
+	private transient SingleFlightMap<Strain<T>, NumPatientsTable<T>> allAAPcntsNumPatients = (
+		new SingleFlightMap<>()
+	);
+
+	/**
+	 * Returns a builder of a loader of the given virus
+	 *
+	 * @param virus
+	 * @param virusName
+	 * @param mainStrain
+	 * @return a Builder object
+	 */
+	public static <T extends Virus<T>> Builder<T> builder(T virus, String virusName, String mainStrain) {
+		return new Builder<>(virus, virusName, mainStrain);
+	}
+
+	/**
+	 * Configuration of a loader: the path of each resource, the data source
+	 * and the gene scope
+	 *
+	 * Every resource path must be set. The data source defaults to the one
+	 * selected by system property "hivfacts.dataDir" (see {@link
+	 * HIVDataSource#getDefault()}), the gene scope to system property
+	 * "hivfacts.geneScope" (see {@link HIVDataLoader#getDefaultGeneScope()}).
+	 */
+	public static final class Builder<T extends Virus<T>> {
+
+		private final T virus;
+		private final String virusName;
+		private final String mainStrain;
+		private String strainsResPath;
+		private String genesResPath;
+		private String drugClassesResPath;
+		private String drugsResPath;
+		private String drmsResPath;
+		private String sdrmsResPath;
+		private String tsmsResPath;
+		private String apobecsResPath;
+		private String apobecDrmsResPath;
+		private String aaPcntsResPath;
+		private String codonPcntsResPath;
+		private String mutTypesResPath;
+		private String mutTypePairsResPath;
+		private String mainSubtypesResPath;
+		private String genotypeReferencesResPath;
+		private String genotypesResPath;
+		private String algorithmsIndexPath;
+		private String algorithmsResPath;
+		private String condCommentsResPath;
+		private String alignConfigResPath;
+		private String assemblyConfigResPath;
+		private HIVDataSource dataSource;
+		private Set<String> geneScope;
+		private boolean defaultGeneScope = true;
+		// set for data releases, see #newRelease
+		private boolean shareContent = false;
+
+		private Builder(T virus, String virusName, String mainStrain) {
+			this.virus = virus;
+			this.virusName = virusName;
+			this.mainStrain = mainStrain;
+		}
+
+		public Builder<T> strainsResPath(String resPath) {
+			this.strainsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> genesResPath(String resPath) {
+			this.genesResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> drugClassesResPath(String resPath) {
+			this.drugClassesResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> drugsResPath(String resPath) {
+			this.drugsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> drmsResPath(String resPath) {
+			this.drmsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> sdrmsResPath(String resPath) {
+			this.sdrmsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> tsmsResPath(String resPath) {
+			this.tsmsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> apobecsResPath(String resPath) {
+			this.apobecsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> apobecDrmsResPath(String resPath) {
+			this.apobecDrmsResPath = resPath;
+			return this;
+		}
+
+		/**
+		 * Sets the format of the aapcnt table paths, taking treatment and subtype
+		 */
+		public Builder<T> aaPcntsResPath(String resPath) {
+			this.aaPcntsResPath = resPath;
+			return this;
+		}
+
+		/**
+		 * Sets the format of the codonpcnt table paths, taking treatment and subtype
+		 */
+		public Builder<T> codonPcntsResPath(String resPath) {
+			this.codonPcntsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> mutTypesResPath(String resPath) {
+			this.mutTypesResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> mutTypePairsResPath(String resPath) {
+			this.mutTypePairsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> mainSubtypesResPath(String resPath) {
+			this.mainSubtypesResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> genotypeReferencesResPath(String resPath) {
+			this.genotypeReferencesResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> genotypesResPath(String resPath) {
+			this.genotypesResPath = resPath;
+			return this;
+		}
+
+		/**
+		 * Sets the path of the index listing the versions of each algorithm family
+		 */
+		public Builder<T> algorithmsIndexPath(String resPath) {
+			this.algorithmsIndexPath = resPath;
+			return this;
+		}
+
+		/**
+		 * Sets the format of the algorithm paths, taking family and version
+		 */
+		public Builder<T> algorithmsResPath(String resPath) {
+			this.algorithmsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> condCommentsResPath(String resPath) {
+			this.condCommentsResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> alignConfigResPath(String resPath) {
+			this.alignConfigResPath = resPath;
+			return this;
+		}
+
+		public Builder<T> assemblyConfigResPath(String resPath) {
+			this.assemblyConfigResPath = resPath;
+			return this;
+		}
+
+		/**
+		 * Reads resources from the given data source instead of the one
+		 * selected by system property "hivfacts.dataDir"
+		 */
+		public Builder<T> dataSource(HIVDataSource dataSource) {
+			this.dataSource = dataSource;
+			return this;
+		}
+
+		/**
+		 * Only loads the rows of the given abstract genes (e.g. "PR", "RT",
+		 * "IN") instead of those set by system property "hivfacts.geneScope"
+		 *
+		 * Mutation lists, conditional comments and percent tables drop rows
+		 * of other genes while being loaded; see {@link
+		 * HIVDataLoader#getGeneScope()}. Pass null to load all genes.
+		 */
+		public Builder<T> geneScope(Set<String> geneScope) {
+			this.geneScope = geneScope;
+			this.defaultGeneScope = false;
+			return this;
+		}
+
+		/**
+		 * Creates the loader
+		 *
+		 * @return a HIVDataLoader object
+		 * @throws NullPointerException if a resource path is not set
+		 */
+		public HIVDataLoader<T> build() {
+			return new HIVDataLoader<>(this);
+		}
+
+	}
+
+	/**
+	 * Creates a loader reading the data source selected by system property
+	 * "hivfacts.dataDir"; see {@link #builder} for other configurations
+	 */
 	public HIVDataLoader(
 		T virus,
 		final String VIRUS_NAME,
@@ -154,47 +452,256 @@ public class HIVDataLoader<T extends Virus<T>> {
 		final String ALIGNCONFIG_RESPATH,
 		final String ASSEMBLYCONFIG_RESPATH
 	) {
-		this.virus = virus;
-		this.VIRUS_NAME = VIRUS_NAME;
-		this.MAIN_STRAIN = MAIN_STRAIN;
-		this.STRAINS_RESPATH = STRAINS_RESPATH;
-		this.GENES_RESPATH = GENES_RESPATH;
-		this.DRUG_CLASSES_RESPATH = DRUG_CLASSES_RESPATH;
-		this.DRUGS_RESPATH = DRUGS_RESPATH;
-		this.DRMS_RESPATH = DRMS_RESPATH;
-		this.SDRMS_RESPATH = SDRMS_RESPATH;
-		this.TSMS_RESPATH = TSMS_RESPATH;
-		this.APOBECS_RESPATH = APOBECS_RESPATH;
-		this.APOBEC_DRMS_RESPATH = APOBEC_DRMS_RESPATH;
-		this.AAPCNTS_RESPATH = AAPCNTS_RESPATH;
-		this.CODONPCNTS_RESPATH = CODONPCNTS_RESPATH;
-		this.MUTTYPES_RESPATH = MUTTYPES_RESPATH;
-		this.MUTTYPE_PAIRS_RESPATH = MUTTYPE_PAIRS_RESPATH;
-		this.MAIN_SUBTYPES_RESPATH = MAIN_SUBTYPES_RESPATH;
-		this.GENOTYPE_REFERENCES_RESPATH = GENOTYPE_REFERENCES_RESPATH;
-		this.GENOTYPES_RESPATH = GENOTYPES_RESPATH;
-		this.ALGORITHMS_INDEXPATH = ALGORITHMS_INDEXPATH;
-		this.ALGORITHMS_RESPATH = ALGORITHMS_RESPATH;
-		this.CONDCOMMENTS_RESPATH = CONDCOMMENTS_RESPATH;
-		this.ALIGNCONFIG_RESPATH = ALIGNCONFIG_RESPATH;
-		this.ASSEMBLYCONFIG_RESPATH = ASSEMBLYCONFIG_RESPATH;
+		this(
+			builder(virus, VIRUS_NAME, MAIN_STRAIN)
+			.strainsResPath(STRAINS_RESPATH)
+			.genesResPath(GENES_RESPATH)
+			.drugClassesResPath(DRUG_CLASSES_RESPATH)
+			.drugsResPath(DRUGS_RESPATH)
+			.drmsResPath(DRMS_RESPATH)
+			.sdrmsResPath(SDRMS_RESPATH)
+			.tsmsResPath(TSMS_RESPATH)
+			.apobecsResPath(APOBECS_RESPATH)
+			.apobecDrmsResPath(APOBEC_DRMS_RESPATH)
+			.aaPcntsResPath(AAPCNTS_RESPATH)
+			.codonPcntsResPath(CODONPCNTS_RESPATH)
+			.mutTypesResPath(MUTTYPES_RESPATH)
+			.mutTypePairsResPath(MUTTYPE_PAIRS_RESPATH)
+			.mainSubtypesResPath(MAIN_SUBTYPES_RESPATH)
+			.genotypeReferencesResPath(GENOTYPE_REFERENCES_RESPATH)
+			.genotypesResPath(GENOTYPES_RESPATH)
+			.algorithmsIndexPath(ALGORITHMS_INDEXPATH)
+			.algorithmsResPath(ALGORITHMS_RESPATH)
+			.condCommentsResPath(CONDCOMMENTS_RESPATH)
+			.alignConfigResPath(ALIGNCONFIG_RESPATH)
+			.assemblyConfigResPath(ASSEMBLYCONFIG_RESPATH)
+		);
 	}
-	
+
+	private HIVDataLoader(Builder<T> builder) {
+		this.virus = AssertUtils.notNull(builder.virus, "Virus can't be null");
+		this.VIRUS_NAME = requireResPath(builder.virusName, "virusName");
+		this.MAIN_STRAIN = requireResPath(builder.mainStrain, "mainStrain");
+		this.STRAINS_RESPATH = requireResPath(builder.strainsResPath, "strainsResPath");
+		this.GENES_RESPATH = requireResPath(builder.genesResPath, "genesResPath");
+		this.DRUG_CLASSES_RESPATH = requireResPath(builder.drugClassesResPath, "drugClassesResPath");
+		this.DRUGS_RESPATH = requireResPath(builder.drugsResPath, "drugsResPath");
+		this.DRMS_RESPATH = requireResPath(builder.drmsResPath, "drmsResPath");
+		this.SDRMS_RESPATH = requireResPath(builder.sdrmsResPath, "sdrmsResPath");
+		this.TSMS_RESPATH = requireResPath(builder.tsmsResPath, "tsmsResPath");
+		this.APOBECS_RESPATH = requireResPath(builder.apobecsResPath, "apobecsResPath");
+		this.APOBEC_DRMS_RESPATH = requireResPath(builder.apobecDrmsResPath, "apobecDrmsResPath");
+		this.AAPCNTS_RESPATH = requireResPath(builder.aaPcntsResPath, "aaPcntsResPath");
+		this.CODONPCNTS_RESPATH = requireResPath(builder.codonPcntsResPath, "codonPcntsResPath");
+		this.MUTTYPES_RESPATH = requireResPath(builder.mutTypesResPath, "mutTypesResPath");
+		this.MUTTYPE_PAIRS_RESPATH = requireResPath(builder.mutTypePairsResPath, "mutTypePairsResPath");
+		this.MAIN_SUBTYPES_RESPATH = requireResPath(builder.mainSubtypesResPath, "mainSubtypesResPath");
+		this.GENOTYPE_REFERENCES_RESPATH = requireResPath(builder.genotypeReferencesResPath, "genotypeReferencesResPath");
+		this.GENOTYPES_RESPATH = requireResPath(builder.genotypesResPath, "genotypesResPath");
+		this.ALGORITHMS_INDEXPATH = requireResPath(builder.algorithmsIndexPath, "algorithmsIndexPath");
+		this.ALGORITHMS_RESPATH = requireResPath(builder.algorithmsResPath, "algorithmsResPath");
+		this.CONDCOMMENTS_RESPATH = requireResPath(builder.condCommentsResPath, "condCommentsResPath");
+		this.ALIGNCONFIG_RESPATH = requireResPath(builder.alignConfigResPath, "alignConfigResPath");
+		this.ASSEMBLYCONFIG_RESPATH = requireResPath(builder.assemblyConfigResPath, "assemblyConfigResPath");
+		HIVDataSource dataSource = builder.dataSource == null ? HIVDataSource.getDefault() : builder.dataSource;
+		Set<String> geneScope = builder.defaultGeneScope ? getDefaultGeneScope() : builder.geneScope;
+		this.geneScope = geneScope == null ? null : Collections.unmodifiableSet(new LinkedHashSet<>(geneScope));
+		this.resources = new LoaderResources(dataSource);
+		this.sharing = new ContentSharing(virus, this.geneScope, builder.shareContent);
+		this.percents = new PercentTableStore<>(resources, sharing, this.geneScope);
+		for (Dataset dataset : Dataset.values()) {
+			initLocks.put(dataset, new Object());
+		}
+
+		this.state = new State<>(MAIN_STRAIN);
+
+		// virus-agnostic resources, read once for all loaders; the
+		// classpath has them compiled into StaticDatasets already
+		if (!resources.useStaticDatasets()) {
+			sharing.registerResource(dataSource.toString(), DRUGS_RESPATH);
+			sharing.registerResource(dataSource.toString(), MUTTYPES_RESPATH);
+			CLEANER.register(this, sharing.newReleaser());
+		}
+	}
+
+	private static String requireResPath(String value, String name) {
+		return AssertUtils.notNull(value, "%s is not set", name);
+	}
+
+	/**
+	 * Returns a builder of a loader of the given virus with the resource
+	 * paths and gene scope of this loader
+	 */
+	private Builder<T> toBuilder(T virus) {
+		return (
+			builder(virus, VIRUS_NAME, MAIN_STRAIN)
+			.strainsResPath(STRAINS_RESPATH)
+			.genesResPath(GENES_RESPATH)
+			.drugClassesResPath(DRUG_CLASSES_RESPATH)
+			.drugsResPath(DRUGS_RESPATH)
+			.drmsResPath(DRMS_RESPATH)
+			.sdrmsResPath(SDRMS_RESPATH)
+			.tsmsResPath(TSMS_RESPATH)
+			.apobecsResPath(APOBECS_RESPATH)
+			.apobecDrmsResPath(APOBEC_DRMS_RESPATH)
+			.aaPcntsResPath(AAPCNTS_RESPATH)
+			.codonPcntsResPath(CODONPCNTS_RESPATH)
+			.mutTypesResPath(MUTTYPES_RESPATH)
+			.mutTypePairsResPath(MUTTYPE_PAIRS_RESPATH)
+			.mainSubtypesResPath(MAIN_SUBTYPES_RESPATH)
+			.genotypeReferencesResPath(GENOTYPE_REFERENCES_RESPATH)
+			.genotypesResPath(GENOTYPES_RESPATH)
+			.algorithmsIndexPath(ALGORITHMS_INDEXPATH)
+			.algorithmsResPath(ALGORITHMS_RESPATH)
+			.condCommentsResPath(CONDCOMMENTS_RESPATH)
+			.alignConfigResPath(ALIGNCONFIG_RESPATH)
+			.assemblyConfigResPath(ASSEMBLYCONFIG_RESPATH)
+			.geneScope(geneScope)
+		);
+	}
+
+	/**
+	 * Returns the lock which makes initializing a dataset single-flight
+	 *
+	 * Getters read their volatile field without locking; once it is null,
+	 * they take the dataset's lock and check the field again, so concurrent
+	 * callers of a cold getter wait for a single initialization. Datasets
+	 * only depend on other datasets without cycles, so the locks can't
+	 * deadlock.
+	 */
+	private Object initLock(Dataset dataset) {
+		return initLocks.get(dataset);
+	}
+
+	/**
+	 * Publishes a loaded dataset as part of a new {@link State}
+	 */
+	private void publish(Dataset dataset, Object value) {
+		synchronized (stateLock) {
+			state = state.with(dataset, value);
+		}
+	}
+
+	/**
+	 * Returns the current state once the given dataset is loaded by init
+	 */
+	private State<T> loaded(Dataset dataset, Runnable init) {
+		State<T> state = this.state;
+		if (!state.isLoaded(dataset)) {
+			init.run();
+			state = this.state;
+		}
+		return state;
+	}
+
+	/**
+	 * Binds a virus-agnostic resource, see {@link ContentSharing#loadResource}
+	 */
+	private <R> R loadSharedJsonText(String resPath, Function<String, R> binder) {
+		return sharing.loadResource(resPath, () -> resources.loadJsonText(resPath), binder);
+	}
+
+	private boolean isInGeneScope(String abstractGene) {
+		return geneScope == null || geneScope.contains(abstractGene);
+	}
+
+	private List<Map<String, ?>> filterGeneScope(List<Map<String, ?>> muts) {
+		if (geneScope == null) {
+			return muts;
+		}
+		return (
+			muts.stream()
+			.filter(mut -> isInGeneScope((String) mut.get("gene")))
+			.collect(Collectors.toList())
+		);
+	}
+
+	/**
+	 * Returns a mutation list in binary form, i.e. compiled into {@link
+	 * StaticDatasets} or saved in a snapshot, or null if there is none or it
+	 * is older than the JSON resource
+	 */
+	private MutationTable loadMutationTable(String resPath, boolean grouped) {
+		mutationTables.put(resPath, grouped);
+		MutationTable table = resources.useStaticDatasets() ? StaticDatasets.getMutationTable(resPath) : null;
+		String binPath = MutationTable.toBinaryPath(resPath);
+		if (table == null && hasResource(binPath) && !resources.isOutdated(binPath, resPath)) {
+			try {
+				table = MutationTable.read(resources.map(binPath));
+			} catch (IOException|IllegalArgumentException e) {
+				throw new ExceptionInInitializerError(
+					String.format("Invalid resource (%s): %s", binPath, e.getMessage())
+				);
+			}
+		}
+		return table == null || table.isGrouped() != grouped ? null : table;
+	}
+
+	private List<Map<String, ?>> parseMutationList(String resPath) {
+		List<Map<String, ?>> muts = loadJsonResource(resPath, new TypeToken<List<Map<String, ?>>>(){});
+		return StringDictionary.canonicalizeValues(muts);
+	}
+
+	private Map<String, List<Map<String, ?>>> parseMutationListsByDrugClass(String resPath) {
+		Map<String, List<Map<String, ?>>> muts = loadJsonResource(
+			resPath, new TypeToken<Map<String, List<Map<String, ?>>>>(){});
+		for (List<Map<String, ?>> rows : muts.values()) {
+			StringDictionary.canonicalizeValues(rows);
+		}
+		return muts;
+	}
+
+	private List<Map<String, ?>> loadMutationList(String resPath) {
+		MutationTable table = loadMutationTable(resPath, false);
+		List<Map<String, ?>> muts = table == null ? parseMutationList(resPath) : table.getMutationList();
+		return filterGeneScope(muts);
+	}
+
+	private Map<String, List<Map<String, ?>>> loadMutationListsByDrugClass(String resPath) {
+		MutationTable table = loadMutationTable(resPath, true);
+		Map<String, List<Map<String, ?>>> muts = (
+			table == null ? parseMutationListsByDrugClass(resPath) : table.getMutationListsByDrugClass()
+		);
+		Map<String, List<Map<String, ?>>> results = new LinkedHashMap<>();
+		for (Map.Entry<String, List<Map<String, ?>>> entry : muts.entrySet()) {
+			results.put(entry.getKey(), filterGeneScope(entry.getValue()));
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the binary form of a mutation list for a snapshot
+	 */
+	private MutationTable compileMutationTable(String resPath, boolean grouped) {
+		MutationTable table = loadMutationTable(resPath, grouped);
+		if (table != null) {
+			return table;
+		}
+		try {
+			return (
+				grouped ?
+				MutationTable.fromGroups(parseMutationListsByDrugClass(resPath)) :
+				MutationTable.fromList(parseMutationList(resPath))
+			);
+		} catch (IllegalArgumentException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
 	private MutationSet<T> loadMutationSetFromRes(String resPath, Collection<Strain<T>> strains) {
-		String raw = loadResource(resPath);
+		List<Map<String, ?>> muts = loadMutationList(resPath);
 		return (
 			strains.stream()
-			.map(strain -> MutationSet.loadJson(raw, geneText -> strain.getGene(geneText)))
+			.map(strain -> MutationSet.loadJsonMap(muts, geneText -> strain.getGene(geneText)))
 			.reduce(new MutationSet<>(), (acc, other) -> acc.mergesWith(other))
 		);
 	}
 	
 	private Map<DrugClass<T>, MutationSet<T>> loadMutationSetByDrugClassFromRes(String resPath, Collection<Strain<T>> strains) {
 		Map<DrugClass<T>, MutationSet<T>> mutationsMap = new LinkedHashMap<>();
-		String raw = loadResource(resPath);
-		
-		Map<String, List<Map<String, ?>>> muts = Json.loads(
-			raw, new TypeToken<Map<String, List<Map<String, ?>>>>(){});
+		Map<String, List<Map<String, ?>>> muts = loadMutationListsByDrugClass(resPath);
 		for (String drugClassText : muts.keySet()) {
 			DrugClass<T> drugClass = getDrugClass(drugClassText);
 			mutationsMap.put(
@@ -210,139 +717,934 @@ public class HIVDataLoader<T extends Virus<T>> {
 		return Collections.unmodifiableMap(mutationsMap);
 	}
 	
+	/**
+	 * Reads the conditional comments, dropping the comments on mutations of
+	 * genes out of the gene scope as they are streamed
+	 */
+	private String loadConditionalComments() {
+		if (geneScope == null) {
+			return loadResource(CONDCOMMENTS_RESPATH);
+		}
+		try (Reader reader = openResource(CONDCOMMENTS_RESPATH)) {
+			return ConditionalCommentsFilter.filter(reader, this::isInGeneScope);
+		} catch (IOException|IllegalStateException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", CONDCOMMENTS_RESPATH, e.getMessage())
+			);
+		}
+	}
+
 	private void initCondComments() {
-		String raw = loadResource(CONDCOMMENTS_RESPATH);
-		this.condComments = new ConditionalComments<>(raw, virus);
+		synchronized (initLock(Dataset.CONDITIONAL_COMMENTS)) {
+			if (!state.isLoaded(Dataset.CONDITIONAL_COMMENTS)) {
+				String raw = loadConditionalComments();
+				publish(Dataset.CONDITIONAL_COMMENTS, sharing.parse(ConditionalComments.class, raw, text -> new ConditionalComments<>(text, virus)));
+			}
+		}
 	}
 	
 	private void initMainSubtypes() {
-		String raw = loadResource(MAIN_SUBTYPES_RESPATH);
-		Map<String, List<String>> subtypes = Json.loads(raw, new TypeToken<Map<String, List<String>>>() {});
-		Map<Strain<T>, List<String>> mainSubtypes = new LinkedHashMap<>();
-		for (Map.Entry<String, List<String>> entry : subtypes.entrySet()) {
-			mainSubtypes.put(
-				getStrain(entry.getKey()),
-				Collections.unmodifiableList(entry.getValue()));
+		synchronized (initLock(Dataset.MAIN_SUBTYPES)) {
+			if (!state.isLoaded(Dataset.MAIN_SUBTYPES)) {
+				Map<String, List<String>> subtypes = loadJsonResource(
+					MAIN_SUBTYPES_RESPATH, new TypeToken<Map<String, List<String>>>() {});
+				Map<Strain<T>, List<String>> mainSubtypes = new LinkedHashMap<>();
+				for (Map.Entry<String, List<String>> entry : subtypes.entrySet()) {
+					mainSubtypes.put(
+						getStrain(entry.getKey()),
+						Collections.unmodifiableList(entry.getValue()));
+				}
+				publish(Dataset.MAIN_SUBTYPES, Collections.unmodifiableMap(mainSubtypes));
+			}
 		}
-		this.mainSubtypes = Collections.unmodifiableMap(mainSubtypes);
 	}
 	
 	private void initMutationTypes() {
-		String raw = loadResource(MUTTYPES_RESPATH);
-		mutationTypes = MutationType.loadJson(raw, virus);
+		synchronized (initLock(Dataset.MUTATION_TYPES)) {
+			if (!state.isLoaded(Dataset.MUTATION_TYPES)) {
+				publish(Dataset.MUTATION_TYPES, loadSharedJsonText(
+					MUTTYPES_RESPATH,
+					raw -> sharing.parse(MutationType.class, raw, text -> MutationType.loadJson(text, virus))));
+			}
+		}
 	}
 
 	private void initMutationTypePairs() {
-		String raw = loadResource(MUTTYPE_PAIRS_RESPATH);
-		mutationTypePairs = MutationTypePair.loadJson(raw, virus);
+		synchronized (initLock(Dataset.MUTATION_TYPE_PAIRS)) {
+			if (!state.isLoaded(Dataset.MUTATION_TYPE_PAIRS)) {
+				String raw = resources.loadJsonText(MUTTYPE_PAIRS_RESPATH);
+				publish(Dataset.MUTATION_TYPE_PAIRS, sharing.parse(MutationTypePair.class, raw, text -> MutationTypePair.loadJson(text, virus)));
+			}
+		}
 	}
 
 	private void initStrains() {
-		String raw = loadResource(STRAINS_RESPATH);
-		this.strains = Strain.loadJson(raw, virus);
+		synchronized (initLock(Dataset.STRAINS)) {
+			if (!state.isLoaded(Dataset.STRAINS)) {
+				String raw = resources.loadJsonText(STRAINS_RESPATH);
+				publish(Dataset.STRAINS, sharing.parse(Strain.class, raw, text -> Strain.loadJson(text, virus)));
+			}
+		}
 	}
 	
 	private void initGenes() {
-		String raw = loadResource(GENES_RESPATH);
-		this.genes = Gene.loadJson(raw, virus);
+		synchronized (initLock(Dataset.GENES)) {
+			if (!state.isLoaded(Dataset.GENES)) {
+				String raw = resources.loadJsonText(GENES_RESPATH);
+				publish(Dataset.GENES, sharing.parse(Gene.class, raw, text -> Gene.loadJson(text, virus)));
+			}
+		}
 	}
 	
 	private void initDrugClasses() {
-		String raw = loadResource(DRUG_CLASSES_RESPATH);
-		this.drugClasses = DrugClass.loadJson(raw, virus);
+		synchronized (initLock(Dataset.DRUG_CLASSES)) {
+			if (!state.isLoaded(Dataset.DRUG_CLASSES)) {
+				String raw = resources.loadJsonText(DRUG_CLASSES_RESPATH);
+				publish(Dataset.DRUG_CLASSES, sharing.parse(DrugClass.class, raw, text -> DrugClass.loadJson(text, virus)));
+			}
+		}
 	}
 	
 	private void initDrugs() {
-		String raw = loadResource(DRUGS_RESPATH);
-		this.drugs = Drug.loadJson(raw, virus);
+		synchronized (initLock(Dataset.DRUGS)) {
+			if (!state.isLoaded(Dataset.DRUGS)) {
+				publish(Dataset.DRUGS, loadSharedJsonText(
+					DRUGS_RESPATH,
+					raw -> sharing.parse(Drug.class, raw, text -> Drug.loadJson(text, virus))));
+			}
+		}
 	}
 	
 	private void initDrugResistAlgs() {
-		String raw = loadResource(ALGORITHMS_INDEXPATH);
-		Map<String, List<List<String>>> algs = Json.loads(
-			raw, new TypeToken<Map<String, List<List<String>>>>(){}.getType());
-		List<DrugResistanceAlgorithm<T>> algList = new ArrayList<>();
-		Map<String, DrugResistanceAlgorithm<T>> algMap = new LinkedHashMap<>(); 
-		for (String family : algs.keySet()) {
-			for (List<String> algData : algs.get(family)) {
-				String version = algData.get(0);
-				String publishDate = algData.get(1);
-				String name = String.format("%s_%s", family, version);
-				String xmlText = loadResource(String.format(ALGORITHMS_RESPATH, family, version));
-				DrugResistanceAlgorithm<T> alg = new DrugResistanceAlgorithm<>(
-					name, family, version, publishDate, virus, xmlText);
-				algList.add(alg);
-				algMap.put(name, alg);
-				algMap.put(alg.getEnumCompatName(), alg);
-			}
-		}
-		this.drugResistAlgs = Collections.unmodifiableList(algList);
-		this.drugResistAlgLookup = Collections.unmodifiableMap(algMap);
+		synchronized (initLock(Dataset.DRUG_RESIST_ALGORITHMS)) {
+			if (!state.isLoaded(Dataset.DRUG_RESIST_ALGORITHMS)) {
+				Map<String, List<List<String>>> algs = loadJsonResource(
+					ALGORITHMS_INDEXPATH, new TypeToken<Map<String, List<List<String>>>>(){});
+				List<DrugResistanceAlgorithm<T>> algList = new ArrayList<>();
+				for (String family : algs.keySet()) {
+					for (List<String> algData : algs.get(family)) {
+						String version = algData.get(0);
+						String publishDate = algData.get(1);
+						String name = String.format("%s_%s", family, version);
+						String xmlText = loadResource(String.format(ALGORITHMS_RESPATH, family, version));
+						DrugResistanceAlgorithm<T> alg = sharing.load(
+							Arrays.asList(DrugResistanceAlgorithm.class, name, publishDate),
+							() -> ContentCache.hash(xmlText),
+							() -> new DrugResistanceAlgorithm<>(name, family, version, publishDate, virus, xmlText));
+						algList.add(alg);
+					}
+				}
+				publish(Dataset.DRUG_RESIST_ALGORITHMS, Collections.unmodifiableList(algList));
+			}
+		}
 	}
 	
 	private void initGenotypes() {
-		String raw = loadResource(GENOTYPES_RESPATH);
-		this.allGenotypes = Genotype.loadJson(raw, virus);
+		synchronized (initLock(Dataset.GENOTYPES)) {
+			if (!state.isLoaded(Dataset.GENOTYPES)) {
+				String raw = loadResource(GENOTYPES_RESPATH);
+				publish(Dataset.GENOTYPES, sharing.parse(Genotype.class, raw, text -> Genotype.loadJson(text, virus)));
+			}
+		}
 	}
 	
 	private void initGenotypeReferences() {
-		String raw = loadResource(GENOTYPE_REFERENCES_RESPATH);
-		this.allGenotypeReferences = GenotypeReference.loadJson(raw, virus);
+		synchronized (initLock(Dataset.GENOTYPE_REFERENCES)) {
+			if (!state.isLoaded(Dataset.GENOTYPE_REFERENCES)) {
+				// chunks are parsed concurrently; resolve lazily loaded genes up front
+				getGenes(getMainStrain());
+				publish(Dataset.GENOTYPE_REFERENCES, sharing.load(
+					Arrays.asList(GenotypeReference.class),
+					() -> resources.hash(GENOTYPE_REFERENCES_RESPATH),
+					() -> {
+						// GenotypeReference.loadJson takes a string, so the
+						// resource is split to bound the text held at a time
+						List<List<GenotypeReference<T>>> chunks = loadJsonArrayResource(
+							GENOTYPE_REFERENCES_RESPATH, true,
+							reader -> GenotypeReference.loadJson(IOUtils.toString(reader), virus)
+						);
+						List<GenotypeReference<T>> genotypeRefs = new ArrayList<>();
+						for (List<GenotypeReference<T>> chunk : chunks) {
+							genotypeRefs.addAll(chunk);
+						}
+						return genotypeRefs;
+					}
+				));
+			}
+		}
 	}
 	
 	private void initDrugResistMutations() {
-		drugResistMutations = loadMutationSetByDrugClassFromRes(DRMS_RESPATH, getStrains());
+		synchronized (initLock(Dataset.DRUG_RESIST_MUTATIONS)) {
+			if (!state.isLoaded(Dataset.DRUG_RESIST_MUTATIONS)) {
+				publish(Dataset.DRUG_RESIST_MUTATIONS, loadMutationSetByDrugClassFromRes(DRMS_RESPATH, getStrains()));
+			}
+		}
+	}
+	
+	private void initSurveilDrugResistMuts() {
+		synchronized (initLock(Dataset.SURVEIL_DRUG_RESIST_MUTATIONS)) {
+			if (!state.isLoaded(Dataset.SURVEIL_DRUG_RESIST_MUTATIONS)) {
+				publish(Dataset.SURVEIL_DRUG_RESIST_MUTATIONS, loadMutationSetByDrugClassFromRes(SDRMS_RESPATH, getStrains()));
+			}
+		}
+	}
+	
+	private void initApobecMutations() {
+		synchronized (initLock(Dataset.APOBEC_MUTATIONS)) {
+			if (!state.isLoaded(Dataset.APOBEC_MUTATIONS)) {
+				publish(Dataset.APOBEC_MUTATIONS, loadMutationSetFromRes(APOBECS_RESPATH, getStrains()));
+			}
+		}
+	}
+	
+	private void initApobecDRMs() {
+		synchronized (initLock(Dataset.APOBEC_DRMS)) {
+			if (!state.isLoaded(Dataset.APOBEC_DRMS)) {
+				publish(Dataset.APOBEC_DRMS, loadMutationSetFromRes(APOBEC_DRMS_RESPATH, getStrains()));
+			}
+		}
+	}
+	
+	private void initRxSelectedMutations() {
+		synchronized (initLock(Dataset.RX_SELECTED_MUTATIONS)) {
+			if (!state.isLoaded(Dataset.RX_SELECTED_MUTATIONS)) {
+				publish(Dataset.RX_SELECTED_MUTATIONS, loadMutationSetByDrugClassFromRes(TSMS_RESPATH, getStrains()));
+			}
+		}
+	}
+	
+	public String getName() {
+		return VIRUS_NAME;
+	}
+
+	public HIVDataSource getDataSource() {
+		return resources.getDataSource();
+	}
+
+	/**
+	 * Returns the abstract genes whose rows are loaded, or null if all
+	 * genes are loaded
+	 *
+	 * Genes themselves are loaded regardless of the scope, since alignment
+	 * and assembly configs refer to every gene. Mutations of genes out of
+	 * scope are rejected by {@link #parseMutationString(Gene, String)} and
+	 * {@link #getMutationPrevalence(GenePosition)}; percent tables have no
+	 * rows for them.
+	 */
+	public Set<String> getGeneScope() {
+		return geneScope;
+	}
+
+	/**
+	 * Rejects strains of another instance of the virus, e.g. of a data
+	 * release (see {@link DataReleases}), which must not be mixed with the
+	 * datasets of this loader
+	 */
+	private void checkVirus(Strain<T> strain) {
+		if (strain.getVirusInstance() != virus) {
+			throw new IllegalArgumentException(String.format(
+				"Strain %s belongs to another %s instance, e.g. of a data release",
+				strain.getName(), VIRUS_NAME));
+		}
+	}
+
+	private void checkVirus(Gene<T> gene) {
+		if (gene.getStrain().getVirusInstance() != virus) {
+			throw new IllegalArgumentException(String.format(
+				"Gene %s belongs to another %s instance, e.g. of a data release",
+				gene.getName(), VIRUS_NAME));
+		}
+	}
+
+	private void checkGeneScope(Gene<T> gene) {
+		if (!isInGeneScope(gene.getAbstractGene())) {
+			throw new IllegalArgumentException(String.format(
+				"Gene %s is out of the gene scope %s", gene.getName(), geneScope));
+		}
+	}
+
+	/**
+	 * Like {@link #checkGeneScope(Gene)}, for the gene of a mutation string
+	 */
+	private void checkGeneScope(Gene<T> gene, String mutText) {
+		if (!isInGeneScope(gene.getAbstractGene())) {
+			throw new Mutation.InvalidMutationException(String.format(
+				"Gene %s of mutation %s is out of the gene scope %s", gene.getName(), mutText, geneScope));
+		}
+	}
+
+	/**
+	 * Loads everything the given loader has loaded so far, including the
+	 * percent tables it currently caches
+	 *
+	 * Derived datasets computed by the virus (genotyper, mutation prevalence,
+	 * patient counts) are left to be computed on first use.
+	 */
+	private void warmUp(HIVDataLoader<T> previous) {
+		State<T> previousState = previous.state;
+		if (previousState.strains != null) {
+			getStrains();
+		}
+		if (previousState.genes != null) {
+			getGenes(getMainStrain());
+		}
+		if (previousState.drugClasses != null) {
+			getDrugClasses();
+		}
+		if (previousState.drugs != null) {
+			getDrugs();
+		}
+		if (previousState.drugResistMutations != null) {
+			getDrugResistMutations();
+		}
+		if (previousState.surveilDrugResistMuts != null) {
+			getSurveilDrugResistMutations();
+		}
+		if (previousState.rxSelectedMutations != null) {
+			getRxSelectedMutations();
+		}
+		if (previousState.apobecMutations != null) {
+			getApobecMutations();
+		}
+		if (previousState.apobecDRMs != null) {
+			getApobecDRMs();
+		}
+		if (previousState.mutationTypes != null) {
+			getMutationTypes();
+		}
+		if (previousState.mutationTypePairs != null) {
+			getMutationTypePairs();
+		}
+		if (previousState.mainSubtypes != null) {
+			getMainSubtypes(getMainStrain());
+		}
+		if (previousState.genotypes != null) {
+			getGenotypes();
+		}
+		if (previousState.genotypeReferences != null) {
+			getGenotypeReferences();
+		}
+		if (previousState.drugResistAlgs != null) {
+			getDrugResistAlgorithms();
+		}
+		if (previousState.condComments != null) {
+			getConditionalComments();
+		}
+		if (previousState.alignmentConfig != null) {
+			getAlignmentConfig();
+		}
+		if (previousState.sequenceReadsAssemblers != null) {
+			getSequenceReadsAssemblers();
+		}
+		if (previousState.sequenceAssemblers != null) {
+			getSequenceAssemblers();
+		}
+		for (Map.Entry<String, List<Strain<T>>> entry : previous.percents.getBoundAminoAcidPercents().entrySet()) {
+			for (Strain<T> strain : entry.getValue()) {
+				getAminoAcidPercents(entry.getKey(), getStrain(strain.getName()));
+			}
+		}
+		for (Map.Entry<String, List<Strain<T>>> entry : previous.percents.getBoundCodonPercents().entrySet()) {
+			for (Strain<T> strain : entry.getValue()) {
+				getCodonPercents(entry.getKey(), getStrain(strain.getName()));
+			}
+		}
+	}
+
+	/**
+	 * Loads the given datasets and the datasets they depend on
+	 *
+	 * Each dataset is loaded on the executor as soon as its dependencies
+	 * are loaded, so independent datasets (e.g. algorithms, genotype
+	 * references and percent tables) are loaded concurrently. Percent
+	 * tables are loaded one task per table, mutation prevalences one task
+	 * per gene. Loading is single-flight, so concurrent callers of the
+	 * getters wait for the preloaded datasets instead of loading them again.
+	 *
+	 * @param executor
+	 * @param datasets
+	 * @return a future completed once every dataset is loaded, or
+	 * 	completed exceptionally if any dataset fails to load
+	 */
+	public CompletableFuture<Void> preload(Executor executor, Set<Dataset> datasets) {
+		Set<Dataset> required = EnumSet.noneOf(Dataset.class);
+		required.addAll(datasets);
+		List<Dataset> ordered = Arrays.asList(Dataset.values());
+		Collections.reverse(ordered);
+		for (Dataset dataset : ordered) {
+			// dependencies are declared before their dependents
+			if (required.contains(dataset)) {
+				required.addAll(dataset.getDependencies());
+			}
+		}
+		Map<Dataset, CompletableFuture<Void>> futures = new EnumMap<>(Dataset.class);
+		for (Dataset dataset : required) {
+			CompletableFuture<?>[] dependencies = (
+				dataset.getDependencies()
+				.stream()
+				.map(futures::get)
+				.toArray(CompletableFuture<?>[]::new)
+			);
+			futures.put(
+				dataset,
+				CompletableFuture.allOf(dependencies)
+				.thenCompose(ignored -> preload(executor, dataset))
+			);
+		}
+		return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]));
+	}
+
+	private CompletableFuture<Void> preload(Executor executor, Dataset dataset) {
+		switch (dataset) {
+			case STRAINS:
+				return CompletableFuture.runAsync(this::getStrains, executor);
+			case GENES:
+				return CompletableFuture.runAsync(() -> getGenes(getMainStrain()), executor);
+			case DRUG_CLASSES:
+				return CompletableFuture.runAsync(this::getDrugClasses, executor);
+			case DRUGS:
+				return CompletableFuture.runAsync(this::getDrugs, executor);
+			case MUTATION_TYPES:
+				return CompletableFuture.runAsync(this::getMutationTypes, executor);
+			case MUTATION_TYPE_PAIRS:
+				return CompletableFuture.runAsync(this::getMutationTypePairs, executor);
+			case MAIN_SUBTYPES:
+				return CompletableFuture.runAsync(() -> getMainSubtypes(getMainStrain()), executor);
+			case DRUG_RESIST_MUTATIONS:
+				return CompletableFuture.runAsync(this::getDrugResistMutations, executor);
+			case SURVEIL_DRUG_RESIST_MUTATIONS:
+				return CompletableFuture.runAsync(this::getSurveilDrugResistMutations, executor);
+			case RX_SELECTED_MUTATIONS:
+				return CompletableFuture.runAsync(this::getRxSelectedMutations, executor);
+			case APOBEC_MUTATIONS:
+				return CompletableFuture.runAsync(this::getApobecMutations, executor);
+			case APOBEC_DRMS:
+				return CompletableFuture.runAsync(this::getApobecDRMs, executor);
+			case GENOTYPES:
+				return CompletableFuture.runAsync(this::getGenotypes, executor);
+			case GENOTYPE_REFERENCES:
+				return CompletableFuture.runAsync(this::getGenotypeReferences, executor);
+			case GENOTYPER:
+				return CompletableFuture.runAsync(this::getGenotyper, executor);
+			case DRUG_RESIST_ALGORITHMS:
+				return CompletableFuture.runAsync(this::getDrugResistAlgorithms, executor);
+			case CONDITIONAL_COMMENTS:
+				return CompletableFuture.runAsync(this::getConditionalComments, executor);
+			case ALIGNMENT_CONFIG:
+				return CompletableFuture.runAsync(this::getAlignmentConfig, executor);
+			case SEQUENCE_READS_ASSEMBLERS:
+				return CompletableFuture.runAsync(this::getSequenceReadsAssemblers, executor);
+			case SEQUENCE_ASSEMBLERS:
+				return CompletableFuture.runAsync(this::getSequenceAssemblers, executor);
+			case AMINO_ACID_PERCENTS:
+				return preloadPercentTables(executor, AAPCNTS_RESPATH, this::getAminoAcidPercents);
+			case CODON_PERCENTS:
+				return preloadPercentTables(executor, CODONPCNTS_RESPATH, this::getCodonPercents);
+			case NUM_PATIENTS_FOR_AA_PERCENTS:
+				return CompletableFuture.allOf(
+					getStrains().stream()
+					.map(strain -> CompletableFuture.runAsync(() -> getNumPatientsForAAPercents(strain), executor))
+					.toArray(CompletableFuture<?>[]::new)
+				);
+			case MUTATION_PREVALENCES:
+				return CompletableFuture.allOf(
+					getStrains().stream()
+					.flatMap(strain -> getGenes(strain).stream())
+					.filter(gene -> isInGeneScope(gene.getAbstractGene()))
+					.map(gene -> CompletableFuture.runAsync(() -> {
+						for (int pos = 1; pos <= gene.getAASize(); pos ++) {
+							getMutationPrevalence(new GenePosition<>(gene, pos));
+						}
+					}, executor))
+					.toArray(CompletableFuture<?>[]::new)
+				);
+			default:
+				throw new IllegalArgumentException(String.format("Unknown dataset %s", dataset));
+		}
+	}
+
+	private interface PercentTableGetter<T extends Virus<T>> {
+		Object get(Strain<T> strain, String treatment, String subtype);
+	}
+
+	/**
+	 * Returns the profile file of this virus in the directory set by system
+	 * property "hivfacts.profileDirectory", or null if it is not set
+	 */
+	public Path getDefaultProfileFile() {
+		String dir = System.getProperty(PROFILE_DIRECTORY_PROPERTY);
+		if (dir == null || dir.trim().isEmpty()) {
+			return null;
+		}
+		return Paths.get(dir.trim(), String.format("%s.profile.json", VIRUS_NAME));
+	}
+
+	/**
+	 * Replays the default profile file (see {@link #getDefaultProfileFile})
+	 * in the background and, if system property "hivfacts.recordProfile" is
+	 * true, saves the profile of the current loader to it when the JVM shuts
+	 * down
+	 *
+	 * Does nothing if system property "hivfacts.profileDirectory" is not
+	 * set.
+	 *
+	 * @param currentLoader returns the current loader, which changes on
+	 * 	reload
+	 */
+	public static <T extends Virus<T>> void recordDefaultProfile(Supplier<HIVDataLoader<T>> currentLoader) {
+		HIVDataLoader<T> loader = currentLoader.get();
+		Path file = loader.getDefaultProfileFile();
+		if (file == null) {
+			return;
+		}
+		loader.replayProfile(file, loader.asyncExecutor);
+		if (!loader.profile.isRecording()) {
+			return;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				currentLoader.get().saveProfile(file);
+			} catch (IOException e) {
+				// the profile only speeds up the next start
+			}
+		}, "hivfacts-profile"));
+	}
+
+	/**
+	 * Saves which datasets, percent tables (by strain, treatment and
+	 * subtype), algorithms and genes have been accessed so far to a small
+	 * JSON file, to be replayed by {@link #replayProfile} on the next start
+	 *
+	 * Percent tables, algorithms and genes are only recorded while system
+	 * property "hivfacts.recordProfile" is true; each is recorded once, when
+	 * it is first loaded.
+	 *
+	 * @param file
+	 * @throws IOException if the profile can't be written
+	 */
+	public void saveProfile(Path file) throws IOException {
+		profile.write(file, VIRUS_NAME, getLoadedDatasets());
+	}
+
+	/**
+	 * Loads what a profile saved by {@link #saveProfile} lists
+	 *
+	 * Datasets are preloaded like {@link #preload}; percent tables,
+	 * algorithms, mutation prevalences and patient counts are loaded one
+	 * task per key. The profile only speeds up the first requests: a
+	 * missing or invalid profile file is ignored, and so are keys which
+	 * can't be loaded (e.g. tables dropped by a newer data release).
+	 *
+	 * @param file
+	 * @param executor
+	 * @return a future completed once everything in the profile is loaded
+	 */
+	public CompletableFuture<Void> replayProfile(Path file, Executor executor) {
+		LoaderProfile saved = LoaderProfile.read(file, VIRUS_NAME);
+		if (saved == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		List<Runnable> tasks = new ArrayList<>();
+		for (List<String> request : saved.getAminoAcidPercents()) {
+			tasks.add(() -> getAminoAcidPercents(getStrain(request.get(0)), request.get(1), request.get(2)));
+		}
+		for (List<String> request : saved.getCodonPercents()) {
+			tasks.add(() -> getCodonPercents(getStrain(request.get(0)), request.get(1), request.get(2)));
+		}
+		if (!saved.getAlgorithms().isEmpty()) {
+			List<String> algorithms = new ArrayList<>(saved.getAlgorithms());
+			tasks.add(() -> getDrugResistAlgorithms(algorithms));
+		}
+		for (String geneName : saved.getMutationPrevalenceGenes()) {
+			tasks.add(() -> {
+				Gene<T> gene = getGene(geneName);
+				for (int pos = 1; pos <= gene.getAASize(); pos ++) {
+					getMutationPrevalence(new GenePosition<>(gene, pos));
+				}
+			});
+		}
+		for (String strainName : saved.getNumPatientsStrains()) {
+			tasks.add(() -> getNumPatientsForAAPercents(getStrain(strainName)));
+		}
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		futures.add(preload(executor, saved.getDatasets()).exceptionally(e -> null));
+		for (Runnable task : tasks) {
+			futures.add(CompletableFuture.runAsync(task, executor).exceptionally(e -> null));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Returns the datasets loaded so far, percent tables aside
+	 */
+	private Set<Dataset> getLoadedDatasets() {
+		return state.getLoadedDatasets();
+	}
+
+	/**
+	 * Loads every percent table of every strain: all treatments of all
+	 * subtypes and of the main subtypes, as far as they exist
+	 */
+	private CompletableFuture<Void> preloadPercentTables(
+		Executor executor, String resPathFormat, PercentTableGetter<T> getter
+	) {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (Strain<T> strain : getStrains()) {
+			List<String> subtypes = new ArrayList<>();
+			subtypes.add("all");
+			List<String> mainSubtypes = getMainSubtypes(strain);
+			if (mainSubtypes != null) {
+				subtypes.addAll(mainSubtypes);
+			}
+			for (String treatment : Arrays.asList("all", "naive", "art")) {
+				for (String subtype : subtypes) {
+					String resPath = String.format(resPathFormat, treatment, subtype);
+					if (percents.hasTable(resPath)) {
+						futures.add(CompletableFuture.runAsync(() -> getter.get(strain, treatment, subtype), executor));
+					}
+				}
+			}
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+	}
+
+	/**
+	 * Returns the loader a virus reads its datasets through on the current
+	 * thread: the given current loader of the virus, or the loader warming
+	 * up to replace it (see {@link #reload})
+	 *
+	 * @param virus
+	 * @param loader the current loader of the virus
+	 * @return a HIVDataLoader object
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Virus<T>> HIVDataLoader<T> forThread(T virus, HIVDataLoader<T> loader) {
+		HIVDataLoader<?> warmingUp = WARMING_UP.get();
+		return warmingUp != null && warmingUp.virus == virus ? (HIVDataLoader<T>) warmingUp : loader;
+	}
+
+	/**
+	 * Makes the given loader the one its virus reads through on the
+	 * current thread
+	 *
+	 * @return the loader to restore with {@link #exitWarmUp}
+	 */
+	private static HIVDataLoader<?> enterWarmUp(HIVDataLoader<?> loader) {
+		HIVDataLoader<?> outer = WARMING_UP.get();
+		WARMING_UP.set(loader);
+		return outer;
+	}
+
+	private static void exitWarmUp(HIVDataLoader<?> outer) {
+		if (outer == null) {
+			WARMING_UP.remove();
+		}
+		else {
+			WARMING_UP.set(outer);
+		}
+	}
+
+	/**
+	 * Creates a loader of the same virus which reads the given data source
+	 *
+	 * The new loader is warmed up with every dataset this loader has loaded
+	 * so far, so it can be swapped in without any parsing left for its
+	 * callers. Parse pool, percent table arena and shared cache directory
+	 * are carried over.
+	 *
+	 * The new loader belongs to the same virus instance, so datasets of
+	 * both loaders can be mixed. While it warms up, the virus reads through
+	 * it on the warming thread (see {@link #forThread}), so datasets it
+	 * parses refer to its own datasets, e.g. its drug resistance mutations
+	 * to its genes.
+	 *
+	 * @param dataSource
+	 * @return the new loader
+	 */
+	public HIVDataLoader<T> reload(HIVDataSource dataSource) {
+		// the data source may have changed since its resources were shared
+		SharedResources.invalidate(dataSource.toString());
+		HIVDataLoader<T> loader = newLoader(dataSource);
+		HIVDataLoader<?> outer = enterWarmUp(loader);
+		try {
+			loader.warmUp(this);
+		} finally {
+			exitWarmUp(outer);
+		}
+		loader.profile.recordAll(profile);
+		sharing.newReleaser().run();
+		return loader;
+	}
+
+	/**
+	 * Creates the loader of a named data release (see {@link DataReleases})
+	 *
+	 * The release is bound to its own virus instance, so that datasets of
+	 * the release resolve their references to other datasets within the
+	 * release instead of through the current data. Datasets are shared
+	 * between the release loader and the loaders it is reloaded into.
+	 *
+	 * @param releaseVirus the virus instance backed by the returned loader
+	 * @param dataSource data of the release
+	 * @return the new loader
+	 */
+	public HIVDataLoader<T> newRelease(T releaseVirus, HIVDataSource dataSource) {
+		return newLoader(releaseVirus, dataSource, true);
+	}
+
+	private HIVDataLoader<T> newLoader(HIVDataSource dataSource) {
+		return newLoader(virus, dataSource, sharing.isEnabled());
+	}
+
+	/**
+	 * Creates a loader of the given virus over the given data source with
+	 * the configuration of this loader: resource paths, gene scope, percent
+	 * table arena, shared cache directory, percent table cache limit, parse
+	 * pool and async executor
+	 */
+	private HIVDataLoader<T> newLoader(T virus, HIVDataSource dataSource, boolean shareContent) {
+		Builder<T> builder = toBuilder(virus).dataSource(dataSource);
+		builder.shareContent = shareContent;
+		HIVDataLoader<T> loader = builder.build();
+		loader.resources.setParsePool(resources.getParsePool());
+		loader.asyncExecutor = asyncExecutor;
+		loader.percents.copySettings(percents);
+		return loader;
+	}
+
+	static String getImplementationVersion() {
+		String version = HIVDataLoader.class.getPackage().getImplementationVersion();
+		return version == null ? "dev" : version;
+	}
+
+	/**
+	 * Saves every resource this loader has read so far to a snapshot file
+	 *
+	 * Call this once the loader is warmed up. On the next start, a loader
+	 * created over {@link HIVDataSource#snapshot(Path, HIVDataSource) the
+	 * snapshot} (or with system property "hivfacts.snapshotFile") reads all
+	 * these resources from the single memory-mapped file. Percent tables and
+	 * mutation lists are stored in binary form (see {@link PercentTableCodec}
+	 * and {@link MutationTable}), so they aren't parsed again; other
+	 * resources are stored as read, since sierra-core parses them from text.
+	 *
+	 * A snapshot is only used by the same hivfacts version with the same
+	 * data source; otherwise the data source is read as usual.
+	 *
+	 * @param file
+	 * @throws IOException if the snapshot can't be written
+	 */
+	public void saveSnapshot(Path file) throws IOException {
+		Map<String, ByteBuffer> snapshot = new TreeMap<>();
+		Set<String> tableSources = new HashSet<>();
+		percents.addToSnapshot(snapshot, tableSources);
+		for (Map.Entry<String, Boolean> entry : mutationTables.entrySet()) {
+			String resPath = entry.getKey();
+			if (resources.useStaticDatasets() && StaticDatasets.getMutationTable(resPath) != null) {
+				continue;
+			}
+			ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+			compileMutationTable(resPath, entry.getValue()).write(tableBytes);
+			snapshot.put(MutationTable.toBinaryPath(resPath), ByteBuffer.wrap(tableBytes.toByteArray()));
+			tableSources.add(resPath);
+		}
+		HIVDataSource dataSource = resources.getDataSource();
+		for (String resPath : resources.getReadResources()) {
+			if (!tableSources.contains(resPath) && !snapshot.containsKey(resPath)) {
+				snapshot.put(resPath, dataSource.map(resPath));
+			}
+		}
+		SnapshotDataSource.write(file, dataSource, resources.useStaticDatasets(), snapshot);
+	}
+
+	/**
+	 * Stores percent tables loaded from now on in the given off-heap arena
+	 *
+	 * Tables loaded before are dropped and will be reloaded into the arena on
+	 * next use. Once the arena is closed, the tables stored in it are dropped
+	 * and tables are loaded onto the heap again; tables obtained from this
+	 * loader before the arena is closed must not be used after it. Pass null
+	 * to switch back to on-heap tables.
+	 *
+	 * @param arena
+	 */
+	public void setPercentTableArena(PercentTableArena arena) {
+		percents.setArena(arena);
+	}
+	
+	/**
+	 * Shares percent tables with other processes through the given directory
+	 *
+	 * Tables are published to the directory by the first process that needs
+	 * them and memory-mapped read-only by all others, see {@link
+	 * SharedPercentTableCache}. The directory can also be set with system
+	 * property "hivfacts.sharedCacheDir". Tables loaded before are dropped.
+	 * Pass null to keep tables private to this process.
+	 *
+	 * @param cacheDir
+	 */
+	public void setSharedCacheDirectory(Path cacheDir) {
+		percents.setSharedCacheDirectory(cacheDir);
+	}
+
+	/**
+	 * Bounds the estimated heap used by amino acid and codon percent tables
+	 *
+	 * The limit applies to each kind of table. Once it is exceeded, tables
+	 * are evicted by the given policy and loaded again on their next
+	 * request. With softReferences, evicted tables are kept until the JVM
+	 * runs low on memory and are taken back without loading them again.
+	 * Tables loaded so far are dropped.
+	 *
+	 * By default, set by system properties "hivfacts.percentTableCache.maxBytes"
+	 * (no limit if not set), "hivfacts.percentTableCache.policy" ("LRU" or
+	 * "LFU") and "hivfacts.percentTableCache.softReferences".
+	 *
+	 * @param maxBytes the limit; zero or less for no limit
+	 * @param policy
+	 * @param softReferences
+	 */
+	public void setPercentTableCacheLimit(long maxBytes, EvictionPolicy policy, boolean softReferences) {
+		percents.setCacheLimit(maxBytes, AssertUtils.notNull(policy, "Policy can't be null"), softReferences);
+	}
+
+	/**
+	 * Returns the estimated heap used by the amino acid and codon percent
+	 * tables currently cached
+	 */
+	public long getPercentTableCacheBytes() {
+		return percents.getCacheBytes();
 	}
-	
-	private void initSurveilDrugResistMuts() {
-		surveilDrugResistMuts = loadMutationSetByDrugClassFromRes(SDRMS_RESPATH, getStrains());
+
+	/**
+	 * Sets the pool used to parse large JSON array resources in chunks
+	 *
+	 * The common fork-join pool is used by default. Pass null to parse every
+	 * resource on the calling thread.
+	 *
+	 * @param pool
+	 */
+	public void setParsePool(ForkJoinPool pool) {
+		resources.setParsePool(pool);
 	}
-	
-	private void initApobecMutations() {
-		apobecMutations = loadMutationSetFromRes(APOBECS_RESPATH, getStrains());
+
+	/**
+	 * Sets the executor which runs the loads of the *Async getters
+	 *
+	 * The common fork-join pool is used by default.
+	 *
+	 * @param executor
+	 */
+	public void setAsyncExecutor(Executor executor) {
+		asyncExecutor = AssertUtils.notNull(executor, "Executor can't be null");
 	}
-	
-	private void initApobecDRMs() {
-		apobecDRMs = loadMutationSetFromRes(APOBEC_DRMS_RESPATH, getStrains());
+
+	/**
+	 * Runs a load on the async executor, unless the value is loaded already
+	 *
+	 * Concurrent callers of the same key share a single load. Each caller
+	 * gets its own future, so cancelling it doesn't affect other callers.
+	 *
+	 * @param key identifies the load
+	 * @param loaded the loaded value, or null if not loaded yet
+	 * @param loader a blocking getter
+	 * @return a future of the value
+	 */
+	@SuppressWarnings("unchecked")
+	private <R> CompletableFuture<R> loadAsync(String key, R loaded, Supplier<R> loader) {
+		if (loaded != null) {
+			return CompletableFuture.completedFuture(loaded);
+		}
+		CompletableFuture<R> future = new CompletableFuture<>();
+		CompletableFuture<?> inFlight = asyncLoads.putIfAbsent(key, future);
+		if (inFlight != null) {
+			return ((CompletableFuture<R>) inFlight).copy();
+		}
+		try {
+			asyncExecutor.execute(() -> {
+				try {
+					future.complete(loader.get());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				} finally {
+					asyncLoads.remove(key, future);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			asyncLoads.remove(key, future);
+			future.completeExceptionally(e);
+		}
+		return future.copy();
 	}
-	
-	private void initRxSelectedMutations() {
-		this.rxSelectedMutations = loadMutationSetByDrugClassFromRes(TSMS_RESPATH, getStrains());
+
+	/**
+	 * Returns the datasets loaded so far, without loading anything
+	 *
+	 * @see State
+	 */
+	public State<T> getState() {
+		return state;
 	}
-	
-	public String getName() {
-		return VIRUS_NAME;
+
+	/**
+	 * Loads every dataset except percent tables (which are loaded on
+	 * request) and returns the resulting state
+	 *
+	 * @see State
+	 */
+	public State<T> getCompleteState() {
+		State<T> state = this.state;
+		if (state.isComplete()) {
+			return state;
+		}
+		Strain<T> mainStrain = getMainStrain();
+		getGenes(mainStrain);
+		getDrugClasses();
+		getDrugs();
+		getDrugResistAlgorithms();
+		getDrugResistMutations();
+		getSurveilDrugResistMutations();
+		getRxSelectedMutations();
+		getApobecMutations();
+		getApobecDRMs();
+		getMutationTypes();
+		getMutationTypePairs();
+		getMainSubtypes(mainStrain);
+		getGenotypes();
+		getGenotypeReferences();
+		getGenotyper();
+		getConditionalComments();
+		getAlignmentConfig();
+		getSequenceReadsAssemblers();
+		getSequenceAssemblers();
+		return this.state;
 	}
-	
+
 	public Strain<T> getMainStrain() {
 		return getStrain(MAIN_STRAIN);
 	}
 	
 	public Collection<Strain<T>> getStrains() {
-		if (strains == null) {
-			initStrains();
-		}
-		return strains.values();
+		State<T> state = loaded(Dataset.STRAINS, this::initStrains);
+		return state.strains.values();
 	}
 	
 	
 	public Strain<T> getStrain(String name) {
-		if (strains == null) {
-			initStrains();
-		}
+		State<T> state = loaded(Dataset.STRAINS, this::initStrains);
 		return AssertUtils.notNull(
-			strains.get(name),
+			state.strains.get(name),
 			"Strain \"%s\" not found", name
 		);
 	}
 
 	
 	public Collection<Gene<T>> getGenes(Strain<T> strain) {
-		if (genes == null) {
-			initGenes();
-		}
+		checkVirus(strain);
+		State<T> state = loaded(Dataset.GENES, this::initGenes);
 		return (
-			genes.values()
+			state.genes.values()
 			.stream()
 			.distinct()
 			.filter(gene -> gene.getStrain() == strain)
@@ -352,21 +1654,17 @@ public class HIVDataLoader<T extends Virus<T>> {
 	
 	
 	public Gene<T> getGene(String name) {
-		if (genes == null) {
-			initGenes();
-		}
+		State<T> state = loaded(Dataset.GENES, this::initGenes);
 		return AssertUtils.notNull(
-			genes.get(name),
+			state.genes.get(name),
 			"Gene \"%s\" not found", name
 		);
 	}
 	
 	
 	public Collection<DrugClass<T>> getDrugClasses() {
-		if (drugClasses == null) {
-			initDrugClasses();
-		}
-		return drugClasses.values().stream()
+		State<T> state = loaded(Dataset.DRUG_CLASSES, this::initDrugClasses);
+		return state.drugClasses.values().stream()
 			.distinct()
 			.collect(
 				Collectors.toCollection(LinkedHashSet::new)
@@ -375,52 +1673,48 @@ public class HIVDataLoader<T extends Virus<T>> {
 	
 	
 	public Map<String, DrugClass<T>> getDrugClassSynonymMap() {
-		if (drugClasses == null) {
-			initDrugClasses();
-		}
-		return drugClasses;
+		State<T> state = loaded(Dataset.DRUG_CLASSES, this::initDrugClasses);
+		return state.drugClasses;
 	}
 	
 	
 	public DrugClass<T> getDrugClass(String name) {
-		if (drugClasses == null) {
-			initDrugClasses();
-		}
-		return drugClasses.get(name);
+		State<T> state = loaded(Dataset.DRUG_CLASSES, this::initDrugClasses);
+		return state.drugClasses.get(name);
 	}
 	
 	
 	public Collection<Drug<T>> getDrugs() {
-		if (drugs == null) {
-			initDrugs();
-		}
-		return Sets.newTreeSet(drugs.values());
+		State<T> state = loaded(Dataset.DRUGS, this::initDrugs);
+		return Sets.newTreeSet(state.drugs.values());
 	}
 	
 	
 	public Map<String, Drug<T>> getDrugSynonymMap() {
-		if (drugs == null) {
-			initDrugs();
-		}
-		return drugs;
+		State<T> state = loaded(Dataset.DRUGS, this::initDrugs);
+		return state.drugs;
 	}
 
 	
 	public Collection<DrugResistanceAlgorithm<T>> getDrugResistAlgorithms() {
-		if (drugResistAlgs == null) {
-			initDrugResistAlgs();
-		}
-		return drugResistAlgs;
+		State<T> state = loaded(Dataset.DRUG_RESIST_ALGORITHMS, this::initDrugResistAlgs);
+		return state.drugResistAlgs;
 	}
 
 	
+	/**
+	 * Asynchronous {@link #getDrugResistAlgorithms()}, see {@link #setAsyncExecutor}
+	 */
+	public CompletableFuture<Collection<DrugResistanceAlgorithm<T>>> getDrugResistAlgorithmsAsync() {
+		return loadAsync("drugResistAlgs", state.drugResistAlgs, this::getDrugResistAlgorithms);
+	}
+
 	public Collection<DrugResistanceAlgorithm<T>> getDrugResistAlgorithms(Collection<String> algorithmNames) {
-		if (drugResistAlgs == null) {
-			initDrugResistAlgs();
-		}
+		State<T> state = loaded(Dataset.DRUG_RESIST_ALGORITHMS, this::initDrugResistAlgs);
+		profile.recordAlgorithms(algorithmNames);
 		return (
 			algorithmNames.stream()
-			.map(name -> drugResistAlgLookup.get(name))
+			.map(name -> state.drugResistAlgLookup.get(name))
 			.collect(Collectors.toList())
 		);
 	}
@@ -428,22 +1722,21 @@ public class HIVDataLoader<T extends Virus<T>> {
 	
 	
 	public DrugResistanceAlgorithm<T> getDrugResistAlgorithm(String name) {
-		if (drugResistAlgs == null) {
-			initDrugResistAlgs();
-		}
+		State<T> state = loaded(Dataset.DRUG_RESIST_ALGORITHMS, this::initDrugResistAlgs);
+		profile.recordAlgorithms(Collections.singleton(name));
 		return AssertUtils.notNull(
-			drugResistAlgLookup.get(name),
+			state.drugResistAlgLookup.get(name),
 			"Unable to locate algorithm %s", name
 		);
 	}
 
 	
 	public DrugResistanceAlgorithm<T> getDrugResistAlgorithm(String family, String version) {
-		if (drugResistAlgs == null) {
-			initDrugResistAlgs();
-		}
+		State<T> state = loaded(Dataset.DRUG_RESIST_ALGORITHMS, this::initDrugResistAlgs);
+		String name = String.format("%s_%s", family, version);
+		profile.recordAlgorithms(Collections.singleton(name));
 		return AssertUtils.notNull(
-			drugResistAlgLookup.get(String.format("%s_%s", family, version)),
+			state.drugResistAlgLookup.get(name),
 			"Unable to locate algorithm %s_%s", family, version
 		);
 	}
@@ -467,6 +1760,7 @@ public class HIVDataLoader<T extends Virus<T>> {
 					"for an input mutation string is, for example, " +
 					"RT:215Y.", e);
 			}
+			checkGeneScope(gene, mutText);
 		}
 		return gene;
 	}
@@ -479,6 +1773,9 @@ public class HIVDataLoader<T extends Virus<T>> {
 	 */
 	
 	public Mutation<T> parseMutationString(Gene<T> defaultGene, String mutText) {
+		if (defaultGene != null) {
+			checkVirus(defaultGene);
+		}
 		Matcher m = HIV_MUTATION_PATTERN.matcher(mutText);
 		Mutation<T> mut = null;
 		if (m.matches()) {
@@ -498,6 +1795,7 @@ public class HIVDataLoader<T extends Virus<T>> {
 					gene = defaultGene;
 				}
 			}
+			checkGeneScope(gene, mutText);
 			int pos = Integer.parseInt(m.group(4));
 			String aas = m.group(5);
 			if (!isASI && !NON_ASI_AA_PATTERN.matcher(aas).matches()) {
@@ -582,66 +1880,50 @@ public class HIVDataLoader<T extends Virus<T>> {
 
 	
 	public Map<DrugClass<T>, MutationSet<T>> getDrugResistMutations() {
-		if (drugResistMutations == null) {
-			initDrugResistMutations();
-		}
-		return drugResistMutations;
+		State<T> state = loaded(Dataset.DRUG_RESIST_MUTATIONS, this::initDrugResistMutations);
+		return state.drugResistMutations;
 	}
 	
 	
 	public Map<DrugClass<T>, MutationSet<T>> getSurveilDrugResistMutations() {
-		if (surveilDrugResistMuts == null) {
-			initSurveilDrugResistMuts();
-		}
-		return surveilDrugResistMuts;
+		State<T> state = loaded(Dataset.SURVEIL_DRUG_RESIST_MUTATIONS, this::initSurveilDrugResistMuts);
+		return state.surveilDrugResistMuts;
 	}
 
 	
 	public Map<DrugClass<T>, MutationSet<T>> getRxSelectedMutations() {
-		if (rxSelectedMutations == null) {
-			initRxSelectedMutations();
-		}
-		return rxSelectedMutations;
+		State<T> state = loaded(Dataset.RX_SELECTED_MUTATIONS, this::initRxSelectedMutations);
+		return state.rxSelectedMutations;
 	}
 	
 	
 	public MutationSet<T> getApobecMutations() {
-		if (apobecMutations == null) {
-			initApobecMutations();
-		}
-		return apobecMutations;
+		State<T> state = loaded(Dataset.APOBEC_MUTATIONS, this::initApobecMutations);
+		return state.apobecMutations;
 	}
 
 	
 	public MutationSet<T> getApobecDRMs() {
-		if (apobecDRMs == null) {
-			initApobecDRMs();
-		}
-		return apobecDRMs;
+		State<T> state = loaded(Dataset.APOBEC_DRMS, this::initApobecDRMs);
+		return state.apobecDRMs;
 	}
 
 	
 	public Collection<MutationType<T>> getMutationTypes() {
-		if (mutationTypes == null) {
-			initMutationTypes();
-		}
-		return mutationTypes.values();
+		State<T> state = loaded(Dataset.MUTATION_TYPES, this::initMutationTypes);
+		return state.mutationTypes.values();
 	}
 	
 	
 	public MutationType<T> getMutationType(String mutTypeText) {
-		if (mutationTypes == null) {
-			initMutationTypes();
-		}
-		return mutationTypes.get(mutTypeText);
+		State<T> state = loaded(Dataset.MUTATION_TYPES, this::initMutationTypes);
+		return state.mutationTypes.get(mutTypeText);
 	}
 
 	
 	public Collection<MutationTypePair<T>> getMutationTypePairs() {
-		if (mutationTypePairs == null) {
-			initMutationTypePairs();
-		}
-		return mutationTypePairs;
+		State<T> state = loaded(Dataset.MUTATION_TYPE_PAIRS, this::initMutationTypePairs);
+		return state.mutationTypePairs;
 	}
 	
 	/**
@@ -652,14 +1934,37 @@ public class HIVDataLoader<T extends Virus<T>> {
 	 */
 	
 	public AminoAcidPercents<T> getAminoAcidPercents(Strain<T> strain, String treatment, String subtype) {
+		checkVirus(strain);
 		String resourceName = String.format(AAPCNTS_RESPATH, treatment, subtype);
-		String resourceKey = String.format("%s::%s", resourceName, strain.getName());
-		if (!aminoAcidPcnts.containsKey(resourceKey)) {
-			aminoAcidPcnts.put(resourceKey, new AminoAcidPercents<>(resourceName, virus, strain));
-			// Example of empty Instance:
-			// aminoAcidPcnts.put(resourceName, AminoAcidPercents.newEmptyInstance());
+		// Example of empty Instance:
+		// return AminoAcidPercents.newEmptyInstance();
+		PercentTablePartitions<T, AminoAcidPercents<T>> partitions = percents.getAminoAcidPercents(resourceName);
+		AminoAcidPercents<T> aaPcnts = partitions.getIfBound(strain);
+		if (aaPcnts == null) {
+			profile.recordAminoAcidPercents(strain.getName(), treatment, subtype);
+			aaPcnts = partitions.get(strain);
 		}
-		return aminoAcidPcnts.get(resourceKey);
+		return aaPcnts;
+	}
+
+	private AminoAcidPercents<T> getAminoAcidPercents(String resourceName, Strain<T> strain) {
+		return percents.getAminoAcidPercents(resourceName).get(strain);
+	}
+
+	/**
+	 * Asynchronous {@link #getAminoAcidPercents}, see {@link #setAsyncExecutor}
+	 */
+	public CompletableFuture<AminoAcidPercents<T>> getAminoAcidPercentsAsync(
+		Strain<T> strain, String treatment, String subtype
+	) {
+		checkVirus(strain);
+		String resourceName = String.format(AAPCNTS_RESPATH, treatment, subtype);
+		String resourceKey = String.format("%s::%s", resourceName, strain.getName());
+		PercentTablePartitions<T, AminoAcidPercents<T>> partitions = percents.getAminoAcidPercentsIfLoaded(resourceName);
+		return loadAsync(
+			"aminoAcidPcnts::" + resourceKey,
+			partitions == null ? null : partitions.getIfBound(strain),
+			() -> getAminoAcidPercents(strain, treatment, subtype));
 	}
 
 	/**
@@ -670,112 +1975,581 @@ public class HIVDataLoader<T extends Virus<T>> {
 	 */
 	
 	public CodonPercents<T> getCodonPercents(Strain<T> strain, String treatment, String subtype) {
+		checkVirus(strain);
 		String resourceName = String.format(CODONPCNTS_RESPATH, treatment, subtype);
-		if (!codonPcnts.containsKey(resourceName)) {
-			codonPcnts.put(resourceName, new CodonPercents<>(resourceName, virus, strain));
-			// Example of emptyInstance:
-			// codonPcnts.put(resourceName, CodonPercents.newEmptyInstance());
+		// Example of emptyInstance:
+		// return CodonPercents.newEmptyInstance();
+		PercentTablePartitions<T, CodonPercents<T>> partitions = percents.getCodonPercents(resourceName);
+		CodonPercents<T> codonPcnts = partitions.getIfBound(strain);
+		if (codonPcnts == null) {
+			profile.recordCodonPercents(strain.getName(), treatment, subtype);
+			codonPcnts = partitions.get(strain);
 		}
-		return codonPcnts.get(resourceName);
+		return codonPcnts;
+	}
+
+	private CodonPercents<T> getCodonPercents(String resourceName, Strain<T> strain) {
+		return percents.getCodonPercents(resourceName).get(strain);
 	}
 
 	
+	/**
+	 * Asynchronous {@link #getCodonPercents}, see {@link #setAsyncExecutor}
+	 */
+	public CompletableFuture<CodonPercents<T>> getCodonPercentsAsync(
+		Strain<T> strain, String treatment, String subtype
+	) {
+		checkVirus(strain);
+		String resourceName = String.format(CODONPCNTS_RESPATH, treatment, subtype);
+		String resourceKey = String.format("%s::%s", resourceName, strain.getName());
+		PercentTablePartitions<T, CodonPercents<T>> partitions = percents.getCodonPercentsIfLoaded(resourceName);
+		return loadAsync(
+			"codonPcnts::" + resourceKey,
+			partitions == null ? null : partitions.getIfBound(strain),
+			() -> getCodonPercents(strain, treatment, subtype));
+	}
+
+	/**
+	 * Returns the mutation prevalences of a gene position
+	 *
+	 * Prevalences are read from the table precomputed at build time (see
+	 * {@link MutationPrevalenceCompiler}) if the data source has one which
+	 * was computed from its current aapcnt tables, and are computed from the
+	 * percent tables otherwise.
+	 *
+	 * @param genePos
+	 * @return a new list of the cached prevalences
+	 */
 	public List<MutationPrevalence<T>> getMutationPrevalence(GenePosition<T> genePos) {
-		if (!mutPrevalenceMap.containsKey(genePos)) {
-			mutPrevalenceMap.put(genePos, virus.defaultGetMutationPrevalence(genePos));
+		checkVirus(genePos.getGene());
+		checkGeneScope(genePos.getGene());
+		return new ArrayList<>(mutPrevalenceMap.get(genePos, this::loadMutationPrevalence));
+	}
+
+	private List<MutationPrevalence<T>> loadMutationPrevalence(GenePosition<T> genePos) {
+		profile.recordMutationPrevalenceGene(genePos.getGene().getName());
+		if (!mutPrevalenceTableRead) {
+			initMutationPrevalenceTable();
+		}
+		List<MutationPrevalence<T>> mutPrevs = (
+			mutPrevalenceTable == null ? null : mutPrevalenceTable.get(genePos)
+		);
+		if (mutPrevs == null) {
+			mutPrevs = Collections.unmodifiableList(computeMutationPrevalence(genePos));
+		}
+		return mutPrevs;
+	}
+
+	/**
+	 * Computes the prevalences of a gene position from the percent tables
+	 * of this loader, without reading the precomputed table
+	 */
+	List<MutationPrevalence<T>> computeMutationPrevalence(GenePosition<T> genePos) {
+		return new ArrayList<>(virus.defaultGetMutationPrevalence(genePos));
+	}
+
+	private void initMutationPrevalenceTable() {
+		synchronized (initLock(Dataset.MUTATION_PREVALENCES)) {
+			if (!mutPrevalenceTableRead) {
+				String resPath = String.format(MutationPrevalenceTable.RESPATH, VIRUS_NAME);
+				if (hasResource(resPath)) {
+					try {
+						MutationPrevalenceTable table = MutationPrevalenceTable.read(resources.map(resPath));
+						// the classpath has the table compiled from its own
+						// percent tables; other sources may have updated
+						// their percent tables since
+						if (resources.useStaticDatasets() || table.matchesSources(resources.getDataSource())) {
+							mutPrevalenceTable = table;
+						}
+					} catch (IOException|RuntimeException e) {
+						throw new ExceptionInInitializerError(
+							String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+						);
+					}
+				}
+				mutPrevalenceTableRead = true;
+			}
 		}
-		return new ArrayList<>(mutPrevalenceMap.get(genePos));					
 	}
 	
 	
 	public ConditionalComments<T> getConditionalComments() {
-		if (condComments == null) {
-			initCondComments();
-		}
-		return condComments;
+		State<T> state = loaded(Dataset.CONDITIONAL_COMMENTS, this::initCondComments);
+		return state.condComments;
 	}
 	
 	
 	public List<String> getMainSubtypes(Strain<T> strain) {
-		if (mainSubtypes == null) {
-			initMainSubtypes();
-		}
-		return mainSubtypes.get(strain);
+		checkVirus(strain);
+		State<T> state = loaded(Dataset.MAIN_SUBTYPES, this::initMainSubtypes);
+		return state.mainSubtypes.get(strain);
 	}
 	
 	
 	public Map<Gene<T>, Map<String, Integer[]>> getNumPatientsForAAPercents(Strain<T> strain) {
-		if (!allAAPcntsNumPatients.containsKey(strain)) {
-			allAAPcntsNumPatients.put(strain, virus.defaultGetNumPatientsForAAPercents(strain));
-		}
-		return allAAPcntsNumPatients.get(strain);
+		return getNumPatientsTable(strain).toBoxedMap();
+	}
+
+	/**
+	 * Returns the primitive form of {@link #getNumPatientsForAAPercents}
+	 *
+	 * @param strain
+	 * @return a NumPatientsTable object shared by all callers
+	 */
+	public NumPatientsTable<T> getNumPatientsTable(Strain<T> strain) {
+		checkVirus(strain);
+		return allAAPcntsNumPatients.get(strain, s -> {
+			profile.recordNumPatientsStrain(s.getName());
+			return NumPatientsTable.fromBoxedMap(s, virus.defaultGetNumPatientsForAAPercents(s));
+		});
 	}
 
 	
 	public Collection<Genotype<T>> getGenotypes() {
-		if (allGenotypes == null) {
-			initGenotypes();
-		}
-		return allGenotypes.values();
+		State<T> state = loaded(Dataset.GENOTYPES, this::initGenotypes);
+		return state.genotypes.values();
 	}
 	
 	
 	public Genotype<T> getGenotype(String name) {
-		if (allGenotypes == null) {
-			initGenotypes();
-		}
-		return allGenotypes.get(name);
+		State<T> state = loaded(Dataset.GENOTYPES, this::initGenotypes);
+		return state.genotypes.get(name);
 	}
 
 	
 	public Genotype<T> getGenotypeUnknown() {
-		if (allGenotypes == null) {
-			initGenotypes();
-		}
-		return allGenotypes.get("U");
+		State<T> state = loaded(Dataset.GENOTYPES, this::initGenotypes);
+		return state.genotypes.get("U");
 	}
 
 	
 	public List<GenotypeReference<T>> getGenotypeReferences() {
-		if (allGenotypeReferences == null) {
-			initGenotypeReferences();
-		}
-		return allGenotypeReferences;
+		State<T> state = loaded(Dataset.GENOTYPE_REFERENCES, this::initGenotypeReferences);
+		return state.genotypeReferences;
 	}
 	
 	
+	/**
+	 * Asynchronous {@link #getGenotypeReferences}, see {@link #setAsyncExecutor}
+	 */
+	public CompletableFuture<List<GenotypeReference<T>>> getGenotypeReferencesAsync() {
+		return loadAsync("allGenotypeReferences", state.genotypeReferences, this::getGenotypeReferences);
+	}
+
 	public Genotyper<T> getGenotyper() {
-		if (genotyper == null) {
-			genotyper = new Genotyper<>(virus);
+		return loaded(Dataset.GENOTYPER, this::initGenotyper).genotyper;
+	}
+
+	private void initGenotyper() {
+		synchronized (initLock(Dataset.GENOTYPER)) {
+			if (!state.isLoaded(Dataset.GENOTYPER)) {
+				publish(Dataset.GENOTYPER, new Genotyper<>(virus));
+			}
 		}
-		return genotyper;
+	}
+
+	/**
+	 * Asynchronous {@link #getGenotyper}, see {@link #setAsyncExecutor}
+	 */
+	public CompletableFuture<Genotyper<T>> getGenotyperAsync() {
+		return loadAsync("genotyper", state.genotyper, this::getGenotyper);
 	}
 
 	public AlignmentConfig<T> getAlignmentConfig() {
-		if (alignmentConfig == null) {
-			String raw = loadResource(ALIGNCONFIG_RESPATH);
-			alignmentConfig = AlignmentConfig.loadJson(raw, virus);
+		return loaded(Dataset.ALIGNMENT_CONFIG, this::initAlignmentConfig).alignmentConfig;
+	}
+
+	private void initAlignmentConfig() {
+		synchronized (initLock(Dataset.ALIGNMENT_CONFIG)) {
+			if (!state.isLoaded(Dataset.ALIGNMENT_CONFIG)) {
+				String raw = loadResource(ALIGNCONFIG_RESPATH);
+				publish(Dataset.ALIGNMENT_CONFIG, sharing.parse(AlignmentConfig.class, raw, text -> AlignmentConfig.loadJson(text, virus)));
+			}
 		}
-		return alignmentConfig;
 	}
 	
 	public Map<Strain<T>, SequenceReadsAssembler<T>> getSequenceReadsAssemblers() {
-		if (sequenceReadsAssemblers == null) {
-			String raw = loadResource(ASSEMBLYCONFIG_RESPATH);
-			sequenceReadsAssemblers = SequenceReadsAssembler.loadJson(raw, virus);
+		return loaded(Dataset.SEQUENCE_READS_ASSEMBLERS, this::initSequenceReadsAssemblers).sequenceReadsAssemblers;
+	}
+
+	private void initSequenceReadsAssemblers() {
+		synchronized (initLock(Dataset.SEQUENCE_READS_ASSEMBLERS)) {
+			if (!state.isLoaded(Dataset.SEQUENCE_READS_ASSEMBLERS)) {
+				String raw = loadResource(ASSEMBLYCONFIG_RESPATH);
+				publish(Dataset.SEQUENCE_READS_ASSEMBLERS, sharing.parse(
+					SequenceReadsAssembler.class, raw, text -> SequenceReadsAssembler.loadJson(text, virus)));
+			}
 		}
-		return sequenceReadsAssemblers;
 	}
 	
 	public Map<Strain<T>, SequenceAssembler<T>> getSequenceAssemblers() {
-		if (sequenceAssemblers == null) {
-			String raw = loadResource(ASSEMBLYCONFIG_RESPATH);
-			Map<Strain<T>, SequenceAssembler<T>> sequenceAssemblers = SequenceAssembler.loadJson(
-				raw,
-				virus);
-			this.sequenceAssemblers = sequenceAssemblers;
+		return loaded(Dataset.SEQUENCE_ASSEMBLERS, this::initSequenceAssemblers).sequenceAssemblers;
+	}
+
+	private void initSequenceAssemblers() {
+		synchronized (initLock(Dataset.SEQUENCE_ASSEMBLERS)) {
+			if (!state.isLoaded(Dataset.SEQUENCE_ASSEMBLERS)) {
+				String raw = loadResource(ASSEMBLYCONFIG_RESPATH);
+				Map<Strain<T>, SequenceAssembler<T>> sequenceAssemblers = sharing.parse(
+					SequenceAssembler.class, raw, text -> SequenceAssembler.loadJson(text, virus));
+				publish(Dataset.SEQUENCE_ASSEMBLERS, sequenceAssemblers);
+			}
 		}
-		return sequenceAssemblers;
 	}
-	
+
+	/**
+	 * Eviction policies of percent tables, see {@link
+	 * HIVDataLoader#setPercentTableCacheLimit}.
+	 */
+	public enum EvictionPolicy {
+		/** evicts the least recently used table first */
+		LRU,
+		/** evicts the least frequently used table first */
+		LFU
+	}
+
+	/**
+	 * Datasets which can be preloaded, see {@link HIVDataLoader#preload}.
+	 *
+	 * Each dataset lists the datasets its parsing reads; dependencies are
+	 * declared before their dependents.
+	 */
+	public enum Dataset {
+		STRAINS,
+		GENES(STRAINS),
+		DRUG_CLASSES,
+		DRUGS(DRUG_CLASSES),
+		MUTATION_TYPES,
+		MUTATION_TYPE_PAIRS(GENES, DRUG_CLASSES, MUTATION_TYPES),
+		MAIN_SUBTYPES(STRAINS),
+		DRUG_RESIST_MUTATIONS(GENES, DRUG_CLASSES),
+		SURVEIL_DRUG_RESIST_MUTATIONS(GENES, DRUG_CLASSES),
+		RX_SELECTED_MUTATIONS(GENES, DRUG_CLASSES),
+		APOBEC_MUTATIONS(GENES),
+		APOBEC_DRMS(GENES),
+		GENOTYPES,
+		GENOTYPE_REFERENCES(GENES, GENOTYPES),
+		GENOTYPER(GENOTYPE_REFERENCES),
+		DRUG_RESIST_ALGORITHMS(GENES, DRUG_CLASSES, DRUGS),
+		CONDITIONAL_COMMENTS(GENES, DRUG_CLASSES, DRUGS),
+		ALIGNMENT_CONFIG(GENES),
+		SEQUENCE_READS_ASSEMBLERS(GENES),
+		SEQUENCE_ASSEMBLERS(GENES),
+		AMINO_ACID_PERCENTS(GENES, MAIN_SUBTYPES),
+		CODON_PERCENTS(GENES, MAIN_SUBTYPES),
+		NUM_PATIENTS_FOR_AA_PERCENTS(AMINO_ACID_PERCENTS),
+		MUTATION_PREVALENCES(AMINO_ACID_PERCENTS);
+
+		private final Set<Dataset> dependencies;
+
+		private Dataset(Dataset... dependencies) {
+			this.dependencies = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(dependencies)));
+		}
+
+		public Set<Dataset> getDependencies() {
+			return dependencies;
+		}
+
+	}
+
+	/**
+	 * Immutable snapshot of the datasets of a loader.
+	 *
+	 * A loader publishes a new state through a single volatile reference
+	 * whenever it has loaded a dataset; each state is fully built before it
+	 * is published, so readers can take a state once per request and read
+	 * it without locks. Datasets which weren't loaded yet when the state was
+	 * taken are null; states returned by {@link
+	 * HIVDataLoader#getCompleteState()} hold every dataset except percent
+	 * tables, mutation prevalences and patient counts. These are cached and
+	 * may be evicted, so they are read through the loader instead.
+	 */
+	public static final class State<T extends Virus<T>> {
+
+		// datasets held by a state
+		private static final Set<Dataset> STATE_DATASETS = Collections.unmodifiableSet(EnumSet.complementOf(EnumSet.of(
+			Dataset.AMINO_ACID_PERCENTS, Dataset.CODON_PERCENTS,
+			Dataset.NUM_PATIENTS_FOR_AA_PERCENTS, Dataset.MUTATION_PREVALENCES
+		)));
+
+		private final String mainStrain;
+		private final Map<Dataset, Object> datasets;
+		private final Map<String, Strain<T>> strains;
+		private final Map<String, Gene<T>> genes;
+		private final Map<Strain<T>, List<Gene<T>>> genesByStrain;
+		private final Map<String, DrugClass<T>> drugClasses;
+		private final Collection<DrugClass<T>> distinctDrugClasses;
+		private final Map<String, Drug<T>> drugs;
+		private final Collection<Drug<T>> sortedDrugs;
+		private final Map<DrugClass<T>, MutationSet<T>> drugResistMutations;
+		private final Map<DrugClass<T>, MutationSet<T>> surveilDrugResistMuts;
+		private final Map<DrugClass<T>, MutationSet<T>> rxSelectedMutations;
+		private final MutationSet<T> apobecMutations;
+		private final MutationSet<T> apobecDRMs;
+		private final Map<String, MutationType<T>> mutationTypes;
+		private final List<MutationTypePair<T>> mutationTypePairs;
+		private final Map<Strain<T>, List<String>> mainSubtypes;
+		private final Map<String, Genotype<T>> genotypes;
+		private final List<GenotypeReference<T>> genotypeReferences;
+		private final Genotyper<T> genotyper;
+		private final List<DrugResistanceAlgorithm<T>> drugResistAlgs;
+		private final Map<String, DrugResistanceAlgorithm<T>> drugResistAlgLookup;
+		private final ConditionalComments<T> condComments;
+		private final AlignmentConfig<T> alignmentConfig;
+		private final Map<Strain<T>, SequenceReadsAssembler<T>> sequenceReadsAssemblers;
+		private final Map<Strain<T>, SequenceAssembler<T>> sequenceAssemblers;
+		private final boolean complete;
+
+		/**
+		 * Returns the state of a loader which hasn't loaded anything yet
+		 */
+		private State(String mainStrain) {
+			this(mainStrain, Collections.emptyMap(), null);
+		}
+
+		/**
+		 * Takes the given datasets; derived lookups of datasets which didn't
+		 * change since the previous state are taken over from it
+		 */
+		private State(String mainStrain, Map<Dataset, Object> datasets, State<T> previous) {
+			this.mainStrain = mainStrain;
+			this.datasets = datasets;
+			strains = get(Dataset.STRAINS);
+			genes = get(Dataset.GENES);
+			if (previous != null && previous.genes == genes) {
+				genesByStrain = previous.genesByStrain;
+			}
+			else {
+				genesByStrain = genes == null ? null : Collections.unmodifiableMap(
+					genes.values()
+					.stream()
+					.distinct()
+					.collect(Collectors.groupingBy(Gene::getStrain, LinkedHashMap::new, Collectors.toList()))
+				);
+			}
+			drugClasses = get(Dataset.DRUG_CLASSES);
+			if (previous != null && previous.drugClasses == drugClasses) {
+				distinctDrugClasses = previous.distinctDrugClasses;
+			}
+			else {
+				distinctDrugClasses = drugClasses == null ? null : Collections.unmodifiableSet(
+					new LinkedHashSet<>(drugClasses.values())
+				);
+			}
+			drugs = get(Dataset.DRUGS);
+			if (previous != null && previous.drugs == drugs) {
+				sortedDrugs = previous.sortedDrugs;
+			}
+			else {
+				sortedDrugs = drugs == null ? null : Collections.unmodifiableSet(Sets.newTreeSet(drugs.values()));
+			}
+			drugResistMutations = get(Dataset.DRUG_RESIST_MUTATIONS);
+			surveilDrugResistMuts = get(Dataset.SURVEIL_DRUG_RESIST_MUTATIONS);
+			rxSelectedMutations = get(Dataset.RX_SELECTED_MUTATIONS);
+			apobecMutations = get(Dataset.APOBEC_MUTATIONS);
+			apobecDRMs = get(Dataset.APOBEC_DRMS);
+			mutationTypes = get(Dataset.MUTATION_TYPES);
+			mutationTypePairs = get(Dataset.MUTATION_TYPE_PAIRS);
+			mainSubtypes = get(Dataset.MAIN_SUBTYPES);
+			genotypes = get(Dataset.GENOTYPES);
+			genotypeReferences = get(Dataset.GENOTYPE_REFERENCES);
+			genotyper = get(Dataset.GENOTYPER);
+			drugResistAlgs = get(Dataset.DRUG_RESIST_ALGORITHMS);
+			if (previous != null && previous.drugResistAlgs == drugResistAlgs) {
+				drugResistAlgLookup = previous.drugResistAlgLookup;
+			}
+			else if (drugResistAlgs == null) {
+				drugResistAlgLookup = null;
+			}
+			else {
+				Map<String, DrugResistanceAlgorithm<T>> algMap = new LinkedHashMap<>();
+				for (DrugResistanceAlgorithm<T> alg : drugResistAlgs) {
+					algMap.put(alg.getName(), alg);
+					algMap.put(alg.getEnumCompatName(), alg);
+				}
+				drugResistAlgLookup = Collections.unmodifiableMap(algMap);
+			}
+			condComments = get(Dataset.CONDITIONAL_COMMENTS);
+			alignmentConfig = get(Dataset.ALIGNMENT_CONFIG);
+			sequenceReadsAssemblers = get(Dataset.SEQUENCE_READS_ASSEMBLERS);
+			sequenceAssemblers = get(Dataset.SEQUENCE_ASSEMBLERS);
+			complete = datasets.keySet().containsAll(STATE_DATASETS);
+		}
+
+		@SuppressWarnings("unchecked")
+		private <V> V get(Dataset dataset) {
+			return (V) datasets.get(dataset);
+		}
+
+		/**
+		 * Returns a new state which also holds the given dataset
+		 */
+		private State<T> with(Dataset dataset, Object value) {
+			if (!STATE_DATASETS.contains(dataset)) {
+				throw new IllegalArgumentException(String.format("Dataset %s is not part of a state", dataset));
+			}
+			Map<Dataset, Object> datasets = new EnumMap<>(Dataset.class);
+			datasets.putAll(this.datasets);
+			datasets.put(dataset, AssertUtils.notNull(value, "Dataset %s can't be null", dataset));
+			return new State<>(mainStrain, Collections.unmodifiableMap(datasets), this);
+		}
+
+		/**
+		 * Returns true if the given dataset is part of this state
+		 */
+		public boolean isLoaded(Dataset dataset) {
+			return datasets.containsKey(dataset);
+		}
+
+		/**
+		 * Returns the datasets which are part of this state
+		 */
+		public Set<Dataset> getLoadedDatasets() {
+			Set<Dataset> loaded = EnumSet.noneOf(Dataset.class);
+			loaded.addAll(datasets.keySet());
+			return loaded;
+		}
+
+		/**
+		 * Returns true if every dataset except percent tables is loaded
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		public Strain<T> getMainStrain() {
+			return getStrain(mainStrain);
+		}
+
+		public Collection<Strain<T>> getStrains() {
+			return strains == null ? null : strains.values();
+		}
+
+		public Strain<T> getStrain(String name) {
+			return strains == null ? null : AssertUtils.notNull(
+				strains.get(name),
+				"Strain \"%s\" not found", name
+			);
+		}
+
+		public Collection<Gene<T>> getGenes(Strain<T> strain) {
+			return genesByStrain == null ? null : genesByStrain.getOrDefault(strain, Collections.emptyList());
+		}
+
+		public Gene<T> getGene(String name) {
+			return genes == null ? null : AssertUtils.notNull(
+				genes.get(name),
+				"Gene \"%s\" not found", name
+			);
+		}
+
+		public Collection<DrugClass<T>> getDrugClasses() {
+			return distinctDrugClasses;
+		}
+
+		public Map<String, DrugClass<T>> getDrugClassSynonymMap() {
+			return drugClasses;
+		}
+
+		public DrugClass<T> getDrugClass(String name) {
+			return drugClasses == null ? null : drugClasses.get(name);
+		}
+
+		public Collection<Drug<T>> getDrugs() {
+			return sortedDrugs;
+		}
+
+		public Map<String, Drug<T>> getDrugSynonymMap() {
+			return drugs;
+		}
+
+		public Collection<DrugResistanceAlgorithm<T>> getDrugResistAlgorithms() {
+			return drugResistAlgs;
+		}
+
+		public DrugResistanceAlgorithm<T> getDrugResistAlgorithm(String name) {
+			return drugResistAlgLookup == null ? null : AssertUtils.notNull(
+				drugResistAlgLookup.get(name),
+				"Unable to locate algorithm %s", name
+			);
+		}
+
+		public DrugResistanceAlgorithm<T> getDrugResistAlgorithm(String family, String version) {
+			return getDrugResistAlgorithm(String.format("%s_%s", family, version));
+		}
+
+		public Map<DrugClass<T>, MutationSet<T>> getDrugResistMutations() {
+			return drugResistMutations;
+		}
+
+		public Map<DrugClass<T>, MutationSet<T>> getSurveilDrugResistMutations() {
+			return surveilDrugResistMuts;
+		}
+
+		public Map<DrugClass<T>, MutationSet<T>> getRxSelectedMutations() {
+			return rxSelectedMutations;
+		}
+
+		public MutationSet<T> getApobecMutations() {
+			return apobecMutations;
+		}
+
+		public MutationSet<T> getApobecDRMs() {
+			return apobecDRMs;
+		}
+
+		public Collection<MutationType<T>> getMutationTypes() {
+			return mutationTypes == null ? null : mutationTypes.values();
+		}
+
+		public MutationType<T> getMutationType(String mutTypeText) {
+			return mutationTypes == null ? null : mutationTypes.get(mutTypeText);
+		}
+
+		public Collection<MutationTypePair<T>> getMutationTypePairs() {
+			return mutationTypePairs;
+		}
+
+		public ConditionalComments<T> getConditionalComments() {
+			return condComments;
+		}
+
+		public List<String> getMainSubtypes(Strain<T> strain) {
+			return mainSubtypes == null ? null : mainSubtypes.get(strain);
+		}
+
+		public Collection<Genotype<T>> getGenotypes() {
+			return genotypes == null ? null : genotypes.values();
+		}
+
+		public Genotype<T> getGenotype(String name) {
+			return genotypes == null ? null : genotypes.get(name);
+		}
+
+		public Genotype<T> getGenotypeUnknown() {
+			return getGenotype("U");
+		}
+
+		public List<GenotypeReference<T>> getGenotypeReferences() {
+			return genotypeReferences;
+		}
+
+		public Genotyper<T> getGenotyper() {
+			return genotyper;
+		}
+
+		public AlignmentConfig<T> getAlignmentConfig() {
+			return alignmentConfig;
+		}
+
+		public Map<Strain<T>, SequenceReadsAssembler<T>> getSequenceReadsAssemblers() {
+			return sequenceReadsAssemblers;
+		}
+
+		public Map<Strain<T>, SequenceAssembler<T>> getSequenceAssemblers() {
+			return sequenceAssemblers;
+		}
+
+	}
+
 }
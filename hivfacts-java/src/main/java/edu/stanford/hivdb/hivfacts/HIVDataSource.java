@@ -0,0 +1,318 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Where {@link HIVDataLoader} reads its resources from.
+ *
+ * By default resources come from the classpath (the "data/" folder packed
+ * into the hivfacts jar). Alternatively an on-disk directory with the same
+ * layout as "data/" can be used, either by passing {@link #directory(Path)}
+ * to the loader or by setting the system property "hivfacts.dataDir".
+ *
+ * Percent tables are read from their compiled form (see {@link
+ * PercentTableCodec}) when available. The hivfacts jar ships compiled
+ * tables; they are read fully onto the heap, like any other classpath
+ * resource. In a data directory, compiled tables are memory-mapped and
+ * their rows are read from the mapping on each lookup, so the values live
+ * in the OS page cache instead of on the Java heap. A data directory
+ * without compiled tables (or with ones older than their JSON/CSV source)
+ * gets them written next to the source the first time a table is loaded,
+ * provided the directory is writable; otherwise the source is parsed onto
+ * the heap as before. {@link PercentTableCompiler} can also be run with
+ * the directory as both arguments.
+ *
+ * Any resource may be stored gzip-compressed, either under its own name or
+ * as "&lt;resPath&gt;.gz"; it is decompressed transparently while being read.
+ *
+ * A snapshot written by {@link HIVDataLoader#saveSnapshot(Path)} can be
+ * layered over either source with {@link #snapshot(Path, HIVDataSource)} or
+ * by setting the system property "hivfacts.snapshotFile".
+ */
+public abstract class HIVDataSource {
+
+	public static final String DATA_DIR_PROPERTY = "hivfacts.dataDir";
+	public static final String SNAPSHOT_FILE_PROPERTY = "hivfacts.snapshotFile";
+	public static final String GZIP_EXT = ".gz";
+
+	private static final int GZIP_BUFFER_SIZE = 65536;
+
+	private static final HIVDataSource CLASSPATH = new ClasspathDataSource();
+
+	public static HIVDataSource classpath() {
+		return CLASSPATH;
+	}
+
+	public static HIVDataSource directory(Path dataDir) {
+		return new DirectoryDataSource(dataDir);
+	}
+
+	/**
+	 * Returns the snapshot of the given data source stored in file
+	 *
+	 * @param file
+	 * @param origin
+	 * @return the snapshot, or origin itself if the file doesn't exist or
+	 * 	doesn't match the hivfacts version or origin
+	 */
+	public static HIVDataSource snapshot(Path file, HIVDataSource origin) {
+		try {
+			HIVDataSource snapshot = SnapshotDataSource.open(file, origin);
+			return snapshot == null ? origin : snapshot;
+		} catch (IOException e) {
+			return origin;
+		}
+	}
+
+	/**
+	 * Returns the data directory specified by system property
+	 * "hivfacts.dataDir", or the classpath if the property is not set
+	 *
+	 * If system property "hivfacts.snapshotFile" is set, the snapshot stored
+	 * in that file is layered over the returned source.
+	 */
+	public static HIVDataSource getDefault() {
+		String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+		HIVDataSource source = (
+			dataDir == null || dataDir.isEmpty() ? CLASSPATH : directory(Paths.get(dataDir))
+		);
+		String snapshotFile = System.getProperty(SNAPSHOT_FILE_PROPERTY);
+		if (snapshotFile == null || snapshotFile.isEmpty()) {
+			return source;
+		}
+		return snapshot(Paths.get(snapshotFile), source);
+	}
+
+	private static boolean isGzip(int byte1, int byte2) {
+		return byte1 == (GZIPInputStream.GZIP_MAGIC & 0xff) &&
+			byte2 == (GZIPInputStream.GZIP_MAGIC >> 8);
+	}
+
+	private static InputStream decompressIfGzip(InputStream stream) throws IOException {
+		InputStream buffered = new BufferedInputStream(stream);
+		buffered.mark(2);
+		int byte1 = buffered.read();
+		int byte2 = buffered.read();
+		buffered.reset();
+		if (isGzip(byte1, byte2)) {
+			return new BufferedInputStream(new GZIPInputStream(buffered, GZIP_BUFFER_SIZE));
+		}
+		return buffered;
+	}
+
+	private static ByteBuffer toByteBuffer(InputStream stream) throws IOException {
+		try (InputStream input = stream) {
+			return ByteBuffer.wrap(IOUtils.toByteArray(input)).asReadOnlyBuffer();
+		}
+	}
+
+	protected abstract boolean rawExists(String resPath);
+
+	/**
+	 * Whether datasets compiled into {@link StaticDatasets} may stand in for
+	 * resources of this source
+	 */
+	boolean hasStaticDatasets() {
+		return false;
+	}
+
+	protected abstract InputStream openRaw(String resPath) throws IOException;
+
+	protected abstract ByteBuffer mapRaw(String resPath) throws IOException;
+
+	public boolean exists(String resPath) {
+		return rawExists(resPath) || rawExists(resPath + GZIP_EXT);
+	}
+
+	/**
+	 * Returns when a raw resource was last modified, in milliseconds since
+	 * the epoch, or -1 if unknown
+	 */
+	protected long rawLastModified(String resPath) {
+		return -1;
+	}
+
+	/**
+	 * Returns when the given resource was last modified, in milliseconds
+	 * since the epoch
+	 *
+	 * @param resPath
+	 * @return the time, or -1 if the resource doesn't exist or this source
+	 * 	doesn't track modifications (e.g. the classpath, whose resources are
+	 * 	released together)
+	 */
+	long lastModified(String resPath) {
+		return Math.max(rawLastModified(resPath), rawLastModified(resPath + GZIP_EXT));
+	}
+
+	/**
+	 * Returns the file the given resource may be written to
+	 *
+	 * @param resPath
+	 * @return a Path object, or null if this source is read-only
+	 */
+	Path getWritableFile(String resPath) {
+		return null;
+	}
+
+	/**
+	 * Opens the given resource
+	 *
+	 * Compressed resources are decompressed on the fly.
+	 *
+	 * @param resPath
+	 * @return an InputStream object, must be closed by the caller
+	 * @throws FileNotFoundException if the resource doesn't exist
+	 */
+	public InputStream open(String resPath) throws IOException {
+		if (!rawExists(resPath) && rawExists(resPath + GZIP_EXT)) {
+			resPath += GZIP_EXT;
+		}
+		return decompressIfGzip(openRaw(resPath));
+	}
+
+	/**
+	 * Returns the whole content of the given resource as a read-only buffer
+	 *
+	 * For an uncompressed resource of a data directory the buffer is a
+	 * memory-mapped view of the file. Compressed resources are inflated
+	 * onto the heap.
+	 *
+	 * @param resPath
+	 * @return a ByteBuffer object
+	 * @throws FileNotFoundException if the resource doesn't exist
+	 */
+	public ByteBuffer map(String resPath) throws IOException {
+		if (!rawExists(resPath) && rawExists(resPath + GZIP_EXT)) {
+			return toByteBuffer(open(resPath));
+		}
+		ByteBuffer buf = mapRaw(resPath);
+		if (buf.remaining() >= 2 && isGzip(buf.get(buf.position()) & 0xff, buf.get(buf.position() + 1) & 0xff)) {
+			return toByteBuffer(open(resPath));
+		}
+		return buf;
+	}
+
+	private static class ClasspathDataSource extends HIVDataSource {
+
+		private static ClassLoader getClassLoader() {
+			return HIVDataSource.class.getClassLoader();
+		}
+
+		@Override
+		protected boolean rawExists(String resPath) {
+			return getClassLoader().getResource(resPath) != null;
+		}
+
+		@Override
+		protected InputStream openRaw(String resPath) throws IOException {
+			InputStream stream = getClassLoader().getResourceAsStream(resPath);
+			if (stream == null) {
+				throw new FileNotFoundException(resPath);
+			}
+			return stream;
+		}
+
+		@Override
+		protected ByteBuffer mapRaw(String resPath) throws IOException {
+			return toByteBuffer(openRaw(resPath));
+		}
+
+		@Override
+		boolean hasStaticDatasets() {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "classpath";
+		}
+
+	}
+
+	private static class DirectoryDataSource extends HIVDataSource {
+
+		private final Path dataDir;
+
+		private DirectoryDataSource(Path dataDir) {
+			this.dataDir = dataDir.toAbsolutePath().normalize();
+		}
+
+		private Path resolve(String resPath) throws FileNotFoundException {
+			Path path = dataDir.resolve(resPath).normalize();
+			if (!path.startsWith(dataDir)) {
+				throw new FileNotFoundException(resPath);
+			}
+			return path;
+		}
+
+		@Override
+		protected boolean rawExists(String resPath) {
+			try {
+				return Files.isRegularFile(resolve(resPath));
+			} catch (FileNotFoundException e) {
+				return false;
+			}
+		}
+
+		@Override
+		protected InputStream openRaw(String resPath) throws IOException {
+			Path path = resolve(resPath);
+			if (!Files.isRegularFile(path)) {
+				throw new FileNotFoundException(path.toString());
+			}
+			return Files.newInputStream(path);
+		}
+
+		@Override
+		protected ByteBuffer mapRaw(String resPath) throws IOException {
+			Path path = resolve(resPath);
+			if (!Files.isRegularFile(path)) {
+				throw new FileNotFoundException(path.toString());
+			}
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				// the mapping stays valid after the channel is closed
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		}
+
+		@Override
+		protected long rawLastModified(String resPath) {
+			try {
+				Path path = resolve(resPath);
+				return Files.isRegularFile(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		Path getWritableFile(String resPath) {
+			try {
+				Path path = resolve(resPath);
+				return Files.isWritable(path.getParent()) ? path : null;
+			} catch (FileNotFoundException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return dataDir.toString();
+		}
+
+	}
+
+}
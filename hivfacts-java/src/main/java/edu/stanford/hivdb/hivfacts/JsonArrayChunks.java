@@ -0,0 +1,325 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a top-level JSON array of independent records at record
+ * boundaries and parses the pieces concurrently.
+ *
+ * The boundaries are found by a single byte scan which only tracks nesting
+ * depth and string literals, either over a buffer or incrementally over a
+ * stream. Each piece is presented to the parser as a
+ * complete JSON array of its own, so existing array readers can be reused
+ * unchanged; results are returned in the original order.
+ */
+final class JsonArrayChunks {
+
+	/**
+	 * Resources smaller than this are never split
+	 */
+	static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+	private static final int BLOCK_BYTES = 64 * 1024;
+
+	@FunctionalInterface
+	interface ChunkParser<R> {
+		R parse(Reader arrayReader) throws IOException;
+	}
+
+	private static final byte[] OPEN = {'['};
+	private static final byte[] CLOSE = {']'};
+
+	private JsonArrayChunks() {}
+
+	/**
+	 * Returns [start, end) byte ranges of up to numChunks runs of array
+	 * elements, excluding the separating commas
+	 */
+	static List<int[]> split(ByteBuffer buf, int numChunks) {
+		int pos = buf.position();
+		int limit = buf.limit();
+		while (pos < limit && buf.get(pos) != '[') {
+			// skips BOM and leading whitespace
+			pos ++;
+		}
+		if (pos == limit) {
+			throw new IllegalArgumentException("Not a JSON array");
+		}
+		int start = ++ pos;
+		long target = Math.max(1, (limit - start) / Math.max(1, numChunks));
+		List<int[]> ranges = new ArrayList<>();
+		int depth = 1;
+		boolean inString = false;
+		boolean escaped = false;
+		for (; pos < limit; pos ++) {
+			byte b = buf.get(pos);
+			if (inString) {
+				if (escaped) {
+					escaped = false;
+				}
+				else if (b == '\\') {
+					escaped = true;
+				}
+				else if (b == '"') {
+					inString = false;
+				}
+				continue;
+			}
+			switch (b) {
+				case '"':
+					inString = true;
+					break;
+				case '[':
+				case '{':
+					depth ++;
+					break;
+				case ']':
+				case '}':
+					depth --;
+					if (depth == 0) {
+						if (hasContent(buf, start, pos)) {
+							ranges.add(new int[] {start, pos});
+						}
+						return ranges;
+					}
+					break;
+				case ',':
+					if (depth == 1 && pos - start >= target && ranges.size() < numChunks - 1) {
+						ranges.add(new int[] {start, pos});
+						start = pos + 1;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		throw new IllegalArgumentException("Unterminated JSON array");
+	}
+
+	private static boolean hasContent(ByteBuffer buf, int start, int end) {
+		for (int pos = start; pos < end; pos ++) {
+			if (!Character.isWhitespace(buf.get(pos))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns a reader of the array elements in the given [start, end) byte
+	 * range, enclosed in brackets
+	 */
+	static Reader newArrayReader(ByteBuffer buf, int[] range) {
+		ByteBuffer slice = buf.duplicate();
+		slice.limit(range[1]).position(range[0]);
+		InputStream stream = new SequenceInputStream(Collections.enumeration(List.of(
+			new ByteBufferInputStream(ByteBuffer.wrap(OPEN)),
+			new ByteBufferInputStream(slice),
+			new ByteBufferInputStream(ByteBuffer.wrap(CLOSE))
+		)));
+		return new InputStreamReader(stream, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the array read from input with the given pool
+	 *
+	 * With a null pool the whole stream is handed to the parser, which
+	 * reads it incrementally. Otherwise the array is split as it is read,
+	 * see {@link #parseChunks}.
+	 *
+	 * @return parsed results of each chunk, in array order
+	 */
+	static <R> List<R> parse(InputStream input, ForkJoinPool pool, ChunkParser<R> parser) throws IOException {
+		if (pool == null) {
+			List<R> results = new ArrayList<>();
+			results.add(parser.parse(new InputStreamReader(input, StandardCharsets.UTF_8)));
+			return results;
+		}
+		return parseChunks(input, pool, parser);
+	}
+
+	/**
+	 * Splits the array read from input into chunks of about {@link
+	 * #MIN_CHUNK_BYTES} and parses them on the given pool, or in turn on
+	 * the calling thread if pool is null
+	 *
+	 * The stream is scanned block by block and a chunk is handed to the
+	 * parser as soon as it is complete. At most two chunks per thread of
+	 * the pool are buffered at a time, so the bytes held never exceed a few
+	 * chunks, whatever the size of the resource.
+	 *
+	 * @return parsed results of each chunk, in array order
+	 */
+	static <R> List<R> parseChunks(InputStream input, ForkJoinPool pool, ChunkParser<R> parser) throws IOException {
+		int maxPending = pool == null ? 0 : pool.getParallelism() * 2;
+		Deque<Future<R>> pending = new ArrayDeque<>();
+		List<R> results = new ArrayList<>();
+		ByteArrayOutputStream chunk = new ByteArrayOutputStream(MIN_CHUNK_BYTES);
+		byte[] block = new byte[BLOCK_BYTES];
+		boolean started = false;
+		boolean finished = false;
+		int depth = 1;
+		boolean inString = false;
+		boolean escaped = false;
+		int length;
+		while (!finished && (length = input.read(block)) >= 0) {
+			int start = 0;
+			for (int pos = 0; pos < length && !finished; pos ++) {
+				byte b = block[pos];
+				if (!started) {
+					// skips BOM and leading whitespace
+					if (b == '[') {
+						started = true;
+						start = pos + 1;
+					}
+					continue;
+				}
+				if (inString) {
+					if (escaped) {
+						escaped = false;
+					}
+					else if (b == '\\') {
+						escaped = true;
+					}
+					else if (b == '"') {
+						inString = false;
+					}
+					continue;
+				}
+				switch (b) {
+					case '"':
+						inString = true;
+						break;
+					case '[':
+					case '{':
+						depth ++;
+						break;
+					case ']':
+					case '}':
+						depth --;
+						if (depth == 0) {
+							chunk.write(block, start, pos - start);
+							start = pos;
+							finished = true;
+						}
+						break;
+					case ',':
+						if (depth == 1 && chunk.size() + pos - start >= MIN_CHUNK_BYTES) {
+							chunk.write(block, start, pos - start);
+							start = pos + 1;
+							submit(chunk.toByteArray(), pool, parser, pending, results);
+							chunk.reset();
+							while (pending.size() > maxPending) {
+								results.add(await(pending.removeFirst()));
+							}
+						}
+						break;
+					default:
+						break;
+				}
+			}
+			if (started && !finished) {
+				chunk.write(block, start, length - start);
+			}
+		}
+		if (!started) {
+			throw new IllegalArgumentException("Not a JSON array");
+		}
+		if (!finished) {
+			throw new IllegalArgumentException("Unterminated JSON array");
+		}
+		byte[] lastChunk = chunk.toByteArray();
+		if (hasContent(ByteBuffer.wrap(lastChunk), 0, lastChunk.length) || results.isEmpty() && pending.isEmpty()) {
+			submit(lastChunk, pool, parser, pending, results);
+		}
+		while (!pending.isEmpty()) {
+			results.add(await(pending.removeFirst()));
+		}
+		return results;
+	}
+
+	private static <R> void submit(
+		byte[] chunk, ForkJoinPool pool, ChunkParser<R> parser,
+		Deque<Future<R>> pending, List<R> results
+	) throws IOException {
+		int[] range = new int[] {0, chunk.length};
+		if (pool == null) {
+			try (Reader reader = newArrayReader(ByteBuffer.wrap(chunk), range)) {
+				results.add(parser.parse(reader));
+			}
+			return;
+		}
+		pending.add(pool.submit(() -> {
+			try (Reader reader = newArrayReader(ByteBuffer.wrap(chunk), range)) {
+				return parser.parse(reader);
+			}
+		}));
+	}
+
+	private static <R> R await(Future<R> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buf;
+
+		private ByteBufferInputStream(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buf.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buf.remaining());
+			buf.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buf.remaining();
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import edu.stanford.hivdb.mutations.AminoAcidPercent;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * AminoAcidPercents which loads the rows of a gene on its first lookup.
+ *
+ * Lookups of genes the table doesn't have behave as lookups in an empty
+ * table.
+ */
+final class LazyAminoAcidPercents<T extends Virus<T>> extends AminoAcidPercents<T> {
+
+	private final Map<Gene<T>, Supplier<AminoAcidPercents<T>>> geneLoaders;
+	private final Runnable onLoad;
+	private final Map<Gene<T>, AminoAcidPercents<T>> loaded = new ConcurrentHashMap<>();
+	private final AminoAcidPercents<T> empty = new AminoAcidPercents<>(Collections.emptyList());
+
+	/**
+	 * @param geneLoaders loader of each gene, in table order
+	 * @param onLoad called after the rows of a gene are loaded
+	 */
+	LazyAminoAcidPercents(Map<Gene<T>, Supplier<AminoAcidPercents<T>>> geneLoaders, Runnable onLoad) {
+		super(Collections.emptyList());
+		this.geneLoaders = geneLoaders;
+		this.onLoad = onLoad;
+	}
+
+	/**
+	 * Returns the tables of the genes loaded so far
+	 */
+	Collection<AminoAcidPercents<T>> getLoaded() {
+		return Collections.unmodifiableCollection(loaded.values());
+	}
+
+	private AminoAcidPercents<T> forGene(Gene<T> gene) {
+		Supplier<AminoAcidPercents<T>> geneLoader = geneLoaders.get(gene);
+		if (geneLoader == null) {
+			return empty;
+		}
+		AminoAcidPercents<T> geneTable = loaded.get(gene);
+		if (geneTable == null) {
+			geneTable = loaded.computeIfAbsent(gene, key -> geneLoader.get());
+			onLoad.run();
+		}
+		return geneTable;
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get() {
+		List<AminoAcidPercent<T>> results = new ArrayList<>();
+		for (Gene<T> gene : geneLoaders.keySet()) {
+			results.addAll(get(gene));
+		}
+		return results;
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get(Gene<T> gene) {
+		return forGene(gene).get(gene);
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get(GenePosition<T> genePos) {
+		return forGene(genePos.getGene()).get(genePos);
+	}
+
+	@Override
+	public AminoAcidPercent<T> get(GenePosition<T> genePos, char aa) {
+		return forGene(genePos.getGene()).get(genePos, aa);
+	}
+
+	@Override
+	public AminoAcidPercent<T> get(Gene<T> gene, int pos, char aa) {
+		return forGene(gene).get(gene, pos, aa);
+	}
+
+	@Override
+	public Double getHighestAAPercentValue(GenePosition<T> genePos, String aas) {
+		return forGene(genePos.getGene()).getHighestAAPercentValue(genePos, aas);
+	}
+
+	@Override
+	public Boolean containsUnusualAA(GenePosition<T> genePos, String aas) {
+		return forGene(genePos.getGene()).containsUnusualAA(genePos, aas);
+	}
+
+}
@@ -0,0 +1,89 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import edu.stanford.hivdb.mutations.CodonPercent;
+import edu.stanford.hivdb.mutations.CodonPercents;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * CodonPercents which loads the rows of a gene on its first lookup.
+ *
+ * Lookups of genes the table doesn't have behave as lookups in an empty
+ * table.
+ */
+final class LazyCodonPercents<T extends Virus<T>> extends CodonPercents<T> {
+
+	private final Map<Gene<T>, Supplier<CodonPercents<T>>> geneLoaders;
+	private final Runnable onLoad;
+	private final Map<Gene<T>, CodonPercents<T>> loaded = new ConcurrentHashMap<>();
+	private final CodonPercents<T> empty = new CodonPercents<>(Collections.emptyList());
+
+	/**
+	 * @param geneLoaders loader of each gene, in table order
+	 * @param onLoad called after the rows of a gene are loaded
+	 */
+	LazyCodonPercents(Map<Gene<T>, Supplier<CodonPercents<T>>> geneLoaders, Runnable onLoad) {
+		super(Collections.emptyList());
+		this.geneLoaders = geneLoaders;
+		this.onLoad = onLoad;
+	}
+
+	/**
+	 * Returns the tables of the genes loaded so far
+	 */
+	Collection<CodonPercents<T>> getLoaded() {
+		return Collections.unmodifiableCollection(loaded.values());
+	}
+
+	private CodonPercents<T> forGene(Gene<T> gene) {
+		Supplier<CodonPercents<T>> geneLoader = geneLoaders.get(gene);
+		if (geneLoader == null) {
+			return empty;
+		}
+		CodonPercents<T> geneTable = loaded.get(gene);
+		if (geneTable == null) {
+			geneTable = loaded.computeIfAbsent(gene, key -> geneLoader.get());
+			onLoad.run();
+		}
+		return geneTable;
+	}
+
+	@Override
+	public List<CodonPercent<T>> get() {
+		List<CodonPercent<T>> results = new ArrayList<>();
+		for (Gene<T> gene : geneLoaders.keySet()) {
+			results.addAll(get(gene));
+		}
+		return results;
+	}
+
+	@Override
+	public List<CodonPercent<T>> get(Gene<T> gene) {
+		return forGene(gene).get(gene);
+	}
+
+	@Override
+	public List<CodonPercent<T>> get(GenePosition<T> genePos) {
+		return forGene(genePos.getGene()).get(genePos);
+	}
+
+	@Override
+	public CodonPercent<T> get(GenePosition<T> genePos, String codon) {
+		return forGene(genePos.getGene()).get(genePos, codon);
+	}
+
+	@Override
+	public CodonPercent<T> get(Gene<T> gene, int pos, String codon) {
+		return forGene(gene).get(gene, pos, codon);
+	}
+
+}
@@ -0,0 +1,229 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * Keys accessed through a {@link HIVDataLoader}: percent tables (by
+ * strain, treatment and subtype), algorithms, genes of mutation
+ * prevalences and strains of patient counts
+ *
+ * A loader records the keys it loads while system property
+ * "hivfacts.recordProfile" is true; see {@link HIVDataLoader#saveProfile}
+ * and {@link HIVDataLoader#replayProfile}. Each key is recorded once.
+ */
+final class LoaderProfile {
+
+	private static final Gson GSON = new Gson();
+
+	/**
+	 * JSON form of a profile file
+	 */
+	private static final class Json {
+		private String version;
+		private String virus;
+		private List<String> datasets;
+		private List<List<String>> aminoAcidPercents;
+		private List<List<String>> codonPercents;
+		private List<String> algorithms;
+		private List<String> mutationPrevalenceGenes;
+		private List<String> numPatientsForAAPercents;
+	}
+
+	private final boolean recording;
+	private final Set<HIVDataLoader.Dataset> datasets = EnumSet.noneOf(HIVDataLoader.Dataset.class);
+	private final Set<List<String>> aminoAcidPercents = ConcurrentHashMap.newKeySet();
+	private final Set<List<String>> codonPercents = ConcurrentHashMap.newKeySet();
+	private final Set<String> algorithms = ConcurrentHashMap.newKeySet();
+	private final Set<String> mutationPrevalenceGenes = ConcurrentHashMap.newKeySet();
+	private final Set<String> numPatientsStrains = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param recording whether keys are recorded
+	 */
+	LoaderProfile(boolean recording) {
+		this.recording = recording;
+	}
+
+	boolean isRecording() {
+		return recording;
+	}
+
+	void recordAminoAcidPercents(String strain, String treatment, String subtype) {
+		if (recording) {
+			aminoAcidPercents.add(Arrays.asList(strain, treatment, subtype));
+		}
+	}
+
+	void recordCodonPercents(String strain, String treatment, String subtype) {
+		if (recording) {
+			codonPercents.add(Arrays.asList(strain, treatment, subtype));
+		}
+	}
+
+	void recordAlgorithms(Collection<String> names) {
+		if (recording) {
+			algorithms.addAll(names);
+		}
+	}
+
+	void recordMutationPrevalenceGene(String gene) {
+		if (recording) {
+			mutationPrevalenceGenes.add(gene);
+		}
+	}
+
+	void recordNumPatientsStrain(String strain) {
+		if (recording) {
+			numPatientsStrains.add(strain);
+		}
+	}
+
+	/**
+	 * Takes over the keys recorded by the profile of another loader, e.g.
+	 * of the loader a reload replaces
+	 */
+	void recordAll(LoaderProfile other) {
+		if (recording) {
+			aminoAcidPercents.addAll(other.aminoAcidPercents);
+			codonPercents.addAll(other.codonPercents);
+			algorithms.addAll(other.algorithms);
+			mutationPrevalenceGenes.addAll(other.mutationPrevalenceGenes);
+			numPatientsStrains.addAll(other.numPatientsStrains);
+		}
+	}
+
+	/**
+	 * Returns the datasets of a profile read by {@link #read}
+	 */
+	Set<HIVDataLoader.Dataset> getDatasets() {
+		return Collections.unmodifiableSet(datasets);
+	}
+
+	/**
+	 * Returns the strain, treatment and subtype of each aapcnt table
+	 */
+	Collection<List<String>> getAminoAcidPercents() {
+		return Collections.unmodifiableSet(aminoAcidPercents);
+	}
+
+	Collection<List<String>> getCodonPercents() {
+		return Collections.unmodifiableSet(codonPercents);
+	}
+
+	Collection<String> getAlgorithms() {
+		return Collections.unmodifiableSet(algorithms);
+	}
+
+	Collection<String> getMutationPrevalenceGenes() {
+		return Collections.unmodifiableSet(mutationPrevalenceGenes);
+	}
+
+	Collection<String> getNumPatientsStrains() {
+		return Collections.unmodifiableSet(numPatientsStrains);
+	}
+
+	/**
+	 * Writes the recorded keys and the given loaded datasets to a small
+	 * JSON file
+	 *
+	 * @param file
+	 * @param virusName
+	 * @param loadedDatasets
+	 * @throws IOException if the file can't be written
+	 */
+	void write(Path file, String virusName, Set<HIVDataLoader.Dataset> loadedDatasets) throws IOException {
+		Json json = new Json();
+		json.version = HIVDataLoader.getImplementationVersion();
+		json.virus = virusName;
+		json.datasets = (
+			loadedDatasets.stream()
+			.map(HIVDataLoader.Dataset::name)
+			.collect(Collectors.toList())
+		);
+		json.aminoAcidPercents = new ArrayList<>(aminoAcidPercents);
+		json.codonPercents = new ArrayList<>(codonPercents);
+		json.algorithms = new ArrayList<>(algorithms);
+		json.mutationPrevalenceGenes = new ArrayList<>(mutationPrevalenceGenes);
+		json.numPatientsForAAPercents = new ArrayList<>(numPatientsStrains);
+
+		file = file.toAbsolutePath();
+		Path tmp = AtomicFiles.createTemp(file);
+		try {
+			try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				writer.write(GSON.toJson(json));
+			}
+			AtomicFiles.commit(tmp, file);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static <E> List<E> orEmpty(List<E> values) {
+		return values == null ? Collections.emptyList() : values;
+	}
+
+	private static <E> void addAll(Set<E> keys, List<E> values) {
+		for (E value : orEmpty(values)) {
+			if (value != null) {
+				keys.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Reads a profile file written by {@link #write}
+	 *
+	 * Datasets unknown to this version are skipped.
+	 *
+	 * @param file
+	 * @param virusName
+	 * @return the profile, or null if the file is missing, invalid or of
+	 * 	another virus
+	 */
+	static LoaderProfile read(Path file, String virusName) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		Json json;
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			json = GSON.fromJson(reader, Json.class);
+		} catch (IOException|JsonParseException e) {
+			return null;
+		}
+		if (json == null || !virusName.equals(json.virus)) {
+			return null;
+		}
+		LoaderProfile profile = new LoaderProfile(false);
+		for (String name : orEmpty(json.datasets)) {
+			try {
+				profile.datasets.add(HIVDataLoader.Dataset.valueOf(name));
+			} catch (IllegalArgumentException e) {
+				// a dataset of another hivfacts version
+			}
+		}
+		addAll(profile.aminoAcidPercents, json.aminoAcidPercents);
+		addAll(profile.codonPercents, json.codonPercents);
+		addAll(profile.algorithms, json.algorithms);
+		addAll(profile.mutationPrevalenceGenes, json.mutationPrevalenceGenes);
+		addAll(profile.numPatientsStrains, json.numPatientsForAAPercents);
+		return profile;
+	}
+
+}
@@ -0,0 +1,204 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Reads the resources of a {@link HIVDataLoader} from its data source
+ *
+ * Every resource read is recorded, so that {@link
+ * HIVDataLoader#saveSnapshot} can save them. Resources which can't be read
+ * or parsed raise ExceptionInInitializerError, like the datasets loaded
+ * from them.
+ */
+final class LoaderResources {
+
+	private static final Gson GSON = new Gson();
+
+	private final HIVDataSource dataSource;
+	private final Set<String> readResources = ConcurrentHashMap.newKeySet();
+	private volatile ForkJoinPool parsePool = ForkJoinPool.commonPool();
+
+	LoaderResources(HIVDataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	HIVDataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * Whether datasets compiled into {@link StaticDatasets} may stand in for
+	 * resources; only true when reading the resources bundled with them
+	 */
+	boolean useStaticDatasets() {
+		return dataSource.hasStaticDatasets();
+	}
+
+	/**
+	 * Returns the resources read so far
+	 */
+	Set<String> getReadResources() {
+		return Collections.unmodifiableSet(readResources);
+	}
+
+	ForkJoinPool getParsePool() {
+		return parsePool;
+	}
+
+	void setParsePool(ForkJoinPool pool) {
+		parsePool = pool;
+	}
+
+	/**
+	 * Opens a buffered UTF-8 reader of the given resource
+	 *
+	 * The caller is responsible for closing the returned reader.
+	 */
+	Reader open(String resPath) {
+		try {
+			InputStream stream = dataSource.open(resPath);
+			readResources.add(resPath);
+			return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource name (%s)", resPath)
+			);
+		}
+	}
+
+	boolean exists(String resPath) {
+		return dataSource.exists(resPath);
+	}
+
+	ByteBuffer map(String resPath) throws IOException {
+		ByteBuffer buf = dataSource.map(resPath);
+		readResources.add(resPath);
+		return buf;
+	}
+
+	/**
+	 * Maps a resource if it exists
+	 *
+	 * @return the buffer, or null if the resource doesn't exist
+	 */
+	ByteBuffer mapIfExists(String resPath) {
+		if (!exists(resPath)) {
+			return null;
+		}
+		try {
+			return map(resPath);
+		} catch (IOException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
+	String loadText(String resPath) {
+		try (Reader reader = open(resPath)) {
+			return IOUtils.toString(reader);
+		} catch (IOException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource name (%s)", resPath)
+			);
+		}
+	}
+
+	/**
+	 * Returns the text of a small JSON resource, preferably from the
+	 * constants compiled into {@link StaticDatasets}
+	 */
+	String loadJsonText(String resPath) {
+		String text = useStaticDatasets() ? StaticDatasets.getJsonText(resPath) : null;
+		return text == null ? loadText(resPath) : text;
+	}
+
+	/**
+	 * Parses a JSON resource straight from its stream without
+	 * materializing the whole text first
+	 */
+	<R> R loadJson(String resPath, TypeToken<R> typeToken) {
+		try (Reader reader = open(resPath)) {
+			return GSON.fromJson(reader, typeToken.getType());
+		} catch (IOException|JsonParseException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
+	/**
+	 * Whether a resource derived from an aapcnt/codonpcnt table or a
+	 * mutation list, i.e. its compiled form or index, is older than the
+	 * JSON/CSV resource
+	 */
+	boolean isOutdated(String derivedPath, String resPath) {
+		long derivedTime = dataSource.lastModified(derivedPath);
+		long sourceTime = Math.max(
+			dataSource.lastModified(resPath),
+			dataSource.lastModified(PercentTableCsvReader.toCsvPath(resPath)));
+		return derivedTime >= 0 && sourceTime > derivedTime;
+	}
+
+	/**
+	 * Returns the content hash of a resource, see {@link ContentCache#hash}
+	 */
+	String hash(String resPath) {
+		try {
+			return ContentCache.hash(map(resPath));
+		} catch (IOException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
+	/**
+	 * Parses a resource which is a top-level JSON array of independent
+	 * records
+	 *
+	 * The resource is streamed. With a parse pool, or if alwaysSplit is set,
+	 * it is split at record boundaries as it is read and the chunks are
+	 * parsed concurrently on the pool (or in turn without one), so only a
+	 * few chunks are held at a time.
+	 *
+	 * @param resPath
+	 * @param alwaysSplit whether to split the array without a parse pool,
+	 * 	for parsers which need the whole text of their chunk
+	 * @param parser parses one chunk, presented as a JSON array on its own
+	 * @return parsed results of each chunk, in resource order
+	 */
+	<R> List<R> loadJsonArray(
+		String resPath, boolean alwaysSplit, JsonArrayChunks.ChunkParser<R> parser
+	) {
+		try (InputStream input = dataSource.open(resPath)) {
+			readResources.add(resPath);
+			if (alwaysSplit) {
+				return JsonArrayChunks.parseChunks(input, parsePool, parser);
+			}
+			return JsonArrayChunks.parse(input, parsePool, parser);
+		} catch (IOException|IllegalStateException|IllegalArgumentException|JsonParseException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
+}
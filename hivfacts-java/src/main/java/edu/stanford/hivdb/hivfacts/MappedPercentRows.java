@@ -0,0 +1,167 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Lookup over the rows of a {@link PercentTable} read from a memory-mapped
+ * resource.
+ *
+ * Values stay in the mapping; the only heap this lookup holds is an index
+ * of the rows of each gene position, four bytes per row. The handle of a
+ * value is its row.
+ */
+final class MappedPercentRows<T extends Virus<T>> implements PercentLookup<T> {
+
+	private final PercentTable table;
+	private final List<Gene<T>> genes;
+	private final Map<Gene<T>, Integer> geneLookup = new HashMap<>();
+	private final Map<String, Integer> symbolLookup = new HashMap<>();
+	// rows sorted by gene and position
+	private final int[] rowOrder;
+	// gene index => start of each position in rowOrder; one more entry
+	// than positions
+	private final int[][] positionStarts;
+
+	/**
+	 * @param table
+	 * @param genes bound gene of each entry of the table's gene dictionary,
+	 * 	null for genes whose rows are skipped
+	 */
+	MappedPercentRows(PercentTable table, List<Gene<T>> genes) {
+		this.table = table;
+		List<Gene<T>> boundGenes = new ArrayList<>();
+		for (int geneIdx = 0; geneIdx < genes.size(); geneIdx ++) {
+			Gene<T> gene = genes.get(geneIdx);
+			if (gene != null) {
+				boundGenes.add(gene);
+				geneLookup.put(gene, geneIdx);
+			}
+		}
+		this.genes = Collections.unmodifiableList(boundGenes);
+		String[] symbols = table.getSymbolDict();
+		for (int idx = 0; idx < symbols.length; idx ++) {
+			symbolLookup.put(symbols[idx], idx);
+		}
+
+		// counting sort of the rows by gene and position
+		int[] geneMaxPositions = OffHeapPercentLayout.computeMaxPositions(table);
+		positionStarts = new int[geneMaxPositions.length][];
+		for (int geneIdx : geneLookup.values()) {
+			positionStarts[geneIdx] = new int[geneMaxPositions[geneIdx] + 2];
+		}
+		for (int row = 0; row < table.size(); row ++) {
+			int[] starts = positionStarts[table.getGeneIndex(row)];
+			if (starts != null) {
+				starts[table.getPosition(row) + 1] ++;
+			}
+		}
+		int numRows = 0;
+		for (int[] starts : positionStarts) {
+			if (starts == null) {
+				continue;
+			}
+			starts[0] = numRows;
+			for (int pos = 1; pos < starts.length; pos ++) {
+				starts[pos] += starts[pos - 1];
+			}
+			numRows = starts[starts.length - 1];
+		}
+		rowOrder = new int[numRows];
+		int[][] nextSlots = new int[positionStarts.length][];
+		for (int geneIdx = 0; geneIdx < positionStarts.length; geneIdx ++) {
+			if (positionStarts[geneIdx] != null) {
+				nextSlots[geneIdx] = positionStarts[geneIdx].clone();
+			}
+		}
+		for (int row = 0; row < table.size(); row ++) {
+			int[] slots = nextSlots[table.getGeneIndex(row)];
+			if (slots != null) {
+				rowOrder[slots[table.getPosition(row)] ++] = row;
+			}
+		}
+	}
+
+	@Override
+	public List<Gene<T>> getGenes() {
+		return genes;
+	}
+
+	@Override
+	public int numSymbols() {
+		return table.getSymbolDict().length;
+	}
+
+	@Override
+	public String getSymbol(int symbolIdx) {
+		return table.getSymbolDict()[symbolIdx];
+	}
+
+	@Override
+	public int getSymbolIndex(String symbol) {
+		Integer idx = symbolLookup.get(symbol);
+		return idx == null ? -1 : idx;
+	}
+
+	@Override
+	public int getMaxPosition(Gene<T> gene) {
+		Integer geneIdx = geneLookup.get(gene);
+		return geneIdx == null ? 0 : positionStarts[geneIdx].length - 2;
+	}
+
+	@Override
+	public long find(Gene<T> gene, int pos, int symbolIdx) {
+		Integer geneIdx = geneLookup.get(gene);
+		if (geneIdx == null || symbolIdx < 0 || pos < 0) {
+			return -1;
+		}
+		int[] starts = positionStarts[geneIdx];
+		if (pos + 1 >= starts.length) {
+			return -1;
+		}
+		for (int slot = starts[pos]; slot < starts[pos + 1]; slot ++) {
+			int row = rowOrder[slot];
+			if (table.getSymbolIndex(row) == symbolIdx) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public double getPercent(long handle) {
+		return table.getPercent((int) handle);
+	}
+
+	@Override
+	public int getCount(long handle) {
+		return table.getCount((int) handle);
+	}
+
+	@Override
+	public int getTotal(long handle) {
+		return table.getTotal((int) handle);
+	}
+
+	@Override
+	public String getReason(long handle) {
+		return table.getReason((int) handle);
+	}
+
+	@Override
+	public boolean isUnusual(long handle) {
+		return table.isUnusual((int) handle);
+	}
+
+	@Override
+	public long getByteSize() {
+		return (long) rowOrder.length * (PercentTableCodec.ROW_BYTES + Integer.BYTES);
+	}
+
+}
@@ -0,0 +1,121 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.hivdb.hivfacts.hiv2.HIV2;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.mutations.MutationPrevalence;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Strain;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Build-time tool which precomputes the mutation prevalences of every gene
+ * position of HIV-1 and HIV-2 into a {@link MutationPrevalenceTable}
+ * resource per virus.
+ *
+ * Prevalences are computed by {@link Virus#defaultGetMutationPrevalence}
+ * from the percent tables found in dataDir, which is loaded as a data
+ * release of each virus. Each resource records the
+ * digest of the aapcnt sources of dataDir, which loaders reading it from a
+ * data directory check before using it.
+ *
+ * Usage: MutationPrevalenceCompiler &lt;dataDir&gt; &lt;outputDir&gt;
+ */
+public final class MutationPrevalenceCompiler {
+
+	private static final String RELEASE_NAME = "mutation-prevalence-compiler";
+
+	private MutationPrevalenceCompiler() {}
+
+	/**
+	 * Lists the aapcnt sources (JSON and CSV) of a data directory, sorted
+	 */
+	static List<String> listSources(Path dataDir) throws IOException {
+		List<String> sources = new ArrayList<>();
+		try (DirectoryStream<Path> dirs = Files.newDirectoryStream(dataDir, "aapcnt*")) {
+			for (Path dir : dirs) {
+				if (!Files.isDirectory(dir)) {
+					continue;
+				}
+				try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{json,csv}")) {
+					for (Path file : files) {
+						sources.add(dataDir.relativize(file).toString().replace(File.separatorChar, '/'));
+					}
+				}
+			}
+		}
+		Collections.sort(sources);
+		return sources;
+	}
+
+	/**
+	 * Compiles the tables of HIV-1 and HIV-2 from the percent tables of a
+	 * data source
+	 *
+	 * Each virus is loaded from dataSource as a data release (see
+	 * {@link DataReleases}), so that the current data of the viruses is
+	 * left as it is.
+	 *
+	 * @param dataSource
+	 * @param sources the aapcnt sources of dataSource, see {@link #listSources}
+	 * @param outputDir
+	 * @throws IOException
+	 */
+	static void compile(HIVDataSource dataSource, List<String> sources, Path outputDir) throws IOException {
+		String sourceDigest = MutationPrevalenceTable.digestSources(dataSource, sources);
+		HIV hiv = HIV.getInstance();
+		try {
+			compile(hiv.registerDataRelease(RELEASE_NAME, dataSource), sources, sourceDigest, outputDir);
+		} finally {
+			hiv.unregisterDataRelease(RELEASE_NAME);
+		}
+		HIV2 hiv2 = HIV2.getInstance();
+		try {
+			compile(hiv2.registerDataRelease(RELEASE_NAME, dataSource), sources, sourceDigest, outputDir);
+		} finally {
+			hiv2.unregisterDataRelease(RELEASE_NAME);
+		}
+	}
+
+	static <T extends Virus<T>> void compile(
+		HIVDataLoader<T> loader, List<String> sources, String sourceDigest, Path outputDir
+	) throws IOException {
+		Map<GenePosition<T>, List<MutationPrevalence<T>>> mutPrevsByGenePos = new LinkedHashMap<>();
+		for (Strain<T> strain : loader.getStrains()) {
+			for (Gene<T> gene : strain.getGenes()) {
+				for (int pos = 1; pos <= gene.getAASize(); pos ++) {
+					GenePosition<T> genePos = new GenePosition<>(gene, pos);
+					mutPrevsByGenePos.put(genePos, loader.computeMutationPrevalence(genePos));
+				}
+			}
+		}
+		Path target = outputDir.resolve(String.format(MutationPrevalenceTable.RESPATH, loader.getName()));
+		Files.createDirectories(target.getParent());
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+			MutationPrevalenceTable.write(mutPrevsByGenePos, sources, sourceDigest, out);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: MutationPrevalenceCompiler <dataDir> <outputDir>");
+			System.exit(1);
+		}
+		Path dataDir = Paths.get(args[0]).toAbsolutePath();
+		compile(HIVDataSource.directory(dataDir), listSources(dataDir), Paths.get(args[1]));
+	}
+
+}
@@ -0,0 +1,351 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.mutations.MutationPrevalence;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Mutation prevalences of all gene positions of a virus, as returned by
+ * {@link Virus#defaultGetMutationPrevalence}, precomputed at build time
+ * (see {@link MutationPrevalenceCompiler}).
+ *
+ * Layout (big-endian):
+ *
+ * 	- int magic ("HVMP"), short version, int size
+ * 	- source resources and their digest (see {@link #digestSources}), as a
+ * 	  dictionary of resource paths and a dictionary of one entry
+ * 	- gene, amino acid and subtype dictionaries, encoded like those of
+ * 	  {@link PercentTableCodec}
+ * 	- one contiguous column per field, in this order: genes (byte),
+ * 	  positions (char), amino acids (short), subtypes (short), naive
+ * 	  totals (int), naive frequencies (int), naive percentages (double),
+ * 	  treated totals (int), treated frequencies (int), treated percentages
+ * 	  (double)
+ *
+ * Rows are sorted by gene and position, so the rows of a gene position are
+ * contiguous.
+ *
+ * The table records the aapcnt resources it was computed from, so that a
+ * table which doesn't match them any more, e.g. after the tables of a data
+ * directory were updated, can be detected with {@link #matchesSources}.
+ */
+final class MutationPrevalenceTable {
+
+	static final int MAGIC = 0x48564d50;
+	static final short VERSION = 2;
+	static final String RESPATH = "mutation-prevalence_%s.mpv";
+
+	private final int size;
+	private final String[] sources;
+	private final String sourceDigest;
+	private final String[] aaDict;
+	private final String[] subtypeDict;
+	private final short[] aas;
+	private final short[] subtypes;
+	private final int[] totalNaives;
+	private final int[] frequencyNaives;
+	private final double[] percentageNaives;
+	private final int[] totalTreateds;
+	private final int[] frequencyTreateds;
+	private final double[] percentageTreateds;
+	// gene name => first row of each position; one more entry than positions
+	private final Map<String, int[]> rowStarts;
+
+	private MutationPrevalenceTable(
+		int size, String[] sources, String sourceDigest, String[] geneDict, String[] aaDict, String[] subtypeDict,
+		byte[] genes, int[] positions, short[] aas, short[] subtypes,
+		int[] totalNaives, int[] frequencyNaives, double[] percentageNaives,
+		int[] totalTreateds, int[] frequencyTreateds, double[] percentageTreateds
+	) {
+		this.size = size;
+		this.sources = sources;
+		this.sourceDigest = sourceDigest;
+		this.aaDict = aaDict;
+		this.subtypeDict = subtypeDict;
+		this.aas = aas;
+		this.subtypes = subtypes;
+		this.totalNaives = totalNaives;
+		this.frequencyNaives = frequencyNaives;
+		this.percentageNaives = percentageNaives;
+		this.totalTreateds = totalTreateds;
+		this.frequencyTreateds = frequencyTreateds;
+		this.percentageTreateds = percentageTreateds;
+		this.rowStarts = buildIndex(size, geneDict, genes, positions);
+	}
+
+	private static Map<String, int[]> buildIndex(int size, String[] geneDict, byte[] genes, int[] positions) {
+		Map<String, int[]> rowStarts = new HashMap<>();
+		int row = 0;
+		while (row < size) {
+			int gene = genes[row];
+			int geneEnd = row;
+			int maxPos = 0;
+			while (geneEnd < size && genes[geneEnd] == gene) {
+				if (positions[geneEnd] < maxPos) {
+					throw new IllegalArgumentException("Rows are not sorted by position");
+				}
+				maxPos = positions[geneEnd];
+				geneEnd ++;
+			}
+			if (rowStarts.containsKey(geneDict[gene])) {
+				throw new IllegalArgumentException("Rows are not sorted by gene");
+			}
+			int[] starts = new int[maxPos + 2];
+			for (int pos = 0, posRow = row; pos < starts.length; pos ++) {
+				while (posRow < geneEnd && positions[posRow] < pos) {
+					posRow ++;
+				}
+				starts[pos] = posRow;
+			}
+			rowStarts.put(geneDict[gene], starts);
+			row = geneEnd;
+		}
+		return rowStarts;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Digests the given resources of a data source as one; missing
+	 * resources are digested as such
+	 *
+	 * @param dataSource
+	 * @param resPaths
+	 * @return the digest
+	 * @throws IOException
+	 */
+	static String digestSources(HIVDataSource dataSource, Collection<String> resPaths) throws IOException {
+		StringBuilder digests = new StringBuilder();
+		for (String resPath : resPaths) {
+			digests.append(resPath).append('\t');
+			if (dataSource.exists(resPath)) {
+				digests.append(ContentCache.hash(dataSource.map(resPath)));
+			}
+			digests.append('\n');
+		}
+		return ContentCache.hash(digests.toString());
+	}
+
+	/**
+	 * Whether the resources this table was computed from are unchanged in
+	 * the given data source
+	 *
+	 * @param dataSource
+	 * @throws IOException
+	 */
+	boolean matchesSources(HIVDataSource dataSource) throws IOException {
+		return sourceDigest.equals(digestSources(dataSource, Arrays.asList(sources)));
+	}
+
+	/**
+	 * Whether the table has rows of the given gene
+	 *
+	 * @param geneName e.g. "HIV1RT"
+	 */
+	boolean hasGene(String geneName) {
+		return rowStarts.containsKey(geneName);
+	}
+
+	/**
+	 * Returns the mutation prevalences of a gene position
+	 *
+	 * @param genePos
+	 * @return an immutable list, or null if the table has no rows of the
+	 * 	gene
+	 */
+	<T extends Virus<T>> List<MutationPrevalence<T>> get(GenePosition<T> genePos) {
+		int[] starts = rowStarts.get(genePos.getGene().getName());
+		if (starts == null) {
+			return null;
+		}
+		int pos = genePos.getPosition();
+		if (pos < 0 || pos + 1 >= starts.length) {
+			return Collections.emptyList();
+		}
+		int firstRow = starts[pos];
+		int endRow = starts[pos + 1];
+		List<MutationPrevalence<T>> mutPrevs = new ArrayList<>(endRow - firstRow);
+		for (int row = firstRow; row < endRow; row ++) {
+			mutPrevs.add(new MutationPrevalence<>(
+				genePos, aaDict[aas[row]], subtypeDict[subtypes[row]],
+				totalNaives[row], frequencyNaives[row], percentageNaives[row],
+				totalTreateds[row], frequencyTreateds[row], percentageTreateds[row]));
+		}
+		return Collections.unmodifiableList(mutPrevs);
+	}
+
+	private static short indexOf(Map<String, Integer> dict, String value) {
+		Integer index = dict.get(value);
+		if (index == null) {
+			index = dict.size();
+			dict.put(value, index);
+		}
+		return index.shortValue();
+	}
+
+	/**
+	 * Encodes the mutation prevalences of gene positions
+	 *
+	 * @param mutPrevsByGenePos mutation prevalences of each gene position,
+	 * 	sorted by gene and position
+	 * @param sources the resources the prevalences were computed from
+	 * @param sourceDigest see {@link #digestSources}
+	 * @param output
+	 * @throws IOException
+	 */
+	static <T extends Virus<T>> void write(
+		Map<GenePosition<T>, List<MutationPrevalence<T>>> mutPrevsByGenePos,
+		List<String> sources, String sourceDigest, OutputStream output
+	) throws IOException {
+		Map<String, Integer> geneDict = new LinkedHashMap<>();
+		Map<String, Integer> aaDict = new LinkedHashMap<>();
+		Map<String, Integer> subtypeDict = new LinkedHashMap<>();
+		List<GenePosition<T>> rowGenePositions = new ArrayList<>();
+		List<MutationPrevalence<T>> rows = new ArrayList<>();
+		for (Map.Entry<GenePosition<T>, List<MutationPrevalence<T>>> entry : mutPrevsByGenePos.entrySet()) {
+			for (MutationPrevalence<T> mutPrev : entry.getValue()) {
+				rowGenePositions.add(entry.getKey());
+				rows.add(mutPrev);
+			}
+		}
+		int size = rows.size();
+		byte[] genes = new byte[size];
+		short[] aas = new short[size];
+		short[] subtypes = new short[size];
+		for (int row = 0; row < size; row ++) {
+			genes[row] = (byte) indexOf(geneDict, rowGenePositions.get(row).getGene().getName());
+			aas[row] = indexOf(aaDict, rows.get(row).getAA());
+			subtypes[row] = indexOf(subtypeDict, rows.get(row).getSubtype());
+		}
+		if (geneDict.size() > Byte.MAX_VALUE || Math.max(aaDict.size(), subtypeDict.size()) > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many distinct values");
+		}
+
+		DataOutputStream out = new DataOutputStream(output);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeInt(size);
+		PercentTableCodec.writeDict(out, sources.toArray(new String[0]));
+		PercentTableCodec.writeDict(out, new String[] {sourceDigest});
+		PercentTableCodec.writeDict(out, geneDict.keySet().toArray(new String[0]));
+		PercentTableCodec.writeDict(out, aaDict.keySet().toArray(new String[0]));
+		PercentTableCodec.writeDict(out, subtypeDict.keySet().toArray(new String[0]));
+		out.write(genes);
+		for (GenePosition<T> genePos : rowGenePositions) {
+			int pos = genePos.getPosition();
+			if (pos < 0 || pos > Character.MAX_VALUE) {
+				throw new IllegalArgumentException("Position out of range: " + pos);
+			}
+			out.writeChar(pos);
+		}
+		for (short aa : aas) {
+			out.writeShort(aa);
+		}
+		for (short subtype : subtypes) {
+			out.writeShort(subtype);
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeInt(mutPrev.getTotalNaive());
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeInt(mutPrev.getFrequencyNaive());
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeDouble(mutPrev.getPercentageNaive());
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeInt(mutPrev.getTotalTreated());
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeInt(mutPrev.getFrequencyTreated());
+		}
+		for (MutationPrevalence<T> mutPrev : rows) {
+			out.writeDouble(mutPrev.getPercentageTreated());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Decodes a table from the buffer's current position
+	 *
+	 * Columns are copied out with bulk gets; the buffer itself is not
+	 * retained.
+	 *
+	 * @param buf
+	 * @return a MutationPrevalenceTable object
+	 */
+	static MutationPrevalenceTable read(ByteBuffer buf) {
+		if (buf.getInt() != MAGIC) {
+			throw new IllegalArgumentException("Not a mutation prevalence resource");
+		}
+		short version = buf.getShort();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported mutation prevalence version: " + version);
+		}
+		int size = buf.getInt();
+		String[] sources = PercentTableCodec.readDict(buf);
+		String[] sourceDigest = PercentTableCodec.readDict(buf);
+		if (sourceDigest.length != 1) {
+			throw new IllegalArgumentException("Invalid source digest");
+		}
+		String[] geneDict = PercentTableCodec.readDict(buf);
+		String[] aaDict = PercentTableCodec.readDict(buf);
+		String[] subtypeDict = PercentTableCodec.readDict(buf);
+
+		byte[] genes = new byte[size];
+		buf.get(genes);
+		int[] positions = new int[size];
+		for (int row = 0; row < size; row ++) {
+			positions[row] = buf.getChar();
+		}
+		short[] aas = readShorts(buf, size);
+		short[] subtypes = readShorts(buf, size);
+		int[] totalNaives = readInts(buf, size);
+		int[] frequencyNaives = readInts(buf, size);
+		double[] percentageNaives = readDoubles(buf, size);
+		int[] totalTreateds = readInts(buf, size);
+		int[] frequencyTreateds = readInts(buf, size);
+		double[] percentageTreateds = readDoubles(buf, size);
+		return new MutationPrevalenceTable(
+			size, sources, sourceDigest[0], geneDict, aaDict, subtypeDict, genes, positions, aas, subtypes,
+			totalNaives, frequencyNaives, percentageNaives,
+			totalTreateds, frequencyTreateds, percentageTreateds);
+	}
+
+	private static short[] readShorts(ByteBuffer buf, int size) {
+		short[] column = new short[size];
+		buf.asShortBuffer().get(column);
+		buf.position(buf.position() + size * Short.BYTES);
+		return column;
+	}
+
+	private static int[] readInts(ByteBuffer buf, int size) {
+		int[] column = new int[size];
+		buf.asIntBuffer().get(column);
+		buf.position(buf.position() + size * Integer.BYTES);
+		return column;
+	}
+
+	private static double[] readDoubles(ByteBuffer buf, int size) {
+		double[] column = new double[size];
+		buf.asDoubleBuffer().get(column);
+		buf.position(buf.position() + size * Double.BYTES);
+		return column;
+	}
+
+}
@@ -0,0 +1,268 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutation list (DRMs, SDRMs, TSMs, APOBECs) stored as primitive columns.
+ *
+ * Used for the lists compiled into {@link StaticDatasets} and for the
+ * lists saved in a snapshot (see {@link HIVDataLoader#saveSnapshot}), so
+ * neither is parsed from JSON when it is loaded. A list is either plain or
+ * grouped by drug class, like its JSON resource.
+ *
+ * Binary layout (big-endian):
+ *
+ * 	- int magic ("HVMT"), short version, byte grouped flag
+ * 	- for a grouped list, the group dictionary as in
+ * 	  {@link PercentTableCodec} followed by the int end row (exclusive) of
+ * 	  each group
+ * 	- gene and amino acid dictionaries
+ * 	- int size, then one column per field: genes (byte), positions
+ * 	  (short), amino acids (short)
+ *
+ * The binary resource of "drms_hiv1.json" is stored as "drms_hiv1.mtab".
+ */
+final class MutationTable {
+
+	static final int MAGIC = 0x48564d54;
+	static final short VERSION = 1;
+	static final String BINARY_EXT = ".mtab";
+
+	private final String[] groups;
+	private final int[] groupEnds;
+	private final String[] geneDict;
+	private final byte[] genes;
+	private final short[] positions;
+	private final String[] aaDict;
+	private final short[] aas;
+
+	/**
+	 * @param groups drug class of each group, or null if the list is plain
+	 * @param groupEnds end row (exclusive) of each group
+	 */
+	MutationTable(
+		String[] groups, int[] groupEnds,
+		String[] geneDict, byte[] genes, short[] positions,
+		String[] aaDict, short[] aas
+	) {
+		this.groups = groups;
+		this.groupEnds = groupEnds;
+		this.geneDict = StringDictionary.canonicalize(geneDict);
+		this.genes = genes;
+		this.positions = positions;
+		this.aaDict = StringDictionary.canonicalize(aaDict);
+		this.aas = aas;
+	}
+
+	static String toBinaryPath(String resPath) {
+		if (resPath.endsWith(PercentTableCodec.SOURCE_EXT)) {
+			resPath = resPath.substring(0, resPath.length() - PercentTableCodec.SOURCE_EXT.length());
+		}
+		return resPath + BINARY_EXT;
+	}
+
+	private static int encode(Map<String, Integer> lookup, String value) {
+		return lookup.computeIfAbsent(value, key -> lookup.size());
+	}
+
+	/**
+	 * Builds the table of a plain mutation list parsed by Gson
+	 *
+	 * @param muts
+	 * @return a MutationTable object
+	 * @throws IllegalArgumentException if a mutation lacks a field
+	 */
+	static MutationTable fromList(List<Map<String, ?>> muts) {
+		return build(Collections.singletonMap("", muts), false);
+	}
+
+	/**
+	 * Builds the table of mutation lists keyed by drug class parsed by Gson
+	 *
+	 * @param muts
+	 * @return a MutationTable object
+	 * @throws IllegalArgumentException if a mutation lacks a field
+	 */
+	static MutationTable fromGroups(Map<String, List<Map<String, ?>>> muts) {
+		return build(muts, true);
+	}
+
+	private static MutationTable build(Map<String, List<Map<String, ?>>> groups, boolean grouped) {
+		Map<String, Integer> geneLookup = new LinkedHashMap<>();
+		Map<String, Integer> aaLookup = new LinkedHashMap<>();
+		List<String> groupNames = new ArrayList<>();
+		int[] groupEnds = new int[groups.size()];
+		List<Map<String, ?>> rows = new ArrayList<>();
+		for (Map.Entry<String, List<Map<String, ?>>> group : groups.entrySet()) {
+			rows.addAll(group.getValue());
+			groupEnds[groupNames.size()] = rows.size();
+			groupNames.add(group.getKey());
+		}
+		byte[] genes = new byte[rows.size()];
+		short[] positions = new short[rows.size()];
+		short[] aas = new short[rows.size()];
+		for (int row = 0; row < rows.size(); row ++) {
+			Map<String, ?> mut = rows.get(row);
+			if (!(mut.get("gene") instanceof String) ||
+				!(mut.get("position") instanceof Number) ||
+				!(mut.get("aa") instanceof String)) {
+				throw new IllegalArgumentException("Invalid mutation: " + mut);
+			}
+			genes[row] = (byte) encode(geneLookup, (String) mut.get("gene"));
+			positions[row] = ((Number) mut.get("position")).shortValue();
+			aas[row] = (short) encode(aaLookup, (String) mut.get("aa"));
+		}
+		if (geneLookup.size() > Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many genes: " + geneLookup.size());
+		}
+		return new MutationTable(
+			grouped ? groupNames.toArray(new String[0]) : null,
+			grouped ? groupEnds : null,
+			geneLookup.keySet().toArray(new String[0]), genes, positions,
+			aaLookup.keySet().toArray(new String[0]), aas);
+	}
+
+	boolean isGrouped() {
+		return groups != null;
+	}
+
+	/**
+	 * Returns rows [start, end) in the same shape Gson parses a JSON
+	 * mutation object into
+	 */
+	private List<Map<String, ?>> toMaps(int start, int end) {
+		List<Map<String, ?>> rows = new ArrayList<>(end - start);
+		for (int row = start; row < end; row ++) {
+			Map<String, Object> mut = new LinkedHashMap<>();
+			mut.put("gene", geneDict[genes[row]]);
+			mut.put("position", (double) positions[row]);
+			mut.put("aa", aaDict[aas[row]]);
+			rows.add(mut);
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns the rows of a plain list, or null if the list is grouped
+	 */
+	List<Map<String, ?>> getMutationList() {
+		return isGrouped() ? null : toMaps(0, genes.length);
+	}
+
+	/**
+	 * Returns the rows of each drug class, or null if the list is plain
+	 */
+	Map<String, List<Map<String, ?>>> getMutationListsByDrugClass() {
+		if (!isGrouped()) {
+			return null;
+		}
+		Map<String, List<Map<String, ?>>> results = new LinkedHashMap<>();
+		int start = 0;
+		for (int idx = 0; idx < groups.length; idx ++) {
+			results.put(groups[idx], toMaps(start, groupEnds[idx]));
+			start = groupEnds[idx];
+		}
+		return results;
+	}
+
+	void write(OutputStream output) throws IOException {
+		DataOutputStream out = new DataOutputStream(output);
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeBoolean(isGrouped());
+		if (isGrouped()) {
+			PercentTableCodec.writeDict(out, groups);
+			for (int groupEnd : groupEnds) {
+				out.writeInt(groupEnd);
+			}
+		}
+		PercentTableCodec.writeDict(out, geneDict);
+		PercentTableCodec.writeDict(out, aaDict);
+		out.writeInt(genes.length);
+		out.write(genes);
+		for (short pos : positions) {
+			out.writeShort(pos);
+		}
+		for (short aa : aas) {
+			out.writeShort(aa);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Decodes a table written by {@link #write}
+	 *
+	 * @param buf
+	 * @return a MutationTable object
+	 * @throws IllegalArgumentException if the buffer doesn't hold a whole
+	 * 	table of a supported version
+	 */
+	static MutationTable read(ByteBuffer buf) {
+		try {
+			return readTable(buf);
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated mutation table resource", e);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed mutation table resource", e);
+		}
+	}
+
+	private static MutationTable readTable(ByteBuffer buf) {
+		if (buf.getInt() != MAGIC) {
+			throw new IllegalArgumentException("Not a mutation table resource");
+		}
+		short version = buf.getShort();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported mutation table version: " + version);
+		}
+		boolean grouped = buf.get() != 0;
+		String[] groups = grouped ? PercentTableCodec.readDict(buf) : new String[0];
+		int[] groupEnds = new int[groups.length];
+		for (int idx = 0; idx < groups.length; idx ++) {
+			groupEnds[idx] = buf.getInt();
+		}
+		String[] geneDict = PercentTableCodec.readDict(buf);
+		String[] aaDict = PercentTableCodec.readDict(buf);
+		int size = buf.getInt();
+		if (size < 0 || (long) size * (Byte.BYTES + Short.BYTES + Short.BYTES) > buf.remaining()) {
+			throw new IllegalArgumentException("Truncated mutation table resource");
+		}
+		byte[] genes = new byte[size];
+		short[] positions = new short[size];
+		short[] aas = new short[size];
+		buf.get(genes);
+		for (int row = 0; row < size; row ++) {
+			positions[row] = buf.getShort();
+		}
+		for (int row = 0; row < size; row ++) {
+			aas[row] = buf.getShort();
+		}
+		int start = 0;
+		for (int groupEnd : groupEnds) {
+			if (groupEnd < start || groupEnd > size) {
+				throw new IllegalArgumentException("Invalid group end: " + groupEnd);
+			}
+			start = groupEnd;
+		}
+		for (int row = 0; row < size; row ++) {
+			if (genes[row] < 0 || genes[row] >= geneDict.length || aas[row] < 0 || aas[row] >= aaDict.length) {
+				throw new IllegalArgumentException("Invalid dictionary index at row " + row);
+			}
+		}
+		return new MutationTable(
+			grouped ? groups : null, grouped ? groupEnds : null,
+			geneDict, genes, positions, aaDict, aas);
+	}
+
+}
@@ -0,0 +1,204 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Strain;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Numbers of patients behind the amino acid percents of a strain, by gene,
+ * treatment/subtype key and position.
+ *
+ * Counts are stored as one int array per gene and key, in the layout of
+ * the arrays of {@link Virus#getNumPatientsForAAPercents}. Keys are
+ * indexed once, so loops over positions can look up counts by the index
+ * of a key (see {@link #getCount}) instead of hashing the key each time.
+ * Unknown counts are stored as -1.
+ *
+ * {@link #toBoxedMap()} returns the same counts in the boxed form of
+ * {@link Virus#getNumPatientsForAAPercents}, for compatibility only. The
+ * counts are boxed once, when the boxed form is first requested.
+ *
+ * The table is built from {@link Virus#defaultGetNumPatientsForAAPercents},
+ * which defines how counts are derived from the amino acid percents; its
+ * boxed result is dropped once converted.
+ */
+public final class NumPatientsTable<T extends Virus<T>> {
+
+	public static final int UNKNOWN = -1;
+
+	private final Strain<T> strain;
+	private final List<String> keys;
+	private final Map<String, Integer> keyIndexes;
+	private final Map<Gene<T>, int[][]> counts;
+	private volatile Map<Gene<T>, Map<String, Integer[]>> boxedMap;
+
+	private NumPatientsTable(
+		Strain<T> strain, List<String> keys,
+		Map<String, Integer> keyIndexes, Map<Gene<T>, int[][]> counts
+	) {
+		this.strain = strain;
+		this.keys = keys;
+		this.keyIndexes = keyIndexes;
+		this.counts = counts;
+	}
+
+	/**
+	 * Builds the table from the boxed form
+	 *
+	 * @param strain
+	 * @param numPatients as returned by {@link
+	 * 	Virus#defaultGetNumPatientsForAAPercents}
+	 * @return a NumPatientsTable object
+	 */
+	static <T extends Virus<T>> NumPatientsTable<T> fromBoxedMap(
+		Strain<T> strain, Map<Gene<T>, Map<String, Integer[]>> numPatients
+	) {
+		TreeSet<String> sortedKeys = new TreeSet<>();
+		for (Map<String, Integer[]> geneNumPatients : numPatients.values()) {
+			sortedKeys.addAll(geneNumPatients.keySet());
+		}
+		List<String> keys = Collections.unmodifiableList(new ArrayList<>(sortedKeys));
+		Map<String, Integer> keyIndexes = new HashMap<>();
+		for (String key : keys) {
+			keyIndexes.put(key, keyIndexes.size());
+		}
+		Map<Gene<T>, int[][]> counts = new LinkedHashMap<>();
+		for (Map.Entry<Gene<T>, Map<String, Integer[]>> entry : numPatients.entrySet()) {
+			int[][] geneCounts = new int[keys.size()][];
+			for (Map.Entry<String, Integer[]> keyEntry : entry.getValue().entrySet()) {
+				Integer[] boxed = keyEntry.getValue();
+				if (boxed == null) {
+					continue;
+				}
+				int[] keyCounts = new int[boxed.length];
+				for (int i = 0; i < boxed.length; i ++) {
+					keyCounts[i] = boxed[i] == null ? UNKNOWN : boxed[i];
+				}
+				geneCounts[keyIndexes.get(keyEntry.getKey())] = keyCounts;
+			}
+			counts.put(entry.getKey(), geneCounts);
+		}
+		return new NumPatientsTable<>(strain, keys, Collections.unmodifiableMap(keyIndexes), counts);
+	}
+
+	public Strain<T> getStrain() {
+		return strain;
+	}
+
+	/**
+	 * Returns the treatment/subtype keys, sorted; a key's index is its
+	 * position in this list
+	 */
+	public List<String> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * Returns the index of a treatment/subtype key, or -1 if the table has
+	 * no such key
+	 */
+	public int indexOfKey(String key) {
+		Integer index = keyIndexes.get(key);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the count of a gene, key and position, without copying the
+	 * counts; use this in loops over positions
+	 *
+	 * @param gene
+	 * @param keyIndex see {@link #indexOfKey(String)}
+	 * @param position
+	 * @return the count, or {@link #UNKNOWN} if the table has no count of
+	 * 	the gene, key and position
+	 */
+	public int getCount(Gene<T> gene, int keyIndex, int position) {
+		int[] keyCounts = getSharedCounts(gene, keyIndex);
+		if (keyCounts == null || position < 1 || position > keyCounts.length) {
+			return UNKNOWN;
+		}
+		return keyCounts[position - 1];
+	}
+
+	/**
+	 * Returns the counts of a gene and key by position
+	 *
+	 * @param gene
+	 * @param keyIndex see {@link #indexOfKey(String)}
+	 * @return a copy of the counts, or null if the table has no counts of
+	 * 	the gene and key
+	 */
+	public int[] getCounts(Gene<T> gene, int keyIndex) {
+		int[] keyCounts = getSharedCounts(gene, keyIndex);
+		return keyCounts == null ? null : keyCounts.clone();
+	}
+
+	/**
+	 * Returns the counts of a gene and key by position
+	 *
+	 * @param gene
+	 * @param key e.g. the key of treatment-naive patients of subtype B
+	 * @return a copy of the counts, or null if the table has no counts of
+	 * 	the gene and key
+	 */
+	public int[] getCounts(Gene<T> gene, String key) {
+		int keyIndex = indexOfKey(key);
+		return keyIndex < 0 ? null : getCounts(gene, keyIndex);
+	}
+
+	private int[] getSharedCounts(Gene<T> gene, int keyIndex) {
+		int[][] geneCounts = counts.get(gene);
+		return geneCounts == null ? null : geneCounts[keyIndex];
+	}
+
+	/**
+	 * Returns the counts in the form of {@link
+	 * Virus#getNumPatientsForAAPercents}
+	 *
+	 * The map is built on first use and shared by all callers.
+	 */
+	public Map<Gene<T>, Map<String, Integer[]>> toBoxedMap() {
+		Map<Gene<T>, Map<String, Integer[]>> result = boxedMap;
+		if (result == null) {
+			synchronized (this) {
+				result = boxedMap;
+				if (result == null) {
+					result = boxedMap = box();
+				}
+			}
+		}
+		return result;
+	}
+
+	private Map<Gene<T>, Map<String, Integer[]>> box() {
+		Map<Gene<T>, Map<String, Integer[]>> result = new LinkedHashMap<>();
+		for (Map.Entry<Gene<T>, int[][]> entry : counts.entrySet()) {
+			int[][] geneCounts = entry.getValue();
+			Map<String, Integer[]> geneResult = new LinkedHashMap<>();
+			for (int keyIndex = 0; keyIndex < geneCounts.length; keyIndex ++) {
+				if (geneCounts[keyIndex] != null) {
+					geneResult.put(keys.get(keyIndex), box(geneCounts[keyIndex]));
+				}
+			}
+			result.put(entry.getKey(), Collections.unmodifiableMap(geneResult));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	private static Integer[] box(int[] keyCounts) {
+		Integer[] boxed = new Integer[keyCounts.length];
+		for (int i = 0; i < keyCounts.length; i ++) {
+			boxed[i] = keyCounts[i] == UNKNOWN ? null : keyCounts[i];
+		}
+		return boxed;
+	}
+
+}
@@ -0,0 +1,126 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stanford.hivdb.mutations.AminoAcidPercent;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * AminoAcidPercents whose values live outside the Java heap, in a {@link
+ * PercentTableArena}, a shared cache file (see {@link
+ * SharedPercentTableCache}) or the memory-mapped compiled resource (see
+ * {@link MappedPercentRows}).
+ *
+ * AminoAcidPercent objects are only created for the rows a lookup returns.
+ */
+final class OffHeapAminoAcidPercents<T extends Virus<T>> extends AminoAcidPercents<T> {
+
+	private final PercentLookup<T> lookup;
+
+	OffHeapAminoAcidPercents(PercentTable table, List<Gene<T>> genes, PercentTableArena arena) {
+		this(OffHeapPercentLayout.allocate(table, genes, arena));
+	}
+
+	OffHeapAminoAcidPercents(PercentLookup<T> lookup) {
+		super(Collections.emptyList());
+		this.lookup = lookup;
+	}
+
+	/**
+	 * Returns the bytes backing the values, see {@link PercentLookup#getByteSize}
+	 */
+	long getByteSize() {
+		return lookup.getByteSize();
+	}
+
+	private AminoAcidPercent<T> newAminoAcidPercent(Gene<T> gene, int pos, int symbolIdx, long handle) {
+		return new AminoAcidPercent<>(
+			gene, pos, lookup.getSymbol(symbolIdx).charAt(0),
+			lookup.getPercent(handle),
+			lookup.getCount(handle),
+			lookup.getTotal(handle),
+			lookup.getReason(handle),
+			lookup.isUnusual(handle)
+		);
+	}
+
+	private void collect(Gene<T> gene, int pos, List<AminoAcidPercent<T>> results) {
+		for (int symbolIdx = 0; symbolIdx < lookup.numSymbols(); symbolIdx ++) {
+			long handle = lookup.find(gene, pos, symbolIdx);
+			if (handle >= 0) {
+				results.add(newAminoAcidPercent(gene, pos, symbolIdx, handle));
+			}
+		}
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get() {
+		List<AminoAcidPercent<T>> results = new ArrayList<>();
+		for (Gene<T> gene : lookup.getGenes()) {
+			results.addAll(get(gene));
+		}
+		return results;
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get(Gene<T> gene) {
+		List<AminoAcidPercent<T>> results = new ArrayList<>();
+		int maxPos = lookup.getMaxPosition(gene);
+		for (int pos = 1; pos <= maxPos; pos ++) {
+			collect(gene, pos, results);
+		}
+		return results;
+	}
+
+	@Override
+	public List<AminoAcidPercent<T>> get(GenePosition<T> genePos) {
+		List<AminoAcidPercent<T>> results = new ArrayList<>();
+		collect(genePos.getGene(), genePos.getPosition(), results);
+		return results;
+	}
+
+	@Override
+	public AminoAcidPercent<T> get(GenePosition<T> genePos, char aa) {
+		return get(genePos.getGene(), genePos.getPosition(), aa);
+	}
+
+	@Override
+	public AminoAcidPercent<T> get(Gene<T> gene, int pos, char aa) {
+		int symbolIdx = lookup.getSymbolIndex(String.valueOf(aa));
+		long handle = lookup.find(gene, pos, symbolIdx);
+		return handle < 0 ? null : newAminoAcidPercent(gene, pos, symbolIdx, handle);
+	}
+
+	@Override
+	public Double getHighestAAPercentValue(GenePosition<T> genePos, String aas) {
+		Gene<T> gene = genePos.getGene();
+		int pos = genePos.getPosition();
+		double highest = 0.;
+		for (char aa : aas.toCharArray()) {
+			long handle = lookup.find(gene, pos, lookup.getSymbolIndex(String.valueOf(aa)));
+			if (handle >= 0) {
+				highest = Math.max(highest, lookup.getPercent(handle));
+			}
+		}
+		return highest;
+	}
+
+	@Override
+	public Boolean containsUnusualAA(GenePosition<T> genePos, String aas) {
+		Gene<T> gene = genePos.getGene();
+		int pos = genePos.getPosition();
+		for (char aa : aas.toCharArray()) {
+			long handle = lookup.find(gene, pos, lookup.getSymbolIndex(String.valueOf(aa)));
+			if (handle >= 0 && lookup.isUnusual(handle)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
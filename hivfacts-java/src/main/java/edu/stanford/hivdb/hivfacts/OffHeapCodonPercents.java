@@ -0,0 +1,97 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stanford.hivdb.mutations.CodonPercent;
+import edu.stanford.hivdb.mutations.CodonPercents;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * CodonPercents whose values live outside the Java heap, in a {@link
+ * PercentTableArena}, a shared cache file (see {@link
+ * SharedPercentTableCache}) or the memory-mapped compiled resource (see
+ * {@link MappedPercentRows}).
+ *
+ * CodonPercent objects are only created for the rows a lookup returns.
+ */
+final class OffHeapCodonPercents<T extends Virus<T>> extends CodonPercents<T> {
+
+	private final PercentLookup<T> lookup;
+
+	OffHeapCodonPercents(PercentTable table, List<Gene<T>> genes, PercentTableArena arena) {
+		this(OffHeapPercentLayout.allocate(table, genes, arena));
+	}
+
+	OffHeapCodonPercents(PercentLookup<T> lookup) {
+		super(Collections.emptyList());
+		this.lookup = lookup;
+	}
+
+	/**
+	 * Returns the bytes backing the values, see {@link PercentLookup#getByteSize}
+	 */
+	long getByteSize() {
+		return lookup.getByteSize();
+	}
+
+	private CodonPercent<T> newCodonPercent(Gene<T> gene, int pos, int symbolIdx, long handle) {
+		return new CodonPercent<>(
+			gene, pos, lookup.getSymbol(symbolIdx),
+			lookup.getPercent(handle),
+			lookup.getCount(handle),
+			lookup.getTotal(handle)
+		);
+	}
+
+	private void collect(Gene<T> gene, int pos, List<CodonPercent<T>> results) {
+		for (int symbolIdx = 0; symbolIdx < lookup.numSymbols(); symbolIdx ++) {
+			long handle = lookup.find(gene, pos, symbolIdx);
+			if (handle >= 0) {
+				results.add(newCodonPercent(gene, pos, symbolIdx, handle));
+			}
+		}
+	}
+
+	@Override
+	public List<CodonPercent<T>> get() {
+		List<CodonPercent<T>> results = new ArrayList<>();
+		for (Gene<T> gene : lookup.getGenes()) {
+			results.addAll(get(gene));
+		}
+		return results;
+	}
+
+	@Override
+	public List<CodonPercent<T>> get(Gene<T> gene) {
+		List<CodonPercent<T>> results = new ArrayList<>();
+		int maxPos = lookup.getMaxPosition(gene);
+		for (int pos = 1; pos <= maxPos; pos ++) {
+			collect(gene, pos, results);
+		}
+		return results;
+	}
+
+	@Override
+	public List<CodonPercent<T>> get(GenePosition<T> genePos) {
+		List<CodonPercent<T>> results = new ArrayList<>();
+		collect(genePos.getGene(), genePos.getPosition(), results);
+		return results;
+	}
+
+	@Override
+	public CodonPercent<T> get(GenePosition<T> genePos, String codon) {
+		return get(genePos.getGene(), genePos.getPosition(), codon);
+	}
+
+	@Override
+	public CodonPercent<T> get(Gene<T> gene, int pos, String codon) {
+		int symbolIdx = lookup.getSymbolIndex(codon);
+		long handle = lookup.find(gene, pos, symbolIdx);
+		return handle < 0 ? null : newCodonPercent(gene, pos, symbolIdx, handle);
+	}
+
+}
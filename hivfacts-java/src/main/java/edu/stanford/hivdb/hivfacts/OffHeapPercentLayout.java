@@ -0,0 +1,226 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Fixed-stride off-heap layout of a {@link PercentTable} bound to a strain.
+ *
+ * Every (gene, position, symbol) owns one 24-byte slot at index
+ * <code>(geneBase[gene] + position - 1) * numSymbols + symbol</code>, so a
+ * lookup is plain arithmetic followed by a few reads from the segment:
+ *
+ * 	- double percent at 0
+ * 	- int count at 8
+ * 	- int total at 12
+ * 	- byte flags at 16 (present, unusual)
+ * 	- byte reason index at 17
+ */
+final class OffHeapPercentLayout<T extends Virus<T>> implements PercentLookup<T> {
+
+	static final long SLOT_SIZE = 24;
+	private static final long PERCENT_OFFSET = 0;
+	private static final long COUNT_OFFSET = 8;
+	private static final long TOTAL_OFFSET = 12;
+	private static final long FLAGS_OFFSET = 16;
+	private static final long REASON_OFFSET = 17;
+	private static final byte FLAG_PRESENT = 1;
+	private static final byte FLAG_UNUSUAL = 2;
+
+	private final List<Gene<T>> genes;
+	private final Map<Gene<T>, Integer> geneLookup = new HashMap<>();
+	private final int[] geneBases;
+	private final int[] geneMaxPositions;
+	private final String[] symbols;
+	private final Map<String, Integer> symbolLookup = new HashMap<>();
+	private final String[] reasons;
+	private final MemorySegment segment;
+
+	/**
+	 * Stores the table in a new segment of the given arena
+	 */
+	static <T extends Virus<T>> OffHeapPercentLayout<T> allocate(
+		PercentTable table, List<Gene<T>> genes, PercentTableArena arena
+	) {
+		int[] geneMaxPositions = computeMaxPositions(table);
+		String[] symbols = table.getSymbolDict();
+		MemorySegment segment = arena.allocate(Math.max(1, computeByteSize(geneMaxPositions, symbols.length)));
+		writeSlots(table, geneMaxPositions, segment);
+		return new OffHeapPercentLayout<>(genes, geneMaxPositions, symbols, table.getReasonDict(), segment);
+	}
+
+	/**
+	 * Binds a segment whose slots were already written by {@link #writeSlots}
+	 *
+	 * Genes bound to null are skipped, like in {@link MappedPercentRows}.
+	 */
+	OffHeapPercentLayout(
+		List<Gene<T>> genes, int[] geneMaxPositions,
+		String[] symbols, String[] reasons, MemorySegment segment
+	) {
+		List<Gene<T>> boundGenes = new ArrayList<>();
+		for (int idx = 0; idx < genes.size(); idx ++) {
+			if (genes.get(idx) != null) {
+				boundGenes.add(genes.get(idx));
+				geneLookup.put(genes.get(idx), idx);
+			}
+		}
+		this.genes = Collections.unmodifiableList(boundGenes);
+		this.geneMaxPositions = geneMaxPositions;
+		this.symbols = symbols;
+		this.reasons = reasons;
+		this.segment = segment;
+		for (int idx = 0; idx < symbols.length; idx ++) {
+			symbolLookup.put(symbols[idx], idx);
+		}
+		geneBases = computeBases(geneMaxPositions);
+	}
+
+	/**
+	 * Returns the highest position of each gene of the table's gene
+	 * dictionary, 0 if a gene has no row
+	 */
+	static int[] computeMaxPositions(PercentTable table) {
+		int[] geneMaxPositions = new int[table.getGeneDict().length];
+		for (int row = 0; row < table.size(); row ++) {
+			int geneIdx = table.getGeneIndex(row);
+			geneMaxPositions[geneIdx] = Math.max(geneMaxPositions[geneIdx], table.getPosition(row));
+		}
+		return geneMaxPositions;
+	}
+
+	private static int[] computeBases(int[] geneMaxPositions) {
+		int[] geneBases = new int[geneMaxPositions.length];
+		int numPositions = 0;
+		for (int geneIdx = 0; geneIdx < geneMaxPositions.length; geneIdx ++) {
+			geneBases[geneIdx] = numPositions;
+			numPositions += geneMaxPositions[geneIdx];
+		}
+		return geneBases;
+	}
+
+	/**
+	 * Returns the byte size of all slots
+	 */
+	static long computeByteSize(int[] geneMaxPositions, int numSymbols) {
+		long numPositions = 0;
+		for (int maxPos : geneMaxPositions) {
+			numPositions += maxPos;
+		}
+		return numPositions * numSymbols * SLOT_SIZE;
+	}
+
+	/**
+	 * Writes every row of the table into its slot; the segment must be
+	 * zero-filled and at least {@link #computeByteSize} large
+	 */
+	static void writeSlots(PercentTable table, int[] geneMaxPositions, MemorySegment segment) {
+		int[] geneBases = computeBases(geneMaxPositions);
+		int numSymbols = table.getSymbolDict().length;
+		for (int row = 0; row < table.size(); row ++) {
+			long offset = slotOffset(
+				geneBases, numSymbols,
+				table.getGeneIndex(row), table.getPosition(row), table.getSymbolIndex(row));
+			byte flags = FLAG_PRESENT;
+			if (table.isUnusual(row)) {
+				flags |= FLAG_UNUSUAL;
+			}
+			segment.set(ValueLayout.JAVA_DOUBLE, offset + PERCENT_OFFSET, table.getPercent(row));
+			segment.set(ValueLayout.JAVA_INT, offset + COUNT_OFFSET, table.getCount(row));
+			segment.set(ValueLayout.JAVA_INT, offset + TOTAL_OFFSET, table.getTotal(row));
+			segment.set(ValueLayout.JAVA_BYTE, offset + FLAGS_OFFSET, flags);
+			segment.set(ValueLayout.JAVA_BYTE, offset + REASON_OFFSET, (byte) table.getReasonIndex(row));
+		}
+	}
+
+	private static long slotOffset(int[] geneBases, int numSymbols, int geneIdx, int pos, int symbolIdx) {
+		return ((long) (geneBases[geneIdx] + pos - 1) * numSymbols + symbolIdx) * SLOT_SIZE;
+	}
+
+	private long slotOffset(int geneIdx, int pos, int symbolIdx) {
+		return slotOffset(geneBases, symbols.length, geneIdx, pos, symbolIdx);
+	}
+
+	@Override
+	public List<Gene<T>> getGenes() {
+		return genes;
+	}
+
+	@Override
+	public int numSymbols() {
+		return symbols.length;
+	}
+
+	@Override
+	public String getSymbol(int symbolIdx) {
+		return symbols[symbolIdx];
+	}
+
+	@Override
+	public int getSymbolIndex(String symbol) {
+		Integer idx = symbolLookup.get(symbol);
+		return idx == null ? -1 : idx;
+	}
+
+	@Override
+	public int getMaxPosition(Gene<T> gene) {
+		Integer geneIdx = geneLookup.get(gene);
+		return geneIdx == null ? 0 : geneMaxPositions[geneIdx];
+	}
+
+	/**
+	 * Returns the byte offset of a slot, or -1 if the table has no value for
+	 * the given gene, position and symbol
+	 */
+	@Override
+	public long find(Gene<T> gene, int pos, int symbolIdx) {
+		Integer geneIdx = geneLookup.get(gene);
+		if (geneIdx == null || symbolIdx < 0 || pos < 1 || pos > geneMaxPositions[geneIdx]) {
+			return -1;
+		}
+		long offset = slotOffset(geneIdx, pos, symbolIdx);
+		if ((segment.get(ValueLayout.JAVA_BYTE, offset + FLAGS_OFFSET) & FLAG_PRESENT) == 0) {
+			return -1;
+		}
+		return offset;
+	}
+
+	@Override
+	public double getPercent(long offset) {
+		return segment.get(ValueLayout.JAVA_DOUBLE, offset + PERCENT_OFFSET);
+	}
+
+	@Override
+	public int getCount(long offset) {
+		return segment.get(ValueLayout.JAVA_INT, offset + COUNT_OFFSET);
+	}
+
+	@Override
+	public int getTotal(long offset) {
+		return segment.get(ValueLayout.JAVA_INT, offset + TOTAL_OFFSET);
+	}
+
+	@Override
+	public String getReason(long offset) {
+		return reasons[segment.get(ValueLayout.JAVA_BYTE, offset + REASON_OFFSET)];
+	}
+
+	@Override
+	public boolean isUnusual(long offset) {
+		return (segment.get(ValueLayout.JAVA_BYTE, offset + FLAGS_OFFSET) & FLAG_UNUSUAL) != 0;
+	}
+
+	@Override
+	public long getByteSize() {
+		return segment.byteSize();
+	}
+
+}
@@ -0,0 +1,57 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.List;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Values of a percent table bound to a strain, looked up by gene, position
+ * and symbol without a Java object per row.
+ *
+ * {@link #find} returns a handle of the value, which is then passed to the
+ * getters.
+ */
+interface PercentLookup<T extends Virus<T>> {
+
+	/**
+	 * Returns the genes which have values, in table order
+	 */
+	List<Gene<T>> getGenes();
+
+	int numSymbols();
+
+	String getSymbol(int symbolIdx);
+
+	/**
+	 * Returns the index of a symbol, or -1 if the table has no such symbol
+	 */
+	int getSymbolIndex(String symbol);
+
+	/**
+	 * Returns the highest position of a gene, or 0 if the gene has no value
+	 */
+	int getMaxPosition(Gene<T> gene);
+
+	/**
+	 * Returns the handle of a value, or -1 if the table has no value for
+	 * the given gene, position and symbol
+	 */
+	long find(Gene<T> gene, int pos, int symbolIdx);
+
+	double getPercent(long handle);
+
+	int getCount(long handle);
+
+	int getTotal(long handle);
+
+	String getReason(long handle);
+
+	boolean isUnusual(long handle);
+
+	/**
+	 * Returns the bytes taken by the values and the lookup's indexes
+	 */
+	long getByteSize();
+
+}
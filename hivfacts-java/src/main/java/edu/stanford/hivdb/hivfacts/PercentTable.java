@@ -0,0 +1,311 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Virus-agnostic, column-oriented form of an aapcnt/codonpcnt table.
+ *
+ * Gene names, amino acid/codon symbols and reasons are dictionary-encoded;
+ * every other column is a primitive array, or is read from the buffer of
+ * the compiled resource (see {@link PercentTableCodec#read}). A table is
+ * decoded once from its resource and then bound to a strain by {@link
+ * HIVDataLoader}, which only needs to resolve each distinct gene name once.
+ */
+abstract class PercentTable {
+
+	enum Kind { AMINO_ACID, CODON }
+
+	private final Kind kind;
+	private final int size;
+	private final String[] geneDict;
+	private final String[] symbolDict;
+	private final String[] reasonDict;
+
+	PercentTable(Kind kind, int size, String[] geneDict, String[] symbolDict, String[] reasonDict) {
+		this.kind = kind;
+		this.size = size;
+		this.geneDict = geneDict;
+		this.symbolDict = symbolDict;
+		this.reasonDict = reasonDict;
+	}
+
+	Kind getKind() {
+		return kind;
+	}
+
+	int size() {
+		return size;
+	}
+
+	String[] getGeneDict() {
+		return geneDict;
+	}
+
+	String[] getSymbolDict() {
+		return symbolDict;
+	}
+
+	String[] getReasonDict() {
+		return reasonDict;
+	}
+
+	/**
+	 * Whether the rows are read from a direct (e.g. memory-mapped) buffer
+	 * instead of from the Java heap
+	 */
+	boolean isDirect() {
+		return false;
+	}
+
+	abstract int getGeneIndex(int row);
+
+	String getGene(int row) {
+		return geneDict[getGeneIndex(row)];
+	}
+
+	abstract int getPosition(int row);
+
+	abstract int getSymbolIndex(int row);
+
+	/**
+	 * Returns the amino acid (for {@link Kind#AMINO_ACID}) or the codon
+	 * (for {@link Kind#CODON}) of the given row.
+	 */
+	String getSymbol(int row) {
+		return symbolDict[getSymbolIndex(row)];
+	}
+
+	abstract double getPercent(int row);
+
+	abstract int getCount(int row);
+
+	abstract int getTotal(int row);
+
+	abstract int getReasonIndex(int row);
+
+	String getReason(int row) {
+		return reasonDict[getReasonIndex(row)];
+	}
+
+	abstract boolean isUnusual(int row);
+
+	/**
+	 * Concatenates tables of the same kind, e.g. tables parsed from
+	 * consecutive chunks of one resource, re-encoding their dictionaries
+	 */
+	static PercentTable concat(Kind kind, List<PercentTable> tables) {
+		if (tables.size() == 1) {
+			return tables.get(0);
+		}
+		Builder builder = new Builder(kind);
+		for (PercentTable table : tables) {
+			for (int row = 0; row < table.size(); row ++) {
+				builder.add(
+					table.getGene(row), table.getPosition(row), table.getSymbol(row),
+					table.getPercent(row), table.getCount(row), table.getTotal(row),
+					table.getReason(row), table.isUnusual(row));
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Returns the rows of the given genes only
+	 *
+	 * @param genes
+	 * @return this table if it has no rows of other genes
+	 */
+	PercentTable retainGenes(Set<String> genes) {
+		boolean[] retained = new boolean[geneDict.length];
+		boolean retainsAll = true;
+		for (int idx = 0; idx < geneDict.length; idx ++) {
+			retained[idx] = genes.contains(geneDict[idx]);
+			retainsAll &= retained[idx];
+		}
+		if (retainsAll) {
+			return this;
+		}
+		Builder builder = new Builder(kind);
+		for (int row = 0; row < size; row ++) {
+			if (retained[getGeneIndex(row)]) {
+				builder.add(
+					getGene(row), getPosition(row), getSymbol(row),
+					getPercent(row), getCount(row), getTotal(row),
+					getReason(row), isUnusual(row));
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Table whose columns are primitive arrays on the heap
+	 */
+	private static final class HeapTable extends PercentTable {
+
+		private final byte[] genes;
+		private final int[] positions;
+		private final short[] symbols;
+		private final double[] percents;
+		private final int[] counts;
+		private final int[] totals;
+		private final byte[] reasons;
+		private final boolean[] unusuals;
+
+		private HeapTable(
+			Kind kind, int size,
+			String[] geneDict, String[] symbolDict, String[] reasonDict,
+			byte[] genes, int[] positions, short[] symbols, double[] percents,
+			int[] counts, int[] totals, byte[] reasons, boolean[] unusuals
+		) {
+			super(kind, size, geneDict, symbolDict, reasonDict);
+			this.genes = genes;
+			this.positions = positions;
+			this.symbols = symbols;
+			this.percents = percents;
+			this.counts = counts;
+			this.totals = totals;
+			this.reasons = reasons;
+			this.unusuals = unusuals;
+		}
+
+		@Override
+		int getGeneIndex(int row) {
+			return genes[row];
+		}
+
+		@Override
+		int getPosition(int row) {
+			return positions[row];
+		}
+
+		@Override
+		int getSymbolIndex(int row) {
+			return symbols[row];
+		}
+
+		@Override
+		double getPercent(int row) {
+			return percents[row];
+		}
+
+		@Override
+		int getCount(int row) {
+			return counts[row];
+		}
+
+		@Override
+		int getTotal(int row) {
+			return totals[row];
+		}
+
+		@Override
+		int getReasonIndex(int row) {
+			return reasons[row];
+		}
+
+		@Override
+		boolean isUnusual(int row) {
+			return unusuals[row];
+		}
+
+	}
+
+	static final class Builder {
+
+		private static final int INITIAL_CAPACITY = 1024;
+
+		private final Kind kind;
+		private final Map<String, Integer> geneLookup = new HashMap<>();
+		private final Map<String, Integer> symbolLookup = new HashMap<>();
+		private final Map<String, Integer> reasonLookup = new HashMap<>();
+		private int size = 0;
+		private byte[] genes = new byte[INITIAL_CAPACITY];
+		private int[] positions = new int[INITIAL_CAPACITY];
+		private short[] symbols = new short[INITIAL_CAPACITY];
+		private double[] percents = new double[INITIAL_CAPACITY];
+		private int[] counts = new int[INITIAL_CAPACITY];
+		private int[] totals = new int[INITIAL_CAPACITY];
+		private byte[] reasons = new byte[INITIAL_CAPACITY];
+		private boolean[] unusuals = new boolean[INITIAL_CAPACITY];
+
+		Builder(Kind kind) {
+			this.kind = kind;
+			// index 0 is reserved for "no reason" (codon tables and blank cells)
+			reasonLookup.put("", 0);
+		}
+
+		private static int encode(Map<String, Integer> lookup, String value, int limit, String column) {
+			Integer idx = lookup.get(value);
+			if (idx == null) {
+				idx = lookup.size();
+				if (idx >= limit) {
+					throw new IllegalArgumentException(String.format(
+						"Too many distinct values in column \"%s\" (limit %d)", column, limit));
+				}
+				lookup.put(value, idx);
+			}
+			return idx;
+		}
+
+		private static String[] toDict(Map<String, Integer> lookup) {
+			String[] dict = new String[lookup.size()];
+			for (Map.Entry<String, Integer> entry : lookup.entrySet()) {
+				dict[entry.getValue()] = entry.getKey();
+			}
+			return StringDictionary.canonicalize(dict);
+		}
+
+		private void ensureCapacity() {
+			if (size < positions.length) {
+				return;
+			}
+			int capacity = positions.length << 1;
+			genes = Arrays.copyOf(genes, capacity);
+			positions = Arrays.copyOf(positions, capacity);
+			symbols = Arrays.copyOf(symbols, capacity);
+			percents = Arrays.copyOf(percents, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			totals = Arrays.copyOf(totals, capacity);
+			reasons = Arrays.copyOf(reasons, capacity);
+			unusuals = Arrays.copyOf(unusuals, capacity);
+		}
+
+		Builder add(
+			String gene, int position, String symbol, double percent,
+			int count, int total, String reason, boolean isUnusual
+		) {
+			ensureCapacity();
+			genes[size] = (byte) encode(geneLookup, gene, Byte.MAX_VALUE, "gene");
+			positions[size] = position;
+			symbols[size] = (short) encode(symbolLookup, symbol, Short.MAX_VALUE, "symbol");
+			percents[size] = percent;
+			counts[size] = count;
+			totals[size] = total;
+			reasons[size] = (byte) encode(reasonLookup, reason == null ? "" : reason, Byte.MAX_VALUE, "reason");
+			unusuals[size] = isUnusual;
+			size ++;
+			return this;
+		}
+
+		PercentTable build() {
+			return new HeapTable(
+				kind, size,
+				toDict(geneLookup), toDict(symbolLookup), toDict(reasonLookup),
+				Arrays.copyOf(genes, size),
+				Arrays.copyOf(positions, size),
+				Arrays.copyOf(symbols, size),
+				Arrays.copyOf(percents, size),
+				Arrays.copyOf(counts, size),
+				Arrays.copyOf(totals, size),
+				Arrays.copyOf(reasons, size),
+				Arrays.copyOf(unusuals, size)
+			);
+		}
+
+	}
+
+}
@@ -0,0 +1,141 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Source of the off-heap memory backing percent tables.
+ *
+ * Once {@link HIVDataLoader#setPercentTableArena} is called, every
+ * AminoAcidPercents/CodonPercents the loader creates is stored off-heap
+ * instead of as Java objects, so preloading more treatment/subtype
+ * combinations no longer grows the GC-managed heap.
+ *
+ * Each table gets a shared {@link Arena} of its own, which is closed once
+ * the table is unreachable, i.e. once it is evicted from the loader's cache
+ * and no caller holds it any more. {@link #close} closes the arenas of all
+ * tables still alive and frees their memory at once. No table stored in the
+ * arena may be accessed after it is closed: loaders using the arena drop
+ * their tables and load new ones onto the heap, while a table a caller
+ * still holds throws IllegalStateException on its next lookup. Close the
+ * arena only once no reader uses its tables any more.
+ */
+public final class PercentTableArena implements AutoCloseable {
+
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	// arenas of the tables not freed yet, guarded by this
+	private final Set<Arena> tableArenas = new HashSet<>();
+	private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+	private long byteSize;
+	private volatile boolean alive = true;
+
+	public static PercentTableArena open() {
+		return new PercentTableArena();
+	}
+
+	private PercentTableArena() {}
+
+	/**
+	 * Allocates the segment of one table
+	 *
+	 * @param size
+	 * @return a zero-filled segment, freed once it is unreachable or the
+	 * 	arena is closed
+	 * @throws IllegalStateException if the arena is closed
+	 */
+	MemorySegment allocate(long size) {
+		Arena tableArena = Arena.ofShared();
+		synchronized (this) {
+			if (!alive) {
+				tableArena.close();
+				throw new IllegalStateException("Percent table arena is closed");
+			}
+			tableArenas.add(tableArena);
+			byteSize += size;
+		}
+		MemorySegment segment;
+		try {
+			segment = tableArena.allocate(size, Long.BYTES);
+		} catch (RuntimeException|Error e) {
+			free(tableArena, size);
+			throw e;
+		}
+		// the action must not reach the segment, or it is never unreachable
+		CLEANER.register(segment, () -> free(tableArena, size));
+		return segment;
+	}
+
+	private void free(Arena tableArena, long size) {
+		synchronized (this) {
+			if (!tableArenas.remove(tableArena)) {
+				// already freed by close()
+				return;
+			}
+			byteSize -= size;
+		}
+		tableArena.close();
+	}
+
+	/**
+	 * Calls the given listener once this arena is closed
+	 *
+	 * Listeners are called after the memory is freed, by the thread which
+	 * closes the arena. A listener added to a closed arena is called at
+	 * once.
+	 *
+	 * @param listener
+	 */
+	void addCloseListener(Runnable listener) {
+		closeListeners.add(listener);
+		if (!alive && closeListeners.remove(listener)) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Returns the bytes of the tables allocated by this arena which are not
+	 * freed yet
+	 */
+	public synchronized long getByteSize() {
+		return byteSize;
+	}
+
+	public boolean isAlive() {
+		return alive;
+	}
+
+	/**
+	 * Frees the memory of every table stored in this arena
+	 *
+	 * Closing an arena twice has no effect.
+	 */
+	@Override
+	public void close() {
+		List<Arena> closing;
+		synchronized (this) {
+			if (!alive) {
+				return;
+			}
+			alive = false;
+			closing = new ArrayList<>(tableArenas);
+			tableArenas.clear();
+			byteSize = 0;
+		}
+		for (Arena tableArena : closing) {
+			tableArena.close();
+		}
+		List<Runnable> listeners = new ArrayList<>(closeListeners);
+		closeListeners.clear();
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+	}
+
+}
@@ -0,0 +1,310 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary columnar encoding of {@link PercentTable}.
+ *
+ * Layout (big-endian):
+ *
+ * 	- int magic ("HVPT"), short version, byte kind, int size
+ * 	- gene, symbol and reason dictionaries: short count followed by
+ * 	  length-prefixed UTF-8 strings
+ * 	- one contiguous column per field, in this order: genes (byte),
+ * 	  positions (char), symbols (short), percents (double), counts (int),
+ * 	  totals (int), reasons (byte), unusuals (byte)
+ *
+ * The binary resource of "aapcnt/rx-all_subtype-A.json" is stored as
+ * "aapcnt/rx-all_subtype-A.pcnt".
+ */
+final class PercentTableCodec {
+
+	static final int MAGIC = 0x48565054;
+	static final short VERSION = 1;
+	static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+	static final String SOURCE_EXT = ".json";
+	static final String BINARY_EXT = ".pcnt";
+	// bytes of all columns of one row
+	static final int ROW_BYTES = (
+		Byte.BYTES + Character.BYTES + Short.BYTES + Double.BYTES +
+		Integer.BYTES + Integer.BYTES + Byte.BYTES + Byte.BYTES);
+
+	private PercentTableCodec() {}
+
+	static String toBinaryPath(String resPath) {
+		if (resPath.endsWith(SOURCE_EXT)) {
+			resPath = resPath.substring(0, resPath.length() - SOURCE_EXT.length());
+		}
+		return resPath + BINARY_EXT;
+	}
+
+	static void writeDict(DataOutputStream out, String[] dict) throws IOException {
+		if (dict.length > MAX_UNSIGNED_SHORT) {
+			throw new IllegalArgumentException("Too many dictionary values: " + dict.length);
+		}
+		out.writeShort(dict.length);
+		for (String value : dict) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > MAX_UNSIGNED_SHORT) {
+				throw new IllegalArgumentException("Dictionary value too long: " + bytes.length);
+			}
+			out.writeShort(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a dictionary written by {@link #writeDict}; counts and lengths
+	 * are unsigned shorts
+	 *
+	 * @throws IllegalArgumentException if a value runs past the buffer
+	 */
+	static String[] readDict(ByteBuffer buf) {
+		String[] dict = new String[Short.toUnsignedInt(buf.getShort())];
+		for (int i = 0; i < dict.length; i ++) {
+			int length = Short.toUnsignedInt(buf.getShort());
+			if (length > buf.remaining()) {
+				throw new IllegalArgumentException("Truncated percent table resource");
+			}
+			byte[] bytes = new byte[length];
+			buf.get(bytes);
+			dict[i] = StringDictionary.canonicalize(new String(bytes, StandardCharsets.UTF_8));
+		}
+		return dict;
+	}
+
+	static void write(PercentTable table, OutputStream output) throws IOException {
+		DataOutputStream out = new DataOutputStream(output);
+		int size = table.size();
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeByte(table.getKind().ordinal());
+		out.writeInt(size);
+		writeDict(out, table.getGeneDict());
+		writeDict(out, table.getSymbolDict());
+		writeDict(out, table.getReasonDict());
+		for (int row = 0; row < size; row ++) {
+			out.writeByte(table.getGeneIndex(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			int pos = table.getPosition(row);
+			if (pos < 0 || pos > Character.MAX_VALUE) {
+				throw new IllegalArgumentException("Position out of range: " + pos);
+			}
+			out.writeChar(pos);
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeShort(table.getSymbolIndex(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeDouble(table.getPercent(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeInt(table.getCount(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeInt(table.getTotal(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeByte(table.getReasonIndex(row));
+		}
+		for (int row = 0; row < size; row ++) {
+			out.writeByte(table.isUnusual(row) ? 1 : 0);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Decodes a table from the buffer's current position
+	 *
+	 * See {@link #read(ByteBuffer, int, int)}.
+	 *
+	 * @param buf
+	 * @return a PercentTable object
+	 */
+	static PercentTable read(ByteBuffer buf) {
+		return read(buf, 0, -1);
+	}
+
+	/**
+	 * Decodes rows [firstRow, endRow) of a table from the buffer's current
+	 * position; an endRow of -1 stands for the end of the table
+	 *
+	 * Only the header and the dictionaries are decoded. The returned table
+	 * keeps a view of the buffer and reads the column values of a row when
+	 * it is accessed, so a memory-mapped resource is never copied onto the
+	 * heap. The dictionaries are decoded in full, so they may contain genes
+	 * without any row.
+	 *
+	 * @param buf
+	 * @param firstRow
+	 * @param endRow
+	 * @return a PercentTable object
+	 * @throws IllegalArgumentException if the buffer doesn't hold a whole
+	 * 	table of a supported version; every other failure of decoding
+	 * 	malformed input is converted to it
+	 */
+	static PercentTable read(ByteBuffer buf, int firstRow, int endRow) {
+		try {
+			return readHeader(buf, firstRow, endRow);
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated percent table resource", e);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Malformed percent table resource", e);
+		}
+	}
+
+	private static PercentTable readHeader(ByteBuffer buf, int firstRow, int endRow) {
+		if (buf.getInt() != MAGIC) {
+			throw new IllegalArgumentException("Not a percent table resource");
+		}
+		short version = buf.getShort();
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported percent table version: " + version);
+		}
+		int kindIdx = buf.get();
+		if (kindIdx < 0 || kindIdx >= PercentTable.Kind.values().length) {
+			throw new IllegalArgumentException("Unknown percent table kind: " + kindIdx);
+		}
+		PercentTable.Kind kind = PercentTable.Kind.values()[kindIdx];
+		int size = buf.getInt();
+		String[] geneDict = readDict(buf);
+		String[] symbolDict = readDict(buf);
+		String[] reasonDict = readDict(buf);
+		if (size < 0 || (long) size * ROW_BYTES > buf.remaining()) {
+			throw new IllegalArgumentException("Truncated percent table resource");
+		}
+		if (endRow < 0) {
+			endRow = size;
+		}
+		if (firstRow < 0 || firstRow > endRow || endRow > size) {
+			throw new IllegalArgumentException(String.format(
+				"Row range [%d, %d) out of table size %d", firstRow, endRow, size));
+		}
+		BufferTable table = new BufferTable(
+			kind, endRow - firstRow, geneDict, symbolDict, reasonDict,
+			buf.duplicate(), buf.position(), size, firstRow);
+		table.validate();
+		buf.position(buf.position() + size * ROW_BYTES);
+		return table;
+	}
+
+	/**
+	 * Table whose column values are read from the encoded buffer
+	 *
+	 * Reads are absolute, so a table may be shared by concurrent readers.
+	 */
+	private static final class BufferTable extends PercentTable {
+
+		private final ByteBuffer buf;
+		private final int geneStart;
+		private final int positionStart;
+		private final int symbolStart;
+		private final int percentStart;
+		private final int countStart;
+		private final int totalStart;
+		private final int reasonStart;
+		private final int unusualStart;
+
+		/**
+		 * @param buf big-endian view of the encoded table
+		 * @param columnStart offset of the first column in buf
+		 * @param tableSize number of rows of the encoded table
+		 * @param firstRow first row of the encoded table which is row 0 of
+		 * 	this table
+		 */
+		private BufferTable(
+			Kind kind, int size,
+			String[] geneDict, String[] symbolDict, String[] reasonDict,
+			ByteBuffer buf, int columnStart, int tableSize, int firstRow
+		) {
+			super(kind, size, geneDict, symbolDict, reasonDict);
+			this.buf = buf;
+			geneStart = columnStart + firstRow * Byte.BYTES;
+			columnStart += tableSize * Byte.BYTES;
+			positionStart = columnStart + firstRow * Character.BYTES;
+			columnStart += tableSize * Character.BYTES;
+			symbolStart = columnStart + firstRow * Short.BYTES;
+			columnStart += tableSize * Short.BYTES;
+			percentStart = columnStart + firstRow * Double.BYTES;
+			columnStart += tableSize * Double.BYTES;
+			countStart = columnStart + firstRow * Integer.BYTES;
+			columnStart += tableSize * Integer.BYTES;
+			totalStart = columnStart + firstRow * Integer.BYTES;
+			columnStart += tableSize * Integer.BYTES;
+			reasonStart = columnStart + firstRow * Byte.BYTES;
+			columnStart += tableSize * Byte.BYTES;
+			unusualStart = columnStart + firstRow * Byte.BYTES;
+		}
+
+		/**
+		 * Checks that every dictionary index of the rows is in range, so
+		 * accessors never fail on a corrupted resource
+		 */
+		private void validate() {
+			for (int row = 0; row < size(); row ++) {
+				if (
+					getGeneIndex(row) < 0 || getGeneIndex(row) >= getGeneDict().length ||
+					getSymbolIndex(row) < 0 || getSymbolIndex(row) >= getSymbolDict().length ||
+					getReasonIndex(row) < 0 || getReasonIndex(row) >= getReasonDict().length
+				) {
+					throw new IllegalArgumentException("Invalid dictionary index at row " + row);
+				}
+			}
+		}
+
+		@Override
+		boolean isDirect() {
+			return buf.isDirect();
+		}
+
+		@Override
+		int getGeneIndex(int row) {
+			return buf.get(geneStart + row);
+		}
+
+		@Override
+		int getPosition(int row) {
+			return buf.getChar(positionStart + row * Character.BYTES);
+		}
+
+		@Override
+		int getSymbolIndex(int row) {
+			return buf.getShort(symbolStart + row * Short.BYTES);
+		}
+
+		@Override
+		double getPercent(int row) {
+			return buf.getDouble(percentStart + row * Double.BYTES);
+		}
+
+		@Override
+		int getCount(int row) {
+			return buf.getInt(countStart + row * Integer.BYTES);
+		}
+
+		@Override
+		int getTotal(int row) {
+			return buf.getInt(totalStart + row * Integer.BYTES);
+		}
+
+		@Override
+		int getReasonIndex(int row) {
+			return buf.get(reasonStart + row);
+		}
+
+		@Override
+		boolean isUnusual(int row) {
+			return buf.get(unusualStart + row) != 0;
+		}
+
+	}
+
+}
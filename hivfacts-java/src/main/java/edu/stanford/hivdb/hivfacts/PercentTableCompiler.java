@@ -0,0 +1,151 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time tool which compiles every aapcnt and codonpcnt JSON table
+ * into its binary columnar form (see {@link PercentTableCodec}) along with
+ * its per-gene index (see {@link PercentTableIndex}). aapcnt tables only
+ * available as CSV are compiled from the CSV.
+ *
+ * Usage: PercentTableCompiler &lt;dataDir&gt; &lt;outputDir&gt;
+ */
+public final class PercentTableCompiler {
+
+	private PercentTableCompiler() {}
+
+	static PercentTable.Kind kindOf(Path relPath) {
+		String dirName = relPath.getName(0).toString();
+		if (dirName.startsWith("aapcnt")) {
+			return PercentTable.Kind.AMINO_ACID;
+		}
+		else if (dirName.startsWith("codonpcnt")) {
+			return PercentTable.Kind.CODON;
+		}
+		return null;
+	}
+
+	private static boolean isSource(Path dataDir, Path path) {
+		Path relPath = dataDir.relativize(path);
+		if (relPath.getNameCount() != 2) {
+			return false;
+		}
+		PercentTable.Kind kind = kindOf(relPath);
+		String fileName = path.getFileName().toString();
+		if (fileName.endsWith(PercentTableCodec.SOURCE_EXT)) {
+			return kind != null;
+		}
+		if (fileName.endsWith(PercentTableCsvReader.CSV_EXT)) {
+			String jsonName = fileName.substring(
+				0, fileName.length() - PercentTableCsvReader.CSV_EXT.length()
+			) + PercentTableCodec.SOURCE_EXT;
+			return kind == PercentTable.Kind.AMINO_ACID && !Files.exists(path.resolveSibling(jsonName));
+		}
+		return false;
+	}
+
+	static List<Path> listSources(Path dataDir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dataDir, 2)) {
+			return paths
+				.filter(path -> isSource(dataDir, path))
+				.sorted()
+				.collect(Collectors.toList());
+		}
+	}
+
+	static void compile(Path source, Path target, Path indexTarget, PercentTable.Kind kind) throws IOException {
+		PercentTable table;
+		List<int[]> recordRanges = null;
+		if (source.toString().endsWith(PercentTableCsvReader.CSV_EXT)) {
+			try (Reader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+				table = PercentTableCsvReader.read(reader);
+			}
+		}
+		else {
+			byte[] bytes = Files.readAllBytes(source);
+			try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)) {
+				table = PercentTableJsonReader.read(reader, kind);
+			}
+			// one range per record, i.e. per row
+			recordRanges = JsonArrayChunks.split(ByteBuffer.wrap(bytes), Integer.MAX_VALUE);
+		}
+		write(table, recordRanges, target, indexTarget);
+	}
+
+	/**
+	 * Writes the compiled form and the index of a table
+	 *
+	 * Both files are replaced atomically, so loaders reading them
+	 * concurrently never see a partial file.
+	 *
+	 * @param table
+	 * @param recordRanges see {@link PercentTableIndex#build}
+	 * @param target
+	 * @param indexTarget
+	 * @throws IOException
+	 */
+	static void write(
+		PercentTable table, List<int[]> recordRanges, Path target, Path indexTarget
+	) throws IOException {
+		// the index is replaced first: until the compiled table is replaced
+		// too, the old one is older than its source and is not used
+		PercentTableIndex index = PercentTableIndex.build(table, recordRanges);
+		if (index == null) {
+			Files.deleteIfExists(indexTarget);
+		}
+		else {
+			Path indexTmp = AtomicFiles.createTemp(indexTarget);
+			try {
+				try (Writer writer = Files.newBufferedWriter(indexTmp, StandardCharsets.UTF_8)) {
+					index.write(writer);
+				}
+				AtomicFiles.commit(indexTmp, indexTarget);
+			} finally {
+				Files.deleteIfExists(indexTmp);
+			}
+		}
+		Path tmp = AtomicFiles.createTemp(target);
+		try {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+				PercentTableCodec.write(table, out);
+			}
+			AtomicFiles.commit(tmp, target);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: PercentTableCompiler <dataDir> <outputDir>");
+			System.exit(1);
+		}
+		Path dataDir = Paths.get(args[0]);
+		Path outputDir = Paths.get(args[1]);
+		for (Path source : listSources(dataDir)) {
+			Path relPath = dataDir.relativize(source);
+			String resPath = relPath.toString();
+			if (resPath.endsWith(PercentTableCsvReader.CSV_EXT)) {
+				resPath = resPath.substring(0, resPath.length() - PercentTableCsvReader.CSV_EXT.length());
+			}
+			Path target = outputDir.resolve(PercentTableCodec.toBinaryPath(resPath));
+			Path indexTarget = outputDir.resolve(PercentTableIndex.toIndexPath(resPath));
+			compile(source, target, indexTarget, kindOf(relPath));
+		}
+	}
+
+}
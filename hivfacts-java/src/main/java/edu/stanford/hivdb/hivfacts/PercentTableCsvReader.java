@@ -0,0 +1,210 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Purpose-built reader of the aapcnt CSV tables.
+ *
+ * The HIV-1 files have a fixed column order:
+ *
+ * 	gene,position,aa,percent,count,total,reason,isUnusual
+ *
+ * Other layouts (e.g. the HIV-2 files, which add "subtype" and "rx_type")
+ * are accepted as long as the header contains these columns; the column
+ * positions are resolved once from the header.
+ *
+ * Lines are scanned from a reused char buffer; integers and booleans are
+ * decoded in place and repeated gene/aa/reason cells reuse the String of
+ * the previous identical cell, so only the percent column allocates a
+ * temporary String per row. A leading UTF-8 BOM and CRLF line endings are
+ * accepted.
+ */
+final class PercentTableCsvReader {
+
+	static final String CSV_EXT = ".csv";
+
+	private static final String[] HEADER = {
+		"gene", "position", "aa", "percent", "count", "total", "reason", "isUnusual"
+	};
+	private static final char BOM = '\uFEFF';
+	private static final int BUFFER_SIZE = 65536;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferPos = 0;
+	private int bufferLimit = 0;
+	private char[] line = new char[256];
+	private int lineLength = 0;
+	private final int[] columns = new int[HEADER.length];
+	private int[] cellStarts;
+	private String[] lastValues;
+	private int lineNumber = 0;
+
+	private PercentTableCsvReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	static String toCsvPath(String resPath) {
+		if (resPath.endsWith(PercentTableCodec.SOURCE_EXT)) {
+			resPath = resPath.substring(0, resPath.length() - PercentTableCodec.SOURCE_EXT.length());
+		}
+		return resPath + CSV_EXT;
+	}
+
+	static PercentTable read(Reader reader) throws IOException {
+		return new PercentTableCsvReader(reader).readTable();
+	}
+
+	private PercentTable readTable() throws IOException {
+		if (!readLine()) {
+			throw new IllegalArgumentException("Empty CSV table");
+		}
+		int offset = lineLength > 0 && line[0] == BOM ? 1 : 0;
+		String header = new String(line, offset, lineLength - offset);
+		List<String> headerCells = Arrays.asList(header.split(",", -1));
+		for (int col = 0; col < HEADER.length; col ++) {
+			columns[col] = headerCells.indexOf(HEADER[col]);
+			if (columns[col] < 0) {
+				throw new IllegalArgumentException("Unexpected CSV header: " + header);
+			}
+		}
+		cellStarts = new int[headerCells.size() + 1];
+		lastValues = new String[headerCells.size()];
+
+		PercentTable.Builder builder = new PercentTable.Builder(PercentTable.Kind.AMINO_ACID);
+		while (readLine()) {
+			if (lineLength == 0) {
+				continue;
+			}
+			splitCells();
+			int percentCell = columns[3];
+			builder.add(
+				cellString(columns[0]),
+				cellInt(columns[1]),
+				cellString(columns[2]),
+				Double.parseDouble(new String(line, cellStarts[percentCell], cellLength(percentCell))),
+				cellInt(columns[4]),
+				cellInt(columns[5]),
+				cellString(columns[6]),
+				cellBoolean(columns[7])
+			);
+		}
+		return builder.build();
+	}
+
+	private int fill() throws IOException {
+		bufferPos = 0;
+		bufferLimit = reader.read(buffer, 0, buffer.length);
+		return bufferLimit;
+	}
+
+	/**
+	 * Reads the next line without its terminator into {@link #line}
+	 *
+	 * @return false if the end of input was reached before any character
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		boolean readAny = false;
+		while (true) {
+			if (bufferPos >= bufferLimit && fill() < 0) {
+				return readAny;
+			}
+			readAny = true;
+			char c = buffer[bufferPos ++];
+			if (c == '\n') {
+				break;
+			}
+			if (lineLength == line.length) {
+				line = Arrays.copyOf(line, line.length << 1);
+			}
+			line[lineLength ++] = c;
+		}
+		lineNumber ++;
+		if (lineLength > 0 && line[lineLength - 1] == '\r') {
+			lineLength --;
+		}
+		return true;
+	}
+
+	private void splitCells() {
+		int numCells = lastValues.length;
+		int cell = 0;
+		cellStarts[0] = 0;
+		for (int i = 0; i < lineLength; i ++) {
+			if (line[i] == ',') {
+				if (++ cell >= numCells) {
+					throw invalid("too many cells");
+				}
+				cellStarts[cell] = i + 1;
+			}
+		}
+		if (cell != numCells - 1) {
+			throw invalid("too few cells");
+		}
+		cellStarts[numCells] = lineLength + 1;
+	}
+
+	private int cellLength(int cell) {
+		return cellStarts[cell + 1] - 1 - cellStarts[cell];
+	}
+
+	private IllegalArgumentException invalid(String reason) {
+		return new IllegalArgumentException(
+			String.format("Invalid CSV row at line %d: %s", lineNumber, reason));
+	}
+
+	private String cellString(int cell) {
+		int start = cellStarts[cell];
+		int length = cellLength(cell);
+		String last = lastValues[cell];
+		if (last != null && last.length() == length) {
+			boolean same = true;
+			for (int i = 0; i < length; i ++) {
+				if (last.charAt(i) != line[start + i]) {
+					same = false;
+					break;
+				}
+			}
+			if (same) {
+				return last;
+			}
+		}
+		last = new String(line, start, length);
+		lastValues[cell] = last;
+		return last;
+	}
+
+	private int cellInt(int cell) {
+		int start = cellStarts[cell];
+		int end = start + cellLength(cell);
+		if (start == end) {
+			throw invalid("empty integer cell");
+		}
+		int value = 0;
+		for (int i = start; i < end; i ++) {
+			int digit = line[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw invalid("non-integer cell");
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private boolean cellBoolean(int cell) {
+		int start = cellStarts[cell];
+		int length = cellLength(cell);
+		if (length == 4 && (line[start] == 'T' || line[start] == 't')) {
+			return true;
+		}
+		if (length == 5 && (line[start] == 'F' || line[start] == 'f')) {
+			return false;
+		}
+		throw invalid("non-boolean cell");
+	}
+
+}
@@ -0,0 +1,158 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sidecar index of a percent table which locates the rows of each gene.
+ *
+ * For every gene the index records its row range in the compiled table
+ * (see {@link PercentTableCodec}) and, when the table was compiled from
+ * JSON, the byte range of its records in the JSON resource. This allows a
+ * single gene to be loaded without decoding the rest of the table.
+ *
+ * The index of "aapcnt/rx-all_subtype-A.json" is stored as
+ * "aapcnt/rx-all_subtype-A.pidx", one tab-separated line per gene:
+ *
+ * 	gene, first row, end row (exclusive), first byte, end byte (exclusive)
+ *
+ * Byte offsets are -1 if unknown. Tables whose rows are not grouped by
+ * gene have no index.
+ */
+final class PercentTableIndex {
+
+	static final String INDEX_EXT = ".pidx";
+
+	static final class Entry {
+
+		private final int firstRow;
+		private final int endRow;
+		private final long firstByte;
+		private final long endByte;
+
+		private Entry(int firstRow, int endRow, long firstByte, long endByte) {
+			this.firstRow = firstRow;
+			this.endRow = endRow;
+			this.firstByte = firstByte;
+			this.endByte = endByte;
+		}
+
+		int getFirstRow() {
+			return firstRow;
+		}
+
+		int getEndRow() {
+			return endRow;
+		}
+
+		long getFirstByte() {
+			return firstByte;
+		}
+
+		long getEndByte() {
+			return endByte;
+		}
+
+		boolean hasByteRange() {
+			return firstByte >= 0 && endByte >= firstByte;
+		}
+
+	}
+
+	private final Map<String, Entry> entries;
+
+	private PercentTableIndex(Map<String, Entry> entries) {
+		this.entries = Collections.unmodifiableMap(entries);
+	}
+
+	static String toIndexPath(String resPath) {
+		if (resPath.endsWith(PercentTableCodec.SOURCE_EXT)) {
+			resPath = resPath.substring(0, resPath.length() - PercentTableCodec.SOURCE_EXT.length());
+		}
+		return resPath + INDEX_EXT;
+	}
+
+	/**
+	 * Builds the index of a table
+	 *
+	 * @param table
+	 * @param recordRanges [start, end) byte range of each row in the JSON
+	 * 	resource, or null if the table wasn't read from JSON
+	 * @return the index, or null if the rows are not grouped by gene
+	 */
+	static PercentTableIndex build(PercentTable table, List<int[]> recordRanges) {
+		if (recordRanges != null && recordRanges.size() != table.size()) {
+			throw new IllegalArgumentException(String.format(
+				"Expect %d JSON records, found %d", table.size(), recordRanges.size()));
+		}
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		int firstRow = 0;
+		for (int row = 1; row <= table.size(); row ++) {
+			if (row < table.size() && table.getGeneIndex(row) == table.getGeneIndex(firstRow)) {
+				continue;
+			}
+			String gene = table.getGene(firstRow);
+			if (entries.containsKey(gene)) {
+				return null;
+			}
+			long firstByte = -1;
+			long endByte = -1;
+			if (recordRanges != null) {
+				firstByte = recordRanges.get(firstRow)[0];
+				endByte = recordRanges.get(row - 1)[1];
+			}
+			entries.put(gene, new Entry(firstRow, row, firstByte, endByte));
+			firstRow = row;
+		}
+		return new PercentTableIndex(entries);
+	}
+
+	Set<String> getGenes() {
+		return entries.keySet();
+	}
+
+	/**
+	 * Returns the entry of the given gene, or null if the table has no row
+	 * of this gene
+	 */
+	Entry get(String gene) {
+		return entries.get(gene);
+	}
+
+	void write(Writer writer) throws IOException {
+		for (Map.Entry<String, Entry> pair : entries.entrySet()) {
+			Entry entry = pair.getValue();
+			writer.write(String.format(
+				"%s\t%d\t%d\t%d\t%d\n", pair.getKey(),
+				entry.firstRow, entry.endRow, entry.firstByte, entry.endByte));
+		}
+		writer.flush();
+	}
+
+	static PercentTableIndex read(Reader reader) throws IOException {
+		Map<String, Entry> entries = new LinkedHashMap<>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] cells = line.split("\t");
+			if (cells.length != 5) {
+				throw new IllegalArgumentException("Invalid percent table index line: " + line);
+			}
+			entries.put(cells[0], new Entry(
+				Integer.parseInt(cells[1]), Integer.parseInt(cells[2]),
+				Long.parseLong(cells[3]), Long.parseLong(cells[4])));
+		}
+		return new PercentTableIndex(entries);
+	}
+
+}
@@ -0,0 +1,94 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming reader of aapcnt/codonpcnt JSON resources.
+ *
+ * Rows are pulled one by one from a {@link JsonReader} and appended to a
+ * {@link PercentTable.Builder}, so neither the raw text nor a parse tree is
+ * ever held in memory as a whole.
+ */
+final class PercentTableJsonReader {
+
+	private PercentTableJsonReader() {}
+
+	static PercentTable read(Reader reader, PercentTable.Kind kind) throws IOException {
+		PercentTable.Builder builder = new PercentTable.Builder(kind);
+		JsonReader json = new JsonReader(reader);
+		json.beginArray();
+		while (json.hasNext()) {
+			readRow(json, kind, builder);
+		}
+		json.endArray();
+		return builder.build();
+	}
+
+	static void readRow(JsonReader json, PercentTable.Kind kind, PercentTable.Builder builder) throws IOException {
+		String gene = null;
+		int position = 0;
+		String symbol = null;
+		double percent = 0.;
+		int count = 0;
+		int total = 0;
+		String reason = null;
+		boolean isUnusual = false;
+
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if (json.peek() == JsonToken.NULL) {
+				json.skipValue();
+				continue;
+			}
+			switch (name) {
+				case "gene":
+					gene = json.nextString();
+					break;
+				case "position":
+					position = json.nextInt();
+					break;
+				case "aa":
+					if (kind == PercentTable.Kind.AMINO_ACID) {
+						symbol = json.nextString();
+					}
+					else {
+						json.skipValue();
+					}
+					break;
+				case "codon":
+					if (kind == PercentTable.Kind.CODON) {
+						symbol = json.nextString();
+					}
+					else {
+						json.skipValue();
+					}
+					break;
+				case "percent":
+					percent = json.nextDouble();
+					break;
+				case "count":
+					count = json.nextInt();
+					break;
+				case "total":
+					total = json.nextInt();
+					break;
+				case "reason":
+					reason = json.nextString();
+					break;
+				case "isUnusual":
+					isUnusual = json.nextBoolean();
+					break;
+				default:
+					json.skipValue();
+			}
+		}
+		json.endObject();
+		builder.add(gene, position, symbol, percent, count, total, reason, isUnusual);
+	}
+
+}
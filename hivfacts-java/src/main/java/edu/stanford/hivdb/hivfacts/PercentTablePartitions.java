@@ -0,0 +1,87 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import edu.stanford.hivdb.viruses.Strain;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * A percent table resource bound to each strain it is requested for.
+ *
+ * The resource is parsed once; the binder of each strain reads the shared
+ * parse (see {@link HIVDataLoader#getAminoAcidPercents}), so tables of
+ * different strains differ in their genes only.
+ *
+ * Listeners are notified whenever the resource grows, i.e. a strain is
+ * bound or a bound table loads more rows, so that caches can weigh it
+ * again (see {@link WeightedTableCache#reweigh}).
+ */
+final class PercentTablePartitions<T extends Virus<T>, V> {
+
+	private final BiFunction<Strain<T>, Runnable, V> binder;
+	private final Map<Strain<T>, V> partitions = new ConcurrentHashMap<>();
+	// owner => listener, so each cache holding the resource listens once
+	private final Map<Object, Runnable> listeners = new ConcurrentHashMap<>();
+
+	/**
+	 * @param binder binds the parsed resource to a strain; tables which
+	 * 	load rows after they are bound call the given callback when they do
+	 */
+	PercentTablePartitions(BiFunction<Strain<T>, Runnable, V> binder) {
+		this.binder = binder;
+	}
+
+	/**
+	 * Calls listener whenever the resource grows, replacing the listener
+	 * previously set by owner
+	 */
+	void setListener(Object owner, Runnable listener) {
+		listeners.put(owner, listener);
+	}
+
+	private void grown() {
+		for (Runnable listener : listeners.values()) {
+			listener.run();
+		}
+	}
+
+	/**
+	 * Returns the table bound to strain, binding it first if necessary
+	 *
+	 * Binding only reads the shared parse, so it runs outside of the map;
+	 * callers racing to bind a strain all get the table installed first,
+	 * and listeners are only notified of that one.
+	 */
+	V get(Strain<T> strain) {
+		V partition = partitions.get(strain);
+		if (partition != null) {
+			return partition;
+		}
+		V bound = binder.apply(strain, this::grown);
+		partition = partitions.putIfAbsent(strain, bound);
+		if (partition != null) {
+			return partition;
+		}
+		grown();
+		return bound;
+	}
+
+	/**
+	 * Returns the table bound to strain, or null if it is not bound yet
+	 */
+	V getIfBound(Strain<T> strain) {
+		return partitions.get(strain);
+	}
+
+	/**
+	 * Returns an immutable copy of the tables bound so far
+	 */
+	Map<Strain<T>, V> getBound() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(partitions));
+	}
+
+}
@@ -0,0 +1,691 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.google.common.base.Suppliers;
+
+import edu.stanford.hivdb.mutations.AminoAcidPercent;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+import edu.stanford.hivdb.mutations.CodonPercent;
+import edu.stanford.hivdb.mutations.CodonPercents;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Strain;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Loads and caches the aapcnt/codonpcnt tables of a {@link HIVDataLoader}
+ *
+ * Tables are loaded from their compiled form if it is up to date, else
+ * parsed and compiled in place (see {@link #loadPercentTable}); tables
+ * with a per-gene index load each gene on its first lookup. Loaded tables
+ * are kept in a {@link WeightedTableCache} per kind of table, on the heap,
+ * in a {@link PercentTableArena} or in the {@link SharedPercentTableCache}.
+ */
+final class PercentTableStore<T extends Virus<T>> {
+
+	// rough heap footprint of a parsed row, including the lookup indexes of
+	// AminoAcidPercents/CodonPercents
+	private static final long AA_PCNT_ROW_BYTES = 160;
+	private static final long CODON_PCNT_ROW_BYTES = 200;
+
+	private final LoaderResources resources;
+	private final ContentSharing sharing;
+	private final Set<String> geneScope;
+	// loaded resource path => kind, see #addToSnapshot
+	private final Map<String, PercentTable.Kind> loadedTables = new ConcurrentHashMap<>();
+	private volatile WeightedTableCache<String, PercentTablePartitions<T, AminoAcidPercents<T>>> aminoAcidPcnts;
+	private volatile WeightedTableCache<String, PercentTablePartitions<T, CodonPercents<T>>> codonPcnts;
+	private volatile long cacheBytes;
+	private volatile HIVDataLoader.EvictionPolicy eviction;
+	private volatile boolean softReferences;
+	private volatile PercentTableArena arena;
+	private volatile SharedPercentTableCache sharedTableCache;
+
+	/**
+	 * Creates a store configured by the system properties of {@link
+	 * HIVDataLoader#setPercentTableCacheLimit} and {@link
+	 * HIVDataLoader#setSharedCacheDirectory}
+	 */
+	PercentTableStore(LoaderResources resources, ContentSharing sharing, Set<String> geneScope) {
+		this.resources = resources;
+		this.sharing = sharing;
+		this.geneScope = geneScope;
+		this.sharedTableCache = SharedPercentTableCache.getDefault(resources.getDataSource(), geneScope);
+		newCaches(
+			getLongProperty(HIVDataLoader.PERCENT_TABLE_CACHE_BYTES_PROPERTY, 0),
+			HIVDataLoader.EvictionPolicy.valueOf(
+				System.getProperty(
+					HIVDataLoader.PERCENT_TABLE_CACHE_POLICY_PROPERTY,
+					HIVDataLoader.EvictionPolicy.LRU.name()
+				).toUpperCase()),
+			Boolean.getBoolean(HIVDataLoader.PERCENT_TABLE_CACHE_SOFT_PROPERTY)
+		);
+	}
+
+	private static long getLongProperty(String name, long defaultValue) {
+		String value = System.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(
+				String.format("Invalid value of system property %s: %s", name, value));
+		}
+	}
+
+	private static long estimateRetainedBytes(AminoAcidPercents<?> aaPcnts) {
+		if (aaPcnts instanceof OffHeapAminoAcidPercents) {
+			return ((OffHeapAminoAcidPercents<?>) aaPcnts).getByteSize();
+		}
+		else if (aaPcnts instanceof LazyAminoAcidPercents) {
+			long bytes = 0;
+			for (AminoAcidPercents<?> geneTable : ((LazyAminoAcidPercents<?>) aaPcnts).getLoaded()) {
+				bytes += estimateRetainedBytes(geneTable);
+			}
+			return bytes;
+		}
+		return aaPcnts.get().size() * AA_PCNT_ROW_BYTES;
+	}
+
+	private static long estimateRetainedBytes(CodonPercents<?> codonPcnts) {
+		if (codonPcnts instanceof OffHeapCodonPercents) {
+			return ((OffHeapCodonPercents<?>) codonPcnts).getByteSize();
+		}
+		else if (codonPcnts instanceof LazyCodonPercents) {
+			long bytes = 0;
+			for (CodonPercents<?> geneTable : ((LazyCodonPercents<?>) codonPcnts).getLoaded()) {
+				bytes += estimateRetainedBytes(geneTable);
+			}
+			return bytes;
+		}
+		return codonPcnts.get().size() * CODON_PCNT_ROW_BYTES;
+	}
+
+	/**
+	 * Takes over the arena, shared cache directory and cache limit of
+	 * another store, e.g. of the loader a reload replaces
+	 */
+	void copySettings(PercentTableStore<T> other) {
+		SharedPercentTableCache cache = other.sharedTableCache;
+		sharedTableCache = cache == null ? null : new SharedPercentTableCache(
+			cache.getCacheDir(), resources.getDataSource(), geneScope);
+		newCaches(other.cacheBytes, other.eviction, other.softReferences);
+		setArena(other.arena);
+	}
+
+	private boolean isInGeneScope(String abstractGene) {
+		return geneScope == null || geneScope.contains(abstractGene);
+	}
+
+	/**
+	 * Whether the compiled form of an aapcnt/codonpcnt table exists and is
+	 * up to date
+	 */
+	private boolean hasCompiledTable(String resPath) {
+		String binPath = PercentTableCodec.toBinaryPath(resPath);
+		return resources.exists(binPath) && !resources.isOutdated(binPath, resPath);
+	}
+
+	/**
+	 * Whether an aapcnt/codonpcnt table exists in any form
+	 */
+	boolean hasTable(String resPath) {
+		return (
+			resources.exists(resPath) ||
+			hasCompiledTable(resPath) ||
+			resources.exists(PercentTableCsvReader.toCsvPath(resPath))
+		);
+	}
+
+	/**
+	 * Writes the compiled form and index of a table parsed from a data
+	 * directory next to its source, so this and later loads map it instead
+	 * of keeping the parsed table on the heap
+	 *
+	 * @return whether the compiled table was written
+	 */
+	private boolean compileInPlace(String resPath, PercentTable table) {
+		HIVDataSource dataSource = resources.getDataSource();
+		Path target = dataSource.getWritableFile(PercentTableCodec.toBinaryPath(resPath));
+		Path indexTarget = dataSource.getWritableFile(PercentTableIndex.toIndexPath(resPath));
+		if (target == null || indexTarget == null) {
+			return false;
+		}
+		try {
+			PercentTableCompiler.write(table, null, target, indexTarget);
+			return true;
+		} catch (IOException e) {
+			// e.g. a full disk; the parsed table is used instead
+			return false;
+		}
+	}
+
+	/**
+	 * Loads an aapcnt/codonpcnt table
+	 *
+	 * The compiled resource (see {@link PercentTableCompiler}) is used if
+	 * it is up to date. Otherwise the CSV table (aapcnt only) or else the
+	 * JSON table is parsed, and compiled in place if the data source is a
+	 * writable directory.
+	 *
+	 * Tables decoded from a memory-mapped resource read their rows from the
+	 * mapping; others, including those of the classpath, are on the heap.
+	 */
+	private PercentTable loadPercentTable(String resPath, PercentTable.Kind kind) {
+		if (!hasCompiledTable(resPath)) {
+			PercentTable table = parsePercentTable(resPath, kind);
+			if (!compileInPlace(resPath, table)) {
+				return table;
+			}
+		}
+		String binPath = PercentTableCodec.toBinaryPath(resPath);
+		try {
+			ByteBuffer buf = resources.map(binPath);
+			return PercentTableCodec.read(buf);
+		} catch (IOException|RuntimeException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", binPath, e.getMessage())
+			);
+		}
+	}
+
+	/**
+	 * Parses the CSV (aapcnt only) or else the JSON form of a table
+	 */
+	private PercentTable parsePercentTable(String resPath, PercentTable.Kind kind) {
+		String csvPath = PercentTableCsvReader.toCsvPath(resPath);
+		if (kind == PercentTable.Kind.AMINO_ACID && resources.exists(csvPath)) {
+			try (Reader reader = resources.open(csvPath)) {
+				return PercentTableCsvReader.read(reader);
+			} catch (IOException|IllegalArgumentException e) {
+				throw new ExceptionInInitializerError(
+					String.format("Invalid resource (%s): %s", csvPath, e.getMessage())
+				);
+			}
+		}
+		List<PercentTable> chunks = resources.loadJsonArray(
+			resPath, false, reader -> PercentTableJsonReader.read(reader, kind));
+		return PercentTable.concat(kind, chunks);
+	}
+
+	/**
+	 * Loads the per-gene index of an aapcnt/codonpcnt table
+	 *
+	 * @return the index, or null if the table has no index or its rows can't
+	 * 	be loaded per gene from the available resources
+	 */
+	private PercentTableIndex loadPercentTableIndex(String resPath) {
+		String indexPath = PercentTableIndex.toIndexPath(resPath);
+		if (!resources.exists(indexPath) || resources.isOutdated(indexPath, resPath)) {
+			return null;
+		}
+		PercentTableIndex index;
+		try (Reader reader = resources.open(indexPath)) {
+			index = PercentTableIndex.read(reader);
+		} catch (IOException|IllegalArgumentException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", indexPath, e.getMessage())
+			);
+		}
+		if (hasCompiledTable(resPath)) {
+			return index;
+		}
+		for (String gene : index.getGenes()) {
+			if (!index.get(gene).hasByteRange()) {
+				return null;
+			}
+		}
+		return resources.exists(resPath) ? index : null;
+	}
+
+	/**
+	 * Loads the rows of one gene of an aapcnt/codonpcnt table, from the
+	 * compiled resource if available or else from the JSON resource
+	 *
+	 * @param resPath
+	 * @param kind
+	 * @param entry
+	 * @param compiled the mapped compiled resource, null if there is none
+	 * @param json the mapped JSON resource
+	 */
+	private PercentTable loadPercentTable(
+		String resPath, PercentTable.Kind kind, PercentTableIndex.Entry entry,
+		Supplier<ByteBuffer> compiled, Supplier<ByteBuffer> json
+	) {
+		ByteBuffer buf = compiled.get();
+		if (buf != null) {
+			try {
+				return PercentTableCodec.read(buf.duplicate(), entry.getFirstRow(), entry.getEndRow());
+			} catch (RuntimeException e) {
+				throw new ExceptionInInitializerError(String.format(
+					"Invalid resource (%s): %s", PercentTableCodec.toBinaryPath(resPath), e.getMessage())
+				);
+			}
+		}
+		int[] range = new int[] {(int) entry.getFirstByte(), (int) entry.getEndByte()};
+		try (Reader reader = JsonArrayChunks.newArrayReader(json.get(), range)) {
+			return PercentTableJsonReader.read(reader, kind);
+		} catch (IOException|RuntimeException e) {
+			throw new ExceptionInInitializerError(
+				String.format("Invalid resource (%s): %s", resPath, e.getMessage())
+			);
+		}
+	}
+
+	/**
+	 * Hashes the resource an aapcnt/codonpcnt table is loaded from, see
+	 * {@link #loadPercentTable(String, PercentTable.Kind)}
+	 */
+	private String hashPercentTable(String resPath, PercentTable.Kind kind) {
+		String csvPath = PercentTableCsvReader.toCsvPath(resPath);
+		if (hasCompiledTable(resPath)) {
+			return resources.hash(PercentTableCodec.toBinaryPath(resPath));
+		}
+		else if (kind == PercentTable.Kind.AMINO_ACID && resources.exists(csvPath)) {
+			return resources.hash(csvPath);
+		}
+		return resources.hash(resPath);
+	}
+
+	/**
+	 * Loads a table, sharing it like {@link ContentSharing#load}
+	 *
+	 * Tables are hashed by the resource they are loaded from. Tables are
+	 * not shared while they are stored in a {@link PercentTableArena}, so
+	 * that they are stored the way it asks for.
+	 */
+	private <R> R loadShared(Class<?> type, String resPath, PercentTable.Kind kind, Supplier<R> loader) {
+		if (arena != null) {
+			return loader.get();
+		}
+		return sharing.load(Arrays.asList(type), () -> hashPercentTable(resPath, kind), loader);
+	}
+
+	/**
+	 * Returns the gene of each entry of a table's gene dictionary, null for
+	 * genes out of the gene scope
+	 */
+	private List<Gene<T>> bindGenes(String[] geneDict, Strain<T> strain) {
+		List<Gene<T>> genes = new ArrayList<>();
+		for (String geneText : geneDict) {
+			genes.add(isInGeneScope(geneText) ? strain.getGene(geneText) : null);
+		}
+		return genes;
+	}
+
+	/**
+	 * Drops the rows of genes out of the gene scope
+	 *
+	 * Tables read from a mapping are kept whole, since copying them would
+	 * bring them onto the heap; their genes out of scope are skipped when
+	 * they are bound (see {@link #bindGenes}).
+	 */
+	private PercentTable filterGeneScope(PercentTable table) {
+		return geneScope == null || table.isDirect() ? table : table.retainGenes(geneScope);
+	}
+
+	private AminoAcidPercents<T> newAminoAcidPercents(PercentTable table, Strain<T> strain) {
+		if (table.isDirect()) {
+			return new OffHeapAminoAcidPercents<>(
+				new MappedPercentRows<>(table, bindGenes(table.getGeneDict(), strain)));
+		}
+		table = filterGeneScope(table);
+		List<Gene<T>> genes = bindGenes(table.getGeneDict(), strain);
+		PercentTableArena arena = this.arena;
+		if (arena != null && arena.isAlive()) {
+			try {
+				return new OffHeapAminoAcidPercents<>(table, genes, arena);
+			} catch (IllegalStateException e) {
+				// the arena was closed meanwhile, the table is stored on the heap
+			}
+		}
+		List<AminoAcidPercent<T>> aaPcnts = new ArrayList<>(table.size());
+		for (int row = 0; row < table.size(); row ++) {
+			aaPcnts.add(new AminoAcidPercent<>(
+				genes.get(table.getGeneIndex(row)),
+				table.getPosition(row),
+				table.getSymbol(row).charAt(0),
+				table.getPercent(row),
+				table.getCount(row),
+				table.getTotal(row),
+				table.getReason(row),
+				table.isUnusual(row)
+			));
+		}
+		return new AminoAcidPercents<>(aaPcnts);
+	}
+
+	private CodonPercents<T> newCodonPercents(PercentTable table, Strain<T> strain) {
+		if (table.isDirect()) {
+			return new OffHeapCodonPercents<>(
+				new MappedPercentRows<>(table, bindGenes(table.getGeneDict(), strain)));
+		}
+		table = filterGeneScope(table);
+		List<Gene<T>> genes = bindGenes(table.getGeneDict(), strain);
+		PercentTableArena arena = this.arena;
+		if (arena != null && arena.isAlive()) {
+			try {
+				return new OffHeapCodonPercents<>(table, genes, arena);
+			} catch (IllegalStateException e) {
+				// the arena was closed meanwhile, the table is stored on the heap
+			}
+		}
+		List<CodonPercent<T>> codonPcnts = new ArrayList<>(table.size());
+		for (int row = 0; row < table.size(); row ++) {
+			codonPcnts.add(new CodonPercent<>(
+				genes.get(table.getGeneIndex(row)),
+				table.getPosition(row),
+				table.getSymbol(row),
+				table.getPercent(row),
+				table.getCount(row),
+				table.getTotal(row)
+			));
+		}
+		return new CodonPercents<>(codonPcnts);
+	}
+
+	/**
+	 * Maps the host-wide shared copy of a table (see {@link
+	 * SharedPercentTableCache})
+	 *
+	 * @return the mapped layout, or null if no shared cache directory is
+	 * 	configured or it is not usable
+	 */
+	private OffHeapPercentLayout<T> attachSharedLayout(
+		String resourceName, Strain<T> strain, Supplier<String> digest, Supplier<PercentTable> table
+	) {
+		SharedPercentTableCache cache = sharedTableCache;
+		if (cache == null) {
+			return null;
+		}
+		try {
+			return cache.attach(resourceName, digest.get(), table, geneDict -> bindGenes(geneDict, strain));
+		} catch (IOException e) {
+			// falls back to a table private to this process
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the table of an indexed resource's gene, parsed on first use
+	 */
+	private static Supplier<PercentTable> getGeneTable(
+		Map<String, Supplier<PercentTable>> geneTables, String geneText, Supplier<PercentTable> parser
+	) {
+		return geneTables.computeIfAbsent(geneText, key -> Suppliers.memoize(parser::get));
+	}
+
+	/**
+	 * Loads an aapcnt table; tables with a per-gene index load each gene on
+	 * its first lookup
+	 *
+	 * The resource is parsed once, whichever strains it is bound to.
+	 */
+	private PercentTablePartitions<T, AminoAcidPercents<T>> loadAminoAcidPercents(String resourceName) {
+		PercentTable.Kind kind = PercentTable.Kind.AMINO_ACID;
+		loadedTables.put(resourceName, kind);
+		Supplier<PercentTable> table = Suppliers.memoize(() -> filterGeneScope(loadPercentTable(resourceName, kind)));
+		Supplier<PercentTableIndex> index = Suppliers.memoize(() -> loadPercentTableIndex(resourceName));
+		Supplier<ByteBuffer> compiled = Suppliers.memoize(() -> hasCompiledTable(resourceName) ?
+			resources.mapIfExists(PercentTableCodec.toBinaryPath(resourceName)) : null);
+		Supplier<ByteBuffer> json = Suppliers.memoize(() -> resources.mapIfExists(resourceName));
+		Supplier<String> digest = Suppliers.memoize(() -> hashPercentTable(resourceName, kind));
+		Map<String, Supplier<PercentTable>> geneTables = new ConcurrentHashMap<>();
+		return new PercentTablePartitions<>((strain, onLoad) -> {
+			OffHeapPercentLayout<T> sharedLayout = attachSharedLayout(resourceName, strain, digest, table);
+			if (sharedLayout != null) {
+				return new OffHeapAminoAcidPercents<>(sharedLayout);
+			}
+			if (index.get() == null) {
+				return newAminoAcidPercents(table.get(), strain);
+			}
+			Map<Gene<T>, Supplier<AminoAcidPercents<T>>> geneLoaders = new LinkedHashMap<>();
+			for (String geneText : index.get().getGenes()) {
+				if (!isInGeneScope(geneText)) {
+					continue;
+				}
+				PercentTableIndex.Entry entry = index.get().get(geneText);
+				Supplier<PercentTable> geneTable = getGeneTable(
+					geneTables, geneText, () -> loadPercentTable(resourceName, kind, entry, compiled, json));
+				geneLoaders.put(
+					strain.getGene(geneText),
+					() -> newAminoAcidPercents(geneTable.get(), strain)
+				);
+			}
+			return new LazyAminoAcidPercents<>(geneLoaders, onLoad);
+		});
+	}
+
+	/**
+	 * Loads a codonpcnt table; tables with a per-gene index load each gene
+	 * on its first lookup
+	 *
+	 * The resource is parsed once, whichever strains it is bound to.
+	 */
+	private PercentTablePartitions<T, CodonPercents<T>> loadCodonPercents(String resourceName) {
+		PercentTable.Kind kind = PercentTable.Kind.CODON;
+		loadedTables.put(resourceName, kind);
+		Supplier<PercentTable> table = Suppliers.memoize(() -> filterGeneScope(loadPercentTable(resourceName, kind)));
+		Supplier<PercentTableIndex> index = Suppliers.memoize(() -> loadPercentTableIndex(resourceName));
+		Supplier<ByteBuffer> compiled = Suppliers.memoize(() -> hasCompiledTable(resourceName) ?
+			resources.mapIfExists(PercentTableCodec.toBinaryPath(resourceName)) : null);
+		Supplier<ByteBuffer> json = Suppliers.memoize(() -> resources.mapIfExists(resourceName));
+		Supplier<String> digest = Suppliers.memoize(() -> hashPercentTable(resourceName, kind));
+		Map<String, Supplier<PercentTable>> geneTables = new ConcurrentHashMap<>();
+		return new PercentTablePartitions<>((strain, onLoad) -> {
+			OffHeapPercentLayout<T> sharedLayout = attachSharedLayout(resourceName, strain, digest, table);
+			if (sharedLayout != null) {
+				return new OffHeapCodonPercents<>(sharedLayout);
+			}
+			if (index.get() == null) {
+				return newCodonPercents(table.get(), strain);
+			}
+			Map<Gene<T>, Supplier<CodonPercents<T>>> geneLoaders = new LinkedHashMap<>();
+			for (String geneText : index.get().getGenes()) {
+				if (!isInGeneScope(geneText)) {
+					continue;
+				}
+				PercentTableIndex.Entry entry = index.get().get(geneText);
+				Supplier<PercentTable> geneTable = getGeneTable(
+					geneTables, geneText, () -> loadPercentTable(resourceName, kind, entry, compiled, json));
+				geneLoaders.put(
+					strain.getGene(geneText),
+					() -> newCodonPercents(geneTable.get(), strain)
+				);
+			}
+			return new LazyCodonPercents<>(geneLoaders, onLoad);
+		});
+	}
+
+	/**
+	 * Returns the aapcnt table of a resource, loading it first if necessary
+	 */
+	PercentTablePartitions<T, AminoAcidPercents<T>> getAminoAcidPercents(String resourceName) {
+		WeightedTableCache<String, PercentTablePartitions<T, AminoAcidPercents<T>>> cache = aminoAcidPcnts;
+		return cache.get(resourceName, key -> {
+			PercentTablePartitions<T, AminoAcidPercents<T>> partitions = loadShared(
+				AminoAcidPercents.class, resourceName, PercentTable.Kind.AMINO_ACID,
+				() -> loadAminoAcidPercents(resourceName));
+			listenForGrowth(cache, resourceName, partitions);
+			return partitions;
+		});
+	}
+
+	/**
+	 * Returns the codonpcnt table of a resource, loading it first if
+	 * necessary
+	 */
+	PercentTablePartitions<T, CodonPercents<T>> getCodonPercents(String resourceName) {
+		WeightedTableCache<String, PercentTablePartitions<T, CodonPercents<T>>> cache = codonPcnts;
+		return cache.get(resourceName, key -> {
+			PercentTablePartitions<T, CodonPercents<T>> partitions = loadShared(
+				CodonPercents.class, resourceName, PercentTable.Kind.CODON,
+				() -> loadCodonPercents(resourceName));
+			listenForGrowth(cache, resourceName, partitions);
+			return partitions;
+		});
+	}
+
+	/**
+	 * Returns the aapcnt table of a resource if it is cached, otherwise
+	 * null
+	 */
+	PercentTablePartitions<T, AminoAcidPercents<T>> getAminoAcidPercentsIfLoaded(String resourceName) {
+		return aminoAcidPcnts.getIfLoaded(resourceName);
+	}
+
+	PercentTablePartitions<T, CodonPercents<T>> getCodonPercentsIfLoaded(String resourceName) {
+		return codonPcnts.getIfLoaded(resourceName);
+	}
+
+	private static <T extends Virus<T>, V> Map<String, List<Strain<T>>> getBound(
+		WeightedTableCache<String, PercentTablePartitions<T, V>> cache
+	) {
+		Map<String, List<Strain<T>>> results = new LinkedHashMap<>();
+		for (String resourceName : cache.keys()) {
+			PercentTablePartitions<T, V> partitions = cache.peek(resourceName);
+			if (partitions != null) {
+				results.put(resourceName, new ArrayList<>(partitions.getBound().keySet()));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the strains each cached aapcnt table is bound to
+	 */
+	Map<String, List<Strain<T>>> getBoundAminoAcidPercents() {
+		return getBound(aminoAcidPcnts);
+	}
+
+	/**
+	 * Returns the strains each cached codonpcnt table is bound to
+	 */
+	Map<String, List<Strain<T>>> getBoundCodonPercents() {
+		return getBound(codonPcnts);
+	}
+
+	/**
+	 * See {@link HIVDataLoader#setPercentTableArena}
+	 */
+	void setArena(PercentTableArena arena) {
+		this.arena = arena;
+		aminoAcidPcnts.clear();
+		codonPcnts.clear();
+		if (arena != null) {
+			arena.addCloseListener(() -> {
+				if (this.arena == arena) {
+					aminoAcidPcnts.clear();
+					codonPcnts.clear();
+				}
+			});
+		}
+	}
+
+	/**
+	 * See {@link HIVDataLoader#setSharedCacheDirectory}
+	 */
+	void setSharedCacheDirectory(Path cacheDir) {
+		sharedTableCache = cacheDir == null ? null : new SharedPercentTableCache(
+			cacheDir, resources.getDataSource(), geneScope);
+		aminoAcidPcnts.clear();
+		codonPcnts.clear();
+	}
+
+	/**
+	 * See {@link HIVDataLoader#setPercentTableCacheLimit}
+	 */
+	void setCacheLimit(long maxBytes, HIVDataLoader.EvictionPolicy policy, boolean softReferences) {
+		newCaches(maxBytes, policy, softReferences);
+	}
+
+	private void newCaches(long maxBytes, HIVDataLoader.EvictionPolicy policy, boolean softReferences) {
+		this.cacheBytes = maxBytes;
+		this.eviction = policy;
+		this.softReferences = softReferences;
+		aminoAcidPcnts = new WeightedTableCache<>(this::weighAminoAcidPercents, maxBytes, policy, softReferences);
+		codonPcnts = new WeightedTableCache<>(this::weighCodonPercents, maxBytes, policy, softReferences);
+	}
+
+	/**
+	 * Returns the estimated heap used by the tables currently cached
+	 */
+	long getCacheBytes() {
+		return aminoAcidPcnts.getWeight() + codonPcnts.getWeight();
+	}
+
+	/**
+	 * Weighs the strains a resource is bound to; lazily loaded tables weigh
+	 * the genes loaded so far. Resources are weighed again whenever they
+	 * grow.
+	 */
+	private <V> void listenForGrowth(
+		WeightedTableCache<String, PercentTablePartitions<T, V>> cache,
+		String resourceName, PercentTablePartitions<T, V> partitions
+	) {
+		partitions.setListener(cache, () -> cache.reweigh(resourceName, partitions));
+	}
+
+	private long weighAminoAcidPercents(PercentTablePartitions<T, AminoAcidPercents<T>> partitions) {
+		return partitions.getBound().values().stream().mapToLong(PercentTableStore::estimateRetainedBytes).sum();
+	}
+
+	private long weighCodonPercents(PercentTablePartitions<T, CodonPercents<T>> partitions) {
+		return partitions.getBound().values().stream().mapToLong(PercentTableStore::estimateRetainedBytes).sum();
+	}
+
+	/**
+	 * Adds the compiled form and index of every table loaded so far to the
+	 * resources of a snapshot, see {@link HIVDataLoader#saveSnapshot}
+	 *
+	 * @param snapshot resource path => content
+	 * @param sources receives the JSON/CSV resources the tables stand in
+	 * 	for, which the snapshot doesn't need
+	 * @throws IOException if a resource can't be read
+	 */
+	void addToSnapshot(Map<String, ByteBuffer> snapshot, Set<String> sources) throws IOException {
+		HIVDataSource dataSource = resources.getDataSource();
+		for (Map.Entry<String, PercentTable.Kind> entry : loadedTables.entrySet()) {
+			String resPath = entry.getKey();
+			String binPath = PercentTableCodec.toBinaryPath(resPath);
+			String indexPath = PercentTableIndex.toIndexPath(resPath);
+			sources.add(resPath);
+			sources.add(PercentTableCsvReader.toCsvPath(resPath));
+			if (hasCompiledTable(resPath)) {
+				snapshot.put(binPath, dataSource.map(binPath));
+				if (resources.exists(indexPath) && !resources.isOutdated(indexPath, resPath)) {
+					snapshot.put(indexPath, dataSource.map(indexPath));
+				}
+				continue;
+			}
+			PercentTable table = loadPercentTable(resPath, entry.getValue());
+			ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+			PercentTableCodec.write(table, tableBytes);
+			snapshot.put(binPath, ByteBuffer.wrap(tableBytes.toByteArray()));
+			PercentTableIndex index = PercentTableIndex.build(table, null);
+			if (index != null) {
+				StringWriter indexText = new StringWriter();
+				index.write(indexText);
+				snapshot.put(indexPath, ByteBuffer.wrap(
+					indexText.toString().getBytes(StandardCharsets.UTF_8)));
+			}
+		}
+	}
+
+}
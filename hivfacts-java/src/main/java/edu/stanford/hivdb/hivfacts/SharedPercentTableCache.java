@@ -0,0 +1,222 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Virus;
+
+/**
+ * Directory of percent tables shared by all JVMs of a host.
+ *
+ * Each table is stored in the fixed-stride layout of {@link
+ * OffHeapPercentLayout}, prefixed with its dictionaries. The first process
+ * to need a table writes it to a temporary file and publishes it with an
+ * atomic rename; every process then maps the file read-only, so the table
+ * occupies the OS page cache once per host rather than the heap of every
+ * worker.
+ *
+ * Files live under a sub-directory named after the hivfacts version and
+ * the SHA-256 of the data source and gene scope. Each file records the
+ * digest of the resource it was built from; a file whose digest doesn't
+ * match the resource any more, e.g. after the data of a data directory
+ * changed in place, is published again, and so is a malformed file.
+ * Processes which mapped the old file keep using it until they reload.
+ *
+ * File layout (big-endian header, native-order slots):
+ *
+ * 	- int magic ("HVPL"), short version
+ * 	- source digest, as a dictionary of one entry
+ * 	- gene, symbol and reason dictionaries as in {@link PercentTableCodec}
+ * 	- int max position of each gene
+ * 	- slots, starting at the next multiple of 8
+ */
+final class SharedPercentTableCache {
+
+	static final String CACHE_DIR_PROPERTY = "hivfacts.sharedCacheDir";
+
+	private static final int MAGIC = 0x4856504c;
+	private static final short VERSION = 2;
+	private static final String LAYOUT_EXT = ".playout";
+
+	private final Path cacheDir;
+	private final Path versionDir;
+
+	/**
+	 * @param cacheDir
+	 * @param dataSource
+	 * @param geneScope abstract genes the tables are restricted to, or null
+	 */
+	SharedPercentTableCache(Path cacheDir, HIVDataSource dataSource, Set<String> geneScope) {
+		String sourceKey = dataSource.toString();
+		if (geneScope != null) {
+			sourceKey += "::" + new TreeSet<>(geneScope);
+		}
+		this.cacheDir = cacheDir;
+		this.versionDir = cacheDir.resolve(String.format(
+			"%s-%s", HIVDataLoader.getImplementationVersion(), ContentCache.hash(sourceKey)));
+	}
+
+	/**
+	 * Returns the cache of directory specified by system property
+	 * "hivfacts.sharedCacheDir", or null if the property is not set
+	 */
+	static SharedPercentTableCache getDefault(HIVDataSource dataSource, Set<String> geneScope) {
+		String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+		if (cacheDir == null || cacheDir.isEmpty()) {
+			return null;
+		}
+		return new SharedPercentTableCache(Path.of(cacheDir), dataSource, geneScope);
+	}
+
+	Path getCacheDir() {
+		return cacheDir;
+	}
+
+	private Path toLayoutPath(String resPath) {
+		if (resPath.endsWith(PercentTableCodec.SOURCE_EXT)) {
+			resPath = resPath.substring(0, resPath.length() - PercentTableCodec.SOURCE_EXT.length());
+		}
+		Path path = versionDir.resolve(resPath + LAYOUT_EXT).normalize();
+		if (!path.startsWith(versionDir)) {
+			throw new IllegalArgumentException("Invalid resource path: " + resPath);
+		}
+		return path;
+	}
+
+	private static long align(long offset) {
+		return (offset + Long.BYTES - 1) / Long.BYTES * Long.BYTES;
+	}
+
+	private static void publish(Path target, String digest, PercentTable table) throws IOException {
+		int[] geneMaxPositions = OffHeapPercentLayout.computeMaxPositions(table);
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		header.writeInt(MAGIC);
+		header.writeShort(VERSION);
+		PercentTableCodec.writeDict(header, new String[] {digest});
+		PercentTableCodec.writeDict(header, table.getGeneDict());
+		PercentTableCodec.writeDict(header, table.getSymbolDict());
+		PercentTableCodec.writeDict(header, table.getReasonDict());
+		for (int maxPos : geneMaxPositions) {
+			header.writeInt(maxPos);
+		}
+		header.flush();
+		long slotsOffset = align(headerBytes.size());
+		long slotsSize = OffHeapPercentLayout.computeByteSize(geneMaxPositions, table.getSymbolDict().length);
+
+		Path tmp = AtomicFiles.createTemp(target);
+		try {
+			try (
+				FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				Arena arena = Arena.ofConfined()
+			) {
+				MemorySegment file = channel.map(
+					FileChannel.MapMode.READ_WRITE, 0, slotsOffset + slotsSize, arena);
+				MemorySegment.copy(MemorySegment.ofArray(headerBytes.toByteArray()), 0, file, 0, headerBytes.size());
+				OffHeapPercentLayout.writeSlots(table, geneMaxPositions, file.asSlice(slotsOffset));
+				file.force();
+			}
+			AtomicFiles.commit(tmp, target);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Maps a published file
+	 *
+	 * @return the layout, or null if the file is of another version, was
+	 * 	built from another source digest, is truncated or otherwise malformed
+	 */
+	private static <T extends Virus<T>> OffHeapPercentLayout<T> map(
+		Path path, String digest, Function<String[], List<Gene<T>>> geneBinder
+	) throws IOException {
+		MemorySegment file;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// unmapped once the layout is no longer reachable
+			file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+		}
+		ByteBuffer header = file.asByteBuffer();
+		String[] geneDict;
+		String[] symbolDict;
+		String[] reasonDict;
+		int[] geneMaxPositions;
+		long slotsOffset;
+		try {
+			if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+				return null;
+			}
+			String[] sourceDigest = PercentTableCodec.readDict(header);
+			if (sourceDigest.length != 1 || !sourceDigest[0].equals(digest)) {
+				return null;
+			}
+			geneDict = PercentTableCodec.readDict(header);
+			symbolDict = PercentTableCodec.readDict(header);
+			reasonDict = PercentTableCodec.readDict(header);
+			geneMaxPositions = new int[geneDict.length];
+			for (int idx = 0; idx < geneDict.length; idx ++) {
+				geneMaxPositions[idx] = header.getInt();
+				if (geneMaxPositions[idx] < 0 || geneMaxPositions[idx] > Character.MAX_VALUE) {
+					return null;
+				}
+			}
+			slotsOffset = align(header.position());
+		} catch (BufferUnderflowException|IllegalArgumentException e) {
+			return null;
+		}
+		long slotsSize = OffHeapPercentLayout.computeByteSize(geneMaxPositions, symbolDict.length);
+		if (file.byteSize() < slotsOffset + slotsSize) {
+			return null;
+		}
+		return new OffHeapPercentLayout<>(
+			geneBinder.apply(geneDict), geneMaxPositions, symbolDict, reasonDict,
+			file.asSlice(slotsOffset, slotsSize));
+	}
+
+	/**
+	 * Maps the shared copy of a table, publishing it first if no process
+	 * has done so yet
+	 *
+	 * @param resPath resource path of the table
+	 * @param digest digest of the resource the table is loaded from
+	 * @param tableLoader loads the table if it has to be published
+	 * @param geneBinder binds the gene dictionary of the table to a strain
+	 * @return an OffHeapPercentLayout object backed by the mapped file
+	 * @throws IOException if the cache directory is not usable, or the file
+	 * 	is still invalid after it is published again
+	 */
+	<T extends Virus<T>> OffHeapPercentLayout<T> attach(
+		String resPath, String digest, Supplier<PercentTable> tableLoader,
+		Function<String[], List<Gene<T>>> geneBinder
+	) throws IOException {
+		Path path = toLayoutPath(resPath);
+		if (Files.isRegularFile(path)) {
+			OffHeapPercentLayout<T> layout = map(path, digest, geneBinder);
+			if (layout != null) {
+				return layout;
+			}
+		}
+		publish(path, digest, tableLoader.get());
+		OffHeapPercentLayout<T> layout = map(path, digest, geneBinder);
+		if (layout == null) {
+			throw new IOException("Invalid shared percent table: " + path);
+		}
+		return layout;
+	}
+
+}
@@ -0,0 +1,95 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of raw resources which are read by more than one
+ * {@link HIVDataLoader}, e.g. "drugs.json" used by both HIV and HIV2.
+ *
+ * Each loader registers the resources it is going to read when constructed
+ * and releases a key after it has bound the value to its virus, or when it
+ * is replaced or discarded. The first loader to acquire a key reads the
+ * resource; the others reuse the value. An entry is dropped once every
+ * registered loader has released it, so the cache doesn't outlive the
+ * start-up of the loaders.
+ *
+ * Keys include the generation of their data source. {@link #invalidate}
+ * starts a new generation, so loaders created after a data source changed
+ * never get the text read before.
+ *
+ * Keys not (or no longer) registered are not cached at all.
+ */
+final class SharedResources {
+
+	private static final class Entry {
+
+		private int pending = 0;
+		private Object value;
+
+	}
+
+	private static final Map<String, Entry> ENTRIES = new HashMap<>();
+	private static final Map<String, Long> GENERATIONS = new HashMap<>();
+
+	private SharedResources() {}
+
+	/**
+	 * Registers a resource of a data source
+	 *
+	 * @param source the data source, see {@link HIVDataSource#toString()}
+	 * @param resPath
+	 * @return the key of the resource in the current generation of source
+	 */
+	static synchronized String register(String source, String resPath) {
+		String key = String.format("%s#%d::%s", source, GENERATIONS.getOrDefault(source, 0L), resPath);
+		ENTRIES.computeIfAbsent(key, k -> new Entry()).pending ++;
+		return key;
+	}
+
+	static synchronized void release(String key) {
+		Entry entry = ENTRIES.get(key);
+		if (entry != null && -- entry.pending <= 0) {
+			ENTRIES.remove(key);
+		}
+	}
+
+	/**
+	 * Starts a new generation of a data source whose resources changed
+	 *
+	 * Keys registered before keep their entries until released.
+	 *
+	 * @param source the data source, see {@link HIVDataSource#toString()}
+	 */
+	static synchronized void invalidate(String source) {
+		GENERATIONS.merge(source, 1L, Long::sum);
+	}
+
+	/**
+	 * Returns the cached value of key, loading it first if necessary
+	 *
+	 * Concurrent callers of the same key wait for a single load.
+	 *
+	 * @param key
+	 * @param loader
+	 * @return the value
+	 */
+	@SuppressWarnings("unchecked")
+	static <R> R acquire(String key, Supplier<R> loader) {
+		Entry entry;
+		synchronized (SharedResources.class) {
+			entry = ENTRIES.get(key);
+		}
+		if (entry == null) {
+			return loader.get();
+		}
+		synchronized (entry) {
+			if (entry.value == null) {
+				entry.value = loader.get();
+			}
+			return (R) entry.value;
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Thread-safe map of lazily loaded values.
+ *
+ * Each value is loaded once: concurrent callers of a missing key wait for
+ * the first caller's load instead of loading it again, while callers of
+ * other keys are not blocked. Reads of loaded values take no lock. A load
+ * which fails fails for the callers waiting for it; the next caller loads
+ * the value again.
+ *
+ * Unlike {@link ConcurrentHashMap#computeIfAbsent}, loaders may take long
+ * and may load other keys of the same map.
+ *
+ * Values loaded while {@link #clear()} is called are returned to their
+ * callers but not kept, since they may have been loaded from what was
+ * cleared.
+ */
+final class SingleFlightMap<K, V> {
+
+	private final Map<K, V> values = new ConcurrentHashMap<>();
+	// loads in progress; removed once their value is put or dropped
+	private final Map<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+	// incremented by clear(); guarded by this
+	private long generation = 0;
+
+	/**
+	 * Returns the value of key, loading it first if necessary
+	 *
+	 * @param key
+	 * @param loader must not return null
+	 * @return the value
+	 */
+	V get(K key, Function<? super K, ? extends V> loader) {
+		V value = values.get(key);
+		if (value != null) {
+			return value;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> current = loads.putIfAbsent(key, load);
+		if (current != null) {
+			return join(current);
+		}
+		try {
+			// may have been put since the first read
+			value = values.get(key);
+			if (value == null) {
+				long loadGeneration = getGeneration();
+				value = loader.apply(key);
+				putIfCurrent(key, value, loadGeneration);
+			}
+			load.complete(value);
+			return value;
+		}
+		catch (RuntimeException|Error e) {
+			load.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * Waits for a load of another caller, rethrowing its failure as is
+	 */
+	static <V> V join(CompletableFuture<V> load) {
+		try {
+			return load.join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private synchronized long getGeneration() {
+		return generation;
+	}
+
+	private synchronized void putIfCurrent(K key, V value, long loadGeneration) {
+		if (generation == loadGeneration) {
+			values.put(key, value);
+		}
+	}
+
+	synchronized void clear() {
+		generation ++;
+		values.clear();
+	}
+
+}
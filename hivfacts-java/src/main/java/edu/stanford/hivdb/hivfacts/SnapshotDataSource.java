@@ -0,0 +1,198 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Data source backed by a snapshot file written by {@link
+ * HIVDataLoader#saveSnapshot(Path)}.
+ *
+ * A snapshot holds every resource a warmed-up loader has read, already
+ * decompressed, with percent tables and mutation lists in their binary
+ * form (see {@link PercentTableCodec} and {@link MutationTable}). The file is
+ * memory-mapped once; resources are served as slices of the mapping, so
+ * restoring a loader needs no lookups, file reads, inflating or table
+ * compilation. Resources missing from the snapshot are read from the
+ * data source the snapshot was taken from.
+ *
+ * A snapshot is keyed by the hivfacts version and the original data
+ * source; {@link #open(Path, HIVDataSource)} ignores snapshots whose key
+ * doesn't match.
+ *
+ * File layout (big-endian):
+ *
+ * 	- int magic ("HVSN"), short version
+ * 	- UTF hivfacts version, UTF data source, boolean static datasets used
+ * 	- int number of resources, then per resource: UTF resource path,
+ * 	  int offset (relative to the end of the header), int length
+ * 	- resource contents
+ */
+final class SnapshotDataSource extends HIVDataSource {
+
+	private static final int MAGIC = 0x4856534e;
+	private static final short VERSION = 1;
+
+	private final HIVDataSource origin;
+	private final boolean staticDatasets;
+	private final Map<String, ByteBuffer> resources;
+
+	private SnapshotDataSource(
+		HIVDataSource origin, boolean staticDatasets,
+		Map<String, ByteBuffer> resources
+	) {
+		this.origin = origin;
+		this.staticDatasets = staticDatasets;
+		this.resources = resources;
+	}
+
+	/**
+	 * Writes a snapshot; the file is replaced atomically
+	 *
+	 * @param target
+	 * @param origin data source the resources were read from
+	 * @param staticDatasets whether the loader used {@link StaticDatasets}
+	 * @param resources content of each resource
+	 * @throws IOException
+	 */
+	static void write(
+		Path target, HIVDataSource origin, boolean staticDatasets,
+		Map<String, ByteBuffer> resources
+	) throws IOException {
+		target = target.toAbsolutePath();
+		Path tmp = AtomicFiles.createTemp(target);
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeUTF(HIVDataLoader.getImplementationVersion());
+				out.writeUTF(origin.toString());
+				out.writeBoolean(staticDatasets);
+				out.writeInt(resources.size());
+				long offset = 0;
+				for (Map.Entry<String, ByteBuffer> entry : resources.entrySet()) {
+					int length = entry.getValue().remaining();
+					if (offset + length > Integer.MAX_VALUE) {
+						throw new IOException("Snapshot too large: " + target);
+					}
+					out.writeUTF(entry.getKey());
+					out.writeInt((int) offset);
+					out.writeInt(length);
+					offset += length;
+				}
+				byte[] chunk = new byte[65536];
+				for (ByteBuffer content : resources.values()) {
+					ByteBuffer buf = content.duplicate();
+					while (buf.hasRemaining()) {
+						int length = Math.min(chunk.length, buf.remaining());
+						buf.get(chunk, 0, length);
+						out.write(chunk, 0, length);
+					}
+				}
+			}
+			AtomicFiles.commit(tmp, target);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static String readUTF(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getShort() & 0xffff];
+		buf.get(bytes);
+		// resource paths and versions never contain modified UTF-8 specials
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Opens a snapshot taken from the given data source
+	 *
+	 * @param file
+	 * @param origin
+	 * @return the snapshot, or null if the file doesn't exist, is invalid or
+	 * 	was written by another hivfacts version or from another data source
+	 * @throws IOException if the file can't be read
+	 */
+	static SnapshotDataSource open(Path file, HIVDataSource origin) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		ByteBuffer buf;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			// the mapping stays valid after the channel is closed
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			if (
+				buf.getInt() != MAGIC || buf.getShort() != VERSION ||
+				!readUTF(buf).equals(HIVDataLoader.getImplementationVersion()) ||
+				!readUTF(buf).equals(origin.toString())
+			) {
+				return null;
+			}
+			boolean staticDatasets = buf.get() != 0;
+			int numResources = buf.getInt();
+			String[] resPaths = new String[numResources];
+			int[] offsets = new int[numResources];
+			int[] lengths = new int[numResources];
+			for (int idx = 0; idx < numResources; idx ++) {
+				resPaths[idx] = readUTF(buf);
+				offsets[idx] = buf.getInt();
+				lengths[idx] = buf.getInt();
+			}
+			ByteBuffer contents = buf.slice();
+			Map<String, ByteBuffer> resources = new LinkedHashMap<>();
+			for (int idx = 0; idx < numResources; idx ++) {
+				resources.put(resPaths[idx], contents.slice(offsets[idx], lengths[idx]).asReadOnlyBuffer());
+			}
+			return new SnapshotDataSource(origin, staticDatasets, resources);
+		} catch (BufferUnderflowException|IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	@Override
+	boolean hasStaticDatasets() {
+		return staticDatasets;
+	}
+
+	@Override
+	protected boolean rawExists(String resPath) {
+		return resources.containsKey(resPath) || origin.rawExists(resPath);
+	}
+
+	@Override
+	protected InputStream openRaw(String resPath) throws IOException {
+		ByteBuffer buf = resources.get(resPath);
+		if (buf == null) {
+			return origin.openRaw(resPath);
+		}
+		byte[] bytes = new byte[buf.remaining()];
+		buf.duplicate().get(bytes);
+		return new ByteArrayInputStream(bytes);
+	}
+
+	@Override
+	protected ByteBuffer mapRaw(String resPath) throws IOException {
+		ByteBuffer buf = resources.get(resPath);
+		return buf == null ? origin.mapRaw(resPath) : buf.duplicate();
+	}
+
+	@Override
+	public String toString() {
+		// same key as the original data source, e.g. for shared caches
+		return origin.toString();
+	}
+
+}
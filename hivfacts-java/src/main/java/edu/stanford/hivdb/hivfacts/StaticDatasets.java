@@ -0,0 +1,91 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Small, release-bound datasets compiled into Java constants at build time.
+ *
+ * The constants are emitted by the "generateStaticDatasets" Gradle task
+ * into the generated class GeneratedStaticDatasets, which registers them
+ * here when this class is initialized:
+ *
+ * 	- mutation lists (DRMs, SDRMs, TSMs, APOBECs) as a {@link MutationTable},
+ * 	  so they can be handed to MutationSet without parsing any JSON
+ * 	- the text of other small JSON resources whose consumers take a String,
+ * 	  so no resource has to be looked up and read
+ *
+ * Datasets are keyed by their resource path and are only meant to stand in
+ * for the resources bundled in the same jar.
+ */
+final class StaticDatasets {
+
+	private static final Map<String, MutationTable> MUTATION_TABLES = new HashMap<>();
+	private static final Map<String, String> JSON_TEXTS = new HashMap<>();
+
+	static {
+		GeneratedStaticDatasets.register();
+	}
+
+	private StaticDatasets() {}
+
+	/**
+	 * Registers a mutation list
+	 *
+	 * @param resPath
+	 * @param groups drug class of each group, or null if the resource is a
+	 * 	plain list
+	 * @param groupEnds end row (exclusive) of each group
+	 */
+	static void putMutationTable(
+		String resPath, String[] groups, int[] groupEnds,
+		String[] geneDict, byte[] genes, short[] positions,
+		String[] aaDict, short[] aas
+	) {
+		MUTATION_TABLES.put(resPath, new MutationTable(
+			groups, groupEnds, geneDict, genes, positions, aaDict, aas));
+	}
+
+	/**
+	 * Returns a mutation list, or null if the resource wasn't compiled
+	 */
+	static MutationTable getMutationTable(String resPath) {
+		return MUTATION_TABLES.get(resPath);
+	}
+
+	/**
+	 * Registers the text of a JSON resource, split into several parts to
+	 * stay below the size limit of a class file constant
+	 */
+	static void putJsonText(String resPath, String... parts) {
+		JSON_TEXTS.put(resPath, String.join("", parts));
+	}
+
+	/**
+	 * Returns a mutation list stored as a JSON array, or null if the
+	 * resource wasn't compiled
+	 */
+	static List<Map<String, ?>> getMutationList(String resPath) {
+		MutationTable table = MUTATION_TABLES.get(resPath);
+		return table == null ? null : table.getMutationList();
+	}
+
+	/**
+	 * Returns mutation lists stored as a JSON object keyed by drug class,
+	 * or null if the resource wasn't compiled
+	 */
+	static Map<String, List<Map<String, ?>>> getMutationListsByDrugClass(String resPath) {
+		MutationTable table = MUTATION_TABLES.get(resPath);
+		return table == null ? null : table.getMutationListsByDrugClass();
+	}
+
+	/**
+	 * Returns the text of a JSON resource, or null if the resource wasn't
+	 * compiled
+	 */
+	static String getJsonText(String resPath) {
+		return JSON_TEXTS.get(resPath);
+	}
+
+}
@@ -0,0 +1,56 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary of the small set of strings which are repeated
+ * throughout the data: gene names, amino acids, codons, reasons etc.
+ *
+ * Decoders pass every such value through {@link #canonicalize(String)},
+ * so all loaded tables refer to one String instance per distinct value
+ * instead of one instance per table (or per row). Only values of
+ * dictionary-like columns should be canonicalized, since entries are
+ * never evicted.
+ */
+final class StringDictionary {
+
+	private static final Map<String, String> VALUES = new ConcurrentHashMap<>();
+
+	private StringDictionary() {}
+
+	static String canonicalize(String value) {
+		if (value == null) {
+			return null;
+		}
+		String canonical = VALUES.putIfAbsent(value, value);
+		return canonical == null ? value : canonical;
+	}
+
+	static String[] canonicalize(String[] values) {
+		for (int idx = 0; idx < values.length; idx ++) {
+			values[idx] = canonicalize(values[idx]);
+		}
+		return values;
+	}
+
+	/**
+	 * Canonicalizes the string values of parsed JSON objects in place
+	 *
+	 * @param rows
+	 * @return rows
+	 */
+	@SuppressWarnings("unchecked")
+	static List<Map<String, ?>> canonicalizeValues(List<Map<String, ?>> rows) {
+		for (Map<String, ?> row : rows) {
+			for (Map.Entry<String, Object> entry : ((Map<String, Object>) row).entrySet()) {
+				if (entry.getValue() instanceof String) {
+					entry.setValue(canonicalize((String) entry.getValue()));
+				}
+			}
+		}
+		return rows;
+	}
+
+}
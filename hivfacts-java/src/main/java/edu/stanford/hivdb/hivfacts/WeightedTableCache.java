@@ -0,0 +1,293 @@
+package edu.stanford.hivdb.hivfacts;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe map of lazily loaded values bounded by their total weight,
+ * used for percent tables (see {@link HIVDataLoader#setPercentTableCacheLimit}).
+ *
+ * Values are loaded once like in {@link SingleFlightMap}, and reads of
+ * loaded values take no lock. Once the total weight exceeds the limit,
+ * the least recently or least frequently used values are evicted until it
+ * doesn't, except for the value just loaded. Evicted values may be kept
+ * softly referenced, so they are dropped under memory pressure only and
+ * are otherwise taken back without loading them again.
+ *
+ * Values which grow after they are loaded are weighed again with {@link
+ * #reweigh}. The values are kept in a set ordered by their rank under the
+ * policy. Since reads don't take a lock, a rank is only brought up to date
+ * when eviction reaches it: a stale rank is taken again with the current
+ * use of its value and put back in order.
+ */
+final class WeightedTableCache<K, V> {
+
+	private static final class Entry<V> {
+
+		private final V value;
+		// guarded by the cache
+		private long weight;
+		private Rank<?> rank;
+		private final LongAdder hits = new LongAdder();
+		private volatile long lastAccess = System.nanoTime();
+
+		private Entry(V value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+
+		private V access() {
+			hits.increment();
+			lastAccess = System.nanoTime();
+			return value;
+		}
+
+	}
+
+	private final ToLongFunction<? super V> weigher;
+	private final long maxWeight;
+	private final HIVDataLoader.EvictionPolicy policy;
+	private final boolean softReferences;
+	private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final Map<K, SoftReference<V>> evicted = new ConcurrentHashMap<>();
+	// loads in progress; removed once their value is put or dropped
+	private final Map<K, CompletableFuture<V>> loads = new ConcurrentHashMap<>();
+	// guarded by this
+	private final NavigableSet<Rank<K>> ranks = new TreeSet<>();
+	private long weight = 0;
+	private long rankSequence = 0;
+	private long evictions = 0;
+	// incremented by clear(); guarded by this
+	private long generation = 0;
+
+	/**
+	 * @param weigher estimates the retained bytes of a value
+	 * @param maxWeight the limit of the total weight; zero or less for no
+	 * 	limit
+	 * @param policy
+	 * @param softReferences keeps evicted values softly referenced
+	 */
+	WeightedTableCache(
+		ToLongFunction<? super V> weigher, long maxWeight,
+		HIVDataLoader.EvictionPolicy policy, boolean softReferences
+	) {
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+		this.policy = policy;
+		this.softReferences = softReferences;
+	}
+
+	/**
+	 * Returns the value of key, loading it first if necessary
+	 *
+	 * @param key
+	 * @param loader must not return null
+	 * @return the value
+	 */
+	V get(K key, Function<? super K, ? extends V> loader) {
+		V value = getIfLoaded(key);
+		if (value != null) {
+			return value;
+		}
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> current = loads.putIfAbsent(key, load);
+		if (current != null) {
+			return SingleFlightMap.join(current);
+		}
+		try {
+			// may have been put since the first read
+			value = getIfLoaded(key);
+			if (value == null) {
+				long loadGeneration = getGeneration();
+				SoftReference<V> ref = evicted.get(key);
+				value = ref == null ? null : ref.get();
+				if (value == null) {
+					value = loader.apply(key);
+				}
+				put(key, value, loadGeneration);
+			}
+			load.complete(value);
+			return value;
+		}
+		catch (RuntimeException|Error e) {
+			load.completeExceptionally(e);
+			throw e;
+		}
+		finally {
+			loads.remove(key, load);
+		}
+	}
+
+	/**
+	 * Returns the value of key if it is loaded and not evicted, otherwise
+	 * null
+	 */
+	V getIfLoaded(K key) {
+		Entry<V> entry = entries.get(key);
+		return entry == null ? null : entry.access();
+	}
+
+	/**
+	 * Returns the value of key if it is loaded and not evicted, otherwise
+	 * null, without counting it as a use
+	 */
+	V peek(K key) {
+		Entry<V> entry = entries.get(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Returns the keys of the values loaded and not evicted
+	 */
+	Set<K> keys() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	private synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Caches a loaded value unless the cache was cleared since its load
+	 * started, like {@link SingleFlightMap}
+	 */
+	private synchronized void put(K key, V value, long loadGeneration) {
+		if (generation != loadGeneration) {
+			return;
+		}
+		Entry<V> entry = new Entry<>(value, weigher.applyAsLong(value));
+		Entry<V> previous = entries.put(key, entry);
+		if (previous != null) {
+			weight -= previous.weight;
+			ranks.remove(previous.rank);
+		}
+		weight += entry.weight;
+		rank(key, entry);
+		evicted.remove(key);
+		evict(key);
+	}
+
+	/**
+	 * Weighs the value of key again after it grew, evicting other values
+	 * if it now exceeds the limit
+	 *
+	 * @param key
+	 * @param value ignored unless it is still the loaded value of key
+	 */
+	synchronized void reweigh(K key, V value) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null || entry.value != value) {
+			return;
+		}
+		long newWeight = weigher.applyAsLong(value);
+		weight += newWeight - entry.weight;
+		entry.weight = newWeight;
+		evict(key);
+	}
+
+	/**
+	 * Rank of an entry under the policy, as of when it was taken; ranks
+	 * with equal use are ordered by the sequence they were taken in
+	 */
+	private static final class Rank<K> implements Comparable<Rank<K>> {
+
+		private final K key;
+		private final long hits;
+		private final long lastAccess;
+		private final long sequence;
+		// the eviction which took the rank, see #evict
+		private final long eviction;
+
+		private Rank(K key, long hits, long lastAccess, long sequence, long eviction) {
+			this.key = key;
+			this.hits = hits;
+			this.lastAccess = lastAccess;
+			this.sequence = sequence;
+			this.eviction = eviction;
+		}
+
+		// LFU breaks ties by recency
+		@Override
+		public int compareTo(Rank<K> other) {
+			int cmp = Long.compare(hits, other.hits);
+			if (cmp == 0) {
+				cmp = Long.signum(lastAccess - other.lastAccess);
+			}
+			return cmp == 0 ? Long.compare(sequence, other.sequence) : cmp;
+		}
+
+	}
+
+	private long getHits(Entry<V> entry) {
+		return policy == HIVDataLoader.EvictionPolicy.LFU ? entry.hits.sum() : 0;
+	}
+
+	/**
+	 * Takes the current rank of an entry and puts it in order
+	 */
+	private Rank<K> rank(K key, Entry<V> entry) {
+		Rank<K> rank = new Rank<>(key, getHits(entry), entry.lastAccess, rankSequence ++, evictions);
+		entry.rank = rank;
+		ranks.add(rank);
+		return rank;
+	}
+
+	private void evict(K keep) {
+		if (maxWeight <= 0 || weight <= maxWeight) {
+			return;
+		}
+		long eviction = ++ evictions;
+		Rank<K> kept = null;
+		while (weight > maxWeight && !ranks.isEmpty()) {
+			Rank<K> rank = ranks.pollFirst();
+			Entry<V> entry = entries.get(rank.key);
+			if (rank.key.equals(keep)) {
+				kept = rank;
+				continue;
+			}
+			if (
+				rank.eviction != eviction &&
+				(rank.hits != getHits(entry) || rank.lastAccess != entry.lastAccess)
+			) {
+				// used since its rank was taken; ranks taken by this
+				// eviction are final, so values in use can't hold it up
+				rank(rank.key, entry);
+				continue;
+			}
+			entries.remove(rank.key);
+			weight -= entry.weight;
+			if (softReferences) {
+				evicted.put(rank.key, new SoftReference<>(entry.value));
+			}
+		}
+		if (kept != null) {
+			ranks.add(kept);
+		}
+	}
+
+	/**
+	 * Returns the estimated retained bytes of the values loaded and not
+	 * evicted
+	 */
+	synchronized long getWeight() {
+		return weight;
+	}
+
+	synchronized void clear() {
+		generation ++;
+		entries.clear();
+		evicted.clear();
+		ranks.clear();
+		weight = 0;
+	}
+
+}
@@ -0,0 +1,125 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.drugresistance.algorithm.DrugResistanceAlgorithm;
+import edu.stanford.hivdb.genotypes.GenotypeReference;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+
+public class AsyncGettersTest {
+
+	/**
+	 * Queues tasks until they are run by the test
+	 */
+	private static class QueuedExecutor implements Executor {
+
+		private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+		@Override
+		public synchronized void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		synchronized int size() {
+			return tasks.size();
+		}
+
+		void runAll() {
+			Runnable task;
+			while ((task = poll()) != null) {
+				task.run();
+			}
+		}
+
+		private synchronized Runnable poll() {
+			return tasks.poll();
+		}
+
+	}
+
+	@Test
+	public void testSingleInFlightLoad() throws InterruptedException, ExecutionException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		QueuedExecutor executor = new QueuedExecutor();
+		loader.setAsyncExecutor(executor);
+		CompletableFuture<List<GenotypeReference<HIV>>> first = loader.getGenotypeReferencesAsync();
+		CompletableFuture<List<GenotypeReference<HIV>>> second = loader.getGenotypeReferencesAsync();
+		// both callers share one load, run on the executor
+		assertEquals(1, executor.size());
+		assertFalse(first.isDone());
+		assertFalse(second.isDone());
+		executor.runAll();
+		assertSame(first.get(), second.get());
+		assertSame(loader.getGenotypeReferences(), first.get());
+	}
+
+	@Test
+	public void testLoaded() throws InterruptedException, ExecutionException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		QueuedExecutor executor = new QueuedExecutor();
+		loader.setAsyncExecutor(executor);
+		Collection<DrugResistanceAlgorithm<HIV>> algorithms = loader.getDrugResistAlgorithms();
+		CompletableFuture<Collection<DrugResistanceAlgorithm<HIV>>> future = loader.getDrugResistAlgorithmsAsync();
+		// loaded datasets are returned without a task
+		assertTrue(future.isDone());
+		assertEquals(0, executor.size());
+		assertSame(algorithms, future.get());
+	}
+
+	@Test
+	public void testPercentTables() throws InterruptedException, ExecutionException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		QueuedExecutor executor = new QueuedExecutor();
+		loader.setAsyncExecutor(executor);
+		CompletableFuture<AminoAcidPercents<HIV>> future = (
+			loader.getAminoAcidPercentsAsync(loader.getMainStrain(), "all", "all"));
+		executor.runAll();
+		assertSame(loader.getAminoAcidPercents(loader.getMainStrain(), "all", "all"), future.get());
+	}
+
+	@Test
+	public void testCallerCantCompleteSharedLoad() throws InterruptedException, ExecutionException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		QueuedExecutor executor = new QueuedExecutor();
+		loader.setAsyncExecutor(executor);
+		CompletableFuture<List<GenotypeReference<HIV>>> first = loader.getGenotypeReferencesAsync();
+		CompletableFuture<List<GenotypeReference<HIV>>> second = loader.getGenotypeReferencesAsync();
+		// each caller gets its own copy of the shared future
+		first.cancel(false);
+		executor.runAll();
+		assertSame(loader.getGenotypeReferences(), second.get());
+	}
+
+	@Test
+	public void testRejected() throws InterruptedException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		loader.setAsyncExecutor(task -> {
+			throw new RejectedExecutionException("shut down");
+		});
+		try {
+			loader.getGenotyperAsync().get();
+			fail("Loaded on a rejecting executor");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		// a later load isn't stuck with the rejected one
+		loader.setAsyncExecutor(Runnable::run);
+		assertTrue(loader.getGenotyperAsync().isDone());
+	}
+
+}
@@ -0,0 +1,50 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class ConditionalCommentsFilterTest {
+
+	private static String filter(String json, String keepGene) throws IOException {
+		return ConditionalCommentsFilter.filter(new StringReader(json), keepGene::equals);
+	}
+
+	@Test
+	public void testFilter() throws IOException {
+		String json = (
+			"[{\"commentName\":\"CA56I\",\"conditionValue\":{\"gene\":\"CA\",\"pos\":56}}," +
+			"{\"conditionValue\":{\"pos\":103,\"aas\":[\"N\",\"S\"],\"gene\":\"RT\"},\"comment\":\"K103N\"}," +
+			"{\"conditionType\":\"DRUGLEVEL\",\"conditionValue\":{\"and\":[{\"DRV\":5}]}}]"
+		);
+		assertEquals(
+			"[{\"conditionValue\":{\"pos\":103,\"aas\":[\"N\",\"S\"],\"gene\":\"RT\"},\"comment\":\"K103N\"}," +
+			"{\"conditionType\":\"DRUGLEVEL\",\"conditionValue\":{\"and\":[{\"DRV\":5}]}}]",
+			filter(json, "RT"));
+		assertEquals(
+			"[{\"conditionType\":\"DRUGLEVEL\",\"conditionValue\":{\"and\":[{\"DRV\":5}]}}]",
+			filter(json, "IN"));
+	}
+
+	@Test
+	public void testKeepsValues() throws IOException {
+		String json = "[{\"a\":null,\"b\":1.50,\"c\":true,\"d\":\"<x>\\n\",\"conditionValue\":null}]";
+		assertEquals(json, filter(json, "RT"));
+		assertEquals("[]", filter("[]", "RT"));
+	}
+
+	@Test
+	public void testMalformed() {
+		try {
+			filter("[{\"conditionValue\":{\"gene\":\"RT\"}", "RT");
+			fail("Filtered a truncated array");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ContentSharingTest {
+
+	@Test
+	public void testDisabled() {
+		ContentSharing sharing = new ContentSharing(new Object(), null, false);
+		AtomicInteger parsed = new AtomicInteger();
+		Object first = sharing.parse(String.class, "[1]", raw -> new StringBuilder(raw + parsed.incrementAndGet()));
+		Object second = sharing.parse(String.class, "[1]", raw -> new StringBuilder(raw + parsed.incrementAndGet()));
+		assertNotSame(first, second);
+		assertEquals(2, parsed.get());
+	}
+
+	@Test
+	public void testSharedBetweenLoadersOfOneVirus() {
+		Object virus = new Object();
+		ContentSharing sharing = new ContentSharing(virus, null, true);
+		ContentSharing reloaded = new ContentSharing(virus, null, true);
+		Object value = sharing.parse(String.class, "[1]", StringBuilder::new);
+		assertSame(value, reloaded.parse(String.class, "[1]", StringBuilder::new));
+		// other content, kind, virus or gene scope is parsed again
+		assertNotSame(value, reloaded.parse(String.class, "[2]", StringBuilder::new));
+		assertNotSame(value, reloaded.parse(Integer.class, "[1]", StringBuilder::new));
+		assertNotSame(value, new ContentSharing(new Object(), null, true).parse(String.class, "[1]", StringBuilder::new));
+		assertNotSame(value, new ContentSharing(virus, Collections.singleton("PR"), true)
+			.parse(String.class, "[1]", StringBuilder::new));
+		// datasets depending on others are keyed by them too
+		Object bound = sharing.load(Arrays.asList(String.class, "HIVDB_9.4"), () -> "hash", Object::new);
+		assertSame(bound, reloaded.load(Arrays.asList(String.class, "HIVDB_9.4"), () -> "hash", Object::new));
+		assertNotSame(bound, reloaded.load(Arrays.asList(String.class, "ANRS_30"), () -> "hash", Object::new));
+	}
+
+}
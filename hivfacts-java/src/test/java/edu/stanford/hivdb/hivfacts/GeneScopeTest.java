@@ -0,0 +1,47 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.mutations.Mutation;
+
+public class GeneScopeTest {
+
+	private static HIVDataLoader<HIV> newLoader() {
+		return (
+			HIVDataLoaderBuilderTest.newBuilder()
+			.geneScope(new LinkedHashSet<>(Arrays.asList("PR", "RT")))
+			.build()
+		);
+	}
+
+	@Test
+	public void testExtractMutationGene() {
+		HIVDataLoader<HIV> loader = newLoader();
+		assertEquals("HIV1RT", loader.extractMutationGene("RT:215Y").getName());
+		try {
+			loader.extractMutationGene("IN:148H");
+			fail("Extracted a gene out of the gene scope");
+		} catch (Mutation.InvalidMutationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testParseMutationString() {
+		HIVDataLoader<HIV> loader = newLoader();
+		assertEquals("HIV1PR", loader.parseMutationString("PR:84V").getGene().getName());
+		try {
+			loader.parseMutationString("CA:56I");
+			fail("Parsed a mutation out of the gene scope");
+		} catch (Mutation.InvalidMutationException e) {
+			// expected
+		}
+	}
+
+}
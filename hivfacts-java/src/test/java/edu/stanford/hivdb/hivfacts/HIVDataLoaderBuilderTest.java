@@ -0,0 +1,86 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class HIVDataLoaderBuilderTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(HIVDataLoader.GENE_SCOPE_PROPERTY);
+	}
+
+	static HIVDataLoader.Builder<HIV> newBuilder() {
+		return (
+			HIVDataLoader.builder(HIV.getInstance(), "HIV", "HIV1")
+			.strainsResPath("strains_hiv1.json")
+			.genesResPath("genes_hiv1.json")
+			.drugClassesResPath("drug-classes_hiv1.json")
+			.drugsResPath("drugs.json")
+			.drmsResPath("drms_hiv1.json")
+			.sdrmsResPath("sdrms_hiv1.json")
+			.tsmsResPath("tsms_hiv1.json")
+			.apobecsResPath("apobecs/apobecs.json")
+			.apobecDrmsResPath("apobecs/apobec_drms.json")
+			.aaPcntsResPath("aapcnt/rx-%s_subtype-%s.json")
+			.codonPcntsResPath("codonpcnt/rx-%s_subtype-%s.json")
+			.mutTypesResPath("mutation-types.json")
+			.mutTypePairsResPath("mutation-type-pairs_hiv1.json")
+			.mainSubtypesResPath("main-subtypes_hiv1.json")
+			.genotypeReferencesResPath("genotypes/genotype-references_hiv1.json")
+			.genotypesResPath("genotypes/genotypes_hiv1.json")
+			.algorithmsIndexPath("algorithms/versions.json")
+			.algorithmsResPath("algorithms/%s_%s.xml")
+			.condCommentsResPath("conditional-comments_hiv1.json")
+			.alignConfigResPath("alignment-config_hiv1.json")
+			.assemblyConfigResPath("assembly-config_hiv1.json")
+		);
+	}
+
+	@Test
+	public void testBuild() {
+		HIVDataSource dataSource = HIVDataSource.classpath();
+		HIVDataLoader<HIV> loader = (
+			newBuilder()
+			.dataSource(dataSource)
+			.geneScope(new LinkedHashSet<>(Arrays.asList("PR", "RT")))
+			.build()
+		);
+		assertEquals("HIV", loader.getName());
+		assertSame(dataSource, loader.getDataSource());
+		assertEquals(new LinkedHashSet<>(Arrays.asList("PR", "RT")), loader.getGeneScope());
+		assertEquals("HIV1", loader.getMainStrain().getName());
+	}
+
+	@Test
+	public void testMissingResPath() {
+		try {
+			newBuilder().genesResPath(null).build();
+			fail("Built a loader without genes");
+		} catch (NullPointerException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("genesResPath"));
+		}
+	}
+
+	@Test
+	public void testDefaultGeneScope() {
+		System.setProperty(HIVDataLoader.GENE_SCOPE_PROPERTY, "in, pr");
+		assertEquals(new LinkedHashSet<>(Arrays.asList("IN", "PR")), newBuilder().build().getGeneScope());
+		// an explicit scope, including all genes, overrides the property
+		assertNull(newBuilder().geneScope(null).build().getGeneScope());
+		assertEquals(
+			Collections.singleton("RT"),
+			newBuilder().geneScope(Collections.singleton("RT")).build().getGeneScope());
+	}
+
+}
@@ -0,0 +1,146 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HIVDataSourceTest {
+
+	private static final Path DATA_DIR = Paths.get("..", "data");
+	private static final String PCNT_PATH = "aapcnt/rx-all_subtype-B.json";
+
+	private Path dataDir;
+
+	@Before
+	public void setUp() throws IOException {
+		dataDir = Files.createTempDirectory("hivfacts-ds");
+		Files.createDirectories(dataDir.resolve("aapcnt"));
+		Files.copy(DATA_DIR.resolve(PCNT_PATH), dataDir.resolve(PCNT_PATH));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(dataDir)) {
+			paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private static String read(HIVDataSource source, String resPath) throws IOException {
+		try (InputStream stream = source.open(resPath)) {
+			return IOUtils.toString(stream, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testDirectoryResources() throws IOException {
+		HIVDataSource source = HIVDataSource.directory(dataDir);
+		assertTrue(source.exists(PCNT_PATH));
+		assertFalse(source.exists("aapcnt/rx-all_subtype-A.json"));
+		assertEquals(
+			new String(Files.readAllBytes(dataDir.resolve(PCNT_PATH)), StandardCharsets.UTF_8),
+			read(source, PCNT_PATH));
+		ByteBuffer buf = source.map(PCNT_PATH);
+		assertTrue(buf.isDirect());
+		assertEquals(Files.size(dataDir.resolve(PCNT_PATH)), buf.remaining());
+		try {
+			source.open("aapcnt/rx-all_subtype-A.json");
+			fail("Opened a missing resource");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testDirectoryRejectsOutsidePaths() throws IOException {
+		Files.write(dataDir.resolve("outside.json"), "[]".getBytes(StandardCharsets.UTF_8));
+		HIVDataSource source = HIVDataSource.directory(dataDir.resolve("aapcnt"));
+		assertFalse(source.exists("../outside.json"));
+		assertNull(source.getWritableFile("../escaped.pcnt"));
+		try {
+			source.open("../outside.json");
+			fail("Opened a resource outside the data directory");
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCompiledTableOfDirectory() throws IOException {
+		HIVDataSource source = HIVDataSource.directory(dataDir);
+		String binPath = PercentTableCodec.toBinaryPath(PCNT_PATH);
+		assertEquals(-1, source.lastModified(binPath));
+		Path target = source.getWritableFile(binPath);
+		Path indexTarget = source.getWritableFile(PercentTableIndex.toIndexPath(PCNT_PATH));
+		assertNotNull(target);
+		PercentTableCompiler.compile(
+			dataDir.resolve(PCNT_PATH), target, indexTarget, PercentTable.Kind.AMINO_ACID);
+		PercentTable compiled = PercentTableCodec.read(source.map(binPath));
+		assertTrue(compiled.isDirect());
+		assertTrue(compiled.size() > 0);
+
+		// a source edited after compiling is newer than its compiled form
+		Files.setLastModifiedTime(target, FileTime.fromMillis(1000));
+		Files.setLastModifiedTime(dataDir.resolve(PCNT_PATH), FileTime.fromMillis(2000));
+		assertTrue(source.lastModified(PCNT_PATH) > source.lastModified(binPath));
+	}
+
+	private void gzip(String resPath, String gzPath) throws IOException {
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dataDir.resolve(gzPath)))) {
+			Files.copy(dataDir.resolve(resPath), out);
+		}
+	}
+
+	@Test
+	public void testCompressedResources() throws IOException {
+		String expected = new String(Files.readAllBytes(dataDir.resolve(PCNT_PATH)), StandardCharsets.UTF_8);
+		gzip(PCNT_PATH, "aapcnt/compressed.json.gz");
+		HIVDataSource source = HIVDataSource.directory(dataDir);
+		assertTrue(source.exists("aapcnt/compressed.json"));
+		assertEquals(expected, read(source, "aapcnt/compressed.json"));
+		ByteBuffer buf = source.map("aapcnt/compressed.json");
+		byte[] bytes = new byte[buf.remaining()];
+		buf.get(bytes);
+		assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+		assertTrue(source.lastModified("aapcnt/compressed.json") > 0);
+	}
+
+	@Test
+	public void testCompressedContentUnderPlainName() throws IOException {
+		String expected = new String(Files.readAllBytes(dataDir.resolve(PCNT_PATH)), StandardCharsets.UTF_8);
+		gzip(PCNT_PATH, "aapcnt/gzipped.json");
+		HIVDataSource source = HIVDataSource.directory(dataDir);
+		assertEquals(expected, read(source, "aapcnt/gzipped.json"));
+		ByteBuffer buf = source.map("aapcnt/gzipped.json");
+		assertFalse(buf.isDirect());
+		assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, buf.remaining());
+	}
+
+	@Test
+	public void testClasspathIsReadOnly() {
+		HIVDataSource source = HIVDataSource.classpath();
+		assertNull(source.getWritableFile(PCNT_PATH));
+		assertEquals(-1, source.lastModified(PCNT_PATH));
+	}
+
+}
@@ -0,0 +1,100 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.mutations.Mutation;
+import edu.stanford.hivdb.mutations.MutationSet;
+import edu.stanford.hivdb.viruses.Strain;
+
+public class HIVReloadTest {
+
+	@Test
+	public void testReloadUnderConcurrentReaders() throws InterruptedException {
+		HIV hiv = HIV.getInstance();
+		AtomicBoolean done = new AtomicBoolean();
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		Thread[] readers = new Thread[4];
+		for (int i = 0; i < readers.length; i ++) {
+			readers[i] = new Thread(() -> {
+				try {
+					while (!done.get()) {
+						assertFalse(hiv.getDrugs().isEmpty());
+						assertFalse(hiv.getAminoAcidPercents(hiv.getMainStrain(), "all", "B").get().isEmpty());
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			});
+			readers[i].start();
+		}
+		try {
+			for (int i = 0; i < 5; i ++) {
+				// the classpath source; a data directory would be compiled in place
+				hiv.reload(HIVDataSource.classpath());
+			}
+		} finally {
+			done.set(true);
+			for (Thread reader : readers) {
+				reader.join();
+			}
+		}
+		assertTrue(String.valueOf(errors), errors.isEmpty());
+	}
+
+	@Test
+	public void testReloadKeepsVirusIdentity() {
+		HIV hiv = HIV.getInstance();
+		Strain<HIV> oldStrain = hiv.getMainStrain();
+		hiv.getDrugResistMutations();
+		hiv.reload(HIVDataSource.classpath());
+		Strain<HIV> newStrain = hiv.getMainStrain();
+		assertSame(hiv, newStrain.getVirusInstance());
+		// objects loaded before the reload can still be passed in
+		assertFalse(hiv.getAminoAcidPercents(oldStrain, "all", "B").get().isEmpty());
+		// datasets parsed while warming up refer to the new genes
+		for (MutationSet<HIV> muts : hiv.getDrugResistMutations().values()) {
+			for (Mutation<HIV> mut : muts) {
+				assertSame(hiv.getGene(mut.getGene().getName()), mut.getGene());
+			}
+		}
+	}
+
+	@Test
+	public void testReleaseObjectsAreRejected() {
+		HIV hiv = HIV.getInstance();
+		HIVDataLoader<HIV> release = hiv.registerDataRelease("HIVReloadTest", HIVDataSource.classpath());
+		Strain<HIV> releaseStrain = release.getMainStrain();
+		assertNotSame(hiv, releaseStrain.getVirusInstance());
+		assertSame(releaseStrain.getVirusInstance(), release.getGene("HIV1PR").getStrain().getVirusInstance());
+		try {
+			hiv.getAminoAcidPercents(releaseStrain, "all", "B");
+			fail("Accepted a strain of a data release");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			release.getMainSubtypes(hiv.getMainStrain());
+			fail("Accepted a strain of the current data");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			hiv.parseMutationString(release.getGene("HIV1RT"), "K103N");
+			fail("Accepted a gene of a data release");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+public class JsonArrayChunksTest {
+
+	private static List<JsonElement> parseAll(InputStream input, ForkJoinPool pool) throws IOException {
+		List<JsonElement> elements = new ArrayList<>();
+		for (JsonArray chunk : JsonArrayChunks.parse(input, pool, reader -> JsonParser.parseReader(reader).getAsJsonArray())) {
+			chunk.forEach(elements::add);
+		}
+		return elements;
+	}
+
+	private static byte[] newArray(int numElements) {
+		StringBuilder json = new StringBuilder("\uFEFF [\n");
+		for (int i = 0; i < numElements; i ++) {
+			if (i > 0) {
+				json.append(",\n");
+			}
+			// strings with brackets and commas must not split elements
+			json.append(String.format("{\"id\": %d, \"text\": \"[a, \\\"b\\\"], {c}\", \"values\": [%d, %d]}", i, i, -i));
+		}
+		json.append("\n]\n");
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testChunksMatchWholeArray() throws IOException {
+		byte[] bytes = newArray(20000);
+		assertTrue(bytes.length > JsonArrayChunks.MIN_CHUNK_BYTES * 4);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<JsonElement> whole = parseAll(new ByteArrayInputStream(bytes), null);
+			List<JsonElement> chunked = parseAll(new ByteArrayInputStream(bytes), pool);
+			assertEquals(20000, whole.size());
+			assertEquals(whole, chunked);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testChunksOnCallingThread() throws IOException {
+		byte[] bytes = newArray(5000);
+		List<JsonElement> whole = parseAll(new ByteArrayInputStream(bytes), null);
+		List<JsonElement> chunked = new ArrayList<>();
+		for (JsonArray chunk : JsonArrayChunks.parseChunks(
+			new ByteArrayInputStream(bytes), null, reader -> JsonParser.parseReader(reader).getAsJsonArray()
+		)) {
+			chunk.forEach(chunked::add);
+		}
+		assertEquals(whole, chunked);
+	}
+
+	@Test
+	public void testEmptyArray() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			byte[] bytes = " [ ] ".getBytes(StandardCharsets.UTF_8);
+			assertTrue(parseAll(new ByteArrayInputStream(bytes), pool).isEmpty());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testPercentTableChunks() throws IOException {
+		byte[] bytes = Files.readAllBytes(Paths.get("..", "data", "aapcnt", "rx-all_subtype-B.json"));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<PercentTable> chunks = JsonArrayChunks.parse(
+				new ByteArrayInputStream(bytes), pool,
+				reader -> PercentTableJsonReader.read(reader, PercentTable.Kind.AMINO_ACID));
+			PercentTable table = PercentTable.concat(PercentTable.Kind.AMINO_ACID, chunks);
+			PercentTable whole = PercentTableJsonReader.read(
+				new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8),
+				PercentTable.Kind.AMINO_ACID);
+			assertEquals(whole.size(), table.size());
+			for (int row = 0; row < whole.size(); row ++) {
+				assertEquals(whole.getGene(row), table.getGene(row));
+				assertEquals(whole.getPosition(row), table.getPosition(row));
+				assertEquals(whole.getSymbol(row), table.getSymbol(row));
+				assertEquals(whole.getTotal(row), table.getTotal(row));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
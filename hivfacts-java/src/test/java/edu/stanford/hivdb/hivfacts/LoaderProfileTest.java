@@ -0,0 +1,128 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoaderProfileTest {
+
+	private Path dir;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("hivfacts-profile");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		LoaderProfile profile = new LoaderProfile(true);
+		profile.recordAminoAcidPercents("HIV1", "all", "B");
+		profile.recordAminoAcidPercents("HIV1", "all", "B");
+		profile.recordCodonPercents("HIV1", "naive", "C");
+		profile.recordAlgorithms(Arrays.asList("HIVDB_9.4", "ANRS_30"));
+		profile.recordMutationPrevalenceGene("HIV1PR");
+		profile.recordNumPatientsStrain("HIV1");
+		Path file = dir.resolve("sub").resolve("HIV.profile.json");
+		profile.write(file, "HIV", EnumSet.of(HIVDataLoader.Dataset.DRUGS, HIVDataLoader.Dataset.GENES));
+
+		LoaderProfile saved = LoaderProfile.read(file, "HIV");
+		assertNotNull(saved);
+		assertEquals(EnumSet.of(HIVDataLoader.Dataset.DRUGS, HIVDataLoader.Dataset.GENES), saved.getDatasets());
+		assertEquals(Collections.singleton(Arrays.asList("HIV1", "all", "B")), new HashSet<>(saved.getAminoAcidPercents()));
+		assertEquals(Collections.singleton(Arrays.asList("HIV1", "naive", "C")), new HashSet<>(saved.getCodonPercents()));
+		assertEquals(new HashSet<>(Arrays.asList("HIVDB_9.4", "ANRS_30")), new HashSet<>(saved.getAlgorithms()));
+		assertEquals(Collections.singleton("HIV1PR"), new HashSet<>(saved.getMutationPrevalenceGenes()));
+		assertEquals(Collections.singleton("HIV1"), new HashSet<>(saved.getNumPatientsStrains()));
+		// only the profile of the same virus is read
+		assertNull(LoaderProfile.read(file, "HIV2"));
+	}
+
+	@Test
+	public void testNotRecording() {
+		LoaderProfile profile = new LoaderProfile(false);
+		profile.recordAminoAcidPercents("HIV1", "all", "B");
+		profile.recordAlgorithms(Arrays.asList("HIVDB_9.4"));
+		LoaderProfile other = new LoaderProfile(true);
+		other.recordNumPatientsStrain("HIV1");
+		profile.recordAll(other);
+		assertTrue(profile.getAminoAcidPercents().isEmpty());
+		assertTrue(profile.getAlgorithms().isEmpty());
+		assertTrue(profile.getNumPatientsStrains().isEmpty());
+	}
+
+	@Test
+	public void testInvalidFiles() throws IOException {
+		assertNull(LoaderProfile.read(dir.resolve("missing.json"), "HIV"));
+		Path file = dir.resolve("invalid.json");
+		Files.write(file, "{\"virus\": ".getBytes(StandardCharsets.UTF_8));
+		assertNull(LoaderProfile.read(file, "HIV"));
+		Files.write(file, "{\"virus\": \"HIV\", \"datasets\": [\"DRUGS\", \"UNKNOWN\"], \"algorithms\": [null]}"
+			.getBytes(StandardCharsets.UTF_8));
+		LoaderProfile profile = LoaderProfile.read(file, "HIV");
+		assertEquals(EnumSet.of(HIVDataLoader.Dataset.DRUGS), profile.getDatasets());
+		assertTrue(profile.getAlgorithms().isEmpty());
+	}
+
+
+	@Test
+	public void testSaveAndReplay() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+		HIVDataLoader<HIV> loader;
+		System.setProperty(HIVDataLoader.PROFILE_RECORDING_PROPERTY, "true");
+		try {
+			loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		} finally {
+			System.clearProperty(HIVDataLoader.PROFILE_RECORDING_PROPERTY);
+		}
+		loader.getDrugs();
+		loader.getAminoAcidPercents(loader.getMainStrain(), "all", "all");
+		loader.getDrugResistAlgorithm("HIVDB", "6.3");
+		Path file = dir.resolve("HIV.profile.json");
+		loader.saveProfile(file);
+		loader.saveProfile(file);
+		// profiles are written through a temporary file which is moved in place
+		try (Stream<Path> paths = Files.list(dir)) {
+			assertEquals(Collections.singletonList(file), paths.collect(Collectors.toList()));
+		}
+
+		HIVDataLoader<HIV> replayed = HIVDataLoaderBuilderTest.newBuilder().build();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			replayed.replayProfile(file, executor).get(60, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		HIVDataLoader.State<HIV> state = replayed.getState();
+		assertTrue(state.isLoaded(HIVDataLoader.Dataset.DRUGS));
+		assertTrue(state.isLoaded(HIVDataLoader.Dataset.DRUG_RESIST_ALGORITHMS));
+		assertTrue(replayed.getPercentTableCacheBytes() > 0);
+	}
+
+}
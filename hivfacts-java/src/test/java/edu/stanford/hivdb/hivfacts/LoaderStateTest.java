@@ -0,0 +1,68 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class LoaderStateTest {
+
+	@Test
+	public void testEmptyState() {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		HIVDataLoader.State<HIV> state = loader.getState();
+		assertFalse(state.isComplete());
+		assertTrue(state.getLoadedDatasets().isEmpty());
+		assertNull(state.getStrains());
+		assertNull(state.getMainStrain());
+		assertNull(state.getDrugResistAlgorithm("HIVDB_6.3"));
+		assertSame(state, loader.getState());
+	}
+
+	@Test
+	public void testPublishedStatesAreImmutable() {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		HIVDataLoader.State<HIV> before = loader.getState();
+		loader.getGene("HIV1RT");
+		HIVDataLoader.State<HIV> after = loader.getState();
+		assertNotSame(before, after);
+		// states taken before are left as they were
+		assertNull(before.getGene("HIV1RT"));
+		assertFalse(before.isLoaded(HIVDataLoader.Dataset.GENES));
+		assertTrue(after.isLoaded(HIVDataLoader.Dataset.GENES));
+		assertSame(loader.getGene("HIV1RT"), after.getGene("HIV1RT"));
+		// loading again doesn't publish another state
+		loader.getGene("HIV1PR");
+		assertSame(after, loader.getState());
+	}
+
+	@Test
+	public void testCompleteState() {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		HIVDataLoader.State<HIV> state = loader.getCompleteState();
+		assertTrue(state.isComplete());
+		assertSame(state, loader.getCompleteState());
+		assertEquals(
+			EnumSet.complementOf(EnumSet.of(
+				HIVDataLoader.Dataset.AMINO_ACID_PERCENTS, HIVDataLoader.Dataset.CODON_PERCENTS,
+				HIVDataLoader.Dataset.NUM_PATIENTS_FOR_AA_PERCENTS, HIVDataLoader.Dataset.MUTATION_PREVALENCES
+			)),
+			state.getLoadedDatasets());
+		assertSame(loader.getDrugResistAlgorithm("HIVDB", "6.3"), state.getDrugResistAlgorithm("HIVDB", "6.3"));
+		assertEquals(loader.getDrugResistAlgorithms(), state.getDrugResistAlgorithms());
+		assertEquals(loader.getDrugs(), state.getDrugs());
+		assertEquals(loader.getDrugClasses(), state.getDrugClasses());
+		assertNotNull(state.getGenotypeUnknown());
+		// percent tables are cached by the loader and not part of the state
+		loader.getAminoAcidPercents(loader.getMainStrain(), "all", "all");
+		assertSame(state, loader.getState());
+	}
+
+}
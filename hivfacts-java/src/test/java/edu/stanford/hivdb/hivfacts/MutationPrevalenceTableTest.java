@@ -0,0 +1,146 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.stanford.hivdb.hivfacts.hiv2.HIV2;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.mutations.MutationPrevalence;
+
+public class MutationPrevalenceTableTest {
+
+	private static final String RELEASE_NAME = "MutationPrevalenceTableTest";
+
+	private Path dataDir;
+
+	@Before
+	public void setUp() throws IOException {
+		dataDir = Files.createTempDirectory("hivfacts-mpv");
+		Files.createDirectories(dataDir.resolve("aapcnt"));
+		Files.createDirectories(dataDir.resolve("aapcnt-hiv2"));
+		Files.createDirectories(dataDir.resolve("codonpcnt"));
+		write("aapcnt/rx-all_subtype-B.json", "[]");
+		write("aapcnt/rx-all_subtype-B.csv", "gene,position\n");
+		write("aapcnt/README", "not a source");
+		write("aapcnt-hiv2/rx-all_subtype-A.json", "[]");
+		write("codonpcnt/rx-all_subtype-B.json", "[]");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		HIV.getInstance().unregisterDataRelease(RELEASE_NAME);
+		try (Stream<Path> paths = Files.walk(dataDir)) {
+			paths
+				.sorted(Collections.reverseOrder())
+				.forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private void write(String resPath, String content) throws IOException {
+		Files.write(dataDir.resolve(resPath), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private MutationPrevalenceTable compile(List<String> sources) throws IOException {
+		HIVDataSource dataSource = HIVDataSource.directory(dataDir);
+		String digest = MutationPrevalenceTable.digestSources(dataSource, sources);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MutationPrevalenceTable.<HIV>write(Collections.emptyMap(), sources, digest, out);
+		return MutationPrevalenceTable.read(ByteBuffer.wrap(out.toByteArray()));
+	}
+
+	@Test
+	public void testListSources() throws IOException {
+		assertEquals(
+			Arrays.asList(
+				"aapcnt-hiv2/rx-all_subtype-A.json",
+				"aapcnt/rx-all_subtype-B.csv",
+				"aapcnt/rx-all_subtype-B.json"),
+			MutationPrevalenceCompiler.listSources(dataDir));
+	}
+
+	@Test
+	public void testMatchesUnchangedSources() throws IOException {
+		MutationPrevalenceTable table = compile(MutationPrevalenceCompiler.listSources(dataDir));
+		assertTrue(table.matchesSources(HIVDataSource.directory(dataDir)));
+		// files which are not sources don't matter
+		write("codonpcnt/rx-all_subtype-B.json", "[{}]");
+		assertTrue(table.matchesSources(HIVDataSource.directory(dataDir)));
+	}
+
+	@Test
+	public void testChangedSource() throws IOException {
+		MutationPrevalenceTable table = compile(MutationPrevalenceCompiler.listSources(dataDir));
+		write("aapcnt/rx-all_subtype-B.json", "[{}]");
+		assertFalse(table.matchesSources(HIVDataSource.directory(dataDir)));
+	}
+
+	@Test
+	public void testMissingSource() throws IOException {
+		MutationPrevalenceTable table = compile(MutationPrevalenceCompiler.listSources(dataDir));
+		Files.delete(dataDir.resolve("aapcnt-hiv2/rx-all_subtype-A.json"));
+		assertFalse(table.matchesSources(HIVDataSource.directory(dataDir)));
+	}
+
+	@Test
+	public void testAddedSourceIgnored() throws IOException {
+		// only the sources the table was computed from are checked
+		MutationPrevalenceTable table = compile(MutationPrevalenceCompiler.listSources(dataDir));
+		write("aapcnt/rx-naive_subtype-C.json", "[]");
+		assertTrue(table.matchesSources(HIVDataSource.directory(dataDir)));
+	}
+
+
+	@Test
+	public void testCompile() throws IOException {
+		Path outputDir = dataDir.resolve("out");
+		MutationPrevalenceCompiler.compile(HIVDataSource.classpath(), Collections.emptyList(), outputDir);
+		// the compiler loads the data source as releases which it drops again
+		assertFalse(HIV.getInstance().getDataReleaseNames().contains("mutation-prevalence-compiler"));
+		assertFalse(HIV2.getInstance().getDataReleaseNames().contains("mutation-prevalence-compiler"));
+		MutationPrevalenceTable table = MutationPrevalenceTable.read(ByteBuffer.wrap(Files.readAllBytes(
+			outputDir.resolve(String.format(MutationPrevalenceTable.RESPATH, "HIV")))));
+		assertTrue(table.matchesSources(HIVDataSource.classpath()));
+		HIVDataLoader<HIV> loader = HIV.getInstance().registerDataRelease(RELEASE_NAME, HIVDataSource.classpath());
+		GenePosition<HIV> genePos = new GenePosition<>(loader.getGene("HIV1RT"), 184);
+		List<MutationPrevalence<HIV>> expected = loader.computeMutationPrevalence(genePos);
+		List<MutationPrevalence<HIV>> mutPrevs = table.get(genePos);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected.size(), mutPrevs.size());
+		for (int i = 0; i < expected.size(); i ++) {
+			assertEquals(expected.get(i).getAA(), mutPrevs.get(i).getAA());
+			assertEquals(expected.get(i).getTotalNaive(), mutPrevs.get(i).getTotalNaive());
+			assertEquals(expected.get(i).getFrequencyTreated(), mutPrevs.get(i).getFrequencyTreated());
+		}
+		assertTrue(Files.exists(outputDir.resolve(String.format(MutationPrevalenceTable.RESPATH, "HIV2"))));
+	}
+
+	@Test
+	public void testGetReturnsCopies() {
+		HIVDataLoader<HIV> loader = HIV.getInstance().registerDataRelease(RELEASE_NAME, HIVDataSource.classpath());
+		GenePosition<HIV> genePos = new GenePosition<>(loader.getGene("HIV1PR"), 90);
+		List<MutationPrevalence<HIV>> mutPrevs = loader.getMutationPrevalence(genePos);
+		assertFalse(mutPrevs.isEmpty());
+		mutPrevs.clear();
+		// callers can't change the cached prevalences
+		assertFalse(loader.getMutationPrevalence(genePos).isEmpty());
+		assertNotSame(loader.getMutationPrevalence(genePos), loader.getMutationPrevalence(genePos));
+	}
+
+}
@@ -0,0 +1,80 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.viruses.Gene;
+
+public class NumPatientsTableTest {
+
+	private final HIV hiv = HIV.getInstance();
+
+	private NumPatientsTable<HIV> newTable() {
+		Map<Gene<HIV>, Map<String, Integer[]>> numPatients = new LinkedHashMap<>();
+		Map<String, Integer[]> prNumPatients = new LinkedHashMap<>();
+		prNumPatients.put("naive_all", new Integer[] {10, null, 30});
+		prNumPatients.put("art_all", new Integer[] {4, 5, 6});
+		numPatients.put(hiv.getGene("HIV1PR"), prNumPatients);
+		return NumPatientsTable.fromBoxedMap(hiv.getMainStrain(), numPatients);
+	}
+
+	@Test
+	public void testKeys() {
+		NumPatientsTable<HIV> table = newTable();
+		assertEquals(Arrays.asList("art_all", "naive_all"), table.getKeys());
+		assertEquals(1, table.indexOfKey("naive_all"));
+		assertEquals(-1, table.indexOfKey("naive_B"));
+	}
+
+	@Test
+	public void testGetCount() {
+		NumPatientsTable<HIV> table = newTable();
+		Gene<HIV> pr = hiv.getGene("HIV1PR");
+		int naive = table.indexOfKey("naive_all");
+		assertEquals(10, table.getCount(pr, naive, 1));
+		assertEquals(NumPatientsTable.UNKNOWN, table.getCount(pr, naive, 2));
+		assertEquals(NumPatientsTable.UNKNOWN, table.getCount(pr, naive, 4));
+		assertEquals(NumPatientsTable.UNKNOWN, table.getCount(hiv.getGene("HIV1RT"), naive, 1));
+	}
+
+	@Test
+	public void testGetCountsReturnsCopies() {
+		NumPatientsTable<HIV> table = newTable();
+		Gene<HIV> pr = hiv.getGene("HIV1PR");
+		int[] counts = table.getCounts(pr, "art_all");
+		assertArrayEquals(new int[] {4, 5, 6}, counts);
+		counts[0] = 0;
+		// callers can't change the table
+		assertArrayEquals(new int[] {4, 5, 6}, table.getCounts(pr, "art_all"));
+		assertNull(table.getCounts(pr, "naive_B"));
+		assertNull(table.getCounts(hiv.getGene("HIV1RT"), "art_all"));
+	}
+
+	@Test
+	public void testBoxedMap() {
+		NumPatientsTable<HIV> table = newTable();
+		Map<Gene<HIV>, Map<String, Integer[]>> boxed = table.toBoxedMap();
+		// boxed once and shared
+		assertSame(boxed, table.toBoxedMap());
+		Map<String, Integer[]> prBoxed = boxed.get(hiv.getGene("HIV1PR"));
+		assertSame(prBoxed.get("naive_all"), prBoxed.get("naive_all"));
+		assertArrayEquals(new Integer[] {10, null, 30}, prBoxed.get("naive_all"));
+		assertArrayEquals(new Integer[] {4, 5, 6}, prBoxed.get("art_all"));
+		try {
+			prBoxed.remove("art_all");
+			fail("Modified the boxed map");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.mutations.AminoAcidPercent;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+import edu.stanford.hivdb.viruses.Strain;
+
+public class PercentTableArenaTest {
+
+	@Test
+	public void testCloseFreesTables() {
+		PercentTableArena arena = PercentTableArena.open();
+		MemorySegment segment1 = arena.allocate(64);
+		MemorySegment segment2 = arena.allocate(128);
+		segment1.set(ValueLayout.JAVA_INT, 0, 42);
+		assertEquals(42, segment1.get(ValueLayout.JAVA_INT, 0));
+		assertEquals(192, arena.getByteSize());
+
+		arena.close();
+		assertFalse(arena.isAlive());
+		assertEquals(0, arena.getByteSize());
+		assertFalse(segment1.scope().isAlive());
+		assertFalse(segment2.scope().isAlive());
+		try {
+			segment1.get(ValueLayout.JAVA_INT, 0);
+			fail("Read a segment of a closed arena");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			arena.allocate(64);
+			fail("Allocated from a closed arena");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		// closing twice has no effect
+		arena.close();
+	}
+
+	@Test
+	public void testCloseListeners() {
+		PercentTableArena arena = PercentTableArena.open();
+		AtomicInteger calls = new AtomicInteger();
+		arena.addCloseListener(calls::incrementAndGet);
+		assertEquals(0, calls.get());
+		arena.close();
+		assertEquals(1, calls.get());
+		arena.close();
+		assertEquals(1, calls.get());
+		arena.addCloseListener(calls::incrementAndGet);
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void testLoaderDropsTablesOfClosedArena() {
+		HIV hiv = HIV.getInstance();
+		Strain<HIV> strain = hiv.getMainStrain();
+		PercentTableArena arena = PercentTableArena.open();
+		try {
+			hiv.setPercentTableArena(arena);
+			AminoAcidPercents<HIV> offHeap = hiv.getAminoAcidPercents(strain, "all", "B");
+			assertTrue(offHeap instanceof OffHeapAminoAcidPercents);
+			assertTrue(arena.getByteSize() > 0);
+			List<AminoAcidPercent<HIV>> expected = offHeap.get();
+			assertFalse(expected.isEmpty());
+
+			arena.close();
+			AminoAcidPercents<HIV> onHeap = hiv.getAminoAcidPercents(strain, "all", "B");
+			assertFalse(onHeap instanceof OffHeapAminoAcidPercents);
+			List<AminoAcidPercent<HIV>> actual = onHeap.get();
+			assertEquals(expected.size(), actual.size());
+			for (AminoAcidPercent<HIV> pcnt : expected) {
+				AminoAcidPercent<HIV> heapPcnt = onHeap.get(pcnt.getGene(), pcnt.getPosition(), pcnt.getAA());
+				assertEquals(pcnt.getPercent(), heapPcnt.getPercent());
+				assertEquals(pcnt.getCount(), heapPcnt.getCount());
+			}
+			try {
+				offHeap.get();
+				fail("Read a table of a closed arena");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		} finally {
+			hiv.setPercentTableArena(null);
+		}
+	}
+
+}
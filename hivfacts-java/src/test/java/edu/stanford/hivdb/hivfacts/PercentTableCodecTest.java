@@ -0,0 +1,172 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class PercentTableCodecTest {
+
+	private static final Path DATA_DIR = Paths.get("..", "data");
+
+	private static PercentTable readJson(String resPath, PercentTable.Kind kind) throws IOException {
+		try (Reader reader = Files.newBufferedReader(DATA_DIR.resolve(resPath), StandardCharsets.UTF_8)) {
+			return PercentTableJsonReader.read(reader, kind);
+		}
+	}
+
+	private static PercentTable readCsv(String resPath) throws IOException {
+		try (Reader reader = Files.newBufferedReader(DATA_DIR.resolve(resPath), StandardCharsets.UTF_8)) {
+			return PercentTableCsvReader.read(reader);
+		}
+	}
+
+	private static byte[] encode(PercentTable table) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PercentTableCodec.write(table, out);
+		return out.toByteArray();
+	}
+
+	private static void assertSameRows(PercentTable expected, PercentTable actual) {
+		assertEquals(expected.getKind(), actual.getKind());
+		assertEquals(expected.size(), actual.size());
+		for (int row = 0; row < expected.size(); row ++) {
+			String message = "row " + row;
+			assertEquals(message, expected.getGene(row), actual.getGene(row));
+			assertEquals(message, expected.getPosition(row), actual.getPosition(row));
+			assertEquals(message, expected.getSymbol(row), actual.getSymbol(row));
+			assertEquals(message, expected.getPercent(row), actual.getPercent(row), 0.);
+			assertEquals(message, expected.getCount(row), actual.getCount(row));
+			assertEquals(message, expected.getTotal(row), actual.getTotal(row));
+			assertEquals(message, expected.getReason(row), actual.getReason(row));
+			assertEquals(message, expected.isUnusual(row), actual.isUnusual(row));
+		}
+	}
+
+	@Test
+	public void testCsvMatchesJson() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		PercentTable csv = readCsv("aapcnt/rx-all_subtype-B.csv");
+		assertTrue(json.size() > 0);
+		assertSameRows(json, csv);
+	}
+
+	@Test
+	public void testAminoAcidRoundTrip() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		assertSameRows(json, PercentTableCodec.read(ByteBuffer.wrap(encode(json))));
+	}
+
+	@Test
+	public void testCodonRoundTrip() throws IOException {
+		PercentTable json = readJson("codonpcnt/rx-all_subtype-B.json", PercentTable.Kind.CODON);
+		assertTrue(json.size() > 0);
+		assertSameRows(json, PercentTableCodec.read(ByteBuffer.wrap(encode(json))));
+	}
+
+	@Test
+	public void testReadDirectBuffer() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		byte[] bytes = encode(json);
+		ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+		buf.put(bytes).flip();
+		PercentTable table = PercentTableCodec.read(buf);
+		assertTrue(table.isDirect());
+		assertSameRows(json, table);
+	}
+
+	@Test
+	public void testReadRowRange() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		int firstRow = json.size() / 3;
+		int endRow = firstRow * 2;
+		PercentTable table = PercentTableCodec.read(ByteBuffer.wrap(encode(json)), firstRow, endRow);
+		assertEquals(endRow - firstRow, table.size());
+		for (int row = 0; row < table.size(); row ++) {
+			assertEquals(json.getGene(firstRow + row), table.getGene(row));
+			assertEquals(json.getPosition(firstRow + row), table.getPosition(row));
+			assertEquals(json.getSymbol(firstRow + row), table.getSymbol(row));
+		}
+	}
+
+	@Test
+	public void testRejectTruncated() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		byte[] bytes = encode(json);
+		int[] lengths = {0, 3, 8, 40, bytes.length / 2, bytes.length - 1};
+		for (int length : lengths) {
+			ByteBuffer buf = ByteBuffer.wrap(bytes, 0, length).slice();
+			try {
+				PercentTableCodec.read(buf);
+				fail("Accepted a table truncated to " + length + " bytes");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testDictLengthsAreUnsigned() throws IOException {
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 40000; i ++) {
+			longValue.append('A');
+		}
+		String[] dict = {"PR", longValue.toString()};
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PercentTableCodec.writeDict(new DataOutputStream(out), dict);
+		assertArrayEquals(dict, PercentTableCodec.readDict(ByteBuffer.wrap(out.toByteArray())));
+	}
+
+	@Test
+	public void testRejectCorruptedHeader() throws IOException {
+		PercentTable json = readJson("aapcnt/rx-all_subtype-B.json", PercentTable.Kind.AMINO_ACID);
+		byte[] bytes = encode(json);
+		// size field right after magic, version and kind
+		int sizeOffset = Integer.BYTES + Short.BYTES + Byte.BYTES;
+		int[] sizes = {-1, Integer.MAX_VALUE};
+		for (int size : sizes) {
+			byte[] corrupted = bytes.clone();
+			ByteBuffer.wrap(corrupted).putInt(sizeOffset, size);
+			try {
+				PercentTableCodec.read(ByteBuffer.wrap(corrupted));
+				fail("Accepted a table of size " + size);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		// gene dictionary length larger than the resource
+		byte[] corrupted = bytes.clone();
+		ByteBuffer.wrap(corrupted).putShort(sizeOffset + Integer.BYTES + Short.BYTES, (short) -1);
+		try {
+			PercentTableCodec.read(ByteBuffer.wrap(corrupted));
+			fail("Accepted a dictionary value past the end of the resource");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRejectOtherResource() {
+		ByteBuffer buf = ByteBuffer.wrap("[{\"gene\": \"PR\"}]".getBytes(StandardCharsets.UTF_8));
+		try {
+			PercentTableCodec.read(buf);
+			fail("Accepted a JSON resource");
+		} catch (IllegalArgumentException e) {
+			assertFalse(e.getMessage().isEmpty());
+		}
+	}
+
+}
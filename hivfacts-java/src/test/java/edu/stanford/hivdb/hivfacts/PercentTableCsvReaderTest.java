@@ -0,0 +1,70 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class PercentTableCsvReaderTest {
+
+	private static final String HEADER = "gene,position,aa,percent,count,total,reason,isUnusual\n";
+
+	private static PercentTable read(String csv) throws IOException {
+		return PercentTableCsvReader.read(new StringReader(csv));
+	}
+
+	private static void assertRejected(String csv) throws IOException {
+		try {
+			read(csv);
+			fail("Accepted " + csv);
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		PercentTable table = read(
+			"\uFEFF" + HEADER +
+			"PR,1,P,0.99,990,1000,PCNT,False\r\n" +
+			"\n" +
+			"PR,1,L,0.01,10,1000,PCNT,True\n");
+		assertEquals(PercentTable.Kind.AMINO_ACID, table.getKind());
+		assertEquals(2, table.size());
+		assertEquals("PR", table.getGene(1));
+		assertEquals(1, table.getPosition(1));
+		assertEquals("L", table.getSymbol(1));
+		assertEquals(0.01, table.getPercent(1), 0.);
+		assertEquals(10, table.getCount(1));
+		assertEquals(1000, table.getTotal(1));
+		assertEquals("PCNT", table.getReason(1));
+		assertFalse(table.isUnusual(0));
+		assertTrue(table.isUnusual(1));
+	}
+
+	@Test
+	public void testColumnOrder() throws IOException {
+		PercentTable table = read(
+			"aa,gene,position,percent,count,total,reason,isUnusual\n" +
+			"P,RT,7,0.5,1,2,PCNT,False\n");
+		assertEquals("RT", table.getGene(0));
+		assertEquals(7, table.getPosition(0));
+		assertEquals("P", table.getSymbol(0));
+	}
+
+	@Test
+	public void testRejectMalformed() throws IOException {
+		assertRejected("");
+		assertRejected("gene,position,aa\nPR,1,P\n");
+		assertRejected(HEADER + "PR,1,P,0.99,990,1000,PCNT\n");
+		assertRejected(HEADER + "PR,1,P,0.99,990,1000,PCNT,False,extra\n");
+		assertRejected(HEADER + "PR,one,P,0.99,990,1000,PCNT,False\n");
+		assertRejected(HEADER + "PR,1,P,0.99,990,1000,PCNT,maybe\n");
+	}
+
+}
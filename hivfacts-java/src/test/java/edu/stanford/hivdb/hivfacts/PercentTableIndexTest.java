@@ -0,0 +1,138 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.mutations.AminoAcidPercent;
+import edu.stanford.hivdb.mutations.AminoAcidPercents;
+import edu.stanford.hivdb.mutations.GenePosition;
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Strain;
+
+public class PercentTableIndexTest {
+
+	private static byte[] readBytes() throws IOException {
+		return Files.readAllBytes(Paths.get("..", "data", "aapcnt", "rx-all_subtype-B.json"));
+	}
+
+	private static PercentTable parse(Reader reader) throws IOException {
+		return PercentTableJsonReader.read(reader, PercentTable.Kind.AMINO_ACID);
+	}
+
+	@Test
+	public void testToIndexPath() {
+		assertEquals("aapcnt/rx-all_subtype-A.pidx", PercentTableIndex.toIndexPath("aapcnt/rx-all_subtype-A.json"));
+	}
+
+	@Test
+	public void testGeneRanges() throws IOException {
+		byte[] bytes = readBytes();
+		PercentTable table = parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		List<int[]> recordRanges = JsonArrayChunks.split(ByteBuffer.wrap(bytes), Integer.MAX_VALUE);
+		PercentTableIndex index = PercentTableIndex.build(table, recordRanges);
+		assertFalse(index.getGenes().isEmpty());
+
+		int numRows = 0;
+		for (String gene : index.getGenes()) {
+			PercentTableIndex.Entry entry = index.get(gene);
+			assertTrue(entry.hasByteRange());
+			for (int row = entry.getFirstRow(); row < entry.getEndRow(); row ++) {
+				assertEquals(gene, table.getGene(row));
+			}
+			numRows += entry.getEndRow() - entry.getFirstRow();
+
+			// the byte range holds exactly the records of the gene
+			int[] byteRange = {(int) entry.getFirstByte(), (int) entry.getEndByte()};
+			PercentTable geneTable = parse(JsonArrayChunks.newArrayReader(ByteBuffer.wrap(bytes), byteRange));
+			assertEquals(entry.getEndRow() - entry.getFirstRow(), geneTable.size());
+			for (int row = 0; row < geneTable.size(); row ++) {
+				assertEquals(gene, geneTable.getGene(row));
+				assertEquals(table.getPosition(entry.getFirstRow() + row), geneTable.getPosition(row));
+				assertEquals(table.getSymbol(entry.getFirstRow() + row), geneTable.getSymbol(row));
+			}
+		}
+		assertEquals(table.size(), numRows);
+		assertNull(index.get("NOGENE"));
+	}
+
+	@Test
+	public void testWriteAndRead() throws IOException {
+		byte[] bytes = readBytes();
+		PercentTable table = parse(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+		PercentTableIndex index = PercentTableIndex.build(table, null);
+		StringWriter writer = new StringWriter();
+		index.write(writer);
+		PercentTableIndex copy = PercentTableIndex.read(new StringReader(writer.toString()));
+		assertEquals(index.getGenes(), copy.getGenes());
+		for (String gene : index.getGenes()) {
+			assertEquals(index.get(gene).getFirstRow(), copy.get(gene).getFirstRow());
+			assertEquals(index.get(gene).getEndRow(), copy.get(gene).getEndRow());
+			assertFalse(copy.get(gene).hasByteRange());
+		}
+	}
+
+	@Test
+	public void testUngroupedTableHasNoIndex() {
+		PercentTable.Builder builder = new PercentTable.Builder(PercentTable.Kind.AMINO_ACID);
+		builder.add("PR", 1, "P", 1., 1, 1, "PCNT", false);
+		builder.add("RT", 1, "P", 1., 1, 1, "PCNT", false);
+		builder.add("PR", 2, "Q", 1., 1, 1, "PCNT", false);
+		assertNull(PercentTableIndex.build(builder.build(), null));
+	}
+
+	@Test
+	public void testLazyTableLoadsGenesOnDemand() {
+		Strain<HIV> strain = HIV.getInstance().getMainStrain();
+		Gene<HIV> pr = strain.getGene("PR");
+		Gene<HIV> rt = strain.getGene("RT");
+		AtomicInteger loads = new AtomicInteger();
+		AtomicInteger onLoads = new AtomicInteger();
+		Map<Gene<HIV>, Supplier<AminoAcidPercents<HIV>>> geneLoaders = new LinkedHashMap<>();
+		geneLoaders.put(pr, () -> {
+			loads.incrementAndGet();
+			return new AminoAcidPercents<>(Collections.singletonList(
+				new AminoAcidPercent<>(pr, 1, 'P', 1., 10, 10, "PCNT", false)));
+		});
+		LazyAminoAcidPercents<HIV> lazy = new LazyAminoAcidPercents<>(geneLoaders, onLoads::incrementAndGet);
+		assertTrue(lazy.get(rt).isEmpty());
+		assertEquals(0, loads.get());
+		assertEquals(1., lazy.get(pr, 1, 'P').getPercent(), 0.);
+		assertEquals(1, lazy.get(new GenePosition<>(pr, 1)).size());
+		assertEquals(1, loads.get());
+		assertEquals(1, onLoads.get());
+		assertEquals(1, lazy.getLoaded().size());
+	}
+
+	@Test
+	public void testRejectMalformed() throws IOException {
+		try {
+			PercentTableIndex.read(new StringReader("PR\t0\t10\n"));
+			fail("Accepted a line of three cells");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
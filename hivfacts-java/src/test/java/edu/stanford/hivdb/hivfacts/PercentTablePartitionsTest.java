@@ -0,0 +1,80 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import edu.stanford.hivdb.viruses.Strain;
+
+public class PercentTablePartitionsTest {
+
+	@Test
+	public void testBindOnce() {
+		Strain<HIV> strain = HIV.getInstance().getMainStrain();
+		AtomicInteger binds = new AtomicInteger();
+		AtomicInteger grown = new AtomicInteger();
+		AtomicReference<Runnable> onLoad = new AtomicReference<>();
+		PercentTablePartitions<HIV, Object> partitions = new PercentTablePartitions<>((s, callback) -> {
+			binds.incrementAndGet();
+			onLoad.set(callback);
+			return new Object();
+		});
+		partitions.setListener(this, grown::incrementAndGet);
+		assertNull(partitions.getIfBound(strain));
+
+		Object table = partitions.get(strain);
+		assertSame(table, partitions.get(strain));
+		assertSame(table, partitions.getIfBound(strain));
+		assertEquals(1, binds.get());
+		assertEquals(1, grown.get());
+
+		// bound tables which load more rows notify the listeners
+		onLoad.get().run();
+		assertEquals(2, grown.get());
+		assertEquals(1, partitions.getBound().size());
+	}
+
+	@Test
+	public void testConcurrentBinds() throws InterruptedException {
+		Strain<HIV> strain = HIV.getInstance().getMainStrain();
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		AtomicInteger binds = new AtomicInteger();
+		AtomicInteger grown = new AtomicInteger();
+		PercentTablePartitions<HIV, Object> partitions = new PercentTablePartitions<>((s, callback) -> {
+			binds.incrementAndGet();
+			try {
+				// both callers bind before either installs its table
+				barrier.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException|BrokenBarrierException|TimeoutException e) {
+				throw new IllegalStateException(e);
+			}
+			return new Object();
+		});
+		partitions.setListener(this, grown::incrementAndGet);
+		Object[] tables = new Object[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i ++) {
+			int idx = i;
+			threads[i] = new Thread(() -> tables[idx] = partitions.get(strain));
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(2, binds.get());
+		// both callers get the table installed first, which is announced once
+		assertSame(tables[0], tables[1]);
+		assertSame(tables[0], partitions.getIfBound(strain));
+		assertEquals(1, grown.get());
+	}
+
+}
@@ -0,0 +1,105 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.stanford.hivdb.hivfacts.HIVDataLoader.Dataset;
+
+public class PreloadTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testDependencies() {
+		for (Dataset dataset : Dataset.values()) {
+			for (Dataset dependency : dataset.getDependencies()) {
+				// dependencies are declared before their dependents
+				assertTrue(dataset + " " + dependency, dependency.ordinal() < dataset.ordinal());
+			}
+		}
+	}
+
+	@Test
+	public void testPreloadWithDependencies()
+		throws InterruptedException, ExecutionException, TimeoutException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		loader.preload(executor, EnumSet.of(Dataset.GENOTYPER, Dataset.DRUG_RESIST_MUTATIONS))
+			.get(60, TimeUnit.SECONDS);
+		Set<Dataset> loaded = loader.getState().getLoadedDatasets();
+		assertTrue(loaded.toString(), loaded.containsAll(EnumSet.of(
+			Dataset.GENOTYPER, Dataset.GENOTYPE_REFERENCES, Dataset.GENOTYPES,
+			Dataset.GENES, Dataset.STRAINS, Dataset.DRUG_RESIST_MUTATIONS, Dataset.DRUG_CLASSES
+		)));
+		// nothing else is loaded
+		assertFalse(loaded.contains(Dataset.DRUG_RESIST_ALGORITHMS));
+		assertFalse(loaded.contains(Dataset.CONDITIONAL_COMMENTS));
+	}
+
+	@Test
+	public void testPreloadEverything()
+		throws InterruptedException, ExecutionException, TimeoutException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		Set<Dataset> datasets = EnumSet.allOf(Dataset.class);
+		// mutation prevalences and patient counts are computed by the virus
+		// singleton rather than by this loader
+		datasets.remove(Dataset.MUTATION_PREVALENCES);
+		datasets.remove(Dataset.NUM_PATIENTS_FOR_AA_PERCENTS);
+		loader.preload(executor, datasets).get(120, TimeUnit.SECONDS);
+		assertTrue(loader.getState().isComplete());
+		assertTrue(loader.getPercentTableCacheBytes() > 0);
+	}
+
+	@Test
+	public void testPreloadFailure() throws InterruptedException, TimeoutException {
+		HIVDataLoader<HIV> loader = (
+			HIVDataLoaderBuilderTest.newBuilder()
+			.condCommentsResPath("conditional-comments_missing.json")
+			.build()
+		);
+		CompletableFuture<Void> future = loader.preload(
+			executor, EnumSet.of(Dataset.CONDITIONAL_COMMENTS, Dataset.MUTATION_TYPES));
+		try {
+			future.get(60, TimeUnit.SECONDS);
+			fail("Preloaded a missing resource");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof ExceptionInInitializerError);
+		}
+		// datasets which don't depend on the failed one are still loaded
+		assertTrue(loader.getState().isLoaded(Dataset.MUTATION_TYPES));
+		assertFalse(loader.getState().isLoaded(Dataset.CONDITIONAL_COMMENTS));
+	}
+
+	@Test
+	public void testPreloadNothing()
+		throws InterruptedException, ExecutionException, TimeoutException {
+		HIVDataLoader<HIV> loader = HIVDataLoaderBuilderTest.newBuilder().build();
+		loader.preload(executor, Collections.emptySet()).get(10, TimeUnit.SECONDS);
+		assertTrue(loader.getState().getLoadedDatasets().isEmpty());
+	}
+
+}
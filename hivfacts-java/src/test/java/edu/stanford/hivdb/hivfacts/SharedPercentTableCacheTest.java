@@ -0,0 +1,159 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.stanford.hivdb.viruses.Gene;
+import edu.stanford.hivdb.viruses.Strain;
+
+public class SharedPercentTableCacheTest {
+
+	private static final String PCNT_PATH = "aapcnt/rx-all_subtype-B.json";
+
+	private Path cacheDir;
+	private PercentTable table;
+	private Strain<HIV> strain;
+	private AtomicInteger loads;
+
+	@Before
+	public void setUp() throws IOException {
+		cacheDir = Files.createTempDirectory("hivfacts-shared");
+		try (Reader reader = Files.newBufferedReader(Paths.get("..", "data", PCNT_PATH), StandardCharsets.UTF_8)) {
+			table = PercentTableJsonReader.read(reader, PercentTable.Kind.AMINO_ACID);
+		}
+		strain = HIV.getInstance().getMainStrain();
+		loads = new AtomicInteger();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(cacheDir)) {
+			paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private Supplier<PercentTable> loader() {
+		return () -> {
+			loads.incrementAndGet();
+			return table;
+		};
+	}
+
+	private List<Gene<HIV>> bindGenes(String[] geneDict) {
+		List<Gene<HIV>> genes = new ArrayList<>();
+		for (String gene : geneDict) {
+			genes.add(strain.getGene(gene));
+		}
+		return genes;
+	}
+
+	private OffHeapPercentLayout<HIV> attach(SharedPercentTableCache cache, String digest) throws IOException {
+		return cache.attach(PCNT_PATH, digest, loader(), this::bindGenes);
+	}
+
+	private Path findLayoutFile() throws IOException {
+		try (Stream<Path> paths = Files.walk(cacheDir)) {
+			List<Path> files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+			assertEquals(1, files.size());
+			return files.get(0);
+		}
+	}
+
+	private void assertSameValues(OffHeapPercentLayout<HIV> layout) {
+		for (int row = 0; row < table.size(); row ++) {
+			Gene<HIV> gene = strain.getGene(table.getGene(row));
+			long handle = layout.find(gene, table.getPosition(row), layout.getSymbolIndex(table.getSymbol(row)));
+			assertTrue(handle >= 0);
+			assertEquals(table.getPercent(row), layout.getPercent(handle), 0.);
+			assertEquals(table.getCount(row), layout.getCount(handle));
+			assertEquals(table.getTotal(row), layout.getTotal(handle));
+		}
+	}
+
+	@Test
+	public void testPublishOnce() throws IOException {
+		HIVDataSource source = HIVDataSource.directory(Paths.get("..", "data"));
+		assertSameValues(attach(new SharedPercentTableCache(cacheDir, source, null), "digest-1"));
+		// another process: a cache of the same directory and source
+		assertSameValues(attach(new SharedPercentTableCache(cacheDir, source, null), "digest-1"));
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testRepublishOtherDigest() throws IOException {
+		SharedPercentTableCache cache = new SharedPercentTableCache(cacheDir, HIVDataSource.classpath(), null);
+		attach(cache, "digest-1");
+		assertSameValues(attach(cache, "digest-2"));
+		assertEquals(2, loads.get());
+		attach(cache, "digest-2");
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testRepublishMalformedFile() throws IOException {
+		SharedPercentTableCache cache = new SharedPercentTableCache(cacheDir, HIVDataSource.classpath(), null);
+		attach(cache, "digest-1");
+		Path file = findLayoutFile();
+
+		// truncated within the header
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(12);
+		}
+		assertSameValues(attach(cache, "digest-1"));
+		assertEquals(2, loads.get());
+
+		// truncated within the gene dictionary
+		file = findLayoutFile();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(Integer.BYTES + Short.BYTES + 4 * Short.BYTES + "digest-1".length() + 3);
+		}
+		assertSameValues(attach(cache, "digest-1"));
+		assertEquals(3, loads.get());
+
+		// slots truncated
+		file = findLayoutFile();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+		assertSameValues(attach(cache, "digest-1"));
+		assertEquals(4, loads.get());
+	}
+
+	@Test
+	public void testVersionDirectoryOfSource() throws IOException {
+		attach(new SharedPercentTableCache(cacheDir, HIVDataSource.classpath(), null), "digest-1");
+		attach(new SharedPercentTableCache(cacheDir, HIVDataSource.classpath(), java.util.Set.of("PR")), "digest-1");
+		List<Path> versionDirs;
+		try (Stream<Path> paths = Files.list(cacheDir)) {
+			versionDirs = paths.collect(Collectors.toList());
+		}
+		assertEquals(2, versionDirs.size());
+		assertNotEquals(versionDirs.get(0), versionDirs.get(1));
+		for (Path versionDir : versionDirs) {
+			String name = versionDir.getFileName().toString();
+			// <version>-<SHA-256 of the source key>
+			assertTrue(name, name.matches(".+-[0-9a-f]{64}"));
+		}
+	}
+
+}
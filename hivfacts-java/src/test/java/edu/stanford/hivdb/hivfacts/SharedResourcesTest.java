@@ -0,0 +1,84 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SharedResourcesTest {
+
+	private static String source(String name) {
+		return "SharedResourcesTest-" + name;
+	}
+
+	@Test
+	public void testSharedUntilReleased() {
+		String key = SharedResources.register(source("shared"), "drugs.json");
+		assertEquals(key, SharedResources.register(source("shared"), "drugs.json"));
+		AtomicInteger loads = new AtomicInteger();
+		Object value1 = SharedResources.acquire(key, () -> "text-" + loads.incrementAndGet());
+		Object value2 = SharedResources.acquire(key, () -> "text-" + loads.incrementAndGet());
+		assertSame(value1, value2);
+		assertEquals(1, loads.get());
+
+		SharedResources.release(key);
+		assertSame(value1, SharedResources.acquire(key, () -> "text-" + loads.incrementAndGet()));
+		SharedResources.release(key);
+		// no loader registered any more, nothing is cached
+		assertEquals("text-2", SharedResources.acquire(key, () -> "text-" + loads.incrementAndGet()));
+		assertEquals("text-3", SharedResources.acquire(key, () -> "text-" + loads.incrementAndGet()));
+	}
+
+	@Test
+	public void testInvalidateStartsNewGeneration() {
+		String key1 = SharedResources.register(source("invalidate"), "drugs.json");
+		SharedResources.acquire(key1, () -> "old");
+		SharedResources.invalidate(source("invalidate"));
+		String key2 = SharedResources.register(source("invalidate"), "drugs.json");
+		assertNotEquals(key1, key2);
+		assertEquals("new", SharedResources.acquire(key2, () -> "new"));
+		// keys of the old generation keep their value until released
+		assertEquals("old", SharedResources.acquire(key1, () -> "other"));
+		SharedResources.release(key1);
+		SharedResources.release(key2);
+	}
+
+	@Test
+	public void testConcurrentAcquireLoadsOnce() throws Exception {
+		String key = SharedResources.register(source("concurrent"), "drugs.json");
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i ++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					return SharedResources.acquire(key, () -> {
+						loads.incrementAndGet();
+						return new Object();
+					});
+				}));
+			}
+			start.countDown();
+			Object first = futures.get(0).get();
+			for (Future<Object> future : futures) {
+				assertSame(first, future.get());
+			}
+			assertEquals(1, loads.get());
+		} finally {
+			executor.shutdown();
+			SharedResources.release(key);
+		}
+	}
+
+}
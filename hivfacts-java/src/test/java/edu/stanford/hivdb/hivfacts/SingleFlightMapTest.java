@@ -0,0 +1,175 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+public class SingleFlightMapTest {
+
+	@Test
+	public void testLoadOnce() throws InterruptedException {
+		SingleFlightMap<String, String> map = new SingleFlightMap<>();
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i ++) {
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				map.get("a", key -> {
+					loads.incrementAndGet();
+					return key.toUpperCase();
+				});
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, loads.get());
+		assertEquals("A", map.get("a", key -> "reloaded"));
+	}
+
+	@Test
+	public void testNestedLoads() {
+		SingleFlightMap<Integer, Integer> map = new SingleFlightMap<>();
+		// loaders may load other keys of the same map
+		int value = map.get(10, new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer key) {
+				return key == 0 ? 0 : key + map.get(key - 1, this);
+			}
+		});
+		assertEquals(55, value);
+	}
+
+	@Test
+	public void testLoaderFailure() {
+		SingleFlightMap<String, String> map = new SingleFlightMap<>();
+		try {
+			map.get("a", key -> {
+				throw new IllegalStateException("broken");
+			});
+			fail("Expected the loader's exception");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals("loaded", map.get("a", key -> "loaded"));
+	}
+
+	@Test
+	public void testWaitForLoad() throws InterruptedException {
+		SingleFlightMap<String, String> map = new SingleFlightMap<>();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger loads = new AtomicInteger();
+		Function<String, String> slowLoader = key -> {
+			loads.incrementAndGet();
+			loading.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "slow";
+		};
+		String[] results = new String[4];
+		Thread first = new Thread(() -> results[0] = map.get("a", slowLoader));
+		first.start();
+		loading.await();
+		Thread[] waiters = new Thread[3];
+		for (int i = 0; i < waiters.length; i ++) {
+			int idx = i + 1;
+			waiters[i] = new Thread(() -> results[idx] = map.get("a", key -> {
+				loads.incrementAndGet();
+				return "again";
+			}));
+			waiters[i].start();
+		}
+		release.countDown();
+		first.join();
+		for (Thread waiter : waiters) {
+			waiter.join();
+		}
+		assertEquals(1, loads.get());
+		for (String result : results) {
+			assertEquals("slow", result);
+		}
+	}
+
+	@Test
+	public void testWaitForFailedLoad() throws InterruptedException {
+		SingleFlightMap<String, String> map = new SingleFlightMap<>();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread first = new Thread(() -> {
+			try {
+				map.get("a", key -> {
+					loading.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw new IllegalStateException("broken");
+				});
+			} catch (IllegalStateException e) {
+				// expected
+			}
+		});
+		first.start();
+		loading.await();
+		Throwable[] failure = new Throwable[1];
+		Thread waiter = new Thread(() -> {
+			try {
+				map.get("a", key -> "loaded");
+			} catch (Throwable e) {
+				failure[0] = e;
+			}
+		});
+		waiter.start();
+		// the waiter either waits for the failed load or loads after it
+		release.countDown();
+		first.join();
+		waiter.join();
+		if (failure[0] != null) {
+			assertEquals(IllegalStateException.class, failure[0].getClass());
+		}
+		assertEquals("loaded", map.get("a", key -> "loaded"));
+	}
+
+	@Test
+	public void testClearDuringLoad() throws InterruptedException {
+		SingleFlightMap<String, String> map = new SingleFlightMap<>();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch cleared = new CountDownLatch(1);
+		String[] loaded = new String[1];
+		Thread loader = new Thread(() -> loaded[0] = map.get("a", key -> {
+			loading.countDown();
+			try {
+				cleared.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "old";
+		}));
+		loader.start();
+		loading.await();
+		map.clear();
+		cleared.countDown();
+		loader.join();
+		// returned to its caller, but not kept
+		assertEquals("old", loaded[0]);
+		assertEquals("new", map.get("a", key -> "new"));
+	}
+
+}
@@ -0,0 +1,167 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import edu.stanford.hivdb.drugs.DrugClass;
+import edu.stanford.hivdb.mutations.MutationSet;
+
+public class SnapshotTest {
+
+	private static final Path DATA_DIR = Paths.get("..", "data");
+
+	/**
+	 * Read-only data directory without static datasets which records the
+	 * resources read from it
+	 */
+	private static class RecordingDataSource extends HIVDataSource {
+
+		private final HIVDataSource directory = HIVDataSource.directory(DATA_DIR);
+		private final Set<String> opened = ConcurrentHashMap.newKeySet();
+
+		@Override
+		protected boolean rawExists(String resPath) {
+			return directory.rawExists(resPath);
+		}
+
+		@Override
+		protected InputStream openRaw(String resPath) throws IOException {
+			opened.add(resPath);
+			return directory.openRaw(resPath);
+		}
+
+		@Override
+		protected ByteBuffer mapRaw(String resPath) throws IOException {
+			opened.add(resPath);
+			return directory.mapRaw(resPath);
+		}
+
+		@Override
+		public String toString() {
+			return "SnapshotTest";
+		}
+
+	}
+
+	private Path snapshotFile;
+
+	@Before
+	public void setUp() throws IOException {
+		snapshotFile = Files.createTempFile("hivfacts-snapshot", ".bin");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(snapshotFile);
+	}
+
+	private static Map<String, String> toStrings(Map<DrugClass<HIV>, MutationSet<HIV>> muts) {
+		Map<String, String> results = new LinkedHashMap<>();
+		for (Map.Entry<DrugClass<HIV>, MutationSet<HIV>> entry : muts.entrySet()) {
+			results.put(entry.getKey().getName(), entry.getValue().toString());
+		}
+		return results;
+	}
+
+	@Test
+	public void testMutationListsStoredInBinary() throws IOException {
+		RecordingDataSource origin = new RecordingDataSource();
+		HIVDataLoader<HIV> loader = HIV.getInstance().registerDataRelease("snapshot-origin", origin);
+		Map<String, String> drms = toStrings(loader.getDrugResistMutations());
+		String apobecs = loader.getApobecMutations().toString();
+		assertFalse(drms.isEmpty());
+		loader.saveSnapshot(snapshotFile);
+
+		SnapshotDataSource snapshot = SnapshotDataSource.open(snapshotFile, origin);
+		assertNotNull(snapshot);
+		assertTrue(snapshot.exists("drms_hiv1.mtab"));
+		assertTrue(snapshot.exists("apobecs/apobecs.mtab"));
+
+		RecordingDataSource restoredOrigin = new RecordingDataSource();
+		HIVDataLoader<HIV> restored = HIV.getInstance().registerDataRelease(
+			"snapshot", HIVDataSource.snapshot(snapshotFile, restoredOrigin));
+		assertEquals(drms, toStrings(restored.getDrugResistMutations()));
+		assertEquals(apobecs, restored.getApobecMutations().toString());
+		// everything came from the snapshot; no JSON list was parsed
+		assertTrue(String.valueOf(restoredOrigin.opened), restoredOrigin.opened.isEmpty());
+	}
+
+	private static Map<String, List<Map<String, ?>>> readGroups(String resPath) throws IOException {
+		try (Reader reader = Files.newBufferedReader(DATA_DIR.resolve(resPath), StandardCharsets.UTF_8)) {
+			return new Gson().fromJson(reader, new TypeToken<Map<String, List<Map<String, ?>>>>(){}.getType());
+		}
+	}
+
+	private static byte[] encode(MutationTable table) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		table.write(out);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testMutationTableRoundTrip() throws IOException {
+		Map<String, List<Map<String, ?>>> drms = readGroups("drms_hiv1.json");
+		MutationTable table = MutationTable.read(ByteBuffer.wrap(encode(MutationTable.fromGroups(drms))));
+		assertTrue(table.isGrouped());
+		assertNull(table.getMutationList());
+		assertEquals(drms, table.getMutationListsByDrugClass());
+
+		List<Map<String, ?>> muts = drms.values().iterator().next();
+		table = MutationTable.read(ByteBuffer.wrap(encode(MutationTable.fromList(muts))));
+		assertFalse(table.isGrouped());
+		assertNull(table.getMutationListsByDrugClass());
+		assertEquals(muts, table.getMutationList());
+
+		// an empty list keeps its shape
+		table = MutationTable.read(ByteBuffer.wrap(encode(MutationTable.fromGroups(new LinkedHashMap<>()))));
+		assertTrue(table.isGrouped());
+		assertTrue(table.getMutationListsByDrugClass().isEmpty());
+	}
+
+	@Test
+	public void testMutationTableRejectsMalformed() throws IOException {
+		byte[] bytes = encode(MutationTable.fromGroups(readGroups("drms_hiv1.json")));
+		int[] lengths = {0, 3, 8, bytes.length / 2, bytes.length - 1};
+		for (int length : lengths) {
+			try {
+				MutationTable.read(ByteBuffer.wrap(bytes, 0, length).slice());
+				fail("Accepted a table truncated to " + length + " bytes");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			MutationTable.read(ByteBuffer.wrap("[{\"gene\": \"PR\"}]".getBytes(StandardCharsets.UTF_8)));
+			fail("Accepted a JSON resource");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
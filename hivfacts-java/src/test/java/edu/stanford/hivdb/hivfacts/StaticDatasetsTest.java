@@ -0,0 +1,82 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+public class StaticDatasetsTest {
+
+	private static final Path DATA_DIR = Paths.get("..", "data");
+	private static final Gson GSON = new Gson();
+	private static final Type MUTATION_LIST = new TypeToken<List<Map<String, ?>>>(){}.getType();
+	private static final Type MUTATION_LISTS = new TypeToken<Map<String, List<Map<String, ?>>>>(){}.getType();
+
+	private static String read(String resPath) throws IOException {
+		return new String(Files.readAllBytes(DATA_DIR.resolve(resPath)), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testMutationListsMatchResources() throws IOException {
+		String[] resPaths = {
+			"apobecs/apobecs.json", "apobecs/apobec_drms.json",
+			"apobecs-hiv2/apobecs.json", "apobecs-hiv2/apobec_drms.json"
+		};
+		for (String resPath : resPaths) {
+			List<Map<String, ?>> expected = GSON.fromJson(read(resPath), MUTATION_LIST);
+			assertEquals(resPath, expected, StaticDatasets.getMutationList(resPath));
+			assertNull(StaticDatasets.getMutationListsByDrugClass(resPath));
+		}
+	}
+
+	@Test
+	public void testMutationListsByDrugClassMatchResources() throws IOException {
+		String[] resPaths = {
+			"drms_hiv1.json", "drms_hiv2.json", "sdrms_hiv1.json",
+			"sdrms_hiv2.json", "tsms_hiv1.json", "tsms_hiv2.json"
+		};
+		for (String resPath : resPaths) {
+			Map<String, List<Map<String, ?>>> expected = GSON.fromJson(read(resPath), MUTATION_LISTS);
+			Map<String, List<Map<String, ?>>> actual = StaticDatasets.getMutationListsByDrugClass(resPath);
+			assertEquals(resPath, expected, actual);
+			// drug classes keep the order of the resource
+			assertEquals(resPath, expected.keySet().toString(), actual.keySet().toString());
+			assertNull(StaticDatasets.getMutationList(resPath));
+		}
+	}
+
+	@Test
+	public void testJsonTextsMatchResources() throws IOException {
+		String[] resPaths = {
+			"strains_hiv1.json", "genes_hiv1.json", "drug-classes_hiv1.json", "drugs.json",
+			"mutation-types.json", "mutation-type-pairs_hiv1.json", "genes_hiv2.json"
+		};
+		for (String resPath : resPaths) {
+			String text = StaticDatasets.getJsonText(resPath);
+			assertNotNull(resPath, text);
+			assertEquals(resPath, JsonParser.parseString(read(resPath)), JsonParser.parseString(text));
+		}
+	}
+
+	@Test
+	public void testUnknownResources() {
+		assertNull(StaticDatasets.getMutationList("aapcnt/rx-all_subtype-B.json"));
+		assertNull(StaticDatasets.getMutationListsByDrugClass("aapcnt/rx-all_subtype-B.json"));
+		assertNull(StaticDatasets.getJsonText("aapcnt/rx-all_subtype-B.json"));
+	}
+
+}
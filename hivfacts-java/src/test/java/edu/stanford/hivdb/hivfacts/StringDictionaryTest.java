@@ -0,0 +1,67 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StringDictionaryTest {
+
+	@Test
+	public void testCanonicalize() {
+		String value1 = new String("StringDictionaryTest-PR");
+		String value2 = new String("StringDictionaryTest-PR");
+		assertNotSame(value1, value2);
+		assertSame(value1, StringDictionary.canonicalize(value1));
+		assertSame(value1, StringDictionary.canonicalize(value2));
+		assertNull(StringDictionary.canonicalize((String) null));
+	}
+
+	@Test
+	public void testCanonicalizeArray() {
+		String canonical = StringDictionary.canonicalize(new String("StringDictionaryTest-RT"));
+		String[] values = {new String("StringDictionaryTest-RT"), null};
+		assertSame(values, StringDictionary.canonicalize(values));
+		assertSame(canonical, values[0]);
+		assertNull(values[1]);
+	}
+
+	@Test
+	public void testCanonicalizeValues() {
+		String canonical = StringDictionary.canonicalize(new String("StringDictionaryTest-IN"));
+		List<Map<String, ?>> rows = new ArrayList<>();
+		for (int i = 0; i < 2; i ++) {
+			Map<String, Object> row = new LinkedHashMap<>();
+			row.put("gene", new String("StringDictionaryTest-IN"));
+			row.put("position", 1.);
+			rows.add(row);
+		}
+		StringDictionary.canonicalizeValues(rows);
+		for (Map<String, ?> row : rows) {
+			assertSame(canonical, row.get("gene"));
+			assertEquals(1., row.get("position"));
+		}
+	}
+
+	@Test
+	public void testDecodedTablesShareValues() throws IOException {
+		String csv = (
+			"gene,position,aa,percent,count,total,reason,isUnusual\n" +
+			"PR,1,P,1.0,1,1,PCNT,False\n");
+		PercentTable table1 = PercentTableCsvReader.read(new StringReader(csv));
+		PercentTable table2 = PercentTableCsvReader.read(new StringReader(csv));
+		assertSame(table1.getGene(0), table2.getGene(0));
+		assertSame(table1.getSymbol(0), table2.getSymbol(0));
+		assertSame(table1.getReason(0), table2.getReason(0));
+	}
+
+}
@@ -0,0 +1,197 @@
+package edu.stanford.hivdb.hivfacts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class WeightedTableCacheTest {
+
+	private static WeightedTableCache<String, AtomicLong> newCache(long maxWeight, HIVDataLoader.EvictionPolicy policy) {
+		return new WeightedTableCache<>(AtomicLong::get, maxWeight, policy, false);
+	}
+
+	private static void sleep() throws InterruptedException {
+		// lets System.nanoTime() tell accesses apart
+		Thread.sleep(2);
+	}
+
+	@Test
+	public void testUnlimited() {
+		WeightedTableCache<String, AtomicLong> cache = newCache(0, HIVDataLoader.EvictionPolicy.LRU);
+		for (int i = 0; i < 10; i ++) {
+			cache.get("t" + i, key -> new AtomicLong(1000));
+		}
+		assertEquals(10000, cache.getWeight());
+		assertEquals(10, cache.keys().size());
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(100, HIVDataLoader.EvictionPolicy.LRU);
+		cache.get("a", key -> new AtomicLong(40));
+		sleep();
+		cache.get("b", key -> new AtomicLong(40));
+		sleep();
+		cache.getIfLoaded("a");
+		sleep();
+		cache.get("c", key -> new AtomicLong(40));
+		assertNotNull(cache.peek("a"));
+		assertNull(cache.peek("b"));
+		assertNotNull(cache.peek("c"));
+		assertEquals(80, cache.getWeight());
+	}
+
+	@Test
+	public void testEvictLeastFrequentlyUsed() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(100, HIVDataLoader.EvictionPolicy.LFU);
+		cache.get("a", key -> new AtomicLong(40));
+		cache.get("b", key -> new AtomicLong(40));
+		for (int i = 0; i < 3; i ++) {
+			cache.getIfLoaded("a");
+		}
+		sleep();
+		cache.getIfLoaded("b");
+		cache.get("c", key -> new AtomicLong(40));
+		assertNotNull(cache.peek("a"));
+		assertNull(cache.peek("b"));
+	}
+
+	@Test
+	public void testEvictionOrderAcrossPuts() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(30, HIVDataLoader.EvictionPolicy.LRU);
+		for (String key : new String[] {"a", "b", "c"}) {
+			cache.get(key, k -> new AtomicLong(10));
+			sleep();
+		}
+		cache.getIfLoaded("a");
+		sleep();
+		cache.get("d", key -> new AtomicLong(10));
+		assertNull(cache.peek("b"));
+		sleep();
+		cache.getIfLoaded("c");
+		sleep();
+		cache.get("e", key -> new AtomicLong(10));
+		// "a" was last used before "d" was loaded and "c" was used again
+		assertNull(cache.peek("a"));
+		assertNotNull(cache.peek("c"));
+		assertNotNull(cache.peek("d"));
+		sleep();
+		cache.get("f", key -> new AtomicLong(10));
+		assertNull(cache.peek("d"));
+		assertEquals(3, cache.keys().size());
+		assertEquals(30, cache.getWeight());
+	}
+
+	@Test
+	public void testKeepValueJustLoaded() {
+		WeightedTableCache<String, AtomicLong> cache = newCache(100, HIVDataLoader.EvictionPolicy.LRU);
+		cache.get("a", key -> new AtomicLong(50));
+		cache.get("huge", key -> new AtomicLong(500));
+		assertNull(cache.peek("a"));
+		assertNotNull(cache.peek("huge"));
+		assertEquals(500, cache.getWeight());
+	}
+
+	@Test
+	public void testReweigh() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(100, HIVDataLoader.EvictionPolicy.LRU);
+		cache.get("a", key -> new AtomicLong(30));
+		sleep();
+		AtomicLong b = cache.get("b", key -> new AtomicLong(30));
+		assertEquals(60, cache.getWeight());
+
+		b.set(90);
+		cache.reweigh("b", b);
+		assertNull(cache.peek("a"));
+		assertEquals(90, cache.getWeight());
+
+		// values which are no longer cached are ignored
+		cache.reweigh("b", new AtomicLong(1000));
+		assertEquals(90, cache.getWeight());
+	}
+
+	@Test
+	public void testSoftReferences() {
+		WeightedTableCache<String, AtomicLong> cache = new WeightedTableCache<>(
+			AtomicLong::get, 100, HIVDataLoader.EvictionPolicy.LRU, true);
+		AtomicLong a = cache.get("a", key -> new AtomicLong(60));
+		cache.get("b", key -> new AtomicLong(60));
+		assertNull(cache.peek("a"));
+		// taken back without loading it again, unless it was collected
+		AtomicLong reloaded = cache.get("a", key -> new AtomicLong(60));
+		assertSame(a, reloaded);
+	}
+
+	@Test
+	public void testLoaderFailure() {
+		WeightedTableCache<String, AtomicLong> cache = newCache(0, HIVDataLoader.EvictionPolicy.LRU);
+		try {
+			cache.get("a", key -> {
+				throw new IllegalStateException("broken");
+			});
+			fail("Expected the loader's exception");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(7, cache.get("a", key -> new AtomicLong(7)).get());
+	}
+
+	@Test
+	public void testConcurrentLoadsOnce() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(0, HIVDataLoader.EvictionPolicy.LRU);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i ++) {
+			threads[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				cache.get("a", key -> {
+					loads.incrementAndGet();
+					return new AtomicLong(1);
+				});
+			});
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testClearDuringLoad() throws InterruptedException {
+		WeightedTableCache<String, AtomicLong> cache = newCache(0, HIVDataLoader.EvictionPolicy.LRU);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch cleared = new CountDownLatch(1);
+		Thread loader = new Thread(() -> cache.get("a", key -> {
+			loading.countDown();
+			try {
+				cleared.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new AtomicLong(10);
+		}));
+		loader.start();
+		loading.await();
+		cache.clear();
+		cleared.countDown();
+		loader.join();
+		assertNull(cache.peek("a"));
+		assertEquals(0, cache.getWeight());
+	}
+
+}